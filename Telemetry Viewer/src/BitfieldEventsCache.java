@@ -0,0 +1,265 @@
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Caches the edge and level events of some Bitfields within a sample range, so they can be drawn on a chart.
+ * 
+ * The cache is a sliding window: when the range moves to the right (as it does every frame in live mode,)
+ * events before the new range are evicted from the left and events after the old range are appended on the right.
+ * Events are stored in primitive arrays, so only the edge Tooltips are objects.
+ * Any other change to the range regenerates the cache with binary searches of the Bitfield transition indexes.
+ */
+public class BitfieldEventsCache {
+	
+	/**
+	 * Accepts a level event.
+	 */
+	public interface LevelConsumer {
+		void accept(int startingSampleNumber, long startingTimestamp, int endingSampleNumber, long endingTimestamp);
+	}
+	
+	/**
+	 * The transitions of one Bitfield that are within the cached range.
+	 */
+	private static class Window {
+		
+		final Field.Bitfield bitfield;
+		int initialState;                     // state at the first sample number of the range
+		int[]  sampleNumbers = new int[256];  // transitions in the range are at [first, end)
+		int[]  states        = new int[256];
+		long[] timestamps    = new long[256];
+		int first = 0;
+		int end = 0;
+		int nextTransition = 0;               // index (in the Bitfield's transition index) of the first transition after the range
+		
+		Window(Field.Bitfield bitfield) {
+			this.bitfield = bitfield;
+		}
+		
+		void append(int sampleNumber, int state, long timestamp) {
+			
+			if(end == sampleNumbers.length) {
+				if(first >= sampleNumbers.length / 2) {
+					// at least half of the arrays have been evicted, so shift the transitions down instead of growing
+					System.arraycopy(sampleNumbers, first, sampleNumbers, 0, end - first);
+					System.arraycopy(states,        first, states,        0, end - first);
+					System.arraycopy(timestamps,    first, timestamps,    0, end - first);
+				} else {
+					sampleNumbers = Arrays.copyOfRange(sampleNumbers, first, 2 * sampleNumbers.length + first);
+					states        = Arrays.copyOfRange(states,        first, 2 * states.length        + first);
+					timestamps    = Arrays.copyOfRange(timestamps,    first, 2 * timestamps.length    + first);
+				}
+				end -= first;
+				first = 0;
+			}
+			
+			sampleNumbers[end] = sampleNumber;
+			states[end] = state;
+			timestamps[end] = timestamp;
+			end++;
+			
+		}
+		
+	}
+	
+	private final List<Field.Bitfield.State> edgeStates;
+	private final Window[] windows;
+	
+	// edge events in the range are at [firstEdge, endEdge)
+	private int[] edgeSampleNumbers = new int[256];
+	private Chart.Tooltip[] edgeTooltips = new Chart.Tooltip[256];
+	private int firstEdge = 0;
+	private int endEdge = 0;
+	
+	private int minSampleNumber = -1;
+	private int maxSampleNumber = -1;
+	private long minTimestamp;
+	private long maxTimestamp;
+	
+	/**
+	 * @param edgeStates     Bitfield States that should be shown as edge events.
+	 * @param levelStates    Bitfield States that should be shown as level events.
+	 */
+	public BitfieldEventsCache(List<Field.Bitfield.State> edgeStates, List<Field.Bitfield.State> levelStates) {
+		
+		this.edgeStates = edgeStates;
+		windows = Stream.concat(edgeStates.stream(), levelStates.stream())
+		                .map(state -> state.bitfield)
+		                .distinct()
+		                .map(bitfield -> new Window(bitfield))
+		                .toArray(Window[]::new);
+		
+	}
+	
+	/**
+	 * Updates the cache so it contains the events within a sample range.
+	 * 
+	 * @param minSampleNumber    First sample number, inclusive.
+	 * @param maxSampleNumber    Last sample number, inclusive. This sample MUST have been indexed by the Bitfields.
+	 * @param di                 Interface to obtain the timestamps from.
+	 */
+	public void update(int minSampleNumber, int maxSampleNumber, DatasetsInterface di) {
+		
+		if(minSampleNumber == this.minSampleNumber && maxSampleNumber == this.maxSampleNumber)
+			return;
+		
+		Field.Bitfield.Transitions[] transitions = new Field.Bitfield.Transitions[windows.length];
+		for(int i = 0; i < windows.length; i++)
+			transitions[i] = windows[i].bitfield.getTransitions();
+		
+		// slide if the new range overlaps the right side of the old range, otherwise start over
+		boolean slide = minSampleNumber >= this.minSampleNumber && minSampleNumber <= this.maxSampleNumber && maxSampleNumber >= this.maxSampleNumber;
+		for(int i = 0; i < windows.length && slide; i++)
+			if(transitions[i].count() < windows[i].nextTransition)
+				slide = false; // the index was cleared
+		
+		if(!slide) {
+			for(int i = 0; i < windows.length; i++) {
+				Window window = windows[i];
+				int transitionN = transitions[i].indexAt(minSampleNumber);
+				window.initialState = (transitionN >= 0) ? transitions[i].states()[transitionN] : 0; // the index may have just been cleared
+				window.first = 0;
+				window.end = 0;
+				window.nextTransition = transitionN + 1;
+			}
+			firstEdge = 0;
+			endEdge = 0;
+		} else {
+			// evict from the left
+			for(Window window : windows) {
+				while(window.first < window.end && window.sampleNumbers[window.first] <= minSampleNumber) {
+					window.initialState = window.states[window.first];
+					window.first++;
+				}
+			}
+			while(firstEdge < endEdge && edgeSampleNumbers[firstEdge] <= minSampleNumber) {
+				edgeTooltips[firstEdge] = null;
+				firstEdge++;
+			}
+		}
+		
+		// append on the right
+		int[] newTransitions = new int[windows.length];
+		for(int i = 0; i < windows.length; i++) {
+			Window window = windows[i];
+			int[] sampleNumbers = transitions[i].sampleNumbers();
+			int[] states = transitions[i].states();
+			int count = transitions[i].count();
+			int appendedCount = 0;
+			for(; window.nextTransition < count && sampleNumbers[window.nextTransition] <= maxSampleNumber; window.nextTransition++) {
+				int sampleNumber = sampleNumbers[window.nextTransition];
+				window.append(sampleNumber, states[window.nextTransition], di.getTimestamp(sampleNumber));
+				appendedCount++;
+			}
+			newTransitions[i] = window.end - appendedCount; // appending may have moved the existing transitions, so find the new ones after appending
+		}
+		
+		// merge the new transitions of each Bitfield into edge events, in sample number order
+		// transitions of several Bitfields at the same sample number share a Tooltip
+		while(true) {
+			int sampleNumber = Integer.MAX_VALUE;
+			for(int i = 0; i < windows.length; i++)
+				if(newTransitions[i] < windows[i].end)
+					sampleNumber = Integer.min(sampleNumber, windows[i].sampleNumbers[newTransitions[i]]);
+			if(sampleNumber == Integer.MAX_VALUE)
+				break;
+			
+			Chart.Tooltip tooltip = null;
+			for(int i = 0; i < windows.length; i++) {
+				Window window = windows[i];
+				if(newTransitions[i] < window.end && window.sampleNumbers[newTransitions[i]] == sampleNumber) {
+					Field.Bitfield.State state = window.bitfield.states[window.states[newTransitions[i]]];
+					if(edgeStates.contains(state)) {
+						if(tooltip == null)
+							tooltip = new Chart.Tooltip(sampleNumber, window.timestamps[newTransitions[i]], -1, -1);
+						tooltip.addRow(state.glColor, state.name);
+					}
+					newTransitions[i]++;
+				}
+			}
+			if(tooltip != null)
+				appendEdge(sampleNumber, tooltip);
+		}
+		
+		this.minSampleNumber = minSampleNumber;
+		this.maxSampleNumber = maxSampleNumber;
+		minTimestamp = di.getTimestamp(minSampleNumber);
+		maxTimestamp = di.getTimestamp(maxSampleNumber);
+		
+	}
+	
+	private void appendEdge(int sampleNumber, Chart.Tooltip tooltip) {
+		
+		if(endEdge == edgeSampleNumbers.length) {
+			if(firstEdge >= edgeSampleNumbers.length / 2) {
+				// at least half of the arrays have been evicted, so shift the edges down instead of growing
+				System.arraycopy(edgeSampleNumbers, firstEdge, edgeSampleNumbers, 0, endEdge - firstEdge);
+				System.arraycopy(edgeTooltips,      firstEdge, edgeTooltips,      0, endEdge - firstEdge);
+				Arrays.fill(edgeTooltips, endEdge - firstEdge, endEdge, null);
+			} else {
+				edgeSampleNumbers = Arrays.copyOfRange(edgeSampleNumbers, firstEdge, 2 * edgeSampleNumbers.length + firstEdge);
+				edgeTooltips      = Arrays.copyOfRange(edgeTooltips,      firstEdge, 2 * edgeTooltips.length      + firstEdge);
+			}
+			endEdge -= firstEdge;
+			firstEdge = 0;
+		}
+		
+		edgeSampleNumbers[endEdge] = sampleNumber;
+		edgeTooltips[endEdge] = tooltip;
+		endEdge++;
+		
+	}
+	
+	/**
+	 * @return    Tooltips for the edge events within the range, in sample number order. This List is only valid until the next update().
+	 */
+	public List<Chart.Tooltip> getEdges() {
+		
+		return Arrays.asList(edgeTooltips).subList(firstEdge, endEdge);
+		
+	}
+	
+	/**
+	 * @param state    A Bitfield State.
+	 * @return         Maximum number of level events that forEachLevel() could provide for that State.
+	 */
+	public int getMaxLevelCount(Field.Bitfield.State state) {
+		
+		for(Window window : windows)
+			if(window.bitfield == state.bitfield)
+				return window.end - window.first + 1;
+		return 0;
+		
+	}
+	
+	/**
+	 * Provides the level events of a State within the range, in sample number order.
+	 * The first level starts at the first sample number of the range, and the last level ends at the last sample number of the range.
+	 * 
+	 * @param state       A Bitfield State.
+	 * @param consumer    Receives each level event.
+	 */
+	public void forEachLevel(Field.Bitfield.State state, LevelConsumer consumer) {
+		
+		for(Window window : windows) {
+			if(window.bitfield != state.bitfield)
+				continue;
+			
+			int stateN = window.initialState;
+			int startingSampleNumber = minSampleNumber;
+			long startingTimestamp = minTimestamp;
+			for(int i = window.first; i < window.end; i++) {
+				if(stateN == state.value)
+					consumer.accept(startingSampleNumber, startingTimestamp, window.sampleNumbers[i], window.timestamps[i]);
+				stateN = window.states[i];
+				startingSampleNumber = window.sampleNumbers[i];
+				startingTimestamp = window.timestamps[i];
+			}
+			if(stateN == state.value)
+				consumer.accept(startingSampleNumber, startingTimestamp, maxSampleNumber, maxTimestamp);
+		}
+		
+	}
+	
+}
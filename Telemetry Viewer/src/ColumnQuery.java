@@ -0,0 +1,188 @@
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.util.List;
+
+/**
+ * Reads the samples of several datasets as columns, for analysis code that needs to process long ranges of samples.
+ * 
+ * A range is streamed in chunks: each chunk provides the timestamps and the samples of each dataset as primitive buffers,
+ * which are views of this query's caches instead of copies, so no objects are created per sample.
+ * Downsampled buckets (min/max/mean) are also available for reading a long range at a lower resolution.
+ * 
+ * A query is NOT thread-safe. Each thread should create its own query.
+ */
+public class ColumnQuery {
+	
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+	
+	/**
+	 * Accepts one chunk of samples.
+	 */
+	public interface ChunkConsumer {
+		void accept(Chunk chunk);
+	}
+	
+	/**
+	 * One chunk of consecutive samples. The same Chunk is reused for every chunk of a query,
+	 * and its buffers are only valid until the ChunkConsumer returns.
+	 */
+	public static class Chunk {
+		
+		private int firstSampleNumber;
+		private int sampleCount;
+		private LongBuffer timestamps;
+		private final FloatBuffer[] columns;
+		
+		private Chunk(int columnCount) {
+			columns = new FloatBuffer[columnCount];
+		}
+		
+		/**
+		 * @return    Sample number of the first sample in this chunk.
+		 */
+		public int firstSampleNumber() {
+			return firstSampleNumber;
+		}
+		
+		/**
+		 * @return    Number of samples in this chunk.
+		 */
+		public int sampleCount() {
+			return sampleCount;
+		}
+		
+		/**
+		 * @return    The timestamps (in milliseconds) of this chunk. Index 0 is the first sample of the chunk.
+		 */
+		public LongBuffer timestamps() {
+			return timestamps;
+		}
+		
+		/**
+		 * @param columnN    Index of the dataset, in the order they were given to the query.
+		 * @return           The samples of that dataset in this chunk. Index 0 is the first sample of the chunk.
+		 */
+		public FloatBuffer column(int columnN) {
+			return columns[columnN];
+		}
+		
+	}
+	
+	private final ConnectionTelemetry connection;
+	private final Field[] datasets;
+	private final StorageFloats.Cache[] caches;
+	private final StorageTimestamps.Cache timestampsCache;
+	private final Chunk chunk;
+	
+	/**
+	 * @param connection    The connection that owns the datasets.
+	 * @param datasets      The datasets, in the order of the columns.
+	 */
+	public ColumnQuery(ConnectionTelemetry connection, List<Field> datasets) {
+		
+		this.connection = connection;
+		this.datasets = datasets.toArray(new Field[0]);
+		caches = datasets.stream().map(Field::createCache).toArray(StorageFloats.Cache[]::new);
+		timestampsCache = connection.createTimestampsCache();
+		chunk = new Chunk(this.datasets.length);
+		
+	}
+	
+	/**
+	 * Streams a range of samples, one chunk at a time.
+	 * 
+	 * @param firstSampleNumber    First sample number, inclusive. Values below 0 are clipped.
+	 * @param lastSampleNumber     Last sample number, inclusive. Values beyond the most recent sample are clipped.
+	 * @param chunkSize            Maximum number of samples per chunk.
+	 * @param consumer             Receives each chunk, in sample number order.
+	 * @return                     Number of samples that were provided.
+	 */
+	public int forEachChunk(int firstSampleNumber, int lastSampleNumber, int chunkSize, ChunkConsumer consumer) {
+		
+		firstSampleNumber = Integer.max(firstSampleNumber, 0);
+		lastSampleNumber = Integer.min(lastSampleNumber, connection.getSampleCount() - 1);
+		if(firstSampleNumber > lastSampleNumber || chunkSize < 1)
+			return 0;
+		
+		for(int first = firstSampleNumber; first <= lastSampleNumber && first >= 0; first += chunkSize) { // first >= 0 to stop if first overflows
+			int last = (int) Long.min((long) first + chunkSize - 1, lastSampleNumber);
+			chunk.firstSampleNumber = first;
+			chunk.sampleCount = last - first + 1;
+			chunk.timestamps = connection.getTimestampsBuffer(first, last, timestampsCache);
+			for(int columnN = 0; columnN < datasets.length; columnN++)
+				chunk.columns[columnN] = datasets[columnN].getSamplesBuffer(first, last, caches[columnN]);
+			consumer.accept(chunk);
+		}
+		
+		return lastSampleNumber - firstSampleNumber + 1;
+		
+	}
+	
+	/**
+	 * Streams the samples within a time range, one chunk at a time.
+	 * 
+	 * @param startTimestamp    First timestamp (in milliseconds), inclusive.
+	 * @param endTimestamp      Last timestamp (in milliseconds), inclusive.
+	 * @param chunkSize         Maximum number of samples per chunk.
+	 * @param consumer          Receives each chunk, in sample number order.
+	 * @return                  Number of samples that were provided.
+	 */
+	public int forEachChunkBetween(long startTimestamp, long endTimestamp, int chunkSize, ChunkConsumer consumer) {
+		
+		int firstSampleNumber = getFirstSampleNumberAtOrAfter(startTimestamp);
+		int lastSampleNumber = connection.getClosestSampleNumberAtOrBefore(endTimestamp, connection.getSampleCount() - 1);
+		return forEachChunk(firstSampleNumber, lastSampleNumber, chunkSize, consumer);
+		
+	}
+	
+	/**
+	 * Gets the downsampled buckets of each dataset.
+	 * 
+	 * @param bucketSize           One of the StorageFloats.BUCKET_SIZES.
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive.
+	 * @return                     The buckets that are entirely within the range, for each dataset in the order of the columns.
+	 */
+	public StorageFloats.Buckets[] getBuckets(int bucketSize, int firstSampleNumber, int lastSampleNumber) {
+		
+		firstSampleNumber = Integer.max(firstSampleNumber, 0);
+		lastSampleNumber = Integer.min(lastSampleNumber, connection.getSampleCount() - 1);
+		boolean empty = firstSampleNumber > lastSampleNumber;
+		
+		StorageFloats.Buckets[] buckets = new StorageFloats.Buckets[datasets.length];
+		for(int columnN = 0; columnN < datasets.length; columnN++)
+			buckets[columnN] = empty ? new StorageFloats.Buckets(bucketSize, firstSampleNumber, new float[0], new float[0], new float[0]) :
+			                           datasets[columnN].getBuckets(bucketSize, firstSampleNumber, lastSampleNumber);
+		return buckets;
+		
+	}
+	
+	/**
+	 * Gets the downsampled buckets of each dataset within a time range.
+	 * 
+	 * @param bucketSize        One of the StorageFloats.BUCKET_SIZES.
+	 * @param startTimestamp    First timestamp (in milliseconds), inclusive.
+	 * @param endTimestamp      Last timestamp (in milliseconds), inclusive.
+	 * @return                  The buckets that are entirely within the range, for each dataset in the order of the columns.
+	 */
+	public StorageFloats.Buckets[] getBucketsBetween(int bucketSize, long startTimestamp, long endTimestamp) {
+		
+		int firstSampleNumber = getFirstSampleNumberAtOrAfter(startTimestamp);
+		int lastSampleNumber = connection.getClosestSampleNumberAtOrBefore(endTimestamp, connection.getSampleCount() - 1);
+		return getBuckets(bucketSize, firstSampleNumber, lastSampleNumber);
+		
+	}
+	
+	/**
+	 * @param timestamp    The timestamp, in milliseconds.
+	 * @return             The first sample number at or after the timestamp, or Integer.MAX_VALUE if every sample is before the timestamp.
+	 */
+	private int getFirstSampleNumberAtOrAfter(long timestamp) {
+		
+		if(connection.getSampleCount() == 0 || timestamp > connection.getLastTimestamp())
+			return Integer.MAX_VALUE;
+		return (timestamp == Long.MIN_VALUE) ? 0 : connection.getClosestSampleNumberAfter(timestamp - 1);
+		
+	}
+	
+}
@@ -156,6 +156,7 @@ public abstract class Connection {
 		}
 		
 		status = newStatus;
+		notifyAll(); // for threads waiting on a status change
 		Connections.GUI.redraw(); // the import/export/configuration widgets will be enabled/disabled as needed
 		Settings.GUI.redraw();    // the TX GUIs will be enabled/disabled as needed
 		
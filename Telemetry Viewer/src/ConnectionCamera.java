@@ -471,6 +471,7 @@ public class ConnectionCamera extends Connection {
 		try {
 			file.truncate(0);
 			framesIndex.clear();
+			MergedTimeRange.rebuild();
 		} catch(Exception e) {
 			Notifications.showCriticalFault("Unable the clear the cache file for " + getName() + "\n" + e.getMessage());
 			e.printStackTrace();
@@ -756,6 +757,7 @@ public class ConnectionCamera extends Connection {
 			file.write(ByteBuffer.wrap(jpegBytes));
 //			file.force(true); // not necessary, and massively slows down importing
 			framesIndex.add(new FrameInfo(timestamp, offset, jpegBytes.length));
+			MergedTimeRange.extend(getFirstTimestamp(), timestamp);
 		} catch(Exception e) {
 			Notifications.showCriticalFault("Unable to save to the cache file for " + getName() + "\n" + e.getMessage());
 			e.printStackTrace();
@@ -891,6 +893,7 @@ public class ConnectionCamera extends Connection {
 				file.write(ByteBuffer.wrap(jpegBytes, 0, jpegBytesLength));
 				file.force(true);
 				framesIndex.add(new FrameInfo(timestamp, offset, jpegBytesLength));
+				MergedTimeRange.extend(getFirstTimestamp(), timestamp);
 			} catch(Exception e) {
 				Notifications.showCriticalFault("Unable to save one of the frames from " + getName() + "\n" + e.getMessage());
 				e.printStackTrace();
@@ -4,47 +4,64 @@ import java.awt.Font;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.font.FontRenderContext;
-import java.io.BufferedReader;
 import java.io.FileInputStream;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
 import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
 import java.nio.LongBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
 import java.util.Scanner;
 import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.Phaser;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -71,10 +88,14 @@ import net.miginfocom.swing.MigLayout;
 
 public final class ConnectionTelemetry extends Connection {
 	
-	enum Type { UART, DEMO_MODE, TCP, UDP, STRESS_TEST };
+	enum Type { UART, DEMO_MODE, TCP, UDP, STRESS_TEST, REPLAY };
 	public final Type type;
 	
 	public TreeMap<Integer, Field> fields = new TreeMap<Integer, Field>(); // <location, field>
+	final List<Field> derivedFields = new ArrayList<Field>(); // datasets calculated from an expression, in the order they were inserted (so inputs come before the datasets that use them)
+	private volatile List<Field> packetDatasetsList = List.of(); // immutable snapshots, rebuilt only when the data structure changes, because they are used while processing every sample
+	private volatile List<Field> datasetsList = List.of();
+	private volatile PacketLayout packetLayout = null; // binary mode: also rebuilt only when the data structure changes, because SharedUart uses it after every read
 	private volatile boolean fieldsDefined = false;
 	
 	public void setFieldsDefined(boolean isDefined) {
@@ -86,18 +107,63 @@ public final class ConnectionTelemetry extends Connection {
 	}
 	
 	enum Protocol {
-		CSV    { @Override public String toString() { return "CSV Mode";    } },
-		BINARY { @Override public String toString() { return "Binary Mode"; } },
-		TC66   { @Override public String toString() { return "TC66 Mode";   } };
+		CSV             { @Override public String toString() { return "CSV Mode";             } },
+		BINARY          { @Override public String toString() { return "Binary Mode";          } },
+		COBS            { @Override public String toString() { return "COBS Mode";            } },
+		SLIP            { @Override public String toString() { return "SLIP Mode";            } },
+		LENGTH_PREFIXED { @Override public String toString() { return "Length-Prefixed Mode"; } },
+		TC66            { @Override public String toString() { return "TC66 Mode";            } };
+		
+		/**
+		 * @return    True if each binary packet is sent as a variable-length frame (COBS, SLIP or length-prefixed) instead of relying on a fixed packet size and sync word.
+		 */
+		public boolean isFramed() {
+			return this == COBS || this == SLIP || this == LENGTH_PREFIXED;
+		}
+		
+		/**
+		 * @return    True if packets contain binary numbers that are defined by byte offset and data type (binary mode or any framed mode.)
+		 */
+		public boolean isBinary() {
+			return this == BINARY || isFramed();
+		}
+	};
+	
+	enum ReplaySpeed {
+		REAL_TIME (1)   { @Override public String toString() { return "1x Speed";      } },
+		DOUBLE    (2)   { @Override public String toString() { return "2x Speed";      } },
+		TEN       (10)  { @Override public String toString() { return "10x Speed";     } },
+		HUNDRED   (100) { @Override public String toString() { return "100x Speed";    } },
+		MAXIMUM   (0)   { @Override public String toString() { return "Maximum Speed"; } };
+		
+		final double multiplier; // 0 = as fast as possible
+		
+		ReplaySpeed(double multiplier) {
+			this.multiplier = multiplier;
+		}
 	};
 	
 	// connection settings widgets
 	private WidgetTextfield<Integer> sampleRate;
 	public WidgetCombobox<Protocol> protocol;
 	private WidgetCombobox<String> baudRate; // for UART/Demo modes
+	private final int UART_READ_TIMEOUT_MILLISECONDS = 100; // UART reads and transmitter threads block for up to this long before checking if they should stop
+	private WidgetTextfield<Integer> packetType; // for UART mode, optional packet type byte after the sync word, allowing a UART to be shared by several connections
 	private WidgetTextfield<Integer> portNumber; // for TCP/UDP modes
 	private volatile boolean tcpClientConnected = false; // for TCP mode
+	private volatile Selector tcpSelector = null; // for TCP mode, woken up when data is queued for transmission
+	private ConnectionTelemetry tcpServer = null; // for TCP mode, if this connection shows the telemetry from an additional client of another connection's TCP server
+	private int tcpClientNumber = 0; // for TCP mode, if this connection shows the telemetry from an additional client
+	private final List<ConnectionTelemetry> tcpClientConnections = new ArrayList<ConnectionTelemetry>(); // for TCP mode, connections for additional clients of this connection's TCP server
 	private final int MAX_TCP_IDLE_MILLISECONDS = 10000; // if connected but no new samples after than much time, disconnect and wait for a new connection
+	private WidgetTextfield<Integer> sequenceNumberLocation; // for UDP mode, optional location of a dataset that counts packets
+	private WidgetCombobox<StorageTimestamps.Resolution> timestampResolution; // for UART/TCP/UDP modes
+	WidgetCombobox<SharedByteStream.OverflowPolicy> overflowPolicy; // for UART/TCP/UDP modes, read by the SharedByteStream when it is created
+	private WidgetCheckbox recordRawBytes; // for UART/TCP/UDP modes, saves the received bytes to a raw capture file
+	private volatile RawCapture.Recorder rawRecorder = null; // only used while connected and recording
+	private WidgetTextfield<String> replayFile; // for Replay mode, the raw capture file to replay
+	private WidgetCombobox<ReplaySpeed> replaySpeed; // for Replay mode
+	private volatile SequenceCounter sequenceCounter = null; // for UDP mode, only if a sequence number is used
 	
 	private Timer sampleRateCalculator;
 	private volatile long previousSampleCountTimestamp = 0;
@@ -126,10 +192,24 @@ public final class ConnectionTelemetry extends Connection {
 	private WidgetButton txSaveButton;
 	private WidgetButton txTransmitButton;
 	
-	private Queue<byte[]> transmitQueue = new ConcurrentLinkedQueue<byte[]>();
+	private BlockingQueue<byte[]> transmitQueue = new LinkedBlockingQueue<byte[]>(); // transmitter threads block on this, the TCP selector is woken up by transmit()
 	private long nextRepititionTimestamp = 0;
 	private List<WidgetButton> transmitSavedPackets = new ArrayList<WidgetButton>();
 	
+	/**
+	 * Queues data to be transmitted to the device.
+	 * 
+	 * @param data    Bytes to transmit.
+	 */
+	private void transmit(byte[] data) {
+		
+		transmitQueue.add(data);
+		Selector selector = tcpSelector;
+		if(selector != null)
+			selector.wakeup();
+		
+	}
+	
 	public static String localIp = "[Local IP Address Unknown]";
 	static {
 		try {
@@ -153,6 +233,7 @@ public final class ConnectionTelemetry extends Connection {
 		                          case "Demo Mode"                          -> Type.DEMO_MODE;
 		                          case "TCP"                                -> Type.TCP;
 		                          case "UDP"                                -> Type.UDP;
+		                          case "Replay"                             -> Type.REPLAY;
 		                          default                                   -> Type.STRESS_TEST; };
 		
 		name.set(nameText);
@@ -170,6 +251,13 @@ public final class ConnectionTelemetry extends Connection {
 		                            .setToolTipText("<html>Number of telemetry packets sent to the PC each second.<br>Use 0 to have it automatically calculated.<br>If this number is inaccurate, things like the frequency domain chart will be inaccurate.</html>");
 		
 		sampleRateCalculator = new Timer(1000, event -> {
+			if(type == Type.UDP && isConnected() && isFieldsDefined() && !sequenceNumberLocation.is(-1)) {
+				// show the packet loss counters
+				SequenceCounter counter = sequenceCounter;
+				sequenceNumberLocation.disableWithMessage(counter == null ? "Not Counted" : counter.getLostPacketCount()       + " Lost, " +
+				                                                                            counter.getOutOfOrderPacketCount() + " Out of Order, " +
+				                                                                            counter.getDuplicatePacketCount()  + " Duplicate");
+			}
 			if(!sampleRate.is(0) || !isConnected() || !isFieldsDefined()) {
 				// skip this iteration if not ready/applicable
 				return;
@@ -230,7 +318,8 @@ public final class ConnectionTelemetry extends Connection {
 		                            	// the port number must be unique among all connections
 		                                List<Integer> usedPorts = Connections.telemetryConnections
 		                                                                     .stream()
-		                                                                     .filter(connection -> connection != this)
+		                                                                     .filter(connection -> connection != this && connection != tcpServer)
+		                                                                     .filter(connection -> connection.tcpServer == null) // connections for additional TCP clients share their server's port
 		                                                                     .filter(connection -> connection.name.is("TCP") || connection.name.is("UDP"))
 		                                                                     .map(connection -> connection.portNumber.get())
 		                                                                     .toList();
@@ -247,6 +336,57 @@ public final class ConnectionTelemetry extends Connection {
 		                                }
 		                            });
 		
+		sequenceNumberLocation = WidgetTextfield.ofInt(0, Integer.MAX_VALUE, -1, -1, "None")
+		                                        .setPrefix("Sequence Number")
+		                                        .setExportLabel("sequence number location")
+		                                        .setToolTipText("<html>Optional. CSV or Binary mode only. The CSV column or binary byte offset of an integer dataset that increments by 1 for each packet.<br>If specified, lost, out-of-order and duplicate packets will be counted while connected.</html>")
+		                                        .onChange((newLocation, oldLocation) -> {
+		                                            updateSequenceCounter();
+		                                            return true;
+		                                        });
+		
+		packetType = WidgetTextfield.ofInt(0, 255, -1, -1, "Any")
+		                            .setPrefix("Packet Type")
+		                            .setExportLabel("packet type")
+		                            .setToolTipText("<html>Binary mode only. Use \"Any\" unless the device sends several kinds of packets.<br>Otherwise, only packets with this number in the byte after the sync word will be received,<br>and other connections can receive the other kinds of packets from this UART.</html>")
+		                            .onChange((newValue, oldValue) -> {
+		                                // the packet type must be unique among the connections sharing this UART
+		                                boolean alreadyUsed = newValue != -1 &&
+		                                                      Connections.telemetryConnections.stream()
+		                                                                                      .filter(connection -> connection != this)
+		                                                                                      .anyMatch(connection -> connection.name.is(name.get()) && connection.packetType.is(newValue));
+		                                if(alreadyUsed)
+		                                    return false;
+		                                Settings.GUI.redraw(); // because the connection's name includes the packet type
+		                                return true;
+		                            });
+		
+		timestampResolution = new WidgetCombobox<StorageTimestamps.Resolution>(null, Arrays.asList(StorageTimestamps.Resolution.values()), StorageTimestamps.Resolution.MILLISECONDS)
+		                          .setExportLabel("timestamp resolution")
+		                          .onChange((newResolution, oldResolution) -> {
+		                              // existing timestamps use the old resolution, so they must be removed
+		                              if(newResolution != timestamps.getResolution()) {
+		                                  if(getSampleCount() > 0)
+		                                      removeAllData();
+		                                  timestamps.setResolution(newResolution);
+		                              }
+		                              return true;
+		                          });
+		
+		overflowPolicy = new WidgetCombobox<SharedByteStream.OverflowPolicy>(null, Arrays.asList(SharedByteStream.OverflowPolicy.values()), SharedByteStream.OverflowPolicy.BLOCK)
+		                     .setExportLabel("overflow policy");
+		
+		recordRawBytes = new WidgetCheckbox("Record Raw Bytes", false)
+		                     .setExportLabel("record raw bytes");
+		
+		replayFile = WidgetTextfield.ofText("")
+		                            .setPrefix("File")
+		                            .setExportLabel("replay file")
+		                            .setToolTipText("<html>Path to a raw capture (*.tvraw) file.<br>Enable \"Record Raw Bytes\" on a UART, TCP or UDP connection to create one.</html>");
+		
+		replaySpeed = new WidgetCombobox<ReplaySpeed>(null, Arrays.asList(ReplaySpeed.values()), ReplaySpeed.REAL_TIME)
+		                  .setExportLabel("replay speed");
+		
 		txRepeatedly = new WidgetCheckbox("Repeat", false)
 		                   .setExportLabel("transmit repeatedly");
 		
@@ -260,14 +400,14 @@ public final class ConnectionTelemetry extends Connection {
 			if(transmitSavedPackets.stream().noneMatch(packet -> packet.getText().equals(label))) {
 				transmitSavedPackets.add(new WidgetButton(label)
 				                             .setBytes(bytes)
-				                             .onClick(button -> transmitQueue.add(button.getBytes()))
+				                             .onClick(button -> transmit(button.getBytes()))
 				                             .onRemove(button -> { transmitSavedPackets.remove(button); Settings.GUI.redraw(); }));
 				Settings.GUI.redraw(); // so this TX GUI gets redrawn
 			}
 			txData.set("");
 		});
 		
-		txTransmitButton = new WidgetButton("Transmit").onClick(event -> transmitQueue.add(txData.getAsBytes(txAppendCR.get(), txAppendLF.get())));
+		txTransmitButton = new WidgetButton("Transmit").onClick(event -> transmit(txData.getAsBytes(txAppendCR.get(), txAppendLF.get())));
 		
 		txData = WidgetTextfield.ofText("")
 		                        .setExportLabel("transmit data")
@@ -379,9 +519,9 @@ public final class ConnectionTelemetry extends Connection {
 		                       txData.set("getva");
 		                       txRepeatedly.set(true);
 		                       txRepeatedlyMilliseconds.set(200);
-		                       transmitSavedPackets.add(new WidgetButton("Rotate Display").setBytes("rotat".getBytes()).onClick(button -> transmitQueue.add(button.getBytes())));
-		                       transmitSavedPackets.add(new WidgetButton("Previous Screen").setBytes("lastp".getBytes()).onClick(button -> transmitQueue.add(button.getBytes())));
-		                       transmitSavedPackets.add(new WidgetButton("Next Screen").setBytes("nextp".getBytes()).onClick(button -> transmitQueue.add(button.getBytes())));
+		                       transmitSavedPackets.add(new WidgetButton("Rotate Display").setBytes("rotat".getBytes()).onClick(button -> transmit(button.getBytes())));
+		                       transmitSavedPackets.add(new WidgetButton("Previous Screen").setBytes("lastp".getBytes()).onClick(button -> transmit(button.getBytes())));
+		                       transmitSavedPackets.add(new WidgetButton("Next Screen").setBytes("nextp".getBytes()).onClick(button -> transmit(button.getBytes())));
 		                   } else {
 		                       sampleRate.set(0).forceDisabled(false);
 		                       baudRate.forceDisabled(false);
@@ -425,29 +565,80 @@ public final class ConnectionTelemetry extends Connection {
 				configWidgets.add(baudRate);
 				configWidgets.add(protocol);
 				configWidgets.add(sampleRate);
+				configWidgets.add(packetType);
+				configWidgets.add(timestampResolution);
+				configWidgets.add(overflowPolicy);
+				configWidgets.add(recordRawBytes);
 			}
 			case TCP -> {
 				configWidgets.add(name);
 				configWidgets.add(portNumber);
 				configWidgets.add(protocol.removeValue(Protocol.TC66));
 				configWidgets.add(sampleRate);
+				configWidgets.add(timestampResolution);
+				configWidgets.add(overflowPolicy);
+				configWidgets.add(recordRawBytes);
 			}
 			case UDP -> {
 				configWidgets.add(name);
 				configWidgets.add(portNumber);
 				configWidgets.add(protocol.removeValue(Protocol.TC66));
 				configWidgets.add(sampleRate);
+				configWidgets.add(sequenceNumberLocation);
+				configWidgets.add(timestampResolution);
+				configWidgets.add(overflowPolicy);
+				configWidgets.add(recordRawBytes);
+			}
+			case REPLAY -> {
+				configWidgets.add(name);
+				configWidgets.add(replayFile);
+				configWidgets.add(replaySpeed);
+				configWidgets.add(protocol.removeValue(Protocol.TC66));
+				configWidgets.add(sampleRate);
+				configWidgets.add(timestampResolution);
 			}
 		};
 		
 	}
 	
+	/**
+	 * Prepares a connection that shows the telemetry from an additional client of another connection's TCP server.
+	 * The server's thread connects and disconnects this connection as the client comes and goes.
+	 * 
+	 * @param server          The connection that accepted the client.
+	 * @param clientNumber    Number shown to the user, the server's own client is client 1.
+	 */
+	private ConnectionTelemetry(ConnectionTelemetry server, int clientNumber) {
+		
+		this("TCP");
+		tcpServer = server;
+		tcpClientNumber = clientNumber;
+		importFrom(new Connections.QueueOfLines(server.getSettings()));
+		
+	}
+	
+	/**
+	 * @return    The lines that exportTo() would write, without the "type = " line that Connections.importSettingsFile() consumes before calling importFrom().
+	 */
+	private List<String> getSettings() {
+		
+		StringWriter text = new StringWriter();
+		PrintWriter writer = new PrintWriter(text);
+		exportTo(writer);
+		writer.flush();
+		List<String> lines = new ArrayList<String>(text.toString().lines().toList());
+		lines.remove(0);
+		return lines;
+		
+	}
+	
 	@Override public String getName() {
 		return switch(type) { case DEMO_MODE   -> name.get();
 		                      case STRESS_TEST -> name.get();
 		                      case UART        -> name.get().substring(6); // trim leading "UART: "
-		                      case TCP         -> "TCP Port " + portNumber.get();
-		                      case UDP         -> "UDP Port " + portNumber.get(); };
+		                      case TCP         -> tcpServer != null ? tcpServer.getName() + " Client " + tcpClientNumber : "TCP Port " + portNumber.get();
+		                      case UDP         -> "UDP Port " + portNumber.get();
+		                      case REPLAY      -> replayFile.get().isEmpty() ? "Replay" : "Replay of " + Paths.get(replayFile.get()).getFileName(); };
 	}
 	
 	/**
@@ -460,9 +651,20 @@ public final class ConnectionTelemetry extends Connection {
 		String text = name.get();
 		if(text.equals("TCP") || text.equals("UDP"))
 			text += " :" + portNumber.get();
+		if(tcpServer != null)
+			text += " client " + tcpClientNumber;
+		else if(type == Type.UART && !packetType.is(-1))
+			text += " (Packet Type " + packetType.get() + ")";
 		return text;
 	}
 	
+	/**
+	 * @return    True if this is a UART connection that only receives one packet type, so other connections can share the UART.
+	 */
+	public boolean isSharingUart() {
+		return type == Type.UART && !packetType.is(-1);
+	}
+	
 	JPanel dsPanel;
 	Field pending;
 	JTable dataStructureTable;
@@ -480,8 +682,8 @@ public final class ConnectionTelemetry extends Connection {
 		               });
 		
 		if(deriveFrom != null) {
-			int location = (isFieldAllowed(pending, deriveFrom.location.get(), Field.Type.UINT8) == null) ? deriveFrom.location.get() :
-			                                                                                                getFirstAvailableLocation();
+			int location = (!deriveFrom.isDerived() && isFieldAllowed(pending, deriveFrom.location.get(), Field.Type.UINT8) == null) ? deriveFrom.location.get() :
+			                                                                                                                          getFirstAvailableLocation();
 			pending.location.set(location);
 			pending.type.set(deriveFrom.type.get());
 			pending.name.set(deriveFrom.type.get().isSyncWord() && !pending.type.get().isSyncWord() ? "" : deriveFrom.name.get());
@@ -489,6 +691,7 @@ public final class ConnectionTelemetry extends Connection {
 			pending.unit.set(deriveFrom.unit.get());
 			pending.scalingFactorA.set(deriveFrom.scalingFactorA.get());
 			pending.scalingFactorB.set(deriveFrom.scalingFactorB.get());
+			pending.expression.set(deriveFrom.expression.get());
 		}
 		
 		if(protocol.is(Protocol.CSV))
@@ -508,6 +711,7 @@ public final class ConnectionTelemetry extends Connection {
 		pending.scalingFactorA.appendTo(dsPanel, "");
 		dsPanel.add(pending.equalsLabel, "");
 		pending.scalingFactorB.appendTo(dsPanel, "gapafter " + 2 * Theme.padding);
+		pending.expression.appendTo(dsPanel, "gapafter " + 2 * Theme.padding);
 		pending.addButton.appendTo(dsPanel, "pushx, align right");
 		pending.doneButton.appendTo(dsPanel, "wrap");
 		
@@ -549,7 +753,7 @@ public final class ConnectionTelemetry extends Connection {
 		dsPanel = new JPanel(new MigLayout("hidemode 3, fill, insets " + Theme.padding + ", gap " + Theme.padding, "", "[][sgy,fill][50%][50%]0")); // "sgy,fill" stretches the components to all have the same height
 		
 		dataStructureTable = new JTable(new AbstractTableModel() {
-			@Override public int getRowCount()                { return fields.size(); }
+			@Override public int getRowCount()                { return fields.size() + derivedFields.size(); }
 			@Override public int getColumnCount()             { return 6;             }
 			@Override public String getColumnName(int column) { return switch(column) { case 0  -> protocol.is(Protocol.CSV) ? "Column Number" : "Byte Offset, Data Type";
 			                                                                            case 1  -> "Name";
@@ -560,7 +764,14 @@ public final class ConnectionTelemetry extends Connection {
 			                                                                            default -> "Error";};}
 			@Override public Object getValueAt(int row, int column) {
 				Field field = getFieldByIndex(row);
-				if(field.isSyncWord()) {
+				if(field.isDerived()) {
+					return switch(column) { case 0  -> "[Derived]";
+					                        case 1  -> field.name.get();
+					                        case 2  -> "<html><font color=\"rgb(" + field.color.get().getRed() + "," + field.color.get().getGreen() + "," + field.color.get().getBlue() + ")\">\u25B2</font></html>";
+					                        case 3  -> field.unit.get();
+					                        case 4  -> "= " + field.expression.get();
+					                        default -> "";};
+				} else if(field.isSyncWord()) {
 					return switch(column) { case 0  -> "0, [Sync Word]";
 					                        case 1  -> field.name.get();
 					                        default -> "";};
@@ -571,6 +782,10 @@ public final class ConnectionTelemetry extends Connection {
 					                        case 3  -> field.isBitfield ? "" : field.unit.get();
 					                        case 4  -> field.isBitfield ? "" : String.format("%3.3f = %3.3f %s", field.scalingFactorA.get(), field.scalingFactorB.get(), field.unit.get());
 					                        default -> "";};
+				} else if(field.isTimestamp()) {
+					return switch(column) { case 0  -> field.location.get() + ", [Timestamp]";
+					                        case 1  -> field.type.get().toString() + ", " + field.name.get() + " Ticks/Second";
+					                        default -> "";};
 				} else if(field.isChecksum()) {
 					return switch(column) { case 0  -> field.location.get() + ", [Checksum]";
 					                        case 1  -> field.type.get().toString();
@@ -600,9 +815,13 @@ public final class ConnectionTelemetry extends Connection {
 				Field field = getFieldByIndex(dataStructureTable.getSelectedRow());
 				String message = field.type.get().isSyncWord() ? "Remove the sync word?" :
 				                 field.type.get().isDataset()  ? "Remove " + field.name.get() + "?" :
+				                 field.type.get().isTimestamp() ? "Remove the timestamp?" :
 				                                                 "Remove the checksum?";
 				if(JOptionPane.showConfirmDialog(dsPanel, message, message, JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-					removeField(field.location.get());
+					if(field.isDerived())
+						removeDerivedField(field);
+					else
+						removeField(field.location.get());
 					createPendingFieldAndRepopulatePanel(field, exampleCodePane);
 				}
 				dataStructureTable.clearSelection();
@@ -648,28 +867,32 @@ public final class ConnectionTelemetry extends Connection {
 		                                                         #include <NetworkUdp.h>
 		                                                         NetworkUDP udp;
 		                                                         """;
-		                                 case STRESS_TEST     -> ""; };
+		                                 case STRESS_TEST     -> "";
+		                                 case REPLAY          -> ""; };
 		
 		String prepare  = switch(type) { case UART, DEMO_MODE -> "Serial.begin(" + baudRate.get().split(" ")[0] + ");";
 		                                 case TCP             -> "WiFi.begin(\"network\", \"password\"); // EDIT THIS LINE";
 		                                 case UDP             -> "WiFi.begin(\"network\", \"password\"); // EDIT THIS LINE";
-		                                 case STRESS_TEST     -> ""; };
+		                                 case STRESS_TEST     -> "";
+		                                 case REPLAY          -> ""; };
 		
-		String bufferSize = protocol.is(Protocol.CSV) ? "strlen(buffer)" : "sizeof(buffer)";
+		String bufferName = protocol.get().isFramed() ? "frame" : "buffer";
+		String bufferSize = protocol.is(Protocol.CSV) ? "strlen(buffer)" : protocol.get().isFramed() ? "frameLength" : "sizeof(buffer)";
 		                                 
-		String transmit = switch(type) { case UART, DEMO_MODE -> "Serial.write(buffer, %s);".formatted(bufferSize);
+		String transmit = switch(type) { case UART, DEMO_MODE -> "Serial.write(%s, %s);".formatted(bufferName, bufferSize);
 		                                 case TCP             -> """
 		                                                         if(!tcp.connected())
 		                                                         	tcp.connect("%s", %d); // EDIT THIS LINE IF NEEDED
-		                                                         tcp.write(buffer, %s);""".formatted(localIp, portNumber.get(), bufferSize);
+		                                                         tcp.write(%s, %s);""".formatted(localIp, portNumber.get(), bufferName, bufferSize);
 		                                 case UDP             -> """
 		                                                         udp.beginPacket("%s", %d); // EDIT THIS LINE IF NEEDED
-		                                                         udp.write((uint8_t*) buffer, %s);
-		                                                         udp.endPacket();""".formatted(localIp, portNumber.get(), bufferSize);
-		                                 case STRESS_TEST     -> ""; };
+		                                                         udp.write((uint8_t*) %s, %s);
+		                                                         udp.endPacket();""".formatted(localIp, portNumber.get(), bufferName, bufferSize);
+		                                 case STRESS_TEST     -> "";
+		                                 case REPLAY          -> ""; };
 		
-		int lastLocation          = getDatasetsList().getLast().location.get();
-		List<String> names        = getDatasetsList().stream().map(dataset -> dataset.getExampleVariableName()).toList();                              // example: "a" "b"
+		int lastLocation          = getPacketDatasetsList().getLast().location.get();
+		List<String> names        = getPacketDatasetsList().stream().map(dataset -> dataset.getExampleVariableName()).toList();                              // example: "a" "b"
 		
 		if(protocol.is(Protocol.CSV)) {
 			
@@ -765,6 +988,11 @@ public final class ConnectionTelemetry extends Connection {
 			                                                                         case FLOAT32_BE         -> "float32_t %s = ...; // EDIT THIS LINE".formatted(varName);
 			                                                                         case UINT8_BITFIELD     -> "uint8_t %s = 0;\n".formatted(varName) +
 			                                                                                                    field.bitfields.stream().map(bitfield -> "%s |= ... << %d; // EDIT THIS LINE".formatted(varName, bitfield.LSBit)).collect(Collectors.joining("\n"));
+			                                                                         case UINT32_LE_TIMESTAMP,
+			                                                                              UINT64_LE_TIMESTAMP -> "%s timestamp = %s;".formatted(field.type.is(Field.Type.UINT32_LE_TIMESTAMP) ? "uint32_t" : "uint64_t",
+			                                                                                                                                  field.getTicksPerSecond() == 1000    ? "millis()" :
+			                                                                                                                                  field.getTicksPerSecond() == 1000000 ? "micros()" :
+			                                                                                                                                                                         "...; // EDIT THIS LINE (%s ticks per second)".formatted(field.name.get()));
 			                                                                         case UINT8_CHECKSUM     -> "uint8_t sum = 0;";
 			                                                                         case UINT16_LE_CHECKSUM -> "uint16_t sum = 0;";
 			                                  };})
@@ -854,6 +1082,10 @@ public final class ConnectionTelemetry extends Connection {
 			                                                                                offset + 2, name,
 			                                                                                offset + 3, name);
 			                                       case UINT8_BITFIELD     -> "buffer[%d] = (%s >>  0);\n".formatted(offset, name);
+			                                       case UINT32_LE_TIMESTAMP,
+			                                            UINT64_LE_TIMESTAMP -> IntStream.range(0, field.type.get().getByteCount())
+			                                                                            .mapToObj(i -> "buffer[%d] = (timestamp >> %2d);\n".formatted(offset + i, i * 8))
+			                                                                            .collect(Collectors.joining());
 			                                       case UINT8_CHECKSUM     -> """
 			                                                                  for(int i = %d; i < %d; i++)
 			                                                                  	sum += buffer[i];
@@ -873,6 +1105,56 @@ public final class ConnectionTelemetry extends Connection {
 			                          }; })
 			                          .collect(Collectors.joining());
 			
+			String framing = switch(protocol.get()) { case COBS            -> """
+			                                                                  
+			                                                                  // COBS framing: each 0x00 byte is replaced with the distance to the next 0x00 byte, then the frame ends with a 0x00 byte
+			                                                                  uint8_t frame[sizeof(buffer) + sizeof(buffer) / 254 + 2];
+			                                                                  int frameLength = 1;
+			                                                                  int codeIndex = 0;
+			                                                                  uint8_t code = 1;
+			                                                                  for(int i = 0; i < sizeof(buffer); i++) {
+			                                                                  	if(buffer[i] != 0) {
+			                                                                  		frame[frameLength++] = buffer[i];
+			                                                                  		code++;
+			                                                                  	}
+			                                                                  	if(buffer[i] == 0 || code == 0xFF) {
+			                                                                  		frame[codeIndex] = code;
+			                                                                  		codeIndex = frameLength++;
+			                                                                  		code = 1;
+			                                                                  	}
+			                                                                  }
+			                                                                  frame[codeIndex] = code;
+			                                                                  frame[frameLength++] = 0;
+			                                                                  """;
+			                                          case SLIP            -> """
+			                                                                  
+			                                                                  // SLIP framing: 0xC0 bytes are replaced with 0xDB 0xDC, 0xDB bytes are replaced with 0xDB 0xDD, then the frame ends with a 0xC0 byte
+			                                                                  uint8_t frame[2 * sizeof(buffer) + 1];
+			                                                                  int frameLength = 0;
+			                                                                  for(int i = 0; i < sizeof(buffer); i++) {
+			                                                                  	if(buffer[i] == 0xC0) {
+			                                                                  		frame[frameLength++] = 0xDB;
+			                                                                  		frame[frameLength++] = 0xDC;
+			                                                                  	} else if(buffer[i] == 0xDB) {
+			                                                                  		frame[frameLength++] = 0xDB;
+			                                                                  		frame[frameLength++] = 0xDD;
+			                                                                  	} else {
+			                                                                  		frame[frameLength++] = buffer[i];
+			                                                                  	}
+			                                                                  }
+			                                                                  frame[frameLength++] = 0xC0;
+			                                                                  """;
+			                                          case LENGTH_PREFIXED -> """
+			                                                                  
+			                                                                  // length-prefixed framing: the frame starts with the packet size as a uint16 little-endian number
+			                                                                  uint8_t frame[sizeof(buffer) + 2];
+			                                                                  int frameLength = sizeof(buffer) + 2;
+			                                                                  frame[0] = (sizeof(buffer) >> 0);
+			                                                                  frame[1] = (sizeof(buffer) >> 8);
+			                                                                  memcpy(&frame[2], buffer, sizeof(buffer));
+			                                                                  """;
+			                                          default              -> ""; };
+			
 			return """
 					// example firmware showing how to send telemetry to this computer from an arduino or esp32 board
 					// this code is meant to be easy to understand, it is not the most efficient or fault-tolerant way of doing things
@@ -907,7 +1189,7 @@ public final class ConnectionTelemetry extends Connection {
 					""".formatted(preamble,
 					              prepare.lines().map(       line -> "\t" + line).collect(Collectors.joining("\n")),
 					              variables.lines().map(     line -> "\t" + line).collect(Collectors.joining("\n")),
-					              populateBuffer.lines().map(line -> "\t" + line).collect(Collectors.joining("\n")),
+					              (populateBuffer + framing).lines().map(line -> "\t" + line).collect(Collectors.joining("\n")),
 					              transmit.lines().map(      line -> "\t" + line).collect(Collectors.joining("\n")));
 			
 		}
@@ -937,12 +1219,14 @@ public final class ConnectionTelemetry extends Connection {
 		                                                         import java.util.concurrent.Executors;
 		                                                         import java.util.concurrent.TimeUnit;
 		                                                         """;
-		                                 case STRESS_TEST     -> ""; };
+		                                 case STRESS_TEST     -> "";
+		                                 case REPLAY          -> ""; };
 		
 		String prepare  = switch(type) { case UART, DEMO_MODE -> "static SerialPort port;";
 		                                 case TCP             -> "static Socket socket;";
 		                                 case UDP             -> "static DatagramSocket socket;";
-		                                 case STRESS_TEST     -> ""; };
+		                                 case STRESS_TEST     -> "";
+		                                 case REPLAY          -> ""; };
 		
 		String transmit = switch(type) { case UART, DEMO_MODE -> """
 		                                                         if(port == null) {
@@ -959,12 +1243,14 @@ public final class ConnectionTelemetry extends Connection {
 		                                                         if(socket == null)
 		                                                         	socket = new DatagramSocket();
 		                                                         socket.send(new DatagramPacket(buffer, buffer.length, InetAddress.getByName("%s"), %d)); // EDIT THIS LINE IF NEEDED""".formatted(localIp, portNumber.get());
-		                                 case STRESS_TEST     -> ""; };
+		                                 case STRESS_TEST     -> "";
+		                                 case REPLAY          -> ""; };
 		                                 
 		String reset =  switch(type) { case UART, DEMO_MODE -> "port = null;";
 		                               case TCP             -> "socket = null;";
 		                               case UDP             -> "socket = null;";
-		                               case STRESS_TEST     -> ""; };
+		                               case STRESS_TEST     -> "";
+		                               case REPLAY          -> ""; };
 		
 		String notice = protocol.is(Protocol.CSV) ? "" :
 		                                            """
@@ -992,12 +1278,15 @@ public final class ConnectionTelemetry extends Connection {
 			                                  case FLOAT32_BE         -> "float %s = ...; // EDIT THIS LINE".formatted(varName);
 			                                  case UINT8_BITFIELD     -> "byte %s = 0;\n".formatted(varName) +
 			                                                             field.bitfields.stream().map(bitfield -> "%s |= ... << %d; // EDIT THIS LINE".formatted(varName, bitfield.LSBit)).collect(Collectors.joining("\n"));
+			                                  case UINT32_LE_TIMESTAMP,
+			                                       UINT64_LE_TIMESTAMP -> field.getTicksPerSecond() == 1000 ? "long timestamp = System.currentTimeMillis();" :
+			                                                                                                  "long timestamp = (long) (System.nanoTime() / 1e9 * %s);".formatted(field.name.get());
 			                                  case UINT8_CHECKSUM     -> "byte sum = 0;";
 			                                  case UINT16_LE_CHECKSUM -> "short sum = 0;";
 		};
 		}).collect(Collectors.joining("\n"));
 		
-		String data = protocol.is(Protocol.CSV) ? IntStream.rangeClosed(0, getDatasetsList().getLast().location.get())
+		String data = protocol.is(Protocol.CSV) ? IntStream.rangeClosed(0, getPacketDatasetsList().getLast().location.get())
 		                                                   .mapToObj(loc -> getDatasetByLocation(loc) == null ? "\"0\"" : getDatasetByLocation(loc).getExampleVariableName())
 		                                                   .collect(Collectors.joining(" + \",\" + ", "", " + \"\\n\"")) : // example: "a + "," + b + "\n"" or "a + "," + "0" + "," + b + "\n"" if sparse
 		                                          fields.values().stream()
@@ -1083,6 +1372,10 @@ public final class ConnectionTelemetry extends Connection {
 		                                                                                                  offset + 2, name,
 		                                                                                                  offset + 3, name);
 		                                                         case UINT8_BITFIELD     -> "buffer[%d] = %s;\n".formatted(offset, name);
+		                                                         case UINT32_LE_TIMESTAMP,
+		                                                              UINT64_LE_TIMESTAMP -> IntStream.range(0, field.type.get().getByteCount())
+		                                                                                              .mapToObj(i -> "buffer[%d] = (byte) ((timestamp >> %2d) & 0xFF);\n".formatted(offset + i, i * 8))
+		                                                                                              .collect(Collectors.joining());
 		                                                         case UINT8_CHECKSUM     -> """
 		                                                                                    for(int i = %d; i < %d; i++)
 		                                                                                    	sum += buffer[i];
@@ -1109,6 +1402,58 @@ public final class ConnectionTelemetry extends Connection {
 		                                                    "byte[] buffer = new byte[%d];\n".formatted(fields.lastKey() + fields.lastEntry().getValue().type.get().getByteCount()) +
 		                                                    data;
 		
+		String framing = switch(protocol.get()) { case COBS            -> """
+		                                                                  
+		                                                                  // COBS framing: each 0x00 byte is replaced with the distance to the next 0x00 byte, then the frame ends with a 0x00 byte
+		                                                                  byte[] frame = new byte[buffer.length + buffer.length / 254 + 2];
+		                                                                  int frameLength = 1;
+		                                                                  int codeIndex = 0;
+		                                                                  int code = 1;
+		                                                                  for(byte b : buffer) {
+		                                                                  	if(b != 0) {
+		                                                                  		frame[frameLength++] = b;
+		                                                                  		code++;
+		                                                                  	}
+		                                                                  	if(b == 0 || code == 0xFF) {
+		                                                                  		frame[codeIndex] = (byte) code;
+		                                                                  		codeIndex = frameLength++;
+		                                                                  		code = 1;
+		                                                                  	}
+		                                                                  }
+		                                                                  frame[codeIndex] = (byte) code;
+		                                                                  frame[frameLength++] = 0;
+		                                                                  buffer = java.util.Arrays.copyOf(frame, frameLength);
+		                                                                  """;
+		                                          case SLIP            -> """
+		                                                                  
+		                                                                  // SLIP framing: 0xC0 bytes are replaced with 0xDB 0xDC, 0xDB bytes are replaced with 0xDB 0xDD, then the frame ends with a 0xC0 byte
+		                                                                  byte[] frame = new byte[2 * buffer.length + 1];
+		                                                                  int frameLength = 0;
+		                                                                  for(byte b : buffer) {
+		                                                                  	if(b == (byte) 0xC0) {
+		                                                                  		frame[frameLength++] = (byte) 0xDB;
+		                                                                  		frame[frameLength++] = (byte) 0xDC;
+		                                                                  	} else if(b == (byte) 0xDB) {
+		                                                                  		frame[frameLength++] = (byte) 0xDB;
+		                                                                  		frame[frameLength++] = (byte) 0xDD;
+		                                                                  	} else {
+		                                                                  		frame[frameLength++] = b;
+		                                                                  	}
+		                                                                  }
+		                                                                  frame[frameLength++] = (byte) 0xC0;
+		                                                                  buffer = java.util.Arrays.copyOf(frame, frameLength);
+		                                                                  """;
+		                                          case LENGTH_PREFIXED -> """
+		                                                                  
+		                                                                  // length-prefixed framing: the frame starts with the packet size as a uint16 little-endian number
+		                                                                  byte[] frame = new byte[buffer.length + 2];
+		                                                                  frame[0] = (byte) (buffer.length >> 0);
+		                                                                  frame[1] = (byte) (buffer.length >> 8);
+		                                                                  System.arraycopy(buffer, 0, frame, 2, buffer.length);
+		                                                                  buffer = frame;
+		                                                                  """;
+		                                          default              -> ""; };
+		
 		return """
 				// example software showing how to send telemetry to this computer from java
 				// this code is meant to be easy to understand, it is not the most efficient or fault-tolerant way of doing things
@@ -1141,7 +1486,7 @@ public final class ConnectionTelemetry extends Connection {
 				              prepare.lines().map(       line -> "\t"       + line).collect(Collectors.joining("\n")),
 				              notice.lines().map(        line -> "\t\t\t"   + line).collect(Collectors.joining("\n")),
 				              variables.lines().map(     line -> "\t\t\t"   + line).collect(Collectors.joining("\n")),
-				              populateBuffer.lines().map(line -> "\t\t\t"   + line).collect(Collectors.joining("\n")),
+				              (populateBuffer + framing).lines().map(line -> "\t\t\t" + line).collect(Collectors.joining("\n")),
 				              transmit.lines().map(      line -> "\t\t\t\t" + line).collect(Collectors.joining("\n")),
 				              reset.lines().map(         line -> "\t\t\t\t" + line).collect(Collectors.joining("\n")));
 		
@@ -1149,6 +1494,9 @@ public final class ConnectionTelemetry extends Connection {
 	
 	@Override public long readFirstTimestamp(String path) {
 		
+		if(path.endsWith(".tvb"))
+			return readFirstTimestampFromBinaryFile(path);
+		
 		try(Scanner file = new Scanner(new FileInputStream(path), "UTF-8")) {
 			
 			if(!file.nextLine().split(",")[1].startsWith("UNIX Timestamp"))
@@ -1166,7 +1514,10 @@ public final class ConnectionTelemetry extends Connection {
 	
 	@Override public void removeAllData() {
 		
-		getDatasetsList().forEach(dataset -> dataset.floats.clear());
+		getDatasetsList().forEach(dataset -> {
+			dataset.floats.clear();
+			dataset.clearBitfieldIndexes();
+		});
 		clearTimestamps();
 		
 		Connections.GUI.redraw();
@@ -1180,11 +1531,14 @@ public final class ConnectionTelemetry extends Connection {
 		previousSampleCount = 0;
 		calculatedSamplesPerSecond = 0;
 		
+		updateSequenceCounter(); // so the counts start at 0
+		
 		switch(type) { case DEMO_MODE   -> connectDemoMode(showGui);
 		               case STRESS_TEST -> connectStressTest(showGui);
 		               case UART        -> connectUart(showGui);
 		               case TCP         -> connectTcp(showGui);
 		               case UDP         -> connectUdp(showGui);
+		               case REPLAY      -> connectReplay(showGui);
 		};
 		
 	}
@@ -1333,13 +1687,45 @@ public final class ConnectionTelemetry extends Connection {
 		receiverThread = new Thread(() -> {
 			
 			setStatus(Status.CONNECTING, false);
-			SerialPort uart = SerialPort.getCommPort(getName());
-			uart.setBaudRate(Integer.parseInt(baudRate.get().split(" ")[0]));
-			uart.setComPortTimeouts(SerialPort.TIMEOUT_READ_BLOCKING, 0, 0);
-			if(!uart.openPort() && !uart.openPort() && !uart.openPort()) { // some Bluetooth UARTs have trouble connecting, so try 3 times
-				disconnect("Unable to connect to " + getName() + ".", false);
+			int baud = Integer.parseInt(baudRate.get().split(" ")[0]);
+			SharedByteStream stream = new SharedByteStream(this);
+			SerialPort uart;
+			SharedUart sharedUart = null;
+			
+			boolean uartInUse = Connections.telemetryConnections.stream()
+			                                                    .filter(connection -> connection != this && connection.name.is(name.get()) && !connection.isDisconnected())
+			                                                    .anyMatch(connection -> !isSharingUart() || !connection.isSharingUart());
+			if(uartInUse) {
+				disconnect("Unable to connect to " + getName() + " because another connection is using it. Use a different packet type for each connection to share a UART.", false);
 				return;
 			}
+			
+			if(!isSharingUart()) {
+				
+				uart = SerialPort.getCommPort(getName());
+				uart.setBaudRate(baud);
+				uart.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, UART_READ_TIMEOUT_MILLISECONDS, 0);
+				if(!uart.openPort() && !uart.openPort() && !uart.openPort()) { // some Bluetooth UARTs have trouble connecting, so try 3 times
+					disconnect("Unable to connect to " + getName() + ".", false);
+					return;
+				}
+				
+			} else {
+				
+				// only receive one packet type, and let other connections receive the other packet types
+				if(!protocol.is(Protocol.BINARY)) {
+					disconnect("Packet types are only supported in Binary mode.", false);
+					return;
+				}
+				try {
+					sharedUart = SharedUart.subscribe(getName(), baud, packetType.get(), this, stream);
+					uart = sharedUart.port;
+				} catch(Exception e) {
+					disconnect(e.getMessage(), false);
+					return;
+				}
+				
+			}
 			setStatus(Status.CONNECTED, showGui && !protocol.is(Protocol.TC66));
 			
 			// start the transmit thread now that we're connected
@@ -1353,20 +1739,21 @@ public final class ConnectionTelemetry extends Connection {
 						if(!isConnected())
 							throw new Exception();
 						
+						// sleep until data is queued, it's time to repeat a transmission, or it's time to check if we should stop
+						byte[] data = transmitQueue.poll(getTransmitterTimeout(), TimeUnit.MILLISECONDS);
+						
 						// transmit data if available
-						while(!transmitQueue.isEmpty()) {
-							byte[] data = transmitQueue.remove();
+						while(data != null) {
 							uart.writeBytes(data, data.length);
 //							Notifications.printInfo("Transmitted to " + getName(), data);
+							data = transmitQueue.poll();
 						}
 						if(txRepeatedly.isTrue() && System.currentTimeMillis() >= nextRepititionTimestamp) {
 							nextRepititionTimestamp = System.currentTimeMillis() + txRepeatedlyMilliseconds.get();
-							byte[] data = txData.getAsBytes(txAppendCR.get(), txAppendLF.get());
+							data = txData.getAsBytes(txAppendCR.get(), txAppendLF.get());
 							uart.writeBytes(data, data.length);
 //							Notifications.printInfo("Transmitted to " + getName(), data);
 						}
-						
-						Thread.sleep(1);
 				
 					}
 						
@@ -1383,8 +1770,19 @@ public final class ConnectionTelemetry extends Connection {
 			transmitterThread.start();
 			
 			// start receiving data
-			SharedByteStream stream = new SharedByteStream(this);
 			startProcessingTelemetry(stream);
+			
+			if(sharedUart != null) {
+				
+				// the shared UART's thread writes this packet type into the stream, so just wait until we should stop
+				while(isConnected())
+					try { Thread.sleep(UART_READ_TIMEOUT_MILLISECONDS); } catch(InterruptedException e) {}
+				stopProcessingTelemetry();
+				sharedUart.unsubscribe(packetType.get());
+				return;
+				
+			}
+			
 			byte[] buffer = new byte[1048576]; // 1MB
 			
 			try {
@@ -1395,18 +1793,12 @@ public final class ConnectionTelemetry extends Connection {
 					if(!isConnected())
 						throw new Exception();
 					
-					// receive data if available
-					int length = uart.bytesAvailable();
-					if(length < 0) {
+					// block until at least one byte arrives (then read everything that's available) or the timeout expires
+					int length = uart.readBytes(buffer, buffer.length);
+					if(length < 0)
 						throw new Exception();
-					} else if(length == 0) {
-						Thread.sleep(1);
-					} else {
-						if(length > buffer.length)
-							buffer = new byte[length];
-						uart.readBytes(buffer, length);
+					else if(length > 0)
 						stream.write(buffer, length);
-					}
 					
 				}
 				
@@ -1426,125 +1818,144 @@ public final class ConnectionTelemetry extends Connection {
 		
 	}
 	
+	/**
+	 * @return    How long a transmitter thread may wait for queued data, in milliseconds.
+	 *            This is limited by the next repeated transmission (if enabled), and by how quickly the thread must notice a disconnect.
+	 */
+	private long getTransmitterTimeout() {
+		
+		long timeout = UART_READ_TIMEOUT_MILLISECONDS;
+		if(txRepeatedly.isTrue())
+			timeout = Math.clamp(nextRepititionTimestamp - System.currentTimeMillis(), 0, timeout);
+		return timeout;
+		
+	}
+	
 	private void connectTcp(boolean showGui) {
 		
+		// a connection for an additional client is connected by the server that accepted the client
+		if(tcpServer != null) {
+			Notifications.showHintForMilliseconds(getName() + " shows the telemetry from an additional client of " + tcpServer.getName() + ". Connect " + tcpServer.getName() + " instead.", 5000, true);
+			return;
+		}
+		
 		receiverThread = new Thread(() -> {
 			
-			ServerSocket tcpServer = null;
-			Socket tcpSocket = null;
+			Selector selector = null;
+			ServerSocketChannel tcpServer = null;
 			
 			// start the TCP server
 			setStatus(Status.CONNECTING, false);
 			try {
-				tcpServer = new ServerSocket(portNumber.get());
-				tcpServer.setSoTimeout(1000);
+				selector = Selector.open();
+				tcpServer = ServerSocketChannel.open();
+				tcpServer.bind(new InetSocketAddress(portNumber.get()));
+				tcpServer.configureBlocking(false);
 			} catch (Exception e) {
 				try { tcpServer.close(); } catch(Exception e2) {}
+				try { selector.close(); } catch(Exception e2) {}
 				disconnect("Unable to start the TCP server. Another program might already be using port " + portNumber.get() + ".", false);
 				return;
 			}
+			tcpSelector = selector;
 			setStatus(Status.CONNECTED, showGui);
 			SharedByteStream stream = new SharedByteStream(this);
 			startProcessingTelemetry(stream);
 			
-			// listen for a connection
-			while(true) {
-
-				try {
+			// every client is serviced by this thread, and each client is one device with its own samples
+			// the first client provides the telemetry for this connection, and each additional client gets its own connection with the same data structure
+			ByteBuffer buffer = ByteBuffer.allocateDirect(1048576); // 1MB, reused for every read
+			List<TcpClient> clients = new ArrayList<TcpClient>();
+			
+			try {
+				
+				SelectionKey acceptKey = tcpServer.register(selector, SelectionKey.OP_ACCEPT);
+				
+				while(true) {
 					
 					// stop if requested
 					if(!isConnected())
 						throw new Exception();
 					
-					// ensure we don't send data that was intended for the previous connection
-					transmitQueue.clear();
+					// additional clients need a copy of the data structure, so they wait in the server's backlog until it has been defined
+					boolean canAccept = isFieldsDefined() || clients.stream().noneMatch(client -> client.connection == this);
+					acceptKey.interestOps(canAccept ? SelectionKey.OP_ACCEPT : 0);
 					
-					// wait up to 1 second for a client to connect
-					tcpSocket = tcpServer.accept();
-					tcpSocket.setSoTimeout(1000);
-					InputStream  is = tcpSocket.getInputStream();
-					OutputStream os = tcpSocket.getOutputStream();
+					// sleep until a client connects, telemetry arrives, data is queued for transmission, a client can accept more data, or it's time to check for idle clients
+					long timeout = 100;
+					for(TcpClient client : clients)
+						if(client.connection.txRepeatedly.isTrue())
+							timeout = Math.clamp(client.connection.nextRepititionTimestamp - System.currentTimeMillis(), 1, timeout);
+					selector.select(timeout);
 					
-					// a client has connected
-					tcpClientConnected = true;
-					Settings.GUI.redraw(); // so the TX GUI can be redrawn
-					Notifications.printInfo("TCP connection established with a client at " + tcpSocket.getRemoteSocketAddress().toString().substring(1) + "."); // trim leading "/" from the IP address
+					// accept new clients and receive telemetry
+					for(SelectionKey key : selector.selectedKeys()) {
+						if(key.isValid() && key.isAcceptable()) {
+							SocketChannel channel = tcpServer.accept();
+							if(channel != null)
+								clients.add(acceptTcpClient(channel, selector, stream, clients));
+						} else if(key.attachment() instanceof TcpClient client) {
+							if(key.isValid() && key.isReadable()) {
+								try {
+									buffer.clear();
+									if(client.channel.read(buffer) < 0) {
+										Notifications.showFailureForMilliseconds("The TCP client at " + getRemoteAddress(client.channel) + " closed the connection.", 5000, true);
+										client.closing = true;
+									} else {
+										buffer.flip();
+										client.stream.write(buffer);
+									}
+								} catch(IOException e) {
+									Notifications.showFailureForMilliseconds("The TCP connection with the client at " + getRemoteAddress(client.channel) + " failed.", 5000, true);
+									client.closing = true;
+								}
+							}
+							if(key.isValid() && key.isWritable())
+								client.writable = true;
+						}
+					}
+					selector.selectedKeys().clear();
 					
-					// enter an infinite loop that processes the connection
-					long previousTimestamp = System.currentTimeMillis();
-					int previousSampleNumber = getSampleCount();
-					while(true) {
-						
-						// stop if requested
-						if(!isConnected())
-							throw new Exception();
+					for(TcpClient client : clients.toArray(TcpClient[]::new)) {
 						
-						// receive data if available
-						int byteCount = is.available();
-						if(byteCount > 0) {
-							byte[] buffer = new byte[byteCount];
-							is.read(buffer, 0, byteCount);
-							stream.write(buffer, byteCount);
-							continue;
-						}
-						Thread.sleep(1);
+						// an additional client's connection may have been disconnected or removed by the user
+						ConnectionTelemetry connection = client.connection;
+						boolean closing = client.closing || !connection.isConnected();
 						
-						// if the client has not sent any valid telemetry within 10 seconds,
-						// abandon this connection so another device can try to connect
-						int sampleNumber = getSampleCount();
+						// if the client has not sent any valid telemetry within 10 seconds, abandon it
+						int sampleNumber = connection.getSampleCount();
 						long timestamp = System.currentTimeMillis();
-						if(sampleNumber > previousSampleNumber) {
-							previousSampleNumber = sampleNumber;
-							previousTimestamp = timestamp;
-						} else if(previousTimestamp < timestamp - MAX_TCP_IDLE_MILLISECONDS) {
-							tcpClientConnected = false;
-							Settings.GUI.redraw(); // so the TX GUI can be redrawn
-							Notifications.showFailureForMilliseconds("The TCP connection was idle for too long. It has been closed so another device can connect.", 5000, true);
-							tcpSocket.close();
-							break;
+						if(sampleNumber > client.previousSampleNumber) {
+							client.previousSampleNumber = sampleNumber;
+							client.previousTimestamp = timestamp;
+						} else if(!closing && client.previousTimestamp < timestamp - MAX_TCP_IDLE_MILLISECONDS) {
+							Notifications.showFailureForMilliseconds("The TCP connection with the client at " + getRemoteAddress(client.channel) + " was idle for too long. It has been closed so another device can connect.", 5000, true);
+							closing = true;
 						}
 						
-						// transmit any pending data
-						// this will fail if the client has closed the connection
-						try {
-							while(!transmitQueue.isEmpty()) {
-								byte[] data = transmitQueue.remove();
-								os.write(data);
-//								Notifications.printInfo("Transmitted to " + getName() + " connection", data);
-							}
-							if(txRepeatedly.isTrue() && System.currentTimeMillis() >= nextRepititionTimestamp) {
-								nextRepititionTimestamp = System.currentTimeMillis() + txRepeatedlyMilliseconds.get();
-								byte[] data = txData.getAsBytes(txAppendCR.get(), txAppendLF.get());
-								os.write(data);
-//								Notifications.printInfo("Transmitted to " + getName() + " connection", data);
-							}
-						} catch(Exception e) {
-							tcpClientConnected = false;
-							Settings.GUI.redraw(); // so the TX GUI can be redrawn
-							Notifications.showFailureForMilliseconds("Unable to transmit data to the " + getName() + " connection because it has closed.", 5000, true);
-							tcpSocket.close();
-							break;
+						// transmit any pending data, this will fail if the client has closed the connection
+						if(!closing)
+							closing = !connection.transmitToTcpClient(client);
+						
+						if(closing) {
+							closeTcpClient(client);
+							clients.remove(client);
 						}
 						
 					}
 					
-				} catch(SocketTimeoutException ste) {
-					
-					// a client didn't connect within 1 second, so do nothing and let the loop try again.
-					
-				} catch(Exception e) {
-
-					tcpClientConnected = false;
-					Settings.GUI.redraw(); // so the TX GUI can be redrawn
-					stopProcessingTelemetry();
-					try { tcpSocket.close(); } catch(Exception e2) {}
-					try { tcpServer.close(); } catch(Exception e2) {}
-					if(isConnected())
-						disconnect("Error while reading from " + getName() + ".", false);
-					return;
-					
 				}
-			
+				
+			} catch(Exception e) {
+				
+				tcpSelector = null;
+				clients.forEach(this::closeTcpClient);
+				stopProcessingTelemetry();
+				try { tcpServer.close(); } catch(Exception e2) {}
+				try { selector.close(); } catch(Exception e2) {}
+				if(isConnected())
+					disconnect("Error while reading from " + getName() + ".", false);
+				
 			}
 			
 		});
@@ -1554,19 +1965,203 @@ public final class ConnectionTelemetry extends Connection {
 		
 	}
 	
+	/**
+	 * For TCP mode: a client of the TCP server, and the connection that shows its telemetry.
+	 */
+	private static class TcpClient {
+		
+		final SocketChannel channel;
+		final ConnectionTelemetry connection;
+		final SharedByteStream stream;
+		final CountDownLatch closed = new CountDownLatch(1); // counted down after the server thread has closed the client
+		SelectionKey key;
+		ByteBuffer unsentBytes = ByteBuffer.allocate(0);     // the part of a transmission that did not fit in the socket's send buffer
+		boolean writable = false;                            // true if the selector reported that the client can accept more data
+		boolean closing = false;                             // true if the client closed the connection or the connection failed
+		long previousTimestamp = System.currentTimeMillis(); // when the client last provided a new sample
+		int previousSampleNumber;
+		
+		TcpClient(SocketChannel channel, ConnectionTelemetry connection, SharedByteStream stream) {
+			this.channel = channel;
+			this.connection = connection;
+			this.stream = stream;
+			this.previousSampleNumber = connection.getSampleCount();
+		}
+		
+	}
+	
+	/**
+	 * For TCP mode: assigns a newly accepted client to this connection, or (if this connection already has a client) to a connection for an additional client.
+	 * 
+	 * @param channel              The new client.
+	 * @param selector             The TCP server's selector.
+	 * @param stream               Stream for this connection's telemetry.
+	 * @param clients              The clients that are already connected.
+	 * @return                     The client.
+	 * @throws IOException         If the client could not be registered with the selector.
+	 */
+	private TcpClient acceptTcpClient(SocketChannel channel, Selector selector, SharedByteStream stream, List<TcpClient> clients) throws IOException {
+		
+		ConnectionTelemetry connection = this;
+		if(clients.stream().anyMatch(client -> client.connection == this)) {
+			// reuse the connection of a previous additional client if it was not removed and still has the same data structure
+			List<String> settings = getSettings();
+			connection = tcpClientConnections.stream()
+			                                 .filter(c -> c.isDisconnected() && Connections.telemetryConnections.contains(c))
+			                                 .filter(c -> c.getSettings().equals(settings))
+			                                 .findFirst().orElse(null);
+			if(connection == null) {
+				ConnectionTelemetry newConnection = new ConnectionTelemetry(this, tcpClientConnections.size() + 2);
+				tcpClientConnections.add(newConnection);
+				SwingUtilities.invokeLater(() -> Connections.addConnection(newConnection));
+				connection = newConnection;
+			}
+			stream = new SharedByteStream(connection);
+		}
+		
+		channel.configureBlocking(false);
+		TcpClient client = new TcpClient(channel, connection, stream);
+		client.key = channel.register(selector, SelectionKey.OP_READ, client);
+		
+		// ensure we don't send data that was intended for the previous client
+		connection.transmitQueue.clear();
+		connection.tcpClientConnected = true;
+		
+		if(connection != this) {
+			connection.previousSampleCountTimestamp = 0;
+			connection.previousSampleCount = 0;
+			connection.calculatedSamplesPerSecond = 0;
+			connection.tcpSelector = selector;
+			connection.setStatus(Status.CONNECTED, false);
+			connection.startProcessingTelemetry(stream);
+			
+			// if the user disconnects or removes that connection, wait for this server thread to close the client
+			ConnectionTelemetry clientConnection = connection;
+			connection.receiverThread = new Thread(() -> {
+				synchronized(clientConnection) {
+					while(clientConnection.isConnected())
+						try { clientConnection.wait(); } catch(InterruptedException e) { }
+				}
+				selector.wakeup();
+				while(client.closed.getCount() > 0)
+					try { client.closed.await(); } catch(InterruptedException e) { }
+			});
+			connection.receiverThread.setName("TCP Client of " + getName());
+			connection.receiverThread.start();
+		}
+		
+		Settings.GUI.redraw(); // so the TX GUI can be redrawn
+		Notifications.printInfo("TCP connection established with a client at " + getRemoteAddress(channel) + (connection == this ? "." : ". Its telemetry is shown by " + connection.getName() + "."));
+		return client;
+		
+	}
+	
+	/**
+	 * For TCP mode: closes a client of this connection's TCP server. If the client had its own connection, that connection is disconnected.
+	 * 
+	 * @param client    The client to close.
+	 */
+	private void closeTcpClient(TcpClient client) {
+		
+		try { client.channel.close(); } catch(IOException e) {}
+		
+		ConnectionTelemetry connection = client.connection;
+		connection.tcpClientConnected = false;
+		if(connection != this) {
+			connection.tcpSelector = null;
+			connection.stopProcessingTelemetry();
+			client.closed.countDown();
+			if(connection.isConnected())
+				connection.disconnect(null, false);
+		}
+		Settings.GUI.redraw(); // so the TX GUI can be redrawn
+		
+	}
+	
+	/**
+	 * For TCP mode: transmits any pending data to this connection's client, without waiting for the client if the socket's send buffer is full.
+	 * The unsent bytes are kept, and the selector wakes the server thread when the client can accept more data.
+	 * 
+	 * @param client    This connection's client.
+	 * @return          False if the client has closed the connection.
+	 */
+	private boolean transmitToTcpClient(TcpClient client) {
+		
+		try {
+			if(txRepeatedly.isTrue() && System.currentTimeMillis() >= nextRepititionTimestamp) {
+				nextRepititionTimestamp = System.currentTimeMillis() + txRepeatedlyMilliseconds.get();
+				transmitQueue.add(txData.getAsBytes(txAppendCR.get(), txAppendLF.get()));
+			}
+			boolean canWrite = !client.unsentBytes.hasRemaining() || client.writable;
+			client.writable = false;
+			while(canWrite && (client.unsentBytes.hasRemaining() || !transmitQueue.isEmpty())) {
+				if(!client.unsentBytes.hasRemaining())
+					client.unsentBytes = ByteBuffer.wrap(transmitQueue.remove());
+				// write 64kB at a time, because the JDK copies all remaining bytes of a heap buffer into a temporary direct buffer for each write
+				ByteBuffer slice = client.unsentBytes.slice(client.unsentBytes.position(), Math.min(client.unsentBytes.remaining(), 65536));
+				client.channel.write(slice);
+				client.unsentBytes.position(client.unsentBytes.position() + slice.position());
+				canWrite = !slice.hasRemaining();
+			}
+			client.key.interestOps(client.unsentBytes.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+			return true;
+		} catch(IOException e) {
+			Notifications.showFailureForMilliseconds("Unable to transmit data to the " + getName() + " connection because it has closed.", 5000, true);
+			return false;
+		}
+		
+	}
+	
+	/**
+	 * @param client    A connected client.
+	 * @return          The client's IP address and port number, without the leading "/".
+	 */
+	private static String getRemoteAddress(SocketChannel client) {
+		
+		try {
+			return client.getRemoteAddress().toString().substring(1);
+		} catch(Exception e) {
+			return "[unknown address]";
+		}
+		
+	}
+	
+	/**
+	 * Replaces the sequence number counter, so the packet loss counts start over. This MUST be called after any change to the sequence number location or the fields.
+	 * The counter reads the raw sequence numbers from the received datagrams, so it is only used in CSV mode, or in binary mode with an integer dataset.
+	 */
+	private void updateSequenceCounter() {
+		
+		Field dataset = (type != Type.UDP || sequenceNumberLocation.is(-1)) ? null : getDatasetByLocation(sequenceNumberLocation.get());
+		if(dataset == null || !dataset.isDataset())
+			sequenceCounter = null;
+		else if(protocol.is(Protocol.CSV))
+			sequenceCounter = new SequenceCounter(dataset.location.get(), null, 0);
+		else if(protocol.is(Protocol.BINARY) && SequenceCounter.isInteger(dataset.type.get()))
+			sequenceCounter = new SequenceCounter(dataset.location.get(), dataset.type.get(), getPacketLayout().byteCount());
+		else
+			sequenceCounter = null;
+		
+	}
+	
 	private void connectUdp(boolean showGui) {
 		
 		receiverThread = new Thread(() -> {
 			
-			DatagramSocket udpListener = null;
+			Selector selector = null;
+			DatagramChannel udpListener = null;
 			
 			// start the UDP listener
 			try {
-				udpListener = new DatagramSocket(portNumber.get());
-				udpListener.setSoTimeout(1000);
-				udpListener.setReceiveBufferSize(67108864); // 64MB
+				selector = Selector.open();
+				udpListener = DatagramChannel.open();
+				udpListener.setOption(StandardSocketOptions.SO_RCVBUF, 67108864); // 64MB
+				udpListener.bind(new InetSocketAddress(portNumber.get()));
+				udpListener.configureBlocking(false);
+				udpListener.register(selector, SelectionKey.OP_READ);
 			} catch (Exception e) {
 				try { udpListener.close(); } catch(Exception e2) {}
+				try { selector.close(); } catch(Exception e2) {}
 				disconnect("Unable to start the UDP listener. Make sure another program is not already using port " + portNumber.get() + ".", false);
 				return;
 			}
@@ -1586,17 +2181,20 @@ public final class ConnectionTelemetry extends Connection {
 						if(!isConnected())
 							return;
 						
+						// sleep until data is queued, it's time to repeat a transmission, or it's time to check if we should stop
+						byte[] data = transmitQueue.poll(getTransmitterTimeout(), TimeUnit.MILLISECONDS);
+						
 						// transmit data if available
 						try {
 							
-							while(!transmitQueue.isEmpty()) {
-								byte[] data = transmitQueue.remove();
+							while(data != null) {
 								socket.send(new DatagramPacket(data, data.length, InetAddress.getByName(txAddress.get()), txPort.get()));
 //								Notifications.printInfo("Transmitted to " + txAddress.get() + " UDP port " + txPort.get(), data);
+								data = transmitQueue.poll();
 							}
 							if(txRepeatedly.isTrue() && System.currentTimeMillis() >= nextRepititionTimestamp) {
 								nextRepititionTimestamp = System.currentTimeMillis() + txRepeatedlyMilliseconds.get();
-								byte[] data = txData.getAsBytes(txAppendCR.get(), txAppendLF.get());
+								data = txData.getAsBytes(txAppendCR.get(), txAppendLF.get());
 								socket.send(new DatagramPacket(data, data.length, InetAddress.getByName(txAddress.get()), txPort.get()));
 //								Notifications.printInfo("Transmitted to " + txAddress.get() + " UDP port " + txPort.get(), data);
 							}
@@ -1606,8 +2204,6 @@ public final class ConnectionTelemetry extends Connection {
 							Notifications.showFailureForMilliseconds("Unable to transmit data to address \"" + txAddress.get() + "\" at UDP port " + txPort.get() + ".", 5000, true);
 							
 						}
-						
-						Thread.sleep(1);
 				
 					}
 						
@@ -1619,8 +2215,9 @@ public final class ConnectionTelemetry extends Connection {
 			transmitterThread.start();
 			
 			// listen for packets
-			byte[] buffer = new byte[65507]; // max packet size: 65535 - (8byte UDP header) - (20byte IP header)
-			DatagramPacket udpPacket = new DatagramPacket(buffer, buffer.length);
+			// each wakeup drains all of the available packets (up to 4MB) so they can be written to the stream as one batch
+			final int MAX_PACKET_SIZE = 65507; // 65535 - (8byte UDP header) - (20byte IP header)
+			ByteBuffer buffer = ByteBuffer.allocateDirect(4194304); // 4MB, reused for every batch
 			while(true) {
 
 				try {
@@ -1629,17 +2226,29 @@ public final class ConnectionTelemetry extends Connection {
 					if(!isConnected())
 						throw new Exception();
 					
-					udpListener.receive(udpPacket);
-					stream.write(buffer, udpPacket.getLength());
-					
-				} catch(SocketTimeoutException ste) {
+					// wait up to 100ms for packets
+					selector.select(100);
+					selector.selectedKeys().clear();
 					
-					// a client never sent a packet, so do nothing and let the loop try again.
+					// a packet is silently truncated if it doesn't fit, so stop when there might not be room for another packet
+					// sequence numbers are counted from each packet's raw bytes as it arrives
+					SequenceCounter counter = sequenceCounter;
+					buffer.clear();
+					while(buffer.remaining() >= MAX_PACKET_SIZE) {
+						int packetStart = buffer.position();
+						if(udpListener.receive(buffer) == null)
+							break;
+						if(counter != null)
+							counter.count(buffer, packetStart, buffer.position());
+					}
+					buffer.flip();
+					stream.write(buffer);
 					
 				} catch(Exception e) {
 					
 					stopProcessingTelemetry();
 					try { udpListener.close(); } catch(Exception e2) {}
+					try { selector.close(); } catch(Exception e2) {}
 					if(isConnected())
 						disconnect("Error while reading from " + getName() + ".", false);
 					return;
@@ -1655,133 +2264,428 @@ public final class ConnectionTelemetry extends Connection {
 		
 	}
 	
-	private record ParsedData(int packetCount,      // number of valid parsed telemetry packets
-	                          int[] byteCount,      // number of bytes parsed per telemetry packet
-	                          long[] timestamps,    // timestamp from each packet
-	                          float[][] samples) {} // [datasetN][sampleN]
-	
-	private class ImportWorker implements Callable<ParsedData> {
+	private void connectReplay(boolean showGui) {
 		
-		private final int datasetsCount;
-		private final List<String> lines;
-		private long[] timestamps;
-		private float[][] samples;
-		private int packetCount;
-		private int[] byteCount;
-		
-		public ImportWorker(int datasetCount, List<String> lines) {
-			this.datasetsCount = datasetCount;
-			this.lines = lines;
-			timestamps = new long[lines.size()];
-			samples = new float[datasetCount][lines.size()];
-			packetCount = 0;
-			byteCount = new int[lines.size()];
-		}
-
-		@Override public ParsedData call() throws Exception {
+		receiverThread = new Thread(() -> {
+			
+			setStatus(Status.CONNECTING, false);
+			RawCapture.Reader capture;
 			try {
-				lines.forEach(line -> {
-					String[] columns = line.split(",");
-					timestamps[packetCount] = Long.parseLong(columns[1]);
-					for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
-						samples[datasetN][packetCount] = Float.parseFloat(columns[datasetN + 2]);
-					byteCount[packetCount] = line.length() + 2; // assuming each char is 1 byte, and EOL is 2 bytes
-					packetCount++;
-				});
-			} catch(NumberFormatException e) {
-				// ending early
+				capture = new RawCapture.Reader(replayFile.get());
+			} catch(IOException e) {
+				disconnect("Unable to replay \"" + replayFile.get() + "\" because it does not exist or is not a raw capture file.", false);
+				return;
 			}
+			setStatus(Status.CONNECTED, showGui);
+			SharedByteStream stream = new SharedByteStream(this);
+			startProcessingTelemetry(stream);
 			
-			return new ParsedData(packetCount, byteCount, timestamps, samples);
-		}
-		
-	}
-	
-	@Override public void connectToFile(String path, long firstTimestamp, long beginImportingTimestamp, AtomicLong completedByteCount) {
-		
-		receiverThread = new Thread(() -> {
+			// records that are due at the same time are combined into one write, so many small UART reads can be replayed quickly
+			double speed = replaySpeed.get().multiplier;
+			byte[] buffer = new byte[1048576]; // 1MB
+			int length = 0;
+			long replayedByteCount = 0;
+			long startTimestamp = System.nanoTime();
 			
-			try (FileReader file = new FileReader(path, StandardCharsets.UTF_8); BufferedReader buffer = new BufferedReader(file)) {
-				
-				setStatus(Status.CONNECTED, false);
-				previousSampleCountTimestamp = 0;
-				previousSampleCount = 0;
-				int sampleNumber = getSampleCount();
-				List<Field> datasets = getDatasetsList(); // cache a list of the datasets
-				int datasetsCount = datasets.size();
-				
-				// sanity checks
-				String line = buffer.readLine();
-				if(line == null) {
-					disconnect("The CSV file is empty.", false);
-					return;
-				}
-				
-				String[] columns = line.split(",");
-				if(columns.length != datasetsCount + 2) {
-					disconnect("The CSV file header does not match the current data structure.", false);
-					return;
-				}
-				
-				boolean correctColumnLabels = true;
-				if(!columns[0].startsWith("Sample Number"))  correctColumnLabels = false;
-				if(!columns[1].startsWith("UNIX Timestamp")) correctColumnLabels = false;
-				for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
-					Field d = datasets.get(datasetN);
-					if(!columns[datasetN + 2].equals(d.name.get() + " (" + d.unit.get() + ")"))
-						correctColumnLabels = false;
-				}
-				if(!correctColumnLabels) {
-					disconnect("The CSV file header does not match the current data structure.", false);
-					return;
-				}
-				completedByteCount.addAndGet((long) (line.length() + 2)); // assuming each char is 1 byte, and EOL is 2 bytes
-
-				// parse and import the packets
-				final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
-				final int LINES_PER_THREAD = 1024;
-				ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
-				Queue<Future<ParsedData>> futures = new LinkedList<Future<ParsedData>>();
+			try {
 				
-				while(true) {
+				while(capture.next()) {
 					
+					// stop if requested
 					if(!isConnected())
-						break;
+						throw new Exception();
 					
-					for(int threadN = 0; threadN < THREAD_COUNT; threadN++) {
-						List<String> lines = new ArrayList<String>(LINES_PER_THREAD);
-						for(int lineN = 0; lineN < LINES_PER_THREAD; lineN++) {
-							line = buffer.readLine();
-							if(line == null)
-								break;
-							lines.add(line);
+					// wait until this record is due, but first write everything that was already due
+					if(speed > 0) {
+						long dueTimestamp = startTimestamp + (long) (capture.getTimestamp() / speed);
+						if(System.nanoTime() < dueTimestamp && length > 0) {
+							stream.write(buffer, length);
+							length = 0;
 						}
-						futures.add(pool.submit(new ImportWorker(datasetsCount, lines)));
+						while(System.nanoTime() < dueTimestamp && isConnected())
+							LockSupport.parkNanos(Long.min(dueTimestamp - System.nanoTime(), 100_000_000L)); // check for a disconnect at least every 100ms
 					}
 					
-					while(!futures.isEmpty()) {
-						ParsedData data = futures.remove().get();
-						for(int packetN = 0; packetN < data.packetCount; packetN++) {
-							if(sampleNumber == Integer.MAX_VALUE)
-								throw new Exception();
-							if(Connections.realtimeImporting) {
-								long delay = (data.timestamps[packetN] - firstTimestamp) - (System.currentTimeMillis() - beginImportingTimestamp);
-								if(delay > 0)
-									try { Thread.sleep(delay); } catch(Exception e) { }
+					// "receive" the record
+					ByteBuffer bytes = capture.getBytes();
+					int byteCount = bytes.remaining();
+					if(length + byteCount > buffer.length) {
+						stream.write(buffer, length);
+						length = 0;
+					}
+					if(byteCount > buffer.length) {
+						stream.write(bytes);
+					} else {
+						bytes.get(buffer, length, byteCount);
+						length += byteCount;
+					}
+					replayedByteCount += byteCount;
+					
+				}
+				if(length > 0)
+					stream.write(buffer, length);
+				
+				double seconds = (System.nanoTime() - startTimestamp) / 1000000000.0;
+				Notifications.showHintForMilliseconds(String.format("Finished replaying %,d bytes in %.3f seconds (%.1f MB/s.)", replayedByteCount, seconds, replayedByteCount / seconds / 1000000.0), 5000, true);
+				
+				// like a device that stopped sending telemetry, remain connected until the user disconnects
+				while(isConnected())
+					try { Thread.sleep(UART_READ_TIMEOUT_MILLISECONDS); } catch(InterruptedException e) {}
+				stopProcessingTelemetry();
+				capture.close();
+				
+			} catch(Exception e) {
+				
+				stopProcessingTelemetry();
+				capture.close();
+				if(isConnected())
+					disconnect("Error while reading from " + replayFile.get() + ".", false);
+				
+			}
+			
+		});
+		receiverThread.setPriority(Thread.MAX_PRIORITY);
+		receiverThread.setName("Replay Thread");
+		receiverThread.start();
+		
+	}
+	
+	/**
+	 * Parses one newline-aligned chunk of a CSV file.
+	 * Samples are written directly into the datasets' slots, and timestamps are kept so the importing thread can append them in order.
+	 */
+	private class ImportWorker {
+		
+		private byte[] text = new byte[0];
+		private int byteCount;
+		private int lineCount;       // number of lines in the chunk
+		private int parsedLineCount; // number of lines successfully parsed (less than lineCount if an error occurred)
+		private int[] lineEnd;       // offset after each line's EOL
+		private long[] timestamps;   // timestamp from each line
+		private int firstSampleNumber;
+		
+		/**
+		 * Copies a chunk of the file, and counts the lines.
+		 * 
+		 * @param file         The memory-mapped file.
+		 * @param offset       Offset of the chunk. This must be the start of a line.
+		 * @param byteCount    Size of the chunk. This must end with a complete line.
+		 */
+		public void load(MemorySegment file, long offset, int byteCount) {
+			
+			if(text.length < byteCount)
+				text = new byte[byteCount];
+			MemorySegment.copy(file, ValueLayout.JAVA_BYTE, offset, text, 0, byteCount);
+			this.byteCount = byteCount;
+			
+			lineCount = 0;
+			for(int i = 0; i < byteCount; i++)
+				if(text[i] == '\n')
+					lineCount++;
+			if(byteCount > 0 && text[byteCount - 1] != '\n')
+				lineCount++; // last line of the file may not have an EOL
+			
+			if(lineEnd == null || lineEnd.length < lineCount) {
+				lineEnd = new int[lineCount];
+				timestamps = new long[lineCount];
+			}
+			
+		}
+		
+		/**
+		 * Parses the chunk into the datasets.
+		 * This may be called in parallel for different chunks. The datasets' sample count is NOT incremented.
+		 * 
+		 * @param datasets             The datasets, in the same order as the CSV columns.
+		 * @param firstSampleNumber    Sample number for the first line of this chunk.
+		 */
+		public void parse(Field[] datasets, int firstSampleNumber) {
+			
+			this.firstSampleNumber = firstSampleNumber;
+			parsedLineCount = 0;
+			float[][] slots = new float[datasets.length][];
+			int lineStart = 0;
+			
+			try {
+				for(int lineN = 0; lineN < lineCount; lineN++) {
+					
+					int sampleNumber = firstSampleNumber + lineN;
+					if(lineN == 0 || sampleNumber % StorageFloats.SLOT_SIZE == 0)
+						for(int datasetN = 0; datasetN < datasets.length; datasetN++)
+							slots[datasetN] = datasets[datasetN].getSlot(sampleNumber);
+					int slotOffset = sampleNumber % StorageFloats.SLOT_SIZE;
+					
+					// find the end of the line, ignoring the EOL
+					int end = lineStart;
+					while(end < byteCount && text[end] != '\n')
+						end++;
+					lineEnd[lineN] = (end < byteCount) ? end + 1 : end;
+					if(end > lineStart && text[end - 1] == '\r')
+						end--;
+					
+					// first column is the sample number, which is ignored
+					int columnStart = nextColumn(lineStart, end);
+					
+					// second column is the timestamp
+					int columnEnd = columnEnd(columnStart, end);
+					if(columnEnd == columnStart)
+						return;
+					long timestamp = 0;
+					for(int i = columnStart; i < columnEnd; i++) {
+						byte b = text[i];
+						if(b < '0' || b > '9')
+							return;
+						timestamp = (timestamp * 10) + (b - '0');
+					}
+					columnStart = columnEnd + 1;
+					
+					// remaining columns are the samples
+					for(int datasetN = 0; datasetN < datasets.length; datasetN++) {
+						if(columnStart > end)
+							return;
+						columnEnd = columnEnd(columnStart, end);
+						slots[datasetN][slotOffset] = SharedByteStream.parseFloat(text, columnStart, columnEnd);
+						columnStart = columnEnd + 1;
+					}
+					
+					timestamps[lineN] = timestamp;
+					parsedLineCount++;
+					lineStart = lineEnd[lineN];
+					
+				}
+			} catch(NumberFormatException e) {
+				// ending early
+			} finally {
+				updateRangeOfBlocks(datasets);
+			}
+			
+		}
+		
+		private int columnEnd(int start, int lineEnd) {
+			
+			while(start < lineEnd && text[start] != ',')
+				start++;
+			return start;
+			
+		}
+		
+		private int nextColumn(int start, int lineEnd) {
+			
+			return columnEnd(start, lineEnd) + 1;
+			
+		}
+		
+		/**
+		 * Specifies the minimum and maximum values of the blocks that are entirely within this chunk.
+		 * The blocks that span chunks must be handled by the importing thread after all chunks have been parsed.
+		 */
+		private void updateRangeOfBlocks(Field[] datasets) {
+			
+			int firstBlockStart = ((firstSampleNumber + StorageFloats.BLOCK_SIZE - 1) / StorageFloats.BLOCK_SIZE) * StorageFloats.BLOCK_SIZE;
+			int end = firstSampleNumber + parsedLineCount; // exclusive
+			for(int blockStart = firstBlockStart; blockStart + StorageFloats.BLOCK_SIZE <= end; blockStart += StorageFloats.BLOCK_SIZE)
+				for(Field dataset : datasets)
+					updateRangeOfBlock(dataset, blockStart, blockStart + StorageFloats.BLOCK_SIZE - 1);
+			
+		}
+		
+	}
+	
+	/**
+	 * Calculates the minimum and maximum values of a block, based on the samples that have been written to it so far.
+	 * 
+	 * @param dataset             The dataset.
+	 * @param blockStart          First sample number of the block.
+	 * @param lastSampleNumber    Last sample number that has been written to the block.
+	 */
+	private static void updateRangeOfBlock(Field dataset, int blockStart, int lastSampleNumber) {
+		
+		float[] slot = dataset.getSlot(blockStart);
+		int start = blockStart % StorageFloats.SLOT_SIZE;
+		int end   = start + (lastSampleNumber - blockStart);
+		float min = slot[start];
+		float max = slot[start];
+		for(int i = start + 1; i <= end; i++) {
+			float value = slot[i];
+			if(value < min) min = value;
+			if(value > max) max = value;
+		}
+		dataset.setRangeOfBlock(blockStart, min, max);
+		
+	}
+	
+	/**
+	 * @return    The first line of a CSV file: the column labels.
+	 */
+	private String getHeader() {
+		
+		StringBuilder header = new StringBuilder("Sample Number (" + sampleRate.get() + " samples per second),UNIX Timestamp (Milliseconds since 1970-01-01)");
+		for(Field d : getDatasetsList())
+			header.append("," + d.name.get() + " (" + d.unit.get() + ")");
+		return header.toString();
+		
+	}
+	
+	/**
+	 * @param header      The first line of a CSV file (also used by binary files.)
+	 * @param datasets    The datasets, in the same order as the CSV columns.
+	 * @return            True if the column labels match the current data structure.
+	 */
+	private static boolean isHeaderCorrect(String header, List<Field> datasets) {
+		
+		String[] columns = header.split(",");
+		if(columns.length != datasets.size() + 2)
+			return false;
+		
+		if(!columns[0].startsWith("Sample Number"))  return false;
+		if(!columns[1].startsWith("UNIX Timestamp")) return false;
+		for(int datasetN = 0; datasetN < datasets.size(); datasetN++) {
+			Field d = datasets.get(datasetN);
+			if(!columns[datasetN + 2].equals(d.name.get() + " (" + d.unit.get() + ")"))
+				return false;
+		}
+		
+		return true;
+		
+	}
+	
+	@Override public void connectToFile(String path, long firstTimestamp, long beginImportingTimestamp, AtomicLong completedByteCount) {
+		
+		if(path.endsWith(".tvb")) {
+			connectToBinaryFile(path, firstTimestamp, beginImportingTimestamp, completedByteCount);
+			return;
+		}
+		
+		receiverThread = new Thread(() -> {
+			
+			ExecutorService pool = null;
+			
+			try (Arena arena = Arena.ofShared(); FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+				
+				setStatus(Status.CONNECTED, false);
+				previousSampleCountTimestamp = 0;
+				previousSampleCount = 0;
+				int sampleNumber = getSampleCount();
+				List<Field> datasets = getDatasetsList(); // cache a list of the datasets
+				int datasetsCount = datasets.size();
+				
+				// memory-map the file
+				long fileByteCount = channel.size();
+				if(fileByteCount == 0) {
+					disconnect("The CSV file is empty.", false);
+					return;
+				}
+				MemorySegment file = channel.map(FileChannel.MapMode.READ_ONLY, 0, fileByteCount, arena);
+				
+				// sanity checks
+				long headerByteCount = 0;
+				while(headerByteCount < fileByteCount && file.get(ValueLayout.JAVA_BYTE, headerByteCount) != '\n')
+					headerByteCount++;
+				if(headerByteCount < fileByteCount)
+					headerByteCount++; // include the EOL
+				String line = new String(file.asSlice(0, Math.min(headerByteCount, 65536)).toArray(ValueLayout.JAVA_BYTE), StandardCharsets.UTF_8).strip();
+				
+				if(!isHeaderCorrect(line, datasets)) {
+					disconnect("The CSV file header does not match the current data structure.", false);
+					return;
+				}
+				completedByteCount.addAndGet(headerByteCount);
+
+				// parse and import the packets
+				// each batch covers up to 4MB of the file, split into one newline-aligned chunk per thread
+				// a line is at least 6 bytes ("0,0,0\n") so a batch is always less than one slot of samples,
+				// which ensures a batch never causes a slot that is still being written to get flushed to disk
+				final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+				final int BYTES_PER_THREAD = 4194304 / THREAD_COUNT;
+				final Field[] dataset = datasets.toArray(new Field[0]);
+				pool = Executors.newFixedThreadPool(THREAD_COUNT);
+				ImportWorker[] workers = new ImportWorker[THREAD_COUNT];
+				for(int threadN = 0; threadN < THREAD_COUNT; threadN++)
+					workers[threadN] = new ImportWorker();
+				long offset = headerByteCount;
+				
+				while(offset < fileByteCount) {
+					
+					if(!isConnected())
+						break;
+					
+					// split the next batch into newline-aligned chunks, and count the lines in parallel
+					List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(THREAD_COUNT);
+					int chunkCount = 0;
+					while(chunkCount < THREAD_COUNT && offset < fileByteCount) {
+						long end = Math.min(offset + BYTES_PER_THREAD, fileByteCount);
+						while(end < fileByteCount && file.get(ValueLayout.JAVA_BYTE, end - 1) != '\n')
+							end++;
+						ImportWorker worker = workers[chunkCount];
+						long chunkOffset = offset;
+						int chunkByteCount = (int) (end - offset);
+						tasks.add(Executors.callable(() -> worker.load(file, chunkOffset, chunkByteCount)));
+						offset = end;
+						chunkCount++;
+					}
+					for(Future<Object> future : pool.invokeAll(tasks))
+						future.get();
+					
+					// parse the chunks in parallel, directly into the datasets
+					tasks.clear();
+					int firstSampleNumber = sampleNumber;
+					for(int chunkN = 0; chunkN < chunkCount; chunkN++) {
+						ImportWorker worker = workers[chunkN];
+						int chunkFirstSampleNumber = firstSampleNumber;
+						if(worker.lineCount > Integer.MAX_VALUE - firstSampleNumber)
+							throw new Exception();
+						tasks.add(Executors.callable(() -> worker.parse(dataset, chunkFirstSampleNumber)));
+						firstSampleNumber += worker.lineCount;
+					}
+					for(Future<Object> future : pool.invokeAll(tasks))
+						future.get();
+					
+					// update the blocks that span chunks
+					int batchEnd = sampleNumber; // exclusive
+					for(int chunkN = 0; chunkN < chunkCount; chunkN++) {
+						batchEnd += workers[chunkN].parsedLineCount;
+						if(workers[chunkN].parsedLineCount != workers[chunkN].lineCount)
+							break;
+					}
+					for(int chunkN = 0; chunkN < chunkCount; chunkN++) {
+						ImportWorker worker = workers[chunkN];
+						int first = worker.firstSampleNumber;
+						int end = worker.firstSampleNumber + worker.parsedLineCount; // exclusive
+						if(first >= batchEnd)
+							break;
+						int firstBlockStart = first - (first % StorageFloats.BLOCK_SIZE);
+						int lastBlockStart  = end   - (end   % StorageFloats.BLOCK_SIZE);
+						for(Field d : dataset) {
+							if(first != firstBlockStart)
+								updateRangeOfBlock(d, firstBlockStart, Math.min(firstBlockStart + StorageFloats.BLOCK_SIZE, batchEnd) - 1);
+							if(end != lastBlockStart && end > first)
+								updateRangeOfBlock(d, lastBlockStart, Math.min(lastBlockStart + StorageFloats.BLOCK_SIZE, batchEnd) - 1);
+						}
+					}
+					
+					// append the timestamps in order, which makes the samples visible
+					for(int chunkN = 0; chunkN < chunkCount; chunkN++) {
+						ImportWorker worker = workers[chunkN];
+						int lineN = 0;
+						while(lineN < worker.parsedLineCount) {
+							long timestamp = worker.timestamps[lineN];
+							if(Connections.realtimeImporting) {
+								long delay = (timestamp - firstTimestamp) - (System.currentTimeMillis() - beginImportingTimestamp);
+								if(delay > 0)
+									try { Thread.sleep(delay); } catch(Exception e) { }
 							}
-							for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
-								datasets.get(datasetN).setConvertedSample(sampleNumber, data.samples[datasetN][packetN]);
-							sampleNumber++;
-							incrementSampleCountWithTimestamp(1, data.timestamps[packetN]);
-							completedByteCount.addAndGet(data.byteCount[packetN]);
+							int runStart = lineN;
+							while(lineN < worker.parsedLineCount && worker.timestamps[lineN] == timestamp)
+								lineN++;
+							int runLength = lineN - runStart;
+							incrementSampleCountWithTimestamp(runLength, timestamp);
+							sampleNumber += runLength;
+							completedByteCount.addAndGet(worker.lineEnd[lineN - 1] - (runStart == 0 ? 0 : worker.lineEnd[runStart - 1]));
 						}
-						if(data.packetCount != data.timestamps.length)
+						if(worker.parsedLineCount != worker.lineCount)
 							throw new Exception(); // an error occurred while parsing
 					}
 					
-					if(line == null)
-						break; // reached end of file
-					
 				}
 				
 				// done
@@ -1793,6 +2697,9 @@ public final class ConnectionTelemetry extends Connection {
 				disconnect(null, false);
 			} catch (Exception e) {
 				disconnect("Error while parsing the CSV Log file.", false);
+			} finally {
+				if(pool != null)
+					pool.shutdownNow();
 			}
 			
 		});
@@ -1811,128 +2718,505 @@ public final class ConnectionTelemetry extends Connection {
 	 */
 	@Override public void exportDataFile(String path, AtomicLong completedByteCount) {
 		
-		List<Field> list = getDatasetsList();
-		int datasetsCount = list.size();
+		List<Field> datasets = getDatasetsList();
 		int sampleCount = getSampleCount();
+		ExecutorService pool = null;
 		
-		try {
-			
-			PrintWriter logFile = new PrintWriter(path + ".csv", "UTF-8");
+		try(FileChannel file = FileChannel.open(Paths.get(path + ".csv"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
 			
 			// first line is the header
-			logFile.print("Sample Number (" + sampleRate.get() + " samples per second),UNIX Timestamp (Milliseconds since 1970-01-01)");
-			for(int i = 0; i < datasetsCount; i++) {
-				Field d = getDatasetByIndex(i);
-				logFile.print("," + d.name.get() + " (" + d.unit.get() + ")");
-			}
-			logFile.println();
+			ByteBuffer header = ByteBuffer.wrap((getHeader() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+			while(header.hasRemaining())
+				file.write(header);
 			
 			// remaining lines are the samples
-			// split the work into one worker thread per CSV column, with each thread processing up to 8192 samples at a time
-			// worker threads return the corresponding text that belongs in their CSV column
-			// this thread then collects the data and outputs it to the CSV file
-			int startingSampleNumber = 0;
-			final int MAX_SAMPLE_COUNT_PER_THREAD = 8192;
-			ExecutorService pool = Executors.newCachedThreadPool();
-			List<Future<String[]>> futures = new ArrayList<Future<String[]>>(datasetsCount + 2);
-			List<String[]> results = new ArrayList<String[]>(datasetsCount + 2);
-			
-			// submit first batch
-			int count = Integer.min(MAX_SAMPLE_COUNT_PER_THREAD, sampleCount - startingSampleNumber);
-			for(int columnN = 0; columnN < datasetsCount + 2; columnN++)
-				futures.add(pool.submit(new ExportWorker(columnN, startingSampleNumber, count)));
-			
-			while(startingSampleNumber < sampleCount) {
-				
-				// get results
-				for(int i = 0; i < datasetsCount + 2; i++)
-					results.add(futures.get(i).get());
-				futures.clear();
-				startingSampleNumber += count;
-				
-				// if more samples to export, submit another batch BEFORE processing the above results
-				int nextCount = Integer.min(MAX_SAMPLE_COUNT_PER_THREAD, sampleCount - startingSampleNumber);
-				if(startingSampleNumber < sampleCount) {
-					for(int columnN = 0; columnN < datasetsCount + 2; columnN++)
-						futures.add(pool.submit(new ExportWorker(columnN, startingSampleNumber, nextCount)));
+			// split the work into one worker thread per range of rows, with each thread formatting its rows directly into its own buffer
+			// this thread then writes the buffers to the file, in order, while the workers move on to their next range of rows
+			final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+			pool = Executors.newFixedThreadPool(THREAD_COUNT);
+			ExportWorker[] workers = new ExportWorker[THREAD_COUNT];
+			Queue<Future<ByteBuffer>> futures = new ArrayDeque<Future<ByteBuffer>>(THREAD_COUNT);
+			int nextSampleNumber = 0;
+			
+			// submit the first range of rows to each worker
+			for(int workerN = 0; workerN < THREAD_COUNT; workerN++) {
+				workers[workerN] = new ExportWorker(datasets);
+				if(nextSampleNumber < sampleCount) {
+					int count = Integer.min(workers[workerN].maxRowCount, sampleCount - nextSampleNumber);
+					futures.add(pool.submit(workers[workerN].setRange(nextSampleNumber, count)));
+					nextSampleNumber += count;
 				}
+			}
+			
+			// write the results in order, and give each worker another range of rows
+			int workerN = 0;
+			while(!futures.isEmpty()) {
 				
-				// process above results
-				for(int rowN = 0; rowN < count; rowN++) {
-					logFile.print(results.get(0)[rowN]);
-					for(int columnN = 1; columnN < datasetsCount + 2; columnN++)
-						logFile.print("," + results.get(columnN)[rowN]);
-					logFile.println();
-				}
-				results.clear();
+				ExportWorker worker = workers[workerN];
+				workerN = (workerN + 1) % THREAD_COUNT;
 				
-				// update the progress tracker
-				completedByteCount.addAndGet(count);
+				ByteBuffer text = futures.remove().get();
+				while(text.hasRemaining())
+					file.write(text);
+				completedByteCount.addAndGet(worker.rowCount);
 				
-				count = nextCount;
+				if(nextSampleNumber < sampleCount) {
+					int count = Integer.min(worker.maxRowCount, sampleCount - nextSampleNumber);
+					futures.add(pool.submit(worker.setRange(nextSampleNumber, count)));
+					nextSampleNumber += count;
+				}
 				
 			}
 			
-			logFile.close();
-			
-		} catch(Exception e) { }
+		} catch(Exception e) {
+			// exporting was canceled, or the file could not be written
+		} finally {
+			if(pool != null)
+				pool.shutdownNow();
+		}
 		
 	}
 	
-	private class ExportWorker implements Callable<String[]> {
+	private class ExportWorker implements Callable<ByteBuffer> {
+		
+		private static final byte[] EOL = System.lineSeparator().getBytes(StandardCharsets.US_ASCII);
+		private static final int MAX_ROW_BYTE_COUNT_PER_THREAD = 4194304;
 		
-		private final int csvColumnNumber;
-		private final int firstSampleNumber;
-		private final int sampleCount;
+		private final Field[] datasets;
+		private final StorageFloats.Cache[] caches;
+		private final StorageTimestamps.Cache timestampsCache;
+		private final byte[] text;
+		private final int maxRowCount;
+		private int firstSampleNumber;
+		private int rowCount;
 		
 		/**
-		 * Prepares a "worker thread" that will generate text values for one CSV column.
-		 * This allows splitting up the work of exporting into multiple threads (one thread per CSV column.)
-		 * Since a massive amount of samples may be exported, the work may be further split by having each thread only process a certain range of samples (so we don't run out of memory.)
+		 * Prepares a "worker thread" that will generate the text for a range of CSV rows.
+		 * This allows splitting up the work of exporting into multiple threads (one range of rows per thread.)
+		 * The worker can be reused for another range of rows after its text has been written to the file.
 		 * 
-		 * @param csvColumnNumber      Which CSV column this thread will generate text values for.
+		 * @param datasets    The datasets, in the same order as the CSV columns.
+		 */
+		public ExportWorker(List<Field> datasets) {
+			this.datasets = datasets.toArray(new Field[0]);
+			caches = datasets.stream().map(Field::createCache).toArray(StorageFloats.Cache[]::new);
+			timestampsCache = createTimestampsCache();
+			int maxRowByteCount = 11 + 21 + (this.datasets.length * 16) + EOL.length; // sample number, timestamp, and up to 15 chars per float
+			maxRowCount = Integer.max(1, Integer.min(65536, MAX_ROW_BYTE_COUNT_PER_THREAD / maxRowByteCount));
+			text = new byte[maxRowCount * maxRowByteCount];
+		}
+		
+		/**
 		 * @param firstSampleNumber    First sample number to process, inclusive.
-		 * @param sampleCount          Total number of samples to process.
+		 * @param rowCount             Total number of samples to process. This must not exceed maxRowCount.
+		 * @return                     This worker.
 		 */
-		public ExportWorker(int csvColumnNumber, int firstSampleNumber, int sampleCount) {
-			this.csvColumnNumber = csvColumnNumber;
+		public ExportWorker setRange(int firstSampleNumber, int rowCount) {
 			this.firstSampleNumber = firstSampleNumber;
-			this.sampleCount = sampleCount;
+			this.rowCount = rowCount;
+			return this;
 		}
 
 		/**
-		 * Generates the text values for this CSV column.
+		 * Generates the text for this range of CSV rows.
 		 * 
-		 * @return    A String[] containing the lines of text corresponding with this CSV column.
+		 * @return    A ByteBuffer containing the lines of text.
 		 */
-		@Override public String[] call() throws Exception {
+		@Override public ByteBuffer call() throws Exception {
 
-			String[] text = new String[sampleCount];
-			
-			if(csvColumnNumber == 0) {
-				// first column is the sample number
-				for(int i = 0; i < sampleCount; i++)
-					text[i] = Integer.toString(firstSampleNumber + i);
-			} else if(csvColumnNumber == 1) {
-				// second column is the UNIX timestamp
-				LongBuffer buffer = getTimestampsBuffer(firstSampleNumber, firstSampleNumber + sampleCount - 1, createTimestampsCache());
-				for(int i = 0; i < sampleCount; i++)
-					text[i] = Long.toString(buffer.get());
-			} else {
-				// other columns are the datasets
-				Field dataset = getDatasetByIndex(csvColumnNumber - 2);
-				StorageFloats.Cache cache = dataset.createCache();
-				FloatBuffer buffer = dataset.getSamplesBuffer(firstSampleNumber, firstSampleNumber + (sampleCount - 1), cache);
-				for(int i = 0; i < sampleCount; i++)
-					text[i] = Float.toString(buffer.get());
+			int lastSampleNumber = firstSampleNumber + rowCount - 1;
+			LongBuffer timestamps = getTimestampsBuffer(firstSampleNumber, lastSampleNumber, timestampsCache);
+			FloatBuffer[] samples = new FloatBuffer[datasets.length];
+			for(int datasetN = 0; datasetN < datasets.length; datasetN++)
+				samples[datasetN] = datasets[datasetN].getSamplesBuffer(firstSampleNumber, lastSampleNumber, caches[datasetN]);
+			
+			int offset = 0;
+			for(int rowN = 0; rowN < rowCount; rowN++) {
+				offset = putLong(text, offset, firstSampleNumber + rowN);
+				text[offset++] = ',';
+				offset = putLong(text, offset, timestamps.get(rowN));
+				for(FloatBuffer buffer : samples) {
+					text[offset++] = ',';
+					offset = putFloat(text, offset, buffer.get(rowN));
+				}
+				for(byte b : EOL)
+					text[offset++] = b;
 			}
 			
-			return text;
+			return ByteBuffer.wrap(text, 0, offset);
+			
+		}
+		
+	}
+	
+	private static final long[]  LONG_POWERS_OF_TEN  = LongStream.iterate(1, power -> power * 10).limit(19).toArray(); // 10^0 to 10^18
+	private static final float[] FLOAT_POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f}; // all exactly representable as floats
+	
+	/**
+	 * Writes a number as text.
+	 * 
+	 * @param text      Where to write the text.
+	 * @param offset    Where to start writing.
+	 * @param number    The number.
+	 * @return          Offset after the last character.
+	 */
+	private static int putLong(byte[] text, int offset, long number) {
+		
+		if(number == Long.MIN_VALUE)
+			return putString(text, offset, Long.toString(number));
+		
+		if(number < 0) {
+			text[offset++] = '-';
+			number = -number;
+		}
+		
+		int digitCount = 1;
+		while(digitCount < LONG_POWERS_OF_TEN.length && number >= LONG_POWERS_OF_TEN[digitCount])
+			digitCount++;
+		for(int i = offset + digitCount - 1; i >= offset; i--) {
+			text[i] = (byte) ('0' + (number % 10));
+			number /= 10;
+		}
+		return offset + digitCount;
+		
+	}
+	
+	/**
+	 * Writes a number as text, exactly like Float.toString() does.
+	 * 
+	 * Numbers between 0.001 and 10,000,000 that can be written with ~7 significant digits take a fast path:
+	 * for each possible number of fraction digits, the closest decimal is checked to see if it converts back to the same float.
+	 * The first match is the shortest decimal that uniquely identifies the float, which is also what Float.toString() produces.
+	 * Anything else falls back to Float.toString().
+	 * 
+	 * @param text      Where to write the text.
+	 * @param offset    Where to start writing.
+	 * @param number    The number.
+	 * @return          Offset after the last character.
+	 */
+	private static int putFloat(byte[] text, int offset, float number) {
+		
+		if(number == 0) {
+			if(Float.floatToRawIntBits(number) != 0)
+				text[offset++] = '-';
+			text[offset++] = '0';
+			text[offset++] = '.';
+			text[offset++] = '0';
+			return offset;
+		}
+		
+		float magnitude = Math.abs(number);
+		if(magnitude >= 0.001f && magnitude < 10000000f) {
+			for(int fractionDigitCount = 1; fractionDigitCount < FLOAT_POWERS_OF_TEN.length; fractionDigitCount++) {
+				long mantissa = (long) Math.rint((double) magnitude * LONG_POWERS_OF_TEN[fractionDigitCount]); // ties go to the even digit, like Float.toString()
+				if(mantissa > (1 << 24))
+					break;
+				if((float) mantissa / FLOAT_POWERS_OF_TEN[fractionDigitCount] == magnitude) {
+					if(number < 0)
+						text[offset++] = '-';
+					offset = putLong(text, offset, mantissa / LONG_POWERS_OF_TEN[fractionDigitCount]);
+					text[offset++] = '.';
+					long fraction = mantissa % LONG_POWERS_OF_TEN[fractionDigitCount];
+					for(int i = offset + fractionDigitCount - 1; i >= offset; i--) {
+						text[i] = (byte) ('0' + (fraction % 10));
+						fraction /= 10;
+					}
+					return offset + fractionDigitCount;
+				}
+			}
+		}
+		
+		return putString(text, offset, Float.toString(number));
+		
+	}
+	
+	private static int putString(byte[] text, int offset, String string) {
+		
+		for(int i = 0; i < string.length(); i++)
+			text[offset++] = (byte) string.charAt(i);
+		return offset;
+		
+	}
+	
+	/*
+	 * Binary files (.tvb) store the same information as CSV files, but are much faster to export and import because no text conversion is needed.
+	 * All numbers are little-endian. The file starts with a header:
+	 * 
+	 *     int       BINARY_FILE_MAGIC_NUMBER
+	 *     int       byte count of the header text
+	 *     byte[]    header text (UTF-8), identical to the first line of a CSV file
+	 *     int       datasets count
+	 *     int       sample count
+	 * 
+	 * Followed by chunks of up to BINARY_FILE_CHUNK_SIZE samples, with the samples stored column-by-column:
+	 * 
+	 *     int       sample count
+	 *     int       timestamp run count
+	 *     runs of   (int sample count, long timestamp)
+	 *     for each dataset:
+	 *         float[]    minimum value of each block
+	 *         float[]    maximum value of each block
+	 *         float[]    samples
+	 */
+	private static final int BINARY_FILE_MAGIC_NUMBER = 0x31425654; // "TVB1"
+	private static final int BINARY_FILE_CHUNK_SIZE = 64 * StorageFloats.BLOCK_SIZE; // must evenly divide StorageFloats.SLOT_SIZE
+	
+	/**
+	 * Exports all samples to a binary file.
+	 * 
+	 * @param path                    Full path with file name but without the file extension.
+	 * @param completedSampleCount    Variable to increment as progress is made (this is periodically queried by a progress bar.)
+	 */
+	public void exportBinaryFile(String path, AtomicLong completedSampleCount) {
+		
+		List<Field> datasets = getDatasetsList();
+		int sampleCount = getSampleCount();
+		
+		try(FileChannel file = FileChannel.open(Paths.get(path + ".tvb"), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+			
+			byte[] header = getHeader().getBytes(StandardCharsets.UTF_8);
+			ByteBuffer buffer = ByteBuffer.allocateDirect(Integer.max(8 + BINARY_FILE_CHUNK_SIZE * 12, 16 + header.length)).order(ByteOrder.LITTLE_ENDIAN);
+			
+			// header
+			buffer.putInt(BINARY_FILE_MAGIC_NUMBER).putInt(header.length).put(header).putInt(datasets.size()).putInt(sampleCount).flip();
+			while(buffer.hasRemaining())
+				file.write(buffer);
+			
+			StorageTimestamps.Cache timestampsCache = createTimestampsCache();
+			List<StorageFloats.Cache> caches = datasets.stream().map(Field::createCache).toList();
+			
+			for(int firstSampleNumber = 0; firstSampleNumber < sampleCount; firstSampleNumber += BINARY_FILE_CHUNK_SIZE) {
+				
+				if(Thread.interrupted())
+					return;
+				
+				int count = Integer.min(BINARY_FILE_CHUNK_SIZE, sampleCount - firstSampleNumber);
+				int lastSampleNumber = firstSampleNumber + count - 1;
+				int blockCount = (count + StorageFloats.BLOCK_SIZE - 1) / StorageFloats.BLOCK_SIZE;
+				
+				// timestamps, as runs of identical timestamps
+				LongBuffer timestamps = getTimestampsBuffer(firstSampleNumber, lastSampleNumber, timestampsCache);
+				buffer.clear();
+				buffer.putInt(count).putInt(0);
+				int runCount = 0;
+				int runLength = 0;
+				long runTimestamp = timestamps.get(0);
+				for(int i = 0; i < count; i++) {
+					long timestamp = timestamps.get(i);
+					if(timestamp != runTimestamp) {
+						buffer.putInt(runLength).putLong(runTimestamp);
+						runCount++;
+						runLength = 0;
+						runTimestamp = timestamp;
+					}
+					runLength++;
+				}
+				buffer.putInt(runLength).putLong(runTimestamp);
+				runCount++;
+				buffer.putInt(4, runCount).flip();
+				while(buffer.hasRemaining())
+					file.write(buffer);
+				
+				// samples, and the range of each block
+				for(int datasetN = 0; datasetN < datasets.size(); datasetN++) {
+					FloatBuffer samples = datasets.get(datasetN).getSamplesBuffer(firstSampleNumber, lastSampleNumber, caches.get(datasetN));
+					buffer.clear();
+					FloatBuffer floats = buffer.asFloatBuffer();
+					for(int blockN = 0; blockN < blockCount; blockN++) {
+						int start = blockN * StorageFloats.BLOCK_SIZE;
+						int end   = Integer.min(start + StorageFloats.BLOCK_SIZE, count);
+						float min = samples.get(start);
+						float max = samples.get(start);
+						for(int i = start + 1; i < end; i++) {
+							float value = samples.get(i);
+							if(value < min) min = value;
+							if(value > max) max = value;
+						}
+						floats.put(blockN, min);
+						floats.put(blockCount + blockN, max);
+					}
+					floats.position(2 * blockCount);
+					floats.put(samples);
+					buffer.limit(floats.position() * 4);
+					while(buffer.hasRemaining())
+						file.write(buffer);
+				}
+				
+				// update the progress tracker
+				completedSampleCount.addAndGet(count);
+				
+			}
+			
+		} catch(ClosedByInterruptException e) {
+			// exporting was canceled
+		} catch(Exception e) {
+			Notifications.showFailureForMilliseconds("Error while exporting file " + path + ".tvb\n" + e.getMessage(), 5000, false);
+			e.printStackTrace();
+		}
+		
+	}
+	
+	/**
+	 * Reads bytes from a file.
+	 * 
+	 * @param file         The file.
+	 * @param buffer       Where to put the bytes.
+	 * @param byteCount    Number of bytes to read.
+	 * @return             The buffer, ready to be read from.
+	 * @throws IOException    If the file ended early or could not be read.
+	 */
+	private static ByteBuffer readFully(FileChannel file, ByteBuffer buffer, int byteCount) throws IOException {
+		
+		buffer.clear().limit(byteCount);
+		while(buffer.hasRemaining())
+			if(file.read(buffer) < 0)
+				throw new IOException("The file ended early.");
+		return buffer.flip();
+		
+	}
+	
+	/**
+	 * Reads the header of a binary file.
+	 * 
+	 * @param file      The file.
+	 * @param buffer    Place to read into.
+	 * @return          The header text, or null if the file is not a binary file.
+	 * @throws IOException    If the file could not be read.
+	 */
+	private static String readBinaryHeader(FileChannel file, ByteBuffer buffer) throws IOException {
+		
+		readFully(file, buffer, 8);
+		if(buffer.getInt() != BINARY_FILE_MAGIC_NUMBER)
+			return null;
+		int headerByteCount = buffer.getInt();
+		if(headerByteCount < 0 || headerByteCount > buffer.capacity())
+			return null;
+		byte[] header = new byte[headerByteCount];
+		readFully(file, buffer, headerByteCount).get(header);
+		return new String(header, StandardCharsets.UTF_8);
+		
+	}
+	
+	private long readFirstTimestampFromBinaryFile(String path) {
+		
+		try(FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+			
+			ByteBuffer buffer = ByteBuffer.allocate(65536).order(ByteOrder.LITTLE_ENDIAN);
+			if(readBinaryHeader(file, buffer) == null)
+				throw new Exception();
+			
+			// skip the datasets count, sample count, chunk sample count and run count, then read the first run's timestamp
+			return readFully(file, buffer, 28).getLong(20);
+			
+		} catch(Exception e) {
+			
+			return Long.MAX_VALUE;
 			
 		}
 		
 	}
 	
+	private void connectToBinaryFile(String path, long firstTimestamp, long beginImportingTimestamp, AtomicLong completedByteCount) {
+		
+		receiverThread = new Thread(() -> {
+			
+			try(FileChannel file = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+				
+				setStatus(Status.CONNECTED, false);
+				previousSampleCountTimestamp = 0;
+				previousSampleCount = 0;
+				int sampleNumber = getSampleCount();
+				List<Field> datasets = getDatasetsList(); // cache a list of the datasets
+				int datasetsCount = datasets.size();
+				ByteBuffer buffer = ByteBuffer.allocateDirect(8 + BINARY_FILE_CHUNK_SIZE * 12).order(ByteOrder.LITTLE_ENDIAN);
+				
+				// sanity checks
+				String header = readBinaryHeader(file, buffer);
+				if(header == null || !isHeaderCorrect(header, datasets)) {
+					disconnect("The binary file header does not match the current data structure.", false);
+					return;
+				}
+				readFully(file, buffer, 8);
+				if(buffer.getInt() != datasetsCount) {
+					disconnect("The binary file header does not match the current data structure.", false);
+					return;
+				}
+				int fileSampleCount = buffer.getInt();
+				if(sampleNumber % BINARY_FILE_CHUNK_SIZE != 0 || fileSampleCount > Integer.MAX_VALUE - sampleNumber) {
+					disconnect("Error while parsing the binary file.", false);
+					return;
+				}
+				completedByteCount.addAndGet(16 + header.getBytes(StandardCharsets.UTF_8).length);
+				
+				int[] runLength = new int[BINARY_FILE_CHUNK_SIZE];
+				long[] runTimestamp = new long[BINARY_FILE_CHUNK_SIZE];
+				int endSampleNumber = sampleNumber + fileSampleCount;
+				
+				while(sampleNumber < endSampleNumber) {
+					
+					if(!isConnected())
+						break;
+					
+					// timestamps
+					readFully(file, buffer, 8);
+					int count = buffer.getInt();
+					int runCount = buffer.getInt();
+					if(count < 1 || count > BINARY_FILE_CHUNK_SIZE || count > endSampleNumber - sampleNumber || runCount < 1 || runCount > count)
+						throw new Exception();
+					readFully(file, buffer, runCount * 12);
+					int runsSampleCount = 0;
+					for(int runN = 0; runN < runCount; runN++) {
+						runLength[runN] = buffer.getInt();
+						runTimestamp[runN] = buffer.getLong();
+						runsSampleCount += runLength[runN];
+					}
+					if(runsSampleCount != count)
+						throw new Exception();
+					
+					// samples, and the range of each block
+					int blockCount = (count + StorageFloats.BLOCK_SIZE - 1) / StorageFloats.BLOCK_SIZE;
+					int slotOffset = sampleNumber % StorageFloats.SLOT_SIZE;
+					for(Field dataset : datasets) {
+						FloatBuffer floats = readFully(file, buffer, (2 * blockCount + count) * 4).asFloatBuffer();
+						for(int blockN = 0; blockN < blockCount; blockN++)
+							dataset.setRangeOfBlock(sampleNumber + (blockN * StorageFloats.BLOCK_SIZE), floats.get(blockN), floats.get(blockCount + blockN));
+						floats.position(2 * blockCount);
+						floats.get(dataset.getSlot(sampleNumber), slotOffset, count);
+					}
+					
+					// append the timestamps, which makes the samples visible
+					for(int runN = 0; runN < runCount; runN++) {
+						if(Connections.realtimeImporting) {
+							long delay = (runTimestamp[runN] - firstTimestamp) - (System.currentTimeMillis() - beginImportingTimestamp);
+							if(delay > 0)
+								try { Thread.sleep(delay); } catch(Exception e) { }
+						}
+						incrementSampleCountWithTimestamp(runLength[runN], runTimestamp[runN]);
+						sampleNumber += runLength[runN];
+					}
+					
+					// update the progress tracker
+					completedByteCount.addAndGet(8 + (runCount * 12) + (datasetsCount * (2 * blockCount + count) * 4));
+					
+				}
+				
+				// done
+				disconnect(null, false);
+				
+			} catch (IOException e) {
+				disconnect("Unable to read the binary file.", false);
+			} catch (Exception e) {
+				disconnect("Error while parsing the binary file.", false);
+			}
+			
+		});
+		
+		receiverThread.setPriority(Thread.MAX_PRIORITY);
+		receiverThread.setName("Binary File Import Thread");
+		receiverThread.start();
+		
+	}
+	
 	@Override public void dispose() {
 		
 		if(!isDisconnected())
@@ -1957,6 +3241,19 @@ public final class ConnectionTelemetry extends Connection {
 	 */
 	protected void startProcessingTelemetry(SharedByteStream stream) {
 		
+		receivedStream = stream;
+		if(recordRawBytes.isTrue()) {
+			String path = new SimpleDateFormat("yyyy-MM-dd HH.mm.ss").format(new Date()) + " - " + getName().replaceAll(Connections.filenameSanitizer, "") + ".tvraw";
+			try {
+				rawRecorder = new RawCapture.Recorder(path);
+				Notifications.printInfo("Recording the raw bytes received by " + getName() + " to \"" + path + "\".");
+			} catch(IOException e) {
+				rawRecorder = null;
+				Notifications.showFailureForMilliseconds("Unable to create \"" + path + "\". The raw bytes will not be recorded.", 5000, true);
+			}
+			stream.setRecorder(rawRecorder);
+		}
+		
 		processorThread = new Thread(() -> {
 			
 			// wait for the data structure to be defined
@@ -1968,8 +3265,8 @@ public final class ConnectionTelemetry extends Connection {
 				}
 			}
 			
-			// cache a list of the datasets
-			List<Field> datasets = getDatasetsList();
+			// cache a list of the datasets (derived datasets are calculated when the sample count is incremented, or by the Parsers)
+			List<Field> datasets = getPacketDatasetsList();
 			
 			// if no telemetry after 100ms, notify the user
 			String waitingForTelemetry = type == Type.UART ? getName() + " is connected. Send telemetry." :
@@ -1983,7 +3280,7 @@ public final class ConnectionTelemetry extends Connection {
 			int oldSampleCount = getSampleCount();
 			Timer t = new Timer(100, event -> {
 				
-				if(type == Type.DEMO_MODE || type == Type.STRESS_TEST)
+				if(type == Type.DEMO_MODE || type == Type.STRESS_TEST || type == Type.REPLAY)
 					return;
 				
 				if(isConnected()) {
@@ -2005,8 +3302,17 @@ public final class ConnectionTelemetry extends Connection {
 				for(Field d : datasets)
 					if(d.location.get() > maxLocation)
 						maxLocation = d.location.get();
-				float[] numberForLocation = new float[maxLocation + 1];
-				String line = null;
+				final int columnCount = maxLocation + 1;
+				final int datasetsCount = datasets.size();
+				final Field dataset[] = new Field[datasetsCount];
+				final int locationForDataset[] = new int[datasetsCount];
+				for(int i = 0; i < datasetsCount; i++) {
+					dataset[i] = datasets.get(i);
+					locationForDataset[i] = datasets.get(i).location.get();
+				}
+				
+				// parse up to 1024 lines at a time, directly from the stream's buffer
+				final float[][] rows = new float[1024][columnCount];
 				
 				while(true) {
 					
@@ -2015,25 +3321,26 @@ public final class ConnectionTelemetry extends Connection {
 						if(Thread.interrupted())
 							throw new InterruptedException();
 						
-						// read and parse each line of text
-						line = stream.readLine();
-						String[] tokens = line.split(",");
-						for(int i = 0; i < numberForLocation.length; i++)
-							numberForLocation[i] = Float.parseFloat(tokens[i]);
+						// read and parse the available lines of text
+						int rowCount = stream.readCsvRows(rows, columnCount);
 
 						int sampleNumber = getSampleCount();
-						if(sampleNumber == Integer.MAX_VALUE) {
+						if(rowCount > Integer.MAX_VALUE - sampleNumber) {
 							disconnect(maxSampleCountErrorMessage, false);
 							throw new InterruptedException();
 						}
 						
-						for(Field d : datasets)
-							d.setSample(sampleNumber, numberForLocation[d.location.get()]);
-						incrementSampleCount(1);
+						for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+							Field d = dataset[datasetN];
+							int location = locationForDataset[datasetN];
+							for(int rowN = 0; rowN < rowCount; rowN++)
+								d.setSample(sampleNumber + rowN, rows[rowN][location]);
+						}
+						incrementSampleCount(rowCount);
 						
-					} catch(NumberFormatException | NullPointerException | ArrayIndexOutOfBoundsException e1) {
+					} catch(NumberFormatException e1) {
 						
-						Notifications.showFailureForMilliseconds("A corrupt or incomplete telemetry packet was received:\n\"" + line + "\"", 5000, false);
+						Notifications.showFailureForMilliseconds("A corrupt or incomplete telemetry packet was received:\n\"" + e1.getMessage() + "\"", 5000, false);
 						
 					} catch(InterruptedException e2) {
 						
@@ -2043,16 +3350,20 @@ public final class ConnectionTelemetry extends Connection {
 					
 				}
 				
-			} else if(protocol.is(Protocol.BINARY)) {
+			} else if(protocol.get().isBinary()) {
 				
-				// prepare for binary mode
-				final Field syncWordField = fields.values().stream().filter(Field::isSyncWord).findFirst().orElse(null);
+				// prepare for binary mode or a framed mode
+				final PacketLayout layout = getPacketLayout();
 				final Field checksumField = fields.values().stream().filter(Field::isChecksum).findFirst().orElse(null);
 				final Field.Type checksumProcessor = (checksumField == null) ? null : checksumField.type.get();
-				final int syncWordByteCount = (syncWordField == null) ? 0 : syncWordField.type.get().getByteCount();
-				final byte syncWord         = (syncWordField == null) ? 0 : (byte) Integer.parseInt(syncWordField.name.get().substring(2), 16);
-				final int packetByteCount = (checksumField != null) ? checksumField.location.get() + checksumField.type.get().getByteCount() :
-				                                                      datasets.get(datasets.size() - 1).location.get() + datasets.get(datasets.size() - 1).type.get().getByteCount();
+				final Field timestampField = fields.values().stream().filter(Field::isTimestamp).findFirst().orElse(null);
+				final Field.Type timestampProcessor = (timestampField == null) ? null : timestampField.type.get();
+				final int timestampLocation = (timestampField == null) ? 0 : timestampField.location.get();
+				final long[] packetTicks = (timestampField == null) ? null : new long[1];
+				deviceClock = (timestampField == null) ? null : new DeviceClock(timestampProcessor, timestampField.getTicksPerSecond(), timestamps.getUnitsPerMillisecond());
+				final int syncWordByteCount = layout.syncWordByteCount();
+				final byte syncWord         = layout.syncWord();
+				final int packetByteCount   = layout.byteCount();
 				final int datasetsCount = datasets.size();
 				final Field dataset[] = new Field[datasetsCount];
 				final Field.Type processorForDataset[] = new Field.Type[datasetsCount];
@@ -2063,17 +3374,27 @@ public final class ConnectionTelemetry extends Connection {
 					locationForDataset[i] = datasets.get(i).location.get();
 				}
 				
-				stream.setPacketSize(packetByteCount, syncWordByteCount, syncWord);
+				if(protocol.get().isFramed())
+					stream.setFraming(packetByteCount, protocol.get()); // frames are decoded into fixed-size packets, so they can be parsed like binary mode
+				else
+					stream.setPacketSize(packetByteCount, syncWordByteCount, syncWord);
 				
-				// use multiple threads to process incoming data in parallel, with each thread parsing up to 8 blocks at a time
-				Phaser phaser = new Phaser(1);
-				int phase = -1;
-				final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
-				final int MAX_BLOCK_COUNT_PER_THREAD = 8;
-				ExecutorService pool = Executors.newFixedThreadPool(THREAD_COUNT);
-				Parser[] parsers = new Parser[THREAD_COUNT];
-				for(int i = 0; i < THREAD_COUNT; i++)
-					parsers[i] = new Parser(datasets, packetByteCount, MAX_BLOCK_COUNT_PER_THREAD, phaser, syncWordByteCount, syncWord, checksumProcessor);
+				// use multiple threads to process incoming data in parallel, with the thread count and blocks per thread adjusted to the data rate
+				// idle pool threads time out, so a slow connection doesn't keep threads around
+				// there are two banks of Parsers, so one burst of packets can be handed out while the Parsers of the previous burst are still parsing and committing
+				final int MAX_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+				ThreadPoolExecutor pool = new ThreadPoolExecutor(MAX_THREAD_COUNT, MAX_THREAD_COUNT, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+				pool.allowCoreThreadTimeOut(true);
+				CompletionRing ring = new CompletionRing(2 * MAX_THREAD_COUNT);
+				Parser[][] parsers = new Parser[2][MAX_THREAD_COUNT];
+				for(int bank = 0; bank < 2; bank++)
+					for(int i = 0; i < MAX_THREAD_COUNT; i++)
+						parsers[bank][i] = new Parser(datasets, packetByteCount, ParserScheduler.MAX_BLOCK_COUNT_PER_TASK, stream, ring, syncWordByteCount, syncWord, checksumProcessor, timestampProcessor, timestampLocation);
+				ParserScheduler scheduler = new ParserScheduler(parsers, packetByteCount);
+				parserScheduler = scheduler;
+				int bank = 0;
+				long lastSequenceNumber = -1;    // the most recent task given to a Parser
+				int dispatchedSampleNumber = 0;  // sample count after every task given to a Parser has been committed
 				
 				while(true) {
 					
@@ -2083,9 +3404,16 @@ public final class ConnectionTelemetry extends Connection {
 							throw new InterruptedException();
 						
 						SharedByteStream.DataBuffer data = stream.getBytes();
+						int firstOffset = data.offset;
+						
+						// if a Parser found a problem, the tasks after it will be skipped, and the next call to getBytes() will go back to the first packet that was not committed
+						// otherwise, the new packets follow the packets that are still being parsed
+						boolean parsersActive = stream.hasHeldBytes();
+						if(stream.isRewinding())
+							continue;
+						int sampleNumber = parsersActive ? dispatchedSampleNumber : getSampleCount();
 						
 						// ensure room exists for the new samples
-						int sampleNumber = getSampleCount();
 						int maxAllowedPacketCount = Integer.MAX_VALUE - sampleNumber;
 						int receivedPacketCount = (data.end - data.offset + 1) / packetByteCount;
 						int packetCount = Integer.min(receivedPacketCount, maxAllowedPacketCount);
@@ -2094,6 +3422,15 @@ public final class ConnectionTelemetry extends Connection {
 							throw new InterruptedException();
 						}
 						
+						// packets that are not part of a full block are parsed individually by this thread, which must be done after the Parsers have committed
+						boolean blockAligned = sampleNumber % StorageFloats.BLOCK_SIZE == 0;
+						if(parsersActive && (!blockAligned || packetCount < StorageFloats.BLOCK_SIZE)) {
+							ring.awaitCommit(lastSequenceNumber);
+							if(stream.isRewinding())
+								continue;
+							sampleNumber = getSampleCount();
+						}
+						
 						boolean abort = false;
 						
 						// part 1 of 3: process packets individually if not block aligned
@@ -2114,8 +3451,10 @@ public final class ConnectionTelemetry extends Connection {
 								float rawNumber = processorForDataset[i].parse(data.buffer, data.offset + locationForDataset[i]);
 								dataset[i].setSample(sampleNumber, rawNumber);
 							}
+							if(timestampProcessor != null)
+								packetTicks[0] = timestampProcessor.parseTicks(data.buffer, data.offset + timestampLocation);
 							data.offset += packetByteCount;
-							incrementSampleCount(1);
+							incrementSampleCount(1, packetTicks);
 							sampleNumber++;
 							samplesBeforeNextBlock--;
 							packetCount--;
@@ -2123,40 +3462,47 @@ public final class ConnectionTelemetry extends Connection {
 						}
 						
 						if(abort) {
+							scheduler.update(data.offset - firstOffset);
 							stream.releaseBytes(data);
 							continue;
 						}
 						
-						// part 2 of 3: process blocks of packets in parallel if block aligned and more than one full block remaining
+						// part 2 of 3: give blocks of packets to the Parsers if block aligned and at least one full block remaining
+						// a burst that would only fill one task is parsed by this thread, avoiding the handoff to a pool thread
+						// this thread does not wait for the Parsers, each Parser commits its blocks in order and then releases its bytes back to the stream
 						int blocksRemaining = packetCount / StorageFloats.BLOCK_SIZE;
 						if(blocksRemaining > 0) {
+							int threadCount = scheduler.getThreadCount(blocksRemaining);
+							int blockCountPerTask = scheduler.getBlockCountPerTask(blocksRemaining);
 							int threadN = 0;
-							int threadOffset = data.offset;
 							while(blocksRemaining > 0) {
 								
-								int blockCount = Integer.min(blocksRemaining, MAX_BLOCK_COUNT_PER_THREAD);
-								pool.execute(parsers[threadN].configure(data, threadOffset, blockCount, sampleNumber, phase++));
+								int blockCount = Integer.min(blocksRemaining, blockCountPerTask);
 								int threadPacketCount = blockCount * StorageFloats.BLOCK_SIZE;
+								lastSequenceNumber = ring.nextSequenceNumber();
+								stream.holdBytes(data, threadPacketCount * packetByteCount);
+								Parser parser = parsers[bank][threadN].configure(data, data.offset, blockCount, sampleNumber, lastSequenceNumber);
+								if(threadCount == 1)
+									parser.run();
+								else
+									pool.execute(parser);
 								sampleNumber += threadPacketCount;
-								threadOffset += threadPacketCount * packetByteCount;
+								data.offset += threadPacketCount * packetByteCount;
 								blocksRemaining -= blockCount;
-								threadN = (threadN + 1) % THREAD_COUNT;
+								threadN = (threadN + 1) % threadCount;
 								packetCount -= threadPacketCount;
 								
 							}
+							bank = (bank + 1) % 2;
+							dispatchedSampleNumber = sampleNumber;
 							
-							int currentPhase = phaser.awaitAdvance(phase);
-							while(currentPhase != phase + 1)
-								currentPhase = phaser.awaitAdvance(currentPhase);
-							
-							abort = getSampleCount() != sampleNumber;
-							if(abort) {
-								stream.releaseBytes(data);
-								continue;
-							}
+							// the remaining packets are combined with the next burst, so this thread can hand out more blocks while the Parsers are busy
+							scheduler.update(data.offset - firstOffset);
+							stream.releaseBytes(data);
+							continue;
 						}
 						
-						// part 3 of 3: process the rest of the packets individually if any remain after the blocks
+						// part 3 of 3: process the rest of the packets individually if less than a full block remains
 						while(packetCount > 0) {
 						
 							if(syncWordByteCount > 0 && data.buffer[data.offset] != syncWord) {
@@ -2173,18 +3519,22 @@ public final class ConnectionTelemetry extends Connection {
 								float rawNumber = processorForDataset[i].parse(data.buffer, data.offset + locationForDataset[i]);
 								dataset[i].setSample(sampleNumber, rawNumber);
 							}
+							if(timestampProcessor != null)
+								packetTicks[0] = timestampProcessor.parseTicks(data.buffer, data.offset + timestampLocation);
 							data.offset += packetByteCount;
-							incrementSampleCount(1);
+							incrementSampleCount(1, packetTicks);
 							sampleNumber++;
 							packetCount--;
 							
 						}
 						
 						// done
+						scheduler.update(data.offset - firstOffset);
 						stream.releaseBytes(data);
 					
 					} catch(InterruptedException e) {
 						
+						parserScheduler = null;
 						pool.shutdown();
 						try { pool.awaitTermination(5, TimeUnit.SECONDS); } catch (Exception e2) {}
 						return;
@@ -2353,7 +3703,9 @@ public final class ConnectionTelemetry extends Connection {
 		private int offset;                       // where in the buffer this object should start parsing
 		private int blockCount;                   // how many blocks this thread should parse
 		private int firstSampleNumber;            // which sample number the first packet corresponds to
-		private int phase = -2;                   // which phase to wait for
+		private long sequenceNumber;              // order in which this task must be committed
+		private boolean problem;                  // true if a lost sync word or bad checksum was found
+		private int goodPacketsBeforeProblem;     // number of packets parsed before the problem
 		
 		private final int datasetsCount;
 		private final Field dataset[];
@@ -2361,16 +3713,29 @@ public final class ConnectionTelemetry extends Connection {
 		private final int locationForDataset[];
 		private final float conversionFactorForDataset[];
 		
+		private final int derivedCount;
+		private final Field derived[];
+		private final FieldExpression expressionForDerived[]; // each Parser has its own, because an expression can only be evaluated by one thread at a time
+		private final float[][] derivedMinimumValue; // [blockN][derivedN]
+		private final float[][] derivedMaximumValue; // [blockN][derivedN]
+		
 		private final int packetByteCount;
 		private final float[][] minimumValue;   // [blockN][datasetN]
 		private final float[][] maximumValue;   // [blockN][datasetN]
-		private final Phaser phaser;
+		private final SharedByteStream stream;
+		private final CompletionRing ring;
 		
 		private final int syncWordByteCount;
 		private final byte syncWord;
 		private final Field.Type checksumProcessor;
 		
+		private final Field.Type timestampProcessor;
+		private final int timestampLocation;
+		private final long[] ticks;             // [packetN] device timestamp of each packet, or null if not using device timestamps
+		
 		private final Semaphore busy = new Semaphore(1);
+		private volatile long busyNanoseconds = 0;   // total time spent parsing, excluding time spent waiting for the previous thread
+		private volatile long parsedPacketCount = 0; // total number of packets parsed
 		
 		/**
 		 * Initializes this object, but does not start to parse any data.
@@ -2379,9 +3744,12 @@ public final class ConnectionTelemetry extends Connection {
 		 * @param datasets           List of Datasets that receive the parsed data.
 		 * @param packetByteCount    Number of bytes in each packet INCLUDING the sync word and optional checksum.
 		 * @param maxBlockCount      Maximum number of blocks that should be parsed by this object.
-		 * @param phaser             Phaser to await on before incrementing the sample count.
+		 * @param stream                The stream that provides the packets. Bytes are released back to it as each task is committed.
+		 * @param ring                  Orders the commits of all of the Parsers.
+		 * @param timestampProcessor    Device timestamp field type, or null if not using device timestamps.
+		 * @param timestampLocation     Byte offset of the device timestamp.
 		 */
-		public Parser(List<Field> datasets, int packetByteCount, int maxBlockCount, Phaser phaser, int syncWordByteCount, byte syncWord, Field.Type checksumProcessor) {
+		public Parser(List<Field> datasets, int packetByteCount, int maxBlockCount, SharedByteStream stream, CompletionRing ring, int syncWordByteCount, byte syncWord, Field.Type checksumProcessor, Field.Type timestampProcessor, int timestampLocation) {
 			
 			datasetsCount = datasets.size();
 			dataset = new Field[datasetsCount];
@@ -2395,110 +3763,419 @@ public final class ConnectionTelemetry extends Connection {
 				conversionFactorForDataset[i] = datasets.get(i).conversionFactor;
 			}
 			
+			// derived datasets with filters are calculated when committed, because their samples must be calculated in order
+			derived = derivedFields.stream().filter(field -> !field.isStateful()).toArray(Field[]::new);
+			derivedCount = derived.length;
+			expressionForDerived = new FieldExpression[derivedCount];
+			for(int i = 0; i < derivedCount; i++)
+				expressionForDerived[i] = new FieldExpression(derived[i].expression.get(), derived[i].compiledExpression.getInputs(), ConnectionTelemetry.this::getSampleRate);
+			derivedMinimumValue = new float[maxBlockCount][derivedCount];
+			derivedMaximumValue = new float[maxBlockCount][derivedCount];
+			
 			this.packetByteCount = packetByteCount;
 			this.minimumValue = new float[maxBlockCount][datasetsCount];
 			this.maximumValue = new float[maxBlockCount][datasetsCount];
-			this.phaser = phaser;
+			this.stream = stream;
+			this.ring = ring;
 			
 			this.syncWordByteCount = syncWordByteCount;
 			this.syncWord = syncWord;
 			this.checksumProcessor = checksumProcessor;
 			
+			this.timestampProcessor = timestampProcessor;
+			this.timestampLocation = timestampLocation;
+			this.ticks = (timestampProcessor == null) ? null : new long[maxBlockCount * StorageFloats.BLOCK_SIZE];
+			
+		}
+		
+		public Parser configure(SharedByteStream.DataBuffer data, int offset, int blockCount, int firstSampleNumber, long sequenceNumber) {
+			
+			// wait for this thread's previous configuration to be committed
+			busy.acquireUninterruptibly();
+
+			this.data              = data;
+			this.offset            = offset;
+			this.blockCount        = blockCount;
+			this.firstSampleNumber = firstSampleNumber;
+			this.sequenceNumber    = sequenceNumber;
+			
+			return this;
+			
+		}
+
+		@Override public void run() {
+			
+			long startNanoseconds = System.nanoTime();
+			float[][] slots = new float[datasetsCount][];
+			problem = false;
+			goodPacketsBeforeProblem = 0;
+				
+			// parse each packet of each block
+			for(int blockN = 0; blockN < blockCount; blockN++) {
+				
+				if(problem)
+					break;
+				
+				for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
+					slots[datasetN] = dataset[datasetN].getSlot(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE));
+				
+				int slotOffset = (firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE)) % StorageFloats.SLOT_SIZE;
+				float[] minVal = minimumValue[blockN];
+				float[] maxVal = maximumValue[blockN];
+				for(int packetN = 0; packetN < StorageFloats.BLOCK_SIZE; packetN++) {
+					
+					if(syncWordByteCount > 0 && data.buffer[offset] != syncWord) {
+						problem = true;
+						goodPacketsBeforeProblem = (blockN * StorageFloats.BLOCK_SIZE) + packetN;
+						break;
+					}
+					if(checksumProcessor != null && !checksumProcessor.testChecksum(data.buffer, offset, packetByteCount, syncWordByteCount)) {
+						problem = true;
+						goodPacketsBeforeProblem = (blockN * StorageFloats.BLOCK_SIZE) + packetN;
+						break;
+					}
+					
+					for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
+						float f = processorForDataset[datasetN].parse(data.buffer, offset + locationForDataset[datasetN]) * conversionFactorForDataset[datasetN];
+						slots[datasetN][slotOffset] = f;
+						if(packetN == 0) {
+							minVal[datasetN] = f;
+							maxVal[datasetN] = f;
+						}
+						if(f < minVal[datasetN])
+							minVal[datasetN] = f;
+						if(f > maxVal[datasetN])
+							maxVal[datasetN] = f;
+					}
+					
+					// the raw ticks are parsed in parallel, but must be converted into timestamps in order (after waiting for the previous thread)
+					if(timestampProcessor != null)
+						ticks[(blockN * StorageFloats.BLOCK_SIZE) + packetN] = timestampProcessor.parseTicks(data.buffer, offset + timestampLocation);
+					
+					offset += packetByteCount;
+					slotOffset++;
+					
+				}
+				
+				// calculate the derived datasets for the packets in this block
+				int packetCount = problem ? goodPacketsBeforeProblem - (blockN * StorageFloats.BLOCK_SIZE) : StorageFloats.BLOCK_SIZE;
+				if(packetCount > 0)
+					computeDerivedBlock(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE), packetCount, derivedMinimumValue[blockN], derivedMaximumValue[blockN]);
+			}
+			
+			// update datasets
+			for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
+				for(int blockN = 0; blockN < blockCount; blockN++)
+					dataset[datasetN].setRangeOfBlock(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE), minimumValue[blockN][datasetN], maximumValue[blockN][datasetN]);
+			for(int derivedN = 0; derivedN < derivedCount; derivedN++)
+				for(int blockN = 0; blockN < blockCount; blockN++)
+					derived[derivedN].setRangeOfBlock(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE), derivedMinimumValue[blockN][derivedN], derivedMaximumValue[blockN][derivedN]);
+			busyNanoseconds += System.nanoTime() - startNanoseconds;
+			parsedPacketCount += problem ? goodPacketsBeforeProblem : blockCount * StorageFloats.BLOCK_SIZE;
+			
+			// don't wait for the previous task, the ring will commit this task after the previous task has been committed
+			ring.complete(sequenceNumber, this);
+			
+		}
+		
+		/**
+		 * Updates the sample count, then releases this task's bytes back to the stream.
+		 * This is called by the CompletionRing, in sequence number order, one task at a time.
+		 */
+		private void commit() {
+			
+			int byteCount = packetByteCount * blockCount * StorageFloats.BLOCK_SIZE;
+			if(!problem && getSampleCount() == firstSampleNumber) {
+				// this thread and all previous threads were successful
+				derivedSampleCount = firstSampleNumber + (StorageFloats.BLOCK_SIZE * blockCount);
+				incrementSampleCount(StorageFloats.BLOCK_SIZE * blockCount, ticks);
+				stream.releaseHeldBytes(data, byteCount, -1);
+			} else if(problem && getSampleCount() == firstSampleNumber) {
+				// this thread was the first to have a problem, so the stream will go back to the problem after every task has been committed
+				derivedSampleCount = firstSampleNumber + goodPacketsBeforeProblem;
+				incrementSampleCount(goodPacketsBeforeProblem, ticks);
+				stream.releaseHeldBytes(data, byteCount, offset);
+			} else {
+				// a previous thread had a problem, so these packets will be parsed again
+				stream.releaseHeldBytes(data, byteCount, -1);
+			}
+			
+			// indicate that this thread can be configured again
+			busy.release();
+			
+		}
+		
+		/**
+		 * Calculates the derived datasets for one block. The inputs of each derived dataset have already been parsed (or calculated) for this block.
+		 * 
+		 * @param blockFirstSampleNumber    Sample number of the first packet in the block.
+		 * @param packetCount               Number of packets in the block.
+		 * @param minVal                    Receives the minimum value of each derived dataset.
+		 * @param maxVal                    Receives the maximum value of each derived dataset.
+		 */
+		private void computeDerivedBlock(int blockFirstSampleNumber, int packetCount, float[] minVal, float[] maxVal) {
+			
+			int slotOffset = blockFirstSampleNumber % StorageFloats.SLOT_SIZE;
+			for(int derivedN = 0; derivedN < derivedCount; derivedN++) {
+				List<Field> inputs = expressionForDerived[derivedN].getInputs();
+				float[][] inputSlots = new float[inputs.size()][];
+				for(int i = 0; i < inputSlots.length; i++)
+					inputSlots[i] = inputs.get(i).getSlot(blockFirstSampleNumber);
+				float[] slot = derived[derivedN].getSlot(blockFirstSampleNumber);
+				expressionForDerived[derivedN].evaluate(inputSlots, slotOffset, packetCount, slot, slotOffset);
+				float min = slot[slotOffset];
+				float max = slot[slotOffset];
+				for(int i = slotOffset + 1; i < slotOffset + packetCount; i++) {
+					if(slot[i] < min)
+						min = slot[i];
+					if(slot[i] > max)
+						max = slot[i];
+				}
+				minVal[derivedN] = min;
+				maxVal[derivedN] = max;
+			}
+			
+		}
+		
+		long getBusyNanoseconds()   { return busyNanoseconds;   }
+		long getParsedPacketCount() { return parsedPacketCount; }
+		
+	}
+	
+	/**
+	 * Binary mode: commits the Parser tasks in the order their packets were received, without making a Parser wait for the previous Parser.
+	 * 
+	 * Each task has a sequence number. When a Parser finishes, it publishes itself in the slot for its sequence number,
+	 * then commits the oldest uncommitted task and any consecutive tasks that have also finished.
+	 * If another thread is already committing, that thread will commit the newly published task, so the Parser can immediately take more work.
+	 * Each uncommitted task occupies a different Parser, so a ring with one slot per Parser can never overflow.
+	 */
+	static class CompletionRing {
+		
+		private final AtomicReferenceArray<Parser> slots;
+		private final AtomicBoolean committing = new AtomicBoolean(false);
+		private volatile long committedCount = 0;  // sequence number of the next task to commit
+		private long assignedCount = 0;            // sequence number of the next task, only used by the processing thread
+		private volatile Thread waitingThread = null;
+		
+		/**
+		 * @param parserCount    Number of Parsers.
+		 */
+		CompletionRing(int parserCount) {
+			
+			slots = new AtomicReferenceArray<Parser>(parserCount);
+			
+		}
+		
+		/**
+		 * @return    The sequence number for the next task. Only the processing thread may call this.
+		 */
+		long nextSequenceNumber() {
+			
+			return assignedCount++;
+			
+		}
+		
+		/**
+		 * Publishes a finished task, then commits as many tasks as possible.
+		 * 
+		 * @param sequenceNumber    Sequence number of the finished task.
+		 * @param parser            The Parser that finished the task.
+		 */
+		void complete(long sequenceNumber, Parser parser) {
+			
+			slots.set((int) (sequenceNumber % slots.length()), parser);
+			
+			while(committing.compareAndSet(false, true)) {
+				
+				long next = committedCount;
+				int slotN = (int) (next % slots.length());
+				Parser finished;
+				while((finished = slots.get(slotN)) != null) {
+					slots.set(slotN, null);
+					finished.commit();
+					committedCount = ++next;
+					slotN = (int) (next % slots.length());
+				}
+				committing.set(false);
+				
+				Thread waiter = waitingThread;
+				if(waiter != null)
+					LockSupport.unpark(waiter);
+				
+				// another Parser may have published the next task after it was checked but before committing was cleared
+				if(slots.get((int) (committedCount % slots.length())) == null)
+					break;
+				
+			}
+			
+		}
+		
+		/**
+		 * Blocks until a task and all previous tasks have been committed. Only the processing thread may call this.
+		 * 
+		 * @param sequenceNumber    Sequence number of the task.
+		 */
+		void awaitCommit(long sequenceNumber) {
+			
+			// an interrupt (disconnect) is only acted on after the tasks are committed, because the Parsers are using the stream's buffer
+			boolean interrupted = false;
+			waitingThread = Thread.currentThread();
+			while(committedCount <= sequenceNumber) {
+				LockSupport.park(this);
+				if(Thread.interrupted())
+					interrupted = true;
+			}
+			waitingThread = null;
+			if(interrupted)
+				Thread.currentThread().interrupt();
+			
+		}
+		
+	}
+	
+	/**
+	 * Binary mode: measurements of the Parser threads, shown in the CPU/GPU usage overlay.
+	 * 
+	 * @param bytesPerSecond          Rate of received packets, in bytes per second.
+	 * @param nanosecondsPerPacket    Smoothed time to parse one packet, or 0 if not measured yet.
+	 * @param threadCount             Number of Parser threads currently being used. 1 means the processing thread parses every block itself.
+	 * @param blockCountPerTask       Number of blocks given to each Parser for the most recent burst of packets.
+	 * @param utilization             Fraction of the time each Parser spent parsing (0-1), for every Parser that may be used.
+	 */
+	public record ParserStatistics(double bytesPerSecond, double nanosecondsPerPacket, int threadCount, int blockCountPerTask, double[] utilization) {}
+	
+	private volatile ParserScheduler parserScheduler = null; // only used while parsing binary or framed packets
+	
+	/**
+	 * @return    Measurements of the Parser threads, or null if not parsing binary or framed packets.
+	 */
+	public ParserStatistics getParserStatistics() {
+		
+		ParserScheduler scheduler = parserScheduler;
+		return (scheduler == null) ? null : scheduler.getStatistics();
+		
+	}
+	
+	/**
+	 * Binary mode: decides how the processing thread distributes blocks of packets to the Parsers.
+	 * 
+	 * The number of threads is based on the measured data rate and parse cost, so low data rates don't wake up idle threads,
+	 * and high data rates are spread across enough threads to keep up. Larger bursts give each Parser more blocks,
+	 * so less time is spent handing work to threads and waiting for the previous Parser to finish.
+	 */
+	static class ParserScheduler {
+		
+		static final int MAX_BLOCK_COUNT_PER_TASK = 32;
+		private static final long UPDATE_INTERVAL_NANOSECONDS = 250000000; // 250ms
+		private static final double TARGET_UTILIZATION = 0.5; // add threads before the existing threads become saturated
+		
+		private final Parser[][] parsers; // [bankN][threadN]
+		private final int packetByteCount;
+		private int threadCount;
+		private int blockCountPerTask = MAX_BLOCK_COUNT_PER_TASK;
+		private double nanosecondsPerPacket = 0;
+		
+		private long intervalStartNanoseconds = System.nanoTime();
+		private long intervalByteCount = 0;
+		private final long[] previousBusyNanoseconds;
+		private long previousParsedPacketCount = 0;
+		private volatile long statisticsNanoseconds = System.nanoTime();
+		private volatile ParserStatistics statistics;
+		
+		/**
+		 * @param parsers            The Parsers that may be used, in banks that are used for alternating bursts. The maximum thread count is the number of Parsers in each bank.
+		 * @param packetByteCount    Number of bytes in each packet.
+		 */
+		ParserScheduler(Parser[][] parsers, int packetByteCount) {
+			
+			this.parsers = parsers;
+			this.packetByteCount = packetByteCount;
+			threadCount = parsers[0].length; // use every thread until the parse cost has been measured
+			previousBusyNanoseconds = new long[parsers[0].length];
+			statistics = new ParserStatistics(0, 0, threadCount, blockCountPerTask, new double[parsers[0].length]);
+			
 		}
 		
-		public Parser configure(SharedByteStream.DataBuffer data, int offset, int blockCount, int firstSampleNumber, int phase) {
+		/**
+		 * @param blockCount    Number of blocks that are ready to be parsed.
+		 * @return              Number of Parsers to use for these blocks. If 1, the processing thread should parse them itself.
+		 */
+		int getThreadCount(int blockCount) {
 			
-			// wait for this thread to finish processing it's previous configuration
-			busy.acquireUninterruptibly();
-
-			this.data              = data;
-			this.offset            = offset;
-			this.blockCount        = blockCount;
-			this.firstSampleNumber = firstSampleNumber;
-			this.phase             = phase;
+			return Integer.min(threadCount, blockCount);
 			
-			return this;
+		}
+		
+		/**
+		 * @param blockCount    Number of blocks that are ready to be parsed.
+		 * @return              Number of blocks to give each Parser, so the blocks are split evenly between the Parsers.
+		 */
+		int getBlockCountPerTask(int blockCount) {
+			
+			int threads = getThreadCount(blockCount);
+			blockCountPerTask = Integer.min((blockCount + threads - 1) / threads, MAX_BLOCK_COUNT_PER_TASK);
+			return blockCountPerTask;
 			
 		}
-
-		@Override public void run() {
-				
-			float[][] slots = new float[datasetsCount][];
-			boolean problem = false;
-			int goodPacketsBeforeProblem = 0;
-				
-			// parse each packet of each block
-			for(int blockN = 0; blockN < blockCount; blockN++) {
-				
-				if(problem)
-					break;
-				
-				for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
-					slots[datasetN] = dataset[datasetN].getSlot(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE));
-				
-				int slotOffset = (firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE)) % StorageFloats.SLOT_SIZE;
-				float[] minVal = minimumValue[blockN];
-				float[] maxVal = maximumValue[blockN];
-				for(int packetN = 0; packetN < StorageFloats.BLOCK_SIZE; packetN++) {
-					
-					if(syncWordByteCount > 0 && data.buffer[offset] != syncWord) {
-						problem = true;
-						goodPacketsBeforeProblem = (blockN * StorageFloats.BLOCK_SIZE) + packetN;
-						break;
-					}
-					if(checksumProcessor != null && !checksumProcessor.testChecksum(data.buffer, offset, packetByteCount, syncWordByteCount)) {
-						problem = true;
-						goodPacketsBeforeProblem = (blockN * StorageFloats.BLOCK_SIZE) + packetN;
-						break;
-					}
-					
-					for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
-						float f = processorForDataset[datasetN].parse(data.buffer, offset + locationForDataset[datasetN]) * conversionFactorForDataset[datasetN];
-						slots[datasetN][slotOffset] = f;
-						if(packetN == 0) {
-							minVal[datasetN] = f;
-							maxVal[datasetN] = f;
-						}
-						if(f < minVal[datasetN])
-							minVal[datasetN] = f;
-						if(f > maxVal[datasetN])
-							maxVal[datasetN] = f;
-					}
-					
-					offset += packetByteCount;
-					slotOffset++;
-					
-				}
-			}
+		
+		/**
+		 * Called by the processing thread each time packets are received. Periodically re-calculates the number of threads to use.
+		 * 
+		 * @param byteCount    Number of bytes received.
+		 */
+		void update(int byteCount) {
 			
-			// update datasets
-			for(int datasetN = 0; datasetN < datasetsCount; datasetN++)
-				for(int blockN = 0; blockN < blockCount; blockN++)
-					dataset[datasetN].setRangeOfBlock(firstSampleNumber + (blockN * StorageFloats.BLOCK_SIZE), minimumValue[blockN][datasetN], maximumValue[blockN][datasetN]);
+			intervalByteCount += byteCount;
+			long now = System.nanoTime();
+			long elapsed = now - intervalStartNanoseconds;
+			if(elapsed < UPDATE_INTERVAL_NANOSECONDS)
+				return;
 			
-			// wait for previous thread to finish
-			if(phase >= 0) {
-				int currentPhase = phaser.awaitAdvance(phase);
-				while(currentPhase != phase + 1)
-					currentPhase = phaser.awaitAdvance(currentPhase);
+			// measure the parse cost and utilization, each thread uses the Parser with the same index in each bank
+			double[] utilization = new double[parsers[0].length];
+			long busyNanoseconds = 0;
+			long parsedPacketCount = 0;
+			for(int i = 0; i < parsers[0].length; i++) {
+				long busy = 0;
+				for(Parser[] bank : parsers) {
+					busy += bank[i].getBusyNanoseconds();
+					parsedPacketCount += bank[i].getParsedPacketCount();
+				}
+				utilization[i] = (double) (busy - previousBusyNanoseconds[i]) / elapsed;
+				busyNanoseconds += busy - previousBusyNanoseconds[i];
+				previousBusyNanoseconds[i] = busy;
+			}
+			long newlyParsedPacketCount = parsedPacketCount - previousParsedPacketCount;
+			previousParsedPacketCount = parsedPacketCount;
+			if(newlyParsedPacketCount > 0) {
+				double cost = (double) busyNanoseconds / newlyParsedPacketCount;
+				nanosecondsPerPacket = (nanosecondsPerPacket == 0) ? cost : (0.8 * nanosecondsPerPacket) + (0.2 * cost);
 			}
 			
-			// update the offset and sample count
-			if(!problem && getSampleCount() == firstSampleNumber) {
-				// this thread and all previous threads were successful
-				data.offset += packetByteCount * blockCount * StorageFloats.BLOCK_SIZE;
-				incrementSampleCount(StorageFloats.BLOCK_SIZE * blockCount);
-			} else if(problem && getSampleCount() == firstSampleNumber) {
-				// this thread was the first to have a problem
-				data.offset += goodPacketsBeforeProblem * packetByteCount;
-				incrementSampleCount(goodPacketsBeforeProblem);
-			} else {
-				// a previous thread had a problem, so do nothing
+			// use enough threads to keep each of them at most half busy
+			double bytesPerSecond = intervalByteCount * 1000000000.0 / elapsed;
+			if(nanosecondsPerPacket > 0) {
+				double threadsNeeded = (bytesPerSecond / packetByteCount) * (nanosecondsPerPacket / 1000000000.0) / TARGET_UTILIZATION;
+				threadCount = Math.clamp((long) Math.ceil(threadsNeeded), 1, parsers[0].length);
 			}
 			
-			// indicate that this thread has finished
-			phaser.arrive();
-			busy.release();
+			statistics = new ParserStatistics(bytesPerSecond, nanosecondsPerPacket, threadCount, blockCountPerTask, utilization);
+			statisticsNanoseconds = now;
+			intervalStartNanoseconds = now;
+			intervalByteCount = 0;
+			
+		}
+		
+		/**
+		 * @return    The most recent measurements. If no packets have been received recently, the rate and utilization are reported as zero.
+		 */
+		ParserStatistics getStatistics() {
+			
+			ParserStatistics stats = statistics;
+			if(System.nanoTime() - statisticsNanoseconds > 2 * UPDATE_INTERVAL_NANOSECONDS)
+				stats = new ParserStatistics(0, stats.nanosecondsPerPacket(), stats.threadCount(), stats.blockCountPerTask(), new double[parsers[0].length]);
+			return stats;
 			
 		}
 		
@@ -2513,13 +4190,45 @@ public final class ConnectionTelemetry extends Connection {
 			processorThread.interrupt();
 			while(processorThread.isAlive()); // wait
 		}
+		if(receivedStream != null)
+			receivedStream.dispose();
+		if(rawRecorder != null) {
+			rawRecorder.close();
+			rawRecorder = null;
+		}
+		
+	}
+	
+	private volatile SharedByteStream receivedStream = null;
+	
+	/**
+	 * @return    Total number of received bytes that were discarded because the processing thread could not keep up.
+	 */
+	public long getDroppedByteCount() {
+		
+		SharedByteStream stream = receivedStream;
+		return (stream == null) ? 0 : stream.getDroppedByteCount();
+		
+	}
+	
+	/**
+	 * @return    Total number of received bytes that were temporarily saved to disk because the processing thread could not keep up.
+	 */
+	public long getSpilledByteCount() {
+		
+		SharedByteStream stream = receivedStream;
+		return (stream == null) ? 0 : stream.getSpilledByteCount();
 		
 	}
 	
 	private AtomicInteger sampleCount = new AtomicInteger(0);
+	private int derivedSampleCount = 0; // number of samples that have been calculated for the derived datasets without filters, this may be ahead of the sample count if a Parser calculated them
 	private StorageTimestamps timestamps = new StorageTimestamps(this);
+	private TimeIndex timeIndex = new TimeIndex(timestamps);
 	private long firstTimestamp = 0;
 	private long lastTimestamp = 0;
+	private long lastTimestampInUnits = Long.MIN_VALUE; // in units of the timestamps resolution, so new timestamps never move backwards
+	private DeviceClock deviceClock = null; // only used if the data structure has a timestamp field
 	
 	public StorageTimestamps.Cache createTimestampsCache() {
 		
@@ -2531,28 +4240,208 @@ public final class ConnectionTelemetry extends Connection {
 		
 		timestamps.clear();
 		sampleCount.set(0);
+		derivedSampleCount = 0;
 		firstTimestamp = 0;
 		lastTimestamp = 0;
+		lastTimestampInUnits = Long.MIN_VALUE;
+		MergedTimeRange.rebuild();
+		
+	}
+	
+	/**
+	 * Calculates the new samples of each derived dataset, unless the Parsers already did.
+	 * Derived datasets with filters are always calculated here, because their samples must be calculated in order.
+	 * Call this function after all other datasets have received new values, but before indexing the Bitfields or incrementing the sample count.
+	 * 
+	 * @param amount    How many new samples were added.
+	 */
+	private void computeDerivedFields(int amount) {
+		
+		if(derivedFields.isEmpty())
+			return;
+		
+		int firstSampleNumber = sampleCount.get();
+		int endSampleNumber = firstSampleNumber + amount;
+		for(Field field : derivedFields) {
+			int start = field.isStateful() ? firstSampleNumber : Integer.max(firstSampleNumber, derivedSampleCount);
+			if(start < endSampleNumber)
+				field.computeDerivedSamples(start, endSampleNumber - start);
+		}
+		derivedSampleCount = Integer.max(derivedSampleCount, endSampleNumber);
+		
+	}
+	
+	/**
+	 * Appends the new samples to the transition index of each Bitfield.
+	 * Call this function after all datasets have received new values, but before incrementing the sample count.
+	 * 
+	 * @param amount    How many new samples were added.
+	 */
+	private void indexBitfields(int amount) {
+		
+		int firstSampleNumber = sampleCount.get();
+		for(Field field : fields.values())
+			if(field.isBitfield)
+				field.indexBitfields(firstSampleNumber, amount);
+		
+	}
+	
+	/**
+	 * Appends the new samples to the downsampled streams of each dataset.
+	 * Call this function after all datasets have received new values, but before incrementing the sample count.
+	 * 
+	 * @param amount    How many new samples were added.
+	 */
+	private void updateDownsampledStreams(int amount) {
+		
+		int endSampleNumber = sampleCount.get() + amount;
+		for(Field field : fields.values())
+			if(field.isDataset())
+				field.updateDownsampledStreams(endSampleNumber);
+		for(Field field : derivedFields)
+			field.updateDownsampledStreams(endSampleNumber);
 		
 	}
 	
 	/**
-	 * Increments the sample count and sets the timestamp(s) to the current time.
+	 * Increments the sample count and sets the timestamp(s) based on the current time.
 	 * Call this function after all datasets have received new values from a *live* connection.
 	 * 
+	 * With millisecond timestamps, every sample in the batch gets the current time.
+	 * With microsecond or nanosecond timestamps, the batch was still received all at once, so the samples are spread out (using the sample rate) to end at the current time,
+	 * but not before the previous batch. This is only an estimate: use a timestamp field if the device can provide the exact time of each sample.
+	 * 
 	 * @param amount    How many new samples were added.
 	 */
 	private void incrementSampleCount(int amount) {
 		
-		long timestamp = System.currentTimeMillis();
-		timestamps.appendTimestamps(timestamp, amount);
+		long now = timestamps.getCurrentTimestamp();
+		long unitsPerMillisecond = timestamps.getUnitsPerMillisecond();
+		long unitsPerSample = (unitsPerMillisecond == 1) ? 0 : 1000 * unitsPerMillisecond / getSampleRate();
+		long earliest  = (lastTimestampInUnits == Long.MIN_VALUE) ? now : lastTimestampInUnits; // the first batch is not spread out, because it may have been buffered before connecting
+		long timestamp = Long.max(now, earliest);
+		long first     = timestamps.appendSpreadTimestamps(timestamp, earliest, unitsPerSample, amount);
+		lastTimestampInUnits = timestamp;
+		
+		computeDerivedFields(amount);
+		indexBitfields(amount);
+		updateDownsampledStreams(amount);
+		int oldSampleCount = sampleCount.getAndAdd(amount);
+		if(oldSampleCount == 0) {
+			firstTimestamp = first / unitsPerMillisecond;
+			Connections.GUI.redraw();
+		}
+		lastTimestamp = timestamp / unitsPerMillisecond;
+		MergedTimeRange.extend(firstTimestamp, lastTimestamp);
+		
+	}
+	
+	/**
+	 * Increments the sample count and sets the timestamps based on the device's clock.
+	 * Call this function after all datasets have received new values from a *live* connection.
+	 * 
+	 * @param amount         How many new samples were added.
+	 * @param deviceTicks    Device timestamp (in ticks) for each new sample, or null to use the current time instead.
+	 */
+	private void incrementSampleCount(int amount, long[] deviceTicks) {
+		
+		if(deviceTicks == null || deviceClock == null) {
+			incrementSampleCount(amount);
+			return;
+		}
+		if(amount == 0)
+			return;
+		
+		long now = timestamps.getCurrentTimestamp();
+		long first = deviceClock.getTimestamp(deviceTicks[0], now);
+		long timestamp = first;
+		timestamps.appendTimestamps(first, 1);
+		for(int i = 1; i < amount; i++) {
+			timestamp = deviceClock.getTimestamp(deviceTicks[i], now);
+			timestamps.appendTimestamps(timestamp, 1);
+		}
+		lastTimestampInUnits = timestamp;
 		
+		computeDerivedFields(amount);
+		indexBitfields(amount);
+		updateDownsampledStreams(amount);
 		int oldSampleCount = sampleCount.getAndAdd(amount);
 		if(oldSampleCount == 0) {
-			firstTimestamp = timestamp;
+			firstTimestamp = first / timestamps.getUnitsPerMillisecond();
 			Connections.GUI.redraw();
 		}
-		lastTimestamp = timestamp;
+		lastTimestamp = timestamp / timestamps.getUnitsPerMillisecond();
+		MergedTimeRange.extend(firstTimestamp, lastTimestamp);
+		
+	}
+	
+	/**
+	 * Converts device timestamps (in ticks) into UNIX timestamps (in units of the StorageTimestamps resolution.)
+	 * The first device timestamp is aligned to the computer's clock, then later timestamps are offset by the number of elapsed ticks.
+	 * If the device's clock drifts too far from the computer's clock (or the device resets), the device timestamps are aligned to the computer's clock again.
+	 */
+	static class DeviceClock {
+		
+		private static final long MAX_DRIFT_MILLISECONDS = 10000;
+		
+		private final double unitsPerTick;
+		private final long maxDrift;             // in units
+		private final long wraparound;           // number of ticks before the device's counter wraps around, or 0 if it never wraps around
+		private boolean aligned = false;
+		private long previousTicks;              // unwrapped
+		private long anchorTicks;                // unwrapped
+		private long anchorTimestamp;
+		private long previousTimestamp;
+		
+		/**
+		 * @param timestampProcessor    The timestamp field type.
+		 * @param ticksPerSecond        Number of device ticks per second.
+		 * @param unitsPerMillisecond   Resolution of the UNIX timestamps.
+		 */
+		DeviceClock(Field.Type timestampProcessor, double ticksPerSecond, long unitsPerMillisecond) {
+			
+			unitsPerTick = 1000.0 * unitsPerMillisecond / ticksPerSecond;
+			maxDrift = MAX_DRIFT_MILLISECONDS * unitsPerMillisecond;
+			wraparound = timestampProcessor.getTicksWraparound();
+			
+		}
+		
+		/**
+		 * Converts the next device timestamp. Device timestamps must be provided in the order they were received.
+		 * 
+		 * @param ticks    Device timestamp.
+		 * @param now      Current UNIX timestamp (in units), used to align the device's clock to the computer's clock.
+		 * @return         The corresponding UNIX timestamp. This is always >= the previously returned timestamp.
+		 */
+		long getTimestamp(long ticks, long now) {
+			
+			// unwrap: a counter that wraps around is assumed to have wrapped around if it moved backwards
+			if(aligned && wraparound != 0) {
+				ticks += previousTicks - Math.floorMod(previousTicks, wraparound);
+				if(ticks < previousTicks)
+					ticks += wraparound;
+			}
+			previousTicks = ticks;
+			
+			long timestamp = anchorTimestamp + Math.round((ticks - anchorTicks) * unitsPerTick);
+			if(!aligned || Math.abs(timestamp - now) > maxDrift) {
+				if(aligned)
+					Notifications.showFailureForMilliseconds("The device timestamps drifted more than " + (MAX_DRIFT_MILLISECONDS / 1000) + " seconds from this computer's clock, so they have been re-aligned. Check the number of timestamp ticks per second, or if the device was reset.", 5000, false);
+				anchorTicks = ticks;
+				anchorTimestamp = now;
+				timestamp = now;
+				if(!aligned)
+					previousTimestamp = now;
+				aligned = true;
+			}
+			
+			// timestamps must never move backwards
+			if(timestamp < previousTimestamp)
+				timestamp = previousTimestamp;
+			previousTimestamp = timestamp;
+			return timestamp;
+			
+		}
 		
 	}
 	
@@ -2561,30 +4450,53 @@ public final class ConnectionTelemetry extends Connection {
 	 * Call this function after all datasets have received new values from an *imported* connection.
 	 * 
 	 * @param amount       How many new samples were added.
-	 * @param timestamp    The timestamp to use for those samples.
+	 * @param timestamp    The timestamp (in milliseconds) to use for those samples.
 	 */
 	public void incrementSampleCountWithTimestamp(int amount, long timestamp) {
 		
-		timestamps.appendTimestamps(timestamp, amount);
+		timestamps.appendTimestamps(timestamp * timestamps.getUnitsPerMillisecond(), amount);
+		lastTimestampInUnits = timestamp * timestamps.getUnitsPerMillisecond();
 		
+		computeDerivedFields(amount);
+		indexBitfields(amount);
+		updateDownsampledStreams(amount);
 		int oldSampleCount = sampleCount.getAndAdd(amount);
 		if(oldSampleCount == 0) {
 			firstTimestamp = timestamp;
 			Connections.GUI.redraw();
 		}
 		lastTimestamp = timestamp;
+		MergedTimeRange.extend(firstTimestamp, lastTimestamp);
 		
 	}
 	
 	public int getClosestSampleNumberAtOrBefore(long timestamp, int maxSampleNumber) {
 		
-		return timestamps.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
+		return timeIndex.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
 		
 	}
 	
 	public int getClosestSampleNumberAfter(long timestamp) {
 		
-		return timestamps.getClosestSampleNumberAfter(timestamp);
+		return timeIndex.getClosestSampleNumberAfter(timestamp);
+		
+	}
+	
+	/**
+	 * Starts memoizing the timestamp-to-sample-number conversions requested by the calling thread. OpenGLCharts.display() calls this before each frame.
+	 */
+	public void startFrame() {
+		
+		timeIndex.startFrame();
+		
+	}
+	
+	/**
+	 * @return    Number of timestamp-to-sample-number conversions requested during the previous frame, and how many of them needed a lookup.
+	 */
+	public TimeIndex.Statistics getTimeIndexStatistics() {
+		
+		return timeIndex.getStatistics();
 		
 	}
 	
@@ -2621,6 +4533,22 @@ public final class ConnectionTelemetry extends Connection {
 		
 	}
 	
+	/**
+	 * Gets the timestamp for one specific sample, relative to some other timestamp.
+	 * 
+	 * @param sampleNumber    Which sample to check.
+	 * @param plotMinX        UNIX timestamp to subtract.
+	 * @return                Milliseconds from plotMinX to the sample, including any fraction of a millisecond.
+	 */
+	public float getTimestampRelativeTo(int sampleNumber, long plotMinX) {
+		
+		if(sampleNumber < 0)
+			return firstTimestamp - plotMinX;
+		
+		return timestamps.getTimestampRelativeTo(sampleNumber, plotMinX);
+		
+	}
+	
 	public FloatBuffer getTimestampsBuffer(int firstSampleNumber, int lastSampleNumber, long plotMinX, StorageTimestamps.Cache cache) {
 		
 		return timestamps.getTampstamps(firstSampleNumber, lastSampleNumber, plotMinX, cache);
@@ -2633,6 +4561,18 @@ public final class ConnectionTelemetry extends Connection {
 		
 	}
 	
+	/**
+	 * Prepares to read the samples of several datasets as columns, for analysis code that needs to process long ranges of samples.
+	 * 
+	 * @param datasets    The datasets, in the order of the columns.
+	 * @return            A query for those datasets. It is NOT thread-safe, so each thread should create its own query.
+	 */
+	public ColumnQuery query(List<Field> datasets) {
+		
+		return new ColumnQuery(this, datasets);
+		
+	}
+	
 	/**
 	 * @return    The current number of samples stored in the Datasets.
 	 */
@@ -2647,7 +4587,42 @@ public final class ConnectionTelemetry extends Connection {
 	 */
 	public int getDatasetCount() {
 		
-		return (int) fields.values().stream().filter(Field::isDataset).count();
+		return packetDatasetsList.size();
+		
+	}
+	
+	/**
+	 * Binary mode: the size and sync word of each packet.
+	 */
+	record PacketLayout(int byteCount, int syncWordByteCount, byte syncWord) {}
+	
+	/**
+	 * Binary mode: gets the packet size and sync word of the data structure. The data structure must already be defined.
+	 * 
+	 * @return    The packet layout.
+	 */
+	PacketLayout getPacketLayout() {
+		
+		return packetLayout;
+		
+	}
+	
+	/**
+	 * Binary mode: determines the packet size and sync word from the data structure.
+	 * 
+	 * @return    The packet layout, or null if the data structure is empty.
+	 */
+	private PacketLayout createPacketLayout() {
+		
+		if(fields.isEmpty())
+			return null;
+		
+		Field syncWordField = fields.values().stream().filter(Field::isSyncWord).findFirst().orElse(null);
+		Field lastField = fields.lastEntry().getValue(); // the checksum if it exists, otherwise the last dataset or timestamp
+		int syncWordByteCount = (syncWordField == null) ? 0 : syncWordField.type.get().getByteCount();
+		byte syncWord         = (syncWordField == null) ? 0 : (byte) Integer.parseInt(syncWordField.name.get().substring(2), 16);
+		int packetByteCount = lastField.location.get() + lastField.type.get().getByteCount();
+		return new PacketLayout(packetByteCount, syncWordByteCount, syncWord);
 		
 	}
 	
@@ -2657,13 +4632,14 @@ public final class ConnectionTelemetry extends Connection {
 	 */
 	private Field getDatasetByIndex(int index) {
 		
-		return fields.values().stream().filter(Field::isDataset).toList().get(index);
+		return packetDatasetsList.get(index);
 		
 	}
 	
 	private Field getFieldByIndex(int index) {
 		
-		return fields.values().stream().toList().get(index);
+		return (index < fields.size()) ? fields.values().stream().toList().get(index) :
+		                                 derivedFields.get(index - fields.size());
 		
 	}
 	
@@ -2685,13 +4661,23 @@ public final class ConnectionTelemetry extends Connection {
 	 */
 	public String isFieldAllowed(Field field, int newLocation, Field.Type newType) {
 		
+		// derived datasets are not in the packet, so their location is -1 (their expression is imported after their location and type)
+		if(field.isDerived() || newLocation == -1)
+			return (newType.isDataset() && !newType.toString().contains("Bitfield")) ? null : "A derived dataset can not be a bitfield, sync word, timestamp or checksum.";
+		
 		Field existingSyncWord = fields.values().stream().filter(Field::isSyncWord).findFirst().orElse(null);
 		Field existingChecksum = fields.values().stream().filter(Field::isChecksum).findFirst().orElse(null);
+		Field existingTimestamp = fields.values().stream().filter(Field::isTimestamp).findFirst().orElse(null);
 		int syncWordByteCount = existingSyncWord == null ? 0 : existingSyncWord.type.get().getByteCount();
+		List<Field> datasetsAndTimestamp = fields.values().stream().filter(existingField -> existingField.isDataset() || existingField.isTimestamp()).toList();
+		boolean isDatasetOrTimestamp = newType.isDataset() || newType.isTimestamp();
 		
 		if(newType.isSyncWord() && protocol.is(Protocol.CSV))
 			return "CSV mode does not support sync words.";
 		
+		if(newType.isSyncWord() && protocol.get().isFramed())
+			return "Framed modes do not need a sync word.";
+		
 		if(newType.isSyncWord() && existingSyncWord != null && field != existingSyncWord)
 			return "A sync word has already been defined.";
 		
@@ -2704,16 +4690,22 @@ public final class ConnectionTelemetry extends Connection {
 		if(newType.isDataset() && protocol.is(Protocol.CSV) && fields.values().stream().anyMatch(existingField -> (existingField.location.is(newLocation)) && (existingField != field)))
 			return "A dataset already exists at column " + newLocation + ".";
 		
-		if(newType.isDataset() && protocol.is(Protocol.BINARY) && existingSyncWord != null && existingSyncWord != field && newLocation < existingSyncWord.type.get().getByteCount())
+		if(newType.isTimestamp() && protocol.is(Protocol.CSV))
+			return "CSV mode does not support device timestamps.";
+		
+		if(newType.isTimestamp() && existingTimestamp != null && existingTimestamp != field)
+			return "A timestamp field has already been defined.";
+		
+		if(isDatasetOrTimestamp && protocol.get().isBinary() && existingSyncWord != null && existingSyncWord != field && newLocation < existingSyncWord.type.get().getByteCount())
 			return "Can not place a dataset that overlaps with the sync word.";
 		
-		if(newType.isDataset() && protocol.is(Protocol.BINARY) && existingChecksum != null && existingChecksum != field && (newLocation + newType.getByteCount() - 1 >= existingChecksum.location.get()))
+		if(isDatasetOrTimestamp && protocol.get().isBinary() && existingChecksum != null && existingChecksum != field && (newLocation + newType.getByteCount() - 1 >= existingChecksum.location.get()))
 			return "Can not place a dataset that overlaps with the checksum or is placed after the checksum.";
 		
-		if(newType.isDataset() && protocol.is(Protocol.BINARY)) {
+		if(isDatasetOrTimestamp && protocol.get().isBinary()) {
 			int proposedStartByte = newLocation;
 			int proposedEndByte = proposedStartByte + newType.getByteCount() - 1;
-			for(Field dataset : getDatasetsList()) {
+			for(Field dataset : datasetsAndTimestamp) {
 				if(dataset == field && dataset.location.get() == newLocation && dataset.type.get().getByteCount() >= newType.getByteCount())
 					return null; // same dataset and location, occupying the same or less space, so allow it
 				int existingStartByte = dataset.location.get();
@@ -2736,7 +4728,7 @@ public final class ConnectionTelemetry extends Connection {
 		if(newType.isChecksum() && newLocation == syncWordByteCount)
 			return "A checksum field can only be placed at the end of a packet.";
 		
-		if(newType.isChecksum() && getDatasetsList().stream().anyMatch(dataset -> newLocation <= dataset.location.get() + dataset.type.get().getByteCount() - 1))
+		if(newType.isChecksum() && datasetsAndTimestamp.stream().anyMatch(dataset -> newLocation <= dataset.location.get() + dataset.type.get().getByteCount() - 1))
 			return "A checksum field can only be placed at the end of a packet.";
 		
 		if(newType.isChecksum() && (newLocation - syncWordByteCount) % newType.getByteCount() != 0)
@@ -2749,24 +4741,66 @@ public final class ConnectionTelemetry extends Connection {
 	
 	private void removeAllFields() {
 		
+		derivedFields.reversed().forEach(field -> removeDerivedField(field)); // reversed so each dataset is removed before its inputs
 		fields.values().stream().toList().forEach(field -> removeField(field.location.get())); // toList() to prevent a ConcurrentModificationException
 		setFieldsDefined(false);
 		
 	}
 	
+	/**
+	 * @return    The datasets received in each packet or CSV line, followed by the derived datasets.
+	 */
 	public List<Field> getDatasetsList() {
 		
-		return fields.values().stream().filter(Field::isDataset).toList();
+		return datasetsList;
+		
+	}
+	
+	/**
+	 * @return    The datasets received in each packet or CSV line, without the derived datasets.
+	 */
+	public List<Field> getPacketDatasetsList() {
+		
+		return packetDatasetsList;
+		
+	}
+	
+	/**
+	 * Rebuilds the lists returned by getDatasetsList() and getPacketDatasetsList(), and the layout returned by getPacketLayout(). This MUST be called after any change to the fields or derived fields.
+	 */
+	private void updateDatasetsLists() {
+		
+		packetDatasetsList = fields.values().stream().filter(Field::isDataset).toList();
+		datasetsList = Stream.concat(packetDatasetsList.stream(), derivedFields.stream()).toList();
+		packetLayout = createPacketLayout();
+		updateSequenceCounter();
 		
 	}
 	
 	/**
-	 * @param field    The data type being inserted. Could be a sync word, dataset, or checksum.
+	 * @param field    The data type being inserted. Could be a sync word, dataset, timestamp, or checksum.
 	 * @return         null on success, or a user-friendly String describing why the field could not be added.
 	 */
 	public String insertField(Field field) {
 		
+		if(field.isDerived()) {
+			if(field.name.get().isEmpty())
+				return "A dataset name is required.";
+			try {
+				field.compiledExpression = new FieldExpression(field.expression.get(), getDatasetsList(), this::getSampleRate);
+			} catch(IllegalArgumentException e) {
+				return e.getMessage();
+			}
+			field.location.set(-1); // not in the packet
+			derivedFields.add(field);
+			updateDatasetsLists();
+			removeAllData(); // remove any existing samples, because every dataset must contain samples for every sample number
+			return null;
+		}
+		
 		// sanity checks
+		if(field.location.is(-1))
+			return "The data structure is full.";
 		String errorMessage = isFieldAllowed(field, field.location.get(), field.type.get());
 		if(errorMessage != null)
 			return errorMessage;
@@ -2780,14 +4814,21 @@ public final class ConnectionTelemetry extends Connection {
 			} catch(NumberFormatException e) {
 				return "Invalid sync word.";
 			}
+		
+		if(field.isTimestamp() && field.getTicksPerSecond() == 0)
+			return "The number of timestamp ticks per second must be a positive number.";
 			
 		// insert
 		fields.put(field.location.get(), field);
+		updateDatasetsLists();
 		if(field.isSyncWord()) {
 			return null;
 		} else if(field.isDataset()) {
 			removeAllData(); // remove any existing samples, because every dataset must contain samples for every sample number
 			return null;
+		} else if(field.isTimestamp()) {
+			removeAllData(); // remove any existing samples, because their timestamps came from a different clock
+			return null;
 		} else if(field.isChecksum()) {
 			return null;
 		} else {
@@ -2809,11 +4850,15 @@ public final class ConnectionTelemetry extends Connection {
 		// ensure the configure panel isn't open
 		Configure.GUI.close();
 		
+		// remove any derived datasets that use the dataset
+		derivedFields.stream().filter(derived -> derived.dependsOn(field)).toList().forEach(derived -> removeDerivedField(derived));
+		
 		// remove any charts referencing the dataset
 		Charts.removeIf(chart -> chart.datasets.contains(field) || (chart.trigger != null && chart.trigger.datasets.contains(field)));
 		
 		// remove the dataset
 		fields.remove(location);
+		updateDatasetsLists();
 		if(field.isDataset())
 			field.floats.dispose();
 		
@@ -2832,6 +4877,30 @@ public final class ConnectionTelemetry extends Connection {
 		
 	}
 	
+	/**
+	 * @param field    A derived dataset to remove. Any derived datasets that use it will also be removed.
+	 */
+	private void removeDerivedField(Field field) {
+		
+		if(!derivedFields.contains(field))
+			return; // already removed
+		
+		// ensure the configure panel isn't open
+		Configure.GUI.close();
+		
+		// remove any derived datasets that use the dataset
+		derivedFields.stream().filter(derived -> derived.dependsOn(field)).toList().forEach(derived -> removeDerivedField(derived));
+		
+		// remove any charts referencing the dataset
+		Charts.removeIf(chart -> chart.datasets.contains(field) || (chart.trigger != null && chart.trigger.datasets.contains(field)));
+		
+		// remove the dataset
+		derivedFields.remove(field);
+		updateDatasetsLists();
+		field.floats.dispose();
+		
+	}
+	
 	/**
 	 * @return    The first unoccupied CSV column number or byte offset, or -1 if they are all occupied.
 	 */
@@ -2858,10 +4927,21 @@ public final class ConnectionTelemetry extends Connection {
 
 	@Override public void importFrom(Connections.QueueOfLines lines) throws AssertionError {
 		
-		configWidgets.stream().skip(1).forEach(widget -> widget.importFrom(lines));
+		// settings files from before these settings existed do not contain them, so keep the defaults if their lines are missing
+		Map<Widget, String> newerSettings = Map.of(sequenceNumberLocation, "sequence number location = ",
+		                                           packetType,             "packet type = ",
+		                                           timestampResolution,    "timestamp resolution = ",
+		                                           overflowPolicy,         "overflow policy = ",
+		                                           recordRawBytes,         "record raw bytes = ");
+		configWidgets.stream().skip(1).forEach(widget -> {
+			String prefix = newerSettings.get(widget);
+			if(prefix == null || (lines.peek() != null && lines.peek().startsWith(prefix)))
+				widget.importFrom(lines);
+		});
 
 		boolean importTxSettings = (type != Type.DEMO_MODE)   &&
 		                           (type != Type.STRESS_TEST) &&
+		                           (type != Type.REPLAY)      &&
 		                           !protocol.is(Protocol.TC66);
 		if(importTxSettings) {
 			if(type == Type.UDP) {
@@ -2882,7 +4962,7 @@ public final class ConnectionTelemetry extends Connection {
 			while(saveCount-- > 0) {
 				WidgetButton packet = new WidgetButton("");
 				packet.importFrom(lines);
-				packet.onClick(button -> transmitQueue.add(button.getBytes()));
+				packet.onClick(button -> transmit(button.getBytes()));
 				packet.onRemove(button -> { transmitSavedPackets.remove(button); Settings.GUI.redraw(); });
 				transmitSavedPackets.add(packet);
 			}
@@ -2910,6 +4990,7 @@ public final class ConnectionTelemetry extends Connection {
 		
 		boolean exportTxSettings = (type != Type.DEMO_MODE)   &&
 		                           (type != Type.STRESS_TEST) &&
+		                           (type != Type.REPLAY)      &&
 		                           !protocol.is(Protocol.TC66);
 		if(exportTxSettings) {
 			if(type == Type.UDP) {
@@ -2932,8 +5013,9 @@ public final class ConnectionTelemetry extends Connection {
 		                       type != Type.STRESS_TEST;
 		
 		if(exportFields) {
-			file.println("\tfield count = " + fields.size());
+			file.println("\tfield count = " + (fields.size() + derivedFields.size()));
 			fields.values().stream().forEach(dataset -> dataset.exportTo(file));
+			derivedFields.forEach(dataset -> dataset.exportTo(file));
 		}
 		
 		file.println("");
@@ -2942,18 +5024,19 @@ public final class ConnectionTelemetry extends Connection {
 	
 	@Override public JPanel getUpdatedTransmitGUI() {
 		
-		if(Connections.importing || type == Type.DEMO_MODE || type == Type.STRESS_TEST)
+		if(Connections.importing || type == Type.DEMO_MODE || type == Type.STRESS_TEST || type == Type.REPLAY)
 			return null;
 		
 		boolean txEnabled = switch(type) {case UART        -> isConnected();
 		                                  case TCP         -> isConnected() && tcpClientConnected;
 		                                  case UDP         -> isConnected();
 		                                  case DEMO_MODE   -> false;
-		                                  case STRESS_TEST -> false;};
+		                                  case STRESS_TEST -> false;
+		                                  case REPLAY      -> false;};
 		
 		String title = protocol.is(Protocol.TC66) ? "TC66 (" + getName() + (isConnected() ? "" : " - disconnected") + ")" :
 		               type == Type.UART          ? "Transmit to " + getName() + (isConnected() ? "" : " (disconnected)") :
-		               type == Type.TCP           ? "Transmit to " + getName() + " Client" + (isConnected() && tcpClientConnected ? "" : isConnected() ? " (waiting for client)" : " (disconnected)") :
+		               type == Type.TCP           ? "Transmit to " + getName() + (tcpServer == null ? " Client" : "") + (isConnected() && tcpClientConnected ? "" : isConnected() ? " (waiting for client)" : " (disconnected)") :
 		               type == Type.UDP           ? "Transmit UDP Packets (" + getName() + (isConnected() ? "" : " - disconnected") + ")":
 		                                            "";
 		
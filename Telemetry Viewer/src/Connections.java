@@ -126,7 +126,7 @@ public class Connections {
 	
 	public static ConnectionsGUI GUI = new ConnectionsGUI();
 	
-	private static final String filenameSanitizer = "[^a-zA-Z0-9_\\.\\- ]"; // only allow letters, numbers, underscores, periods, hyphens and spaces.
+	static final String filenameSanitizer = "[^a-zA-Z0-9_\\.\\- ]"; // only allow letters, numbers, underscores, periods, hyphens and spaces.
 	
 	public record Device(String name, boolean isAvailable, Supplier<Connection> connection) {}
 	
@@ -134,15 +134,18 @@ public class Connections {
 		
 		List<Device> list = new ArrayList<Device>();
 		uarts.forEach(name -> {
-			boolean isAvailable = telemetryConnections.stream().noneMatch(con -> con != parent && con.name.is(name));
+			// a UART can be shared by several connections if each of them receives a different packet type
+			boolean isAvailable = telemetryConnections.stream().noneMatch(con -> con != parent && con.name.is(name) && !con.isSharingUart());
 			list.add(new Device(name, isAvailable, () -> new ConnectionTelemetry(name)));
 		});
 		boolean isDemoAvailable   = telemetryConnections.stream().noneMatch(con -> con != parent && con.name.is("Demo Mode"));
 		boolean isStressAvailable = telemetryConnections.stream().noneMatch(con -> con != parent && con.name.is("Stress Test Mode"));
+		boolean isReplayAvailable = telemetryConnections.stream().noneMatch(con -> con != parent && con.name.is("Replay"));
 		list.add(new Device("TCP",              true,              () -> new ConnectionTelemetry("TCP")));
 		list.add(new Device("UDP",              true,              () -> new ConnectionTelemetry("UDP")));
 		list.add(new Device("Demo Mode",        isDemoAvailable,   () -> new ConnectionTelemetry("Demo Mode")));
 		list.add(new Device("Stress Test Mode", isStressAvailable, () -> new ConnectionTelemetry("Stress Test Mode")));
+		list.add(new Device("Replay",           isReplayAvailable, () -> new ConnectionTelemetry("Replay")));
 		cameras.forEach(name -> {
 			boolean isAvailable = cameraConnections.stream().noneMatch(con -> con != parent && con.name.is(name));
 			list.add(new Device(name, isAvailable, () -> new ConnectionCamera(name)));
@@ -164,6 +167,7 @@ public class Connections {
 			telemetryConnections.add(newConn);
 		else if(newConnection instanceof ConnectionCamera newConn)
 			cameraConnections.add(newConn);
+		MergedTimeRange.rebuild();
 		
 		// Connections.GUI will be null when static { addConnection(null); } from above gets run,
 		// because the Connections.GUI constructor will still be in progress at that time!
@@ -180,6 +184,7 @@ public class Connections {
 		allConnections.remove(oldConnection);
 		telemetryConnections.remove(oldConnection);
 		cameraConnections.remove(oldConnection);
+		MergedTimeRange.rebuild();
 		
 		Connections.GUI.redraw(); // redraw the bottom panel so it doesn't show the old connection's widgets
 		Settings.GUI.redraw();    // redraw the left panel so it doesn't show the old connection's TX GUI
@@ -205,6 +210,7 @@ public class Connections {
 			cameraConnections.remove(oldConnection);
 			telemetryConnections.add((ConnectionTelemetry) newConnection);
 		}
+		MergedTimeRange.rebuild();
 		
 		Connections.GUI.redraw(); // redraw the bottom panel so it shows the connection widgets
 		Settings.GUI.redraw();    // redraw the left panel so it shows the TX GUI if appropriate
@@ -293,9 +299,7 @@ public class Connections {
 	 */
 	public static long getFirstTimestamp() {
 		
-		return allConnections.stream().filter(connection -> connection.getSampleCount() > 0)
-		                              .mapToLong(connection -> connection.getFirstTimestamp())
-		                              .min().orElse(Long.MAX_VALUE);
+		return MergedTimeRange.getFirstTimestamp();
 		
 	}
 	
@@ -304,9 +308,7 @@ public class Connections {
 	 */
 	public static long getLastTimestamp() {
 		
-		return allConnections.stream().filter(connection -> connection.getSampleCount() > 0)
-		                              .mapToLong(connection -> connection.getLastTimestamp())
-		                              .max().orElse(Long.MIN_VALUE);
+		return MergedTimeRange.getLastTimestamp();
 		
 	}
 	
@@ -325,14 +327,15 @@ public class Connections {
 		
 		// sanity check
 		long settingsFileCount = filepaths.stream().filter(path ->  path.endsWith(".txt")).count();
-		long csvFileCount      = filepaths.stream().filter(path ->  path.endsWith(".csv")).count();
+		long csvFileCount      = filepaths.stream().filter(path ->  path.endsWith(".csv") || path.endsWith(".tvb")).count();
 		long mkvFileCount      = filepaths.stream().filter(path ->  path.endsWith(".mkv")).count();
 		long invalidFileCount  = filepaths.stream().filter(path -> !path.endsWith(".txt") &&
 		                                                           !path.endsWith(".csv") &&
+		                                                           !path.endsWith(".tvb") &&
 		                                                           !path.endsWith(".mkv")).count();
 		
 		if(invalidFileCount > 0) {
-			Notifications.showFailureForMilliseconds("Unsupported file type. Only files exported from TelemetryViewer can be imported:\nSettings files (.txt)\nCSV files (.csv)\nCamera files (.mkv)", 5000, true);
+			Notifications.showFailureForMilliseconds("Unsupported file type. Only files exported from TelemetryViewer can be imported:\nSettings files (.txt)\nCSV files (.csv)\nBinary files (.tvb)\nCamera files (.mkv)", 5000, true);
 			return;
 		}
 		if(settingsFileCount > 1) {
@@ -363,10 +366,11 @@ public class Connections {
 		Map<Connection, String> imports = new HashMap<Connection, String>(); // <Connection, corresponding file path>
 		
 		for(String filepath : filepaths) {
-			if(filepath.endsWith(".csv")) {
+			if(filepath.endsWith(".csv") || filepath.endsWith(".tvb")) {
+				String extension = filepath.substring(filepath.length() - 4);
 				for(int connectionN = 0; connectionN < allConnections.size(); connectionN++) {
 					Connection connection = allConnections.get(connectionN);
-					if(filepath.endsWith(" - connection " + connectionN + " - " + connection.name.get().replaceAll(filenameSanitizer, "") + ".csv"))
+					if(filepath.endsWith(" - connection " + connectionN + " - " + connection.name.get().replaceAll(filenameSanitizer, "") + extension))
 						imports.put(connection, filepath);
 				}
 			} else if(filepath.endsWith(".mkv")) {
@@ -424,7 +428,7 @@ public class Connections {
 			
 			long totalByteCount = 0;
 			for(String filepath : filepaths)
-				if(filepath.endsWith(".csv") || filepath.endsWith(".mkv"))
+				if(filepath.endsWith(".csv") || filepath.endsWith(".tvb") || filepath.endsWith(".mkv"))
 					try { totalByteCount += Files.size(Paths.get(filepath)); } catch(Exception e) { }
 			
 			AtomicLong completedByteCount = Notifications.showProgressBar("Importing...", totalByteCount);
@@ -474,10 +478,11 @@ public class Connections {
 	 * 
 	 * @param filepath               The absolute path, including the part of the filename that will be common to all exported files.
 	 * @param exportSettingsFile     If true, export a settings file.
-	 * @param telemetryToExport      List of ConnectionTelemetrys to export.
+	 * @param telemetryToExport      List of ConnectionTelemetrys to export as CSV files.
+	 * @param binaryToExport         List of ConnectionTelemetrys to export as binary files.
 	 * @param camerasToExport        List of ConnectionCameras to export.
 	 */
-	public static void exportFiles(String filepath, boolean exportSettingsFile, List<ConnectionTelemetry> telemetryToExport, List<ConnectionCamera> camerasToExport) {
+	public static void exportFiles(String filepath, boolean exportSettingsFile, List<ConnectionTelemetry> telemetryToExport, List<ConnectionTelemetry> binaryToExport, List<ConnectionCamera> camerasToExport) {
 		
 		exportThread = new Thread(() -> {
 			
@@ -489,6 +494,8 @@ public class Connections {
 				totalSampleCount++;
 			for(ConnectionTelemetry connection : telemetryToExport)
 				totalSampleCount += connection.getSampleCount();
+			for(ConnectionTelemetry connection : binaryToExport)
+				totalSampleCount += connection.getSampleCount();
 			for(ConnectionCamera camera : camerasToExport)
 				totalSampleCount += camera.getFileSize(); // not equivalent to a sampleCount, but hopefully good enough
 			AtomicLong completedSampleCount = Notifications.showProgressBar("Exporting...", totalSampleCount);
@@ -506,6 +513,11 @@ public class Connections {
 			           String filename = filepath + " - connection " + connectionN + " - " + connection.name.get().replaceAll(filenameSanitizer, "");
 			           connection.exportDataFile(filename, completedSampleCount);
 			      });
+			binaryToExport.parallelStream().forEach(connection -> {
+				int connectionN = connections.indexOf(connection);
+				String filename = filepath + " - connection " + connectionN + " - " + connection.name.get().replaceAll(filenameSanitizer, "");
+				connection.exportBinaryFile(filename, completedSampleCount);
+			});
 			
 			completedSampleCount.addAndGet(totalSampleCount); // ensure it gets marked done
 			
@@ -901,7 +913,7 @@ public class Connections {
 			importButton = new WidgetButton("Import").onClick(event -> {
 				JFileChooser inputFiles = new JFileChooser(System.getProperty("user.dir"));
 				inputFiles.setMultiSelectionEnabled(true);
-				inputFiles.setFileFilter(new FileNameExtensionFilter("Settings (*.txt) Data (*.csv) or Videos (*.mkv)", "txt", "csv", "mkv"));
+				inputFiles.setFileFilter(new FileNameExtensionFilter("Settings (*.txt) Data (*.csv, *.tvb) or Videos (*.mkv)", "txt", "csv", "tvb", "mkv"));
 				JFrame parentWindow = (JFrame) SwingUtilities.windowForComponent(this);
 				if(inputFiles.showOpenDialog(parentWindow) == JFileChooser.APPROVE_OPTION) {
 					List<String> filepaths = Stream.of(inputFiles.getSelectedFiles()).map(file -> file.getAbsolutePath()).toList();
@@ -916,10 +928,13 @@ public class Connections {
 				
 				JCheckBox settingsFileCheckbox = new JCheckBox("Settings file (the connection settings, chart settings, and GUI settings)", true);
 				Map<JCheckBox, ConnectionTelemetry> csvOptions = new LinkedHashMap<JCheckBox, ConnectionTelemetry>();
+				Map<JCheckBox, ConnectionTelemetry> tvbOptions = new LinkedHashMap<JCheckBox, ConnectionTelemetry>();
 				Map<JCheckBox, ConnectionCamera>    mkvOptions = new LinkedHashMap<JCheckBox, ConnectionCamera>();
 				
 				Connections.telemetryConnections.stream().filter(connection -> connection.getSampleCount() > 0)
 				                                         .forEach(connection -> csvOptions.put(new JCheckBox("CSV file for \"" + connection.getName() + "\" (the acquired samples and corresponding timestamps)", true), connection));
+				Connections.telemetryConnections.stream().filter(connection -> connection.getSampleCount() > 0)
+				                                         .forEach(connection -> tvbOptions.put(new JCheckBox("Binary file for \"" + connection.getName() + "\" (same as the CSV file, but much faster to export and import)", false), connection));
 				Connections.cameraConnections.stream().filter(connection -> connection.getSampleCount() > 0)
 				                                      .forEach(connection -> mkvOptions.put(new JCheckBox("MKV file for \"" + connection.getName() + "\" (the acquired images and corresponding timestamps)", true), connection));
 
@@ -930,6 +945,7 @@ public class Connections {
 					// cancel if every checkbox is unchecked
 					boolean nothingSelected = !settingsFileCheckbox.isSelected() &&
 					                          csvOptions.keySet().stream().noneMatch(checkbox -> checkbox.isSelected()) &&
+					                          tvbOptions.keySet().stream().noneMatch(checkbox -> checkbox.isSelected()) &&
 					                          mkvOptions.keySet().stream().noneMatch(checkbox -> checkbox.isSelected());
 					if(nothingSelected) {
 						exportWindow.dispose();
@@ -946,8 +962,9 @@ public class Connections {
 							absolutePath = absolutePath.substring(0, absolutePath.lastIndexOf("."));
 						boolean exportSettingsFile = settingsFileCheckbox.isSelected();
 						List<ConnectionTelemetry> csvFiles = csvOptions.entrySet().stream().filter(entry -> entry.getKey().isSelected()).map(entry -> entry.getValue()).toList();
+						List<ConnectionTelemetry> tvbFiles = tvbOptions.entrySet().stream().filter(entry -> entry.getKey().isSelected()).map(entry -> entry.getValue()).toList();
 						List<ConnectionCamera>    mkvFiles = mkvOptions.entrySet().stream().filter(entry -> entry.getKey().isSelected()).map(entry -> entry.getValue()).toList();
-						Connections.exportFiles(absolutePath, exportSettingsFile, csvFiles, mkvFiles);
+						Connections.exportFiles(absolutePath, exportSettingsFile, csvFiles, tvbFiles, mkvFiles);
 						exportWindow.dispose();
 					}
 					
@@ -960,6 +977,7 @@ public class Connections {
 				
 				exportWindow.add(settingsFileCheckbox);
 				csvOptions.keySet().forEach(checkbox -> exportWindow.add(checkbox));
+				tvbOptions.keySet().forEach(checkbox -> exportWindow.add(checkbox));
 				mkvOptions.keySet().forEach(checkbox -> exportWindow.add(checkbox));
 				exportWindow.add(buttonsPanel, "grow x");
 				exportWindow.pack();
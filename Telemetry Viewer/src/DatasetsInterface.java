@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
@@ -30,6 +31,8 @@ import com.jogamp.opengl.GL3;
  */
 public class DatasetsInterface {
 	
+	private static final int PARALLEL_FETCH_MIN_DATASETS = 4; // fewer datasets are fetched sequentially, because the parallel overhead would outweigh the benefit
+	
 	public ConnectionTelemetry connection = null;
 	public List<Field> normalDatasets = new ArrayList<>();
 	public List<Field.Bitfield.State> edgeStates = new ArrayList<>();
@@ -37,10 +40,7 @@ public class DatasetsInterface {
 	
 	private Map<Field, StorageFloats.Cache> sampleCaches = new HashMap<>();
 	private StorageTimestamps.Cache timestampsCache = null;
-	private Map<Integer, Chart.Tooltip> edgesCache = new TreeMap<Integer, Chart.Tooltip>();
-	private Map<Field.Bitfield.State, List<Field.Bitfield.LevelRange>> levelsCache  = new TreeMap<Field.Bitfield.State, List<Field.Bitfield.LevelRange>>();
-	private int edgesLevelsCacheStartingSampleNumber = -1;
-	private int edgesLevelsCacheEndingSampleNumber   = -1;
+	private BitfieldEventsCache bitfieldEventsCache = new BitfieldEventsCache(edgeStates, levelStates);
 	
 	public DatasetsInterface() { }
 	
@@ -73,102 +73,7 @@ public class DatasetsInterface {
 		normalDatasets.forEach(dataset -> sampleCaches.put(dataset, dataset.createCache()));
 		edgeStates.forEach(state -> sampleCaches.put(state.dataset, state.dataset.createCache()));
 		levelStates.forEach(state -> sampleCaches.put(state.dataset, state.dataset.createCache()));
-		edgesCache.clear();
-		levelsCache.clear();
-		levelStates.forEach(level -> levelsCache.put(level, new ArrayList<Field.Bitfield.LevelRange>()));
-		edgesLevelsCacheStartingSampleNumber = -1;
-		edgesLevelsCacheEndingSampleNumber = -1;
-		
-	}
-	
-	/**
-	 * Gets the Tooltips for any edge events that have occurred within a sample range.
-	 * 
-	 * @param minSampleNumber    First sample number to check, inclusive.
-	 * @param maxSampleNumber    Last sample number to check, inclusive.
-	 * @param sampleCountMode    If true, the Tooltips will show their sample number.
-	 *                           If false, the Tooltips will show their sample number and time.
-	 * @returns                  A Map where the keys are sample numbers, and the values are the corresponding Tooltips to draw on screen.
-	 */
-	private Map<Integer, Chart.Tooltip> getEdgesBetween(int minSampleNumber, int maxSampleNumber, boolean sampleCountMode) {
-		
-		// sanity checks
-		if(minSampleNumber < 0)
-			return new TreeMap<Integer, Chart.Tooltip>();
-		if(minSampleNumber >= maxSampleNumber)
-			return new TreeMap<Integer, Chart.Tooltip>();
-		
-		// cache management
-		if(minSampleNumber == edgesLevelsCacheStartingSampleNumber && maxSampleNumber == edgesLevelsCacheEndingSampleNumber) {
-			// caches already contain the requested data
-			return edgesCache;
-		} else if(minSampleNumber == edgesLevelsCacheStartingSampleNumber && maxSampleNumber > edgesLevelsCacheEndingSampleNumber) {
-			// caches contain the start of the requested data
-			minSampleNumber = edgesLevelsCacheEndingSampleNumber;
-			edgesLevelsCacheEndingSampleNumber = maxSampleNumber;
-		} else {
-			// flush caches
-			edgesCache.clear();
-			levelsCache.values().forEach(list -> list.clear());
-			edgesLevelsCacheStartingSampleNumber = minSampleNumber;
-			edgesLevelsCacheEndingSampleNumber   = maxSampleNumber;
-		}
-		
-		// add new data to the caches
-		final int min = minSampleNumber; // finals for the lambda below
-		final int max = maxSampleNumber;
-		Stream.concat(edgeStates.stream(), levelStates.stream())
-		      .map(state -> state.bitfield)
-		      .distinct()
-		      .forEach(bitfield -> bitfield.getEdgesAndLevelsBetween(min, max, sampleCountMode, edgesCache, levelsCache, this));
-		
-		// provide the data
-		return edgesCache;
-		
-	}
-	
-	/**
-	 * Gets the details for any level events that have occurred within a sample range.
-	 * 
-	 * @param minSampleNumber    First sample number to check, inclusive.
-	 * @param maxSampleNumber    Last sample number to check, inclusive.
-	 * @param sampleCountMode    Not actually used by the level events, but this code also checks for edge events because both tasks can be done efficiently at the same time.
-	 * @returns                  A Map where the keys are Bitfield States, and the values are the corresponding details for any level events to draw on screen.
-	 */
-	private Map<Field.Bitfield.State, List<Field.Bitfield.LevelRange>> getLevelsBetween(int minSampleNumber, int maxSampleNumber, boolean sampleCountMode) {
-		
-		// sanity checks
-		if(minSampleNumber < 0)
-			return new TreeMap<Field.Bitfield.State, List<Field.Bitfield.LevelRange>>();
-		if(minSampleNumber >= maxSampleNumber)
-			return new TreeMap<Field.Bitfield.State, List<Field.Bitfield.LevelRange>>();
-		
-		// cache management
-		if(minSampleNumber == edgesLevelsCacheStartingSampleNumber && maxSampleNumber == edgesLevelsCacheEndingSampleNumber) {
-			// caches already contain the requested data
-			return levelsCache;
-		} else if(minSampleNumber == edgesLevelsCacheStartingSampleNumber && maxSampleNumber > edgesLevelsCacheEndingSampleNumber) {
-			// caches contain the start of the requested data
-			minSampleNumber = edgesLevelsCacheEndingSampleNumber;
-			edgesLevelsCacheEndingSampleNumber = maxSampleNumber;
-		} else {
-			// flush caches
-			edgesCache.clear();
-			levelsCache.values().forEach(list -> list.clear());
-			edgesLevelsCacheStartingSampleNumber = minSampleNumber;
-			edgesLevelsCacheEndingSampleNumber   = maxSampleNumber;
-		}
-		
-		// add new data to the caches
-		final int min = minSampleNumber; // finals for the lambda below
-		final int max = maxSampleNumber;
-		Stream.concat(edgeStates.stream(), levelStates.stream())
-		      .map(state -> state.bitfield)
-		      .distinct()
-		      .forEach(bitfield -> bitfield.getEdgesAndLevelsBetween(min, max, sampleCountMode, edgesCache, levelsCache, this));
-		
-		// provide the data
-		return levelsCache;
+		bitfieldEventsCache = new BitfieldEventsCache(edgeStates, levelStates);
 		
 	}
 	
@@ -264,6 +169,92 @@ public class DatasetsInterface {
 		
 	}
 	
+	/**
+	 * Fills the caches of all normal datasets with a sequence of samples, so later calls to getSamplesBuffer() or getSamplesArray() for that sequence will not need to read the datasets.
+	 * Each dataset has its own cache, so when there are many datasets their caches are filled in parallel. This helps the most when samples must be read from the cache files on disk.
+	 * 
+	 * @param minSampleNumber      First sample number, inclusive.
+	 * @param maxSampleNumber      Last sample number, inclusive.
+	 * @param includeTimestamps    If true, the timestamps cache is also filled.
+	 */
+	public void prefetch(int minSampleNumber, int maxSampleNumber, boolean includeTimestamps) {
+		
+		if(normalDatasets.size() < PARALLEL_FETCH_MIN_DATASETS || minSampleNumber < 0 || maxSampleNumber < minSampleNumber)
+			return;
+		
+		Stream<Runnable> datasetFetches  = normalDatasets.stream().map(dataset -> () -> cacheFor(dataset).update(minSampleNumber, maxSampleNumber));
+		Stream<Runnable> timestampsFetch = includeTimestamps ? Stream.of(() -> timestampsCache.update(minSampleNumber, maxSampleNumber)) : Stream.empty();
+		Stream.concat(datasetFetches, timestampsFetch).parallel().forEach(Runnable::run);
+		
+	}
+	
+	/**
+	 * Selects the coarsest downsampled stream that still has at least one bucket per pixel, so the draw cost depends on the plot width instead of the sample count.
+	 * 
+	 * @param minSampleNumber    First sample number, inclusive.
+	 * @param maxSampleNumber    Last sample number, inclusive.
+	 * @param plotWidth          Width of the plot region, in pixels.
+	 * @return                   Number of samples per bucket (one of the StorageFloats.BUCKET_SIZES), or 1 if the samples should be drawn directly.
+	 */
+	public int getBucketSize(int minSampleNumber, int maxSampleNumber, int plotWidth) {
+		
+		int bucketSize = 1;
+		long sampleCount = (long) maxSampleNumber - minSampleNumber + 1;
+		for(int size : StorageFloats.BUCKET_SIZES)
+			if(sampleCount / size >= plotWidth)
+				bucketSize = size;
+		return bucketSize;
+		
+	}
+	
+	/**
+	 * Gets a sequence of samples as a FloatBuffer of (x,y) vertices for a GL_LINE_STRIP, using a downsampled stream.
+	 * Each bucket becomes two vertices (its minimum and maximum) so the line covers the full range of the samples.
+	 * Samples before the first bucket and after the last bucket are used directly.
+	 * 
+	 * @param dataset            Dataset.
+	 * @param bucketSize         Number of samples per bucket, from getBucketSize().
+	 * @param minSampleNumber    First sample number, inclusive.
+	 * @param maxSampleNumber    Last sample number, inclusive.
+	 * @param sampleCountMode    True if x values should be sample numbers, false if x values should be timestamps.
+	 * @param plotMinX           X value (sample number or timestamp) to subtract from the x values.
+	 * @return                   A FloatBuffer of (x1,y1,x2,y2,...) vertices.
+	 */
+	public FloatBuffer getDownsampledBuffer(Field dataset, int bucketSize, int minSampleNumber, int maxSampleNumber, boolean sampleCountMode, long plotMinX) {
+		
+		StorageFloats.Buckets buckets = dataset.getBuckets(bucketSize, minSampleNumber, maxSampleNumber);
+		int leadingEnd    = (buckets.count() > 0) ? buckets.firstSampleNumber() : maxSampleNumber + 1; // exclusive
+		int trailingStart = (buckets.count() > 0) ? buckets.firstSampleNumber() + buckets.count() * bucketSize : maxSampleNumber + 1;
+		int vertexCount = (leadingEnd - minSampleNumber) + 2 * buckets.count() + (maxSampleNumber + 1 - trailingStart);
+		FloatBuffer buffer = Buffers.newDirectFloatBuffer(vertexCount * 2);
+		
+		putSamples(buffer, dataset, minSampleNumber, leadingEnd - 1, sampleCountMode, plotMinX);
+		
+		// buckets, with both vertices at the middle of the bucket
+		for(int i = 0; i < buckets.count(); i++) {
+			int sampleNumber = buckets.firstSampleNumber() + i * bucketSize + bucketSize / 2;
+			float x = sampleCountMode ? sampleNumber - plotMinX : getTimestampRelativeTo(sampleNumber, plotMinX);
+			buffer.put(x).put(buckets.min()[i]);
+			buffer.put(x).put(buckets.max()[i]);
+		}
+		
+		putSamples(buffer, dataset, trailingStart, maxSampleNumber, sampleCountMode, plotMinX);
+		
+		return buffer.flip();
+		
+	}
+	
+	private void putSamples(FloatBuffer buffer, Field dataset, int firstSampleNumber, int lastSampleNumber, boolean sampleCountMode, long plotMinX) {
+		
+		if(lastSampleNumber < firstSampleNumber)
+			return;
+		
+		FloatBuffer samples = getSamplesBuffer(dataset, firstSampleNumber, lastSampleNumber);
+		for(int sampleNumber = firstSampleNumber; sampleNumber <= lastSampleNumber; sampleNumber++)
+			buffer.put(sampleCountMode ? sampleNumber - plotMinX : getTimestampRelativeTo(sampleNumber, plotMinX)).put(samples.get());
+		
+	}
+	
 	public int getClosestSampleNumberAtOrBefore(long timestamp, int maxSampleNumber) {
 		
 		return connection.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
@@ -282,6 +273,12 @@ public class DatasetsInterface {
 		
 	}
 	
+	public float getTimestampRelativeTo(int sampleNumber, long plotMinX) {
+		
+		return connection.getTimestampRelativeTo(sampleNumber, plotMinX);
+		
+	}
+	
 	public FloatBuffer getTimestampsBuffer(int firstSampleNumber, int lastSampleNumber, long plotMinX) {
 		
 		return connection.getTimestampsBuffer(firstSampleNumber, lastSampleNumber, plotMinX, timestampsCache);
@@ -309,13 +306,15 @@ public class DatasetsInterface {
 		
 		float min = Float.MAX_VALUE;
 		float max = -Float.MAX_VALUE;
-
-		for(Field dataset : normalDatasets) {
-			if(!dataset.isBitfield) {
-				StorageFloats.MinMax range = dataset.getRange(minSampleNumber, maxSampleNumber, cacheFor(dataset));
-				min = Math.min(min, range.min);
-				max = Math.max(max, range.max);
-			}
+		
+		// each dataset has its own cache, so the ranges of many datasets can be found in parallel
+		Stream<Field> datasets = (normalDatasets.size() < PARALLEL_FETCH_MIN_DATASETS) ? normalDatasets.stream() : normalDatasets.parallelStream();
+		List<StorageFloats.MinMax> ranges = datasets.filter(dataset -> !dataset.isBitfield)
+		                                            .map(dataset -> dataset.getRange(minSampleNumber, maxSampleNumber, cacheFor(dataset)))
+		                                            .toList();
+		for(StorageFloats.MinMax range : ranges) {
+			min = Math.min(min, range.min);
+			max = Math.max(max, range.max);
 		}
 		
 		if(min == Float.MAX_VALUE && max == -Float.MAX_VALUE) {
@@ -412,8 +411,8 @@ public class DatasetsInterface {
 		AtomicReference<EventHandler> clickHandler = new AtomicReference<EventHandler>();
 		
 		// prepare the tooltips for edge events
-		List<Chart.Tooltip> tooltips = getEdgesBetween((int) minSampleNumber, (int) maxSampleNumber, sampleCountMode)
-		                               .values().stream().toList();
+		bitfieldEventsCache.update((int) minSampleNumber, (int) maxSampleNumber, this);
+		List<Chart.Tooltip> tooltips = bitfieldEventsCache.getEdges();
 		
 		// check if the mouse is near a tooltip
 		Chart.Tooltip closestTooltip = null;
@@ -478,13 +477,12 @@ public class DatasetsInterface {
 		                                       .sorted().toList();
 		
 		// draw the levels
-		Map<Field.Bitfield.State, List<Field.Bitfield.LevelRange>> levels = getLevelsBetween((int) minSampleNumber, (int) maxSampleNumber, sampleCountMode);
-		int maxQuadCount = levels.entrySet().stream().mapToInt(entry -> entry.getValue().size()).max().orElse(0);
+		int maxQuadCount = levelStates.stream().mapToInt(state -> bitfieldEventsCache.getMaxLevelCount(state)).max().orElse(0);
 		FloatBuffer mouseOverOutline   = Buffers.newDirectFloatBuffer(16);                // 4 lines per quad, 2 (x,y) vertices per line = 16 floats per quad
 		FloatBuffer quadsAsGlTriangles = Buffers.newDirectFloatBuffer(maxQuadCount * 12); // 2 triangles per quad, 3 (x,y) vertices per triangle = 12 floats per quad
 		FloatBuffer outlinesAsGlLines  = Buffers.newDirectFloatBuffer(maxQuadCount * 16); // 4 lines per quad, 2 (x,y) vertices per line = 16 floats per quad
-		levels.forEach((state, pairs) -> {
-			int quadCount = pairs.size();
+		levelStates.forEach(state -> {
+			AtomicInteger quadCount = new AtomicInteger(0);
 			quadsAsGlTriangles.rewind();
 			outlinesAsGlLines.rewind();
 			List<int[]> labelPositions = new ArrayList<int[]>(); // [0] = xLeft, [1] = xRight of the corresponding quad
@@ -499,9 +497,10 @@ public class DatasetsInterface {
 				return; // "continue"
 			}
 			
-			pairs.forEach(range -> {
-				long minX = sampleCountMode ? range.startingSampleNumber() : range.startingTimestamp();
-				long maxX = sampleCountMode ? range.endingSampleNumber()   : range.endingTimestamp();
+			bitfieldEventsCache.forEachLevel(state, (startingSampleNumber, startingTimestamp, endingSampleNumber, endingTimestamp) -> {
+				long minX = sampleCountMode ? startingSampleNumber : startingTimestamp;
+				long maxX = sampleCountMode ? endingSampleNumber   : endingTimestamp;
+				quadCount.incrementAndGet();
 				float xLeft  = xToPixelX.apply(minX);
 				float xRight = xToPixelX.apply(maxX);
 				// populate the buffers, then draw the buffers, then if text can fit draw the text
@@ -522,7 +521,7 @@ public class DatasetsInterface {
 				if(xLeft + padding < xRight) // only draw a label if there is at least 1 pixel of space
 					labelPositions.add(new int[] {(int) xLeft, (int) xRight});
 				if(clickable && mouseX >= xLeft && mouseX <= xRight && mouseY >= yBottom && mouseY <= yTop) {
-					clickHandler.set(EventHandler.onPress(event -> OpenGLCharts.GUI.setPaused(range.startingTimestamp(), connection, range.startingSampleNumber())));
+					clickHandler.set(EventHandler.onPress(event -> OpenGLCharts.GUI.setPaused(startingTimestamp, connection, startingSampleNumber)));
 					mouseOverOutline.rewind();
 					mouseOverOutline.put(xLeft);  mouseOverOutline.put(yBottom);
 					mouseOverOutline.put(xLeft);  mouseOverOutline.put(yTop);
@@ -534,8 +533,8 @@ public class DatasetsInterface {
 					mouseOverOutline.put(xLeft);  mouseOverOutline.put(yBottom);
 				}
 			});
-			OpenGL.drawTrianglesXY(gl, GL.GL_TRIANGLES, state.glColor, quadsAsGlTriangles.rewind(), quadCount * 6);
-			OpenGL.drawLinesXy(gl, GL.GL_LINES, Theme.markerBorderColor, outlinesAsGlLines.rewind(), quadCount * 8);
+			OpenGL.drawTrianglesXY(gl, GL.GL_TRIANGLES, state.glColor, quadsAsGlTriangles.rewind(), quadCount.get() * 6);
+			OpenGL.drawLinesXy(gl, GL.GL_LINES, Theme.markerBorderColor, outlinesAsGlLines.rewind(), quadCount.get() * 8);
 			labelPositions.forEach(position -> {
 				int xLeft = position[0];
 				int xRight = Integer.min(position[1], (int) plotWidth);
@@ -8,7 +8,6 @@ import java.awt.event.MouseListener;
 import java.awt.event.MouseMotionListener;
 import java.io.PrintWriter;
 import java.nio.FloatBuffer;
-import java.nio.LongBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -29,9 +28,10 @@ import net.miginfocom.swing.MigLayout;
 
 /**
  * Manages everything about one CSV column or Binary packet field.
- * The Field could be a sync word, a dataset, or a checksum.
- * Sync words and checksums are optional, and only supported in Binary mode.
+ * The Field could be a sync word, a dataset, a device timestamp, or a checksum.
+ * Sync words, timestamps and checksums are optional, and only supported in Binary mode.
  * The optional sync word must be at the beginning, and the optional checksum must be at the end.
+ * The optional timestamp can be anywhere, and its "name" is the number of timestamp ticks per second.
  * 
  *     1. The Field can be configured via the GUI by using the Widgets defined below (location, type, name, ...)
  *     2. The Field can be configured programmatically by using the methods defined below (setLocation(), setType(), setName(), ...)
@@ -55,10 +55,15 @@ public class Field implements Comparable<Field> {
 	WidgetTextfield<Float> scalingFactorA;
 	JLabel equalsLabel = new JLabel("=");
 	WidgetTextfield<Float> scalingFactorB;
+	WidgetTextfield<String> expression;
 	WidgetButton addButton = new WidgetButton("Add");
 	WidgetButton doneButton = new WidgetButton("Done");
 	Consumer<String> insertHandler;
 	
+	// derived datasets are calculated from other datasets instead of being received
+	FieldExpression compiledExpression;
+	private final float[] derivedValues = new float[StorageFloats.BLOCK_SIZE];
+	
 	public Field(ConnectionTelemetry connection) {
 		
 		this.connection = connection;
@@ -80,6 +85,7 @@ public class Field implements Comparable<Field> {
 		                              unit.setEnabled(!full);
 		                              scalingFactorA.setEnabled(!full);
 		                              scalingFactorB.setEnabled(!full);
+		                              expression.setEnabled(connection.type != ConnectionTelemetry.Type.DEMO_MODE);
 		                              addButton.setEnabled(!full);
 		                              if(full) {
 		                                  // full, so highlight the done button
@@ -106,16 +112,18 @@ public class Field implements Comparable<Field> {
 		                   return false; // not allowed
 		               boolean isSyncWord = newDatatype.isSyncWord();
 		               boolean isChecksum = newDatatype.isChecksum();
+		               boolean isTimestamp = newDatatype.isTimestamp();
 		               boolean isBitfield = newDatatype.toString().contains("Bitfield");
 		               // configure the other widgets as needed
 		               name.setVisible(!isChecksum);
-		               name.setPrefix(isSyncWord ? "Value" : "Name");
-		               name.setExportLabel(isSyncWord ? "value" : "name");
-		               color.setVisible(!isSyncWord && !isChecksum);
-		               unit.setVisible(!isSyncWord && !isChecksum && !isBitfield);
-		               scalingFactorA.setVisible(!isSyncWord && !isChecksum && !isBitfield);
-		               equalsLabel.setVisible(!isSyncWord && !isChecksum && !isBitfield);
-		               scalingFactorB.setVisible(!isSyncWord && !isChecksum && !isBitfield);
+		               name.setPrefix(isSyncWord ? "Value" : isTimestamp ? "Ticks/Second" : "Name");
+		               name.setExportLabel(isSyncWord ? "value" : isTimestamp ? "ticks per second" : "name");
+		               color.setVisible(newDatatype.isDataset());
+		               unit.setVisible(newDatatype.isDataset() && !isBitfield);
+		               scalingFactorA.setVisible(newDatatype.isDataset() && !isBitfield);
+		               equalsLabel.setVisible(newDatatype.isDataset() && !isBitfield);
+		               scalingFactorB.setVisible(newDatatype.isDataset() && !isBitfield);
+		               expression.setVisible(newDatatype.isDataset() && !isBitfield);
 		               // if changing to a sync word, set name to "0xAA" if name is not already a hex number
 		               if(isSyncWord) {
 		                   try {
@@ -127,17 +135,26 @@ public class Field implements Comparable<Field> {
 		                       name.set("0xAA");
 		                   }
 		               }
-		               // if changing away from a sync word, clear the name
+		               // if changing to a timestamp, set name to "1000" (a millisecond counter) if name is not already a positive number
+		               if(isTimestamp && getTicksPerSecond(name.get()) == 0)
+		                   name.set("1000");
+		               // if changing away from a sync word or timestamp, clear the name
 		               if(oldDatatype.isSyncWord() && !isSyncWord)
 		                   SwingUtilities.invokeLater(() -> { // invokeLater so the datatype can change before the name event handler gets called
 		                       if(name.get().toLowerCase().startsWith("0x"))
 		                           name.set("");
 		               });
+		               if(oldDatatype.isTimestamp() && !isTimestamp)
+		                   SwingUtilities.invokeLater(() -> {
+		                       if(getTicksPerSecond(name.get()) != 0)
+		                           name.set("");
+		               });
 		               // if changing to a bitfield, reset the scaling factors to 1 and clear the unit
 		               if(isBitfield) {
 		            	   scalingFactorA.set(1f);
 		            	   scalingFactorB.set(1f);
 		            	   unit.set("");
+		            	   expression.set("");
 		               }
 		               return true;
 		           });
@@ -158,6 +175,8 @@ public class Field implements Comparable<Field> {
 		                              } catch(NumberFormatException e) {
 		                                  name.set("0xAA");
 		                              }
+		                          } else if(isTimestamp() && getTicksPerSecond(newText) == 0) {
+		                              name.set("1000");
 		                          }
 		                          return true;
 		                      });
@@ -201,6 +220,17 @@ public class Field implements Comparable<Field> {
 		                                })
 		                                .onEnter(event -> addButton.click());
 		
+		expression = WidgetTextfield.ofText("")
+		                            .setPrefix("Expression")
+		                            .setExportLabel("expression")
+		                            .setFixedWidth(22)
+		                            .onChange((newText, oldText) -> {
+		                                enableWidgetsForExpression(newText);
+		                                return true;
+		                            })
+		                            .onIncompleteChange(text -> enableWidgetsForExpression(text))
+		                            .onEnter(event -> addButton.click());
+		
 		addButton.onClick(event -> {
 			// the name of a dataset must be unique within this connection
 			List<String> usedNames = connection.getDatasetsList().stream().map(field -> field.name.get()).toList();
@@ -210,8 +240,8 @@ public class Field implements Comparable<Field> {
 				return;
 			}
 			
-			if(!type.get().toString().contains("Bitfield")) {
-				// not a bitfield, so just insert it
+			if(isDerived() || !type.get().toString().contains("Bitfield")) {
+				// derived or not a bitfield, so just insert it
 				insert();
 			} else {
 				// bitfield, so disable the Field Widgets and populate the scrollableRegion with a BitfieldPanel
@@ -268,10 +298,32 @@ public class Field implements Comparable<Field> {
 	}
 	
 	@Override public int compareTo(Field other) {
-		// hopefully no connection has a packet size >10,000 bytes (>80,000 bits)
-		int thisBitOffset  = (Connections.telemetryConnections.indexOf(this.connection)  * 80000) + ( this.location.get() * 8);
-		int otherBitOffset = (Connections.telemetryConnections.indexOf(other.connection) * 80000) + (other.location.get() * 8);
-		return thisBitOffset - otherBitOffset;
+		return getSortKey() - other.getSortKey();
+	}
+	
+	private int getSortKey() {
+		// hopefully no connection has a packet size >8,750 bytes (>70,000 bits), derived datasets are sorted after the packet
+		int connectionOffset = Connections.telemetryConnections.indexOf(connection) * 80000;
+		return isDerived() ? connectionOffset + 70000 + connection.derivedFields.indexOf(this) :
+		                     connectionOffset + (location.get() * 8);
+	}
+	
+	/**
+	 * Enables or disables the widgets that do not apply to derived datasets.
+	 * 
+	 * @param text    Current text of the expression widget.
+	 */
+	private void enableWidgetsForExpression(String text) {
+		boolean derived = !text.isBlank();
+		boolean full = location.is(-1) || (connection.type == ConnectionTelemetry.Type.DEMO_MODE);
+		location.setEnabled(!derived && !full);
+		type.setEnabled(!derived && !full);
+		scalingFactorA.setEnabled(!derived && !full);
+		scalingFactorB.setEnabled(!derived && !full);
+		name.setEnabled(derived || !full);
+		color.setEnabled(derived || !full);
+		unit.setEnabled(derived || !full);
+		addButton.setEnabled(derived || !full);
 	}
 	
 	public Field onInsert(Consumer<String> handler) {
@@ -285,7 +337,8 @@ public class Field implements Comparable<Field> {
 			floats = new StorageFloats(connection);
 		String errorMessage = connection.insertField(this);
 		if(errorMessage != null) {
-			floats.dispose();
+			if(floats != null)
+				floats.dispose();
 			floats = null;
 			if(insertHandler != null)
 				insertHandler.accept(errorMessage);
@@ -301,6 +354,28 @@ public class Field implements Comparable<Field> {
 	public boolean isSyncWord() { return type.get().isSyncWord(); }
 	public boolean isDataset()  { return type.get().isDataset();  }
 	public boolean isChecksum() { return type.get().isChecksum(); }
+	public boolean isTimestamp() { return type.get().isTimestamp(); }
+	public boolean isDerived()   { return !expression.get().isBlank(); }
+	
+	/**
+	 * @return    Number of timestamp ticks per second, if this Field is a device timestamp.
+	 */
+	public double getTicksPerSecond() {
+		return getTicksPerSecond(name.get());
+	}
+	
+	/**
+	 * @param text    Text to parse.
+	 * @return        The number of ticks per second, or 0 if the text is not a positive number.
+	 */
+	private static double getTicksPerSecond(String text) {
+		try {
+			double ticksPerSecond = Double.parseDouble(text.trim());
+			return (ticksPerSecond > 0 && Double.isFinite(ticksPerSecond)) ? ticksPerSecond : 0;
+		} catch(NumberFormatException e) {
+			return 0;
+		}
+	}
 	
 	public String getExampleVariableName() {
 		return name.get().toLowerCase().replace(' ', '_');
@@ -311,7 +386,7 @@ public class Field implements Comparable<Field> {
 		file.println("");
 		file.print('\t'); location.exportTo(file);
 		file.print('\t'); type.exportTo(file);
-		if(type.get().isSyncWord()) {
+		if(type.get().isSyncWord() || type.get().isTimestamp()) {
 			file.print('\t'); name.exportTo(file);
 		} else if(type.get().isDataset()) {
 			file.print('\t'); name.exportTo(file);
@@ -319,6 +394,9 @@ public class Field implements Comparable<Field> {
 			file.print('\t'); unit.exportTo(file);
 			file.print('\t'); scalingFactorA.exportTo(file);
 			file.print('\t'); scalingFactorB.exportTo(file);
+			if(isDerived()) {
+				file.print('\t'); expression.exportTo(file);
+			}
 			if(type.get().toString().endsWith("Bitfield"))
 				bitfields.forEach(bitfield -> {
 					file.print("\t\t[" + bitfield.MSBit + ":" + bitfield.LSBit + "] = " + String.format("0x%02X%02X%02X ", bitfield.states[0].color.getRed(), bitfield.states[0].color.getGreen(), bitfield.states[0].color.getBlue()) + bitfield.states[0].name);
@@ -335,7 +413,7 @@ public class Field implements Comparable<Field> {
 		lines.parseExact("");
 		location.importFrom(lines);
 		type.importFrom(lines);
-		if(type.get().isSyncWord()) {
+		if(type.get().isSyncWord() || type.get().isTimestamp()) {
 			name.importFrom(lines);
 		} else if(type.get().isDataset()) {
 			name.importFrom(lines);
@@ -343,6 +421,8 @@ public class Field implements Comparable<Field> {
 			unit.importFrom(lines);
 			scalingFactorA.importFrom(lines);
 			scalingFactorB.importFrom(lines);
+			if(lines.peek() != null && lines.peek().startsWith("expression = ")) // older settings files do not have derived datasets
+				expression.importFrom(lines);
 			if(type.get().toString().endsWith("Bitfield")) {
 				while(!lines.peek().equals("")){
 					try {
@@ -382,6 +462,7 @@ public class Field implements Comparable<Field> {
 		
 		isBitfield = true;
 		Bitfield bitfield = new Bitfield(MSBit, LSBit);
+		bitfield.indexExistingSamples(connection.getSampleCount());
 		bitfields.add(bitfield);
 		Collections.sort(bitfields); // sort the list so it can be easily drawn in order by the GUI
 		return bitfield;
@@ -500,6 +581,111 @@ public class Field implements Comparable<Field> {
 		
 	}
 	
+	/**
+	 * Updates the transition index of each Bitfield in this Field.
+	 * This method must be called AFTER the samples have been populated, but BEFORE the sample count has been incremented.
+	 * 
+	 * @param firstSampleNumber    First new sample number.
+	 * @param sampleCount          Number of new samples.
+	 */
+	void indexBitfields(int firstSampleNumber, int sampleCount) {
+		
+		int endSampleNumber = firstSampleNumber + sampleCount;
+		for(int sampleNumber = firstSampleNumber; sampleNumber < endSampleNumber; ) {
+			float[] slot = getSlot(sampleNumber);
+			int offset = sampleNumber % StorageFloats.SLOT_SIZE;
+			int length = Integer.min(StorageFloats.SLOT_SIZE - offset, endSampleNumber - sampleNumber);
+			for(Bitfield bitfield : bitfields) {
+				bitfield.indexExistingSamples(sampleNumber);
+				bitfield.indexSamples(FloatBuffer.wrap(slot, offset, length), sampleNumber);
+			}
+			sampleNumber += length;
+		}
+		
+	}
+	
+	/**
+	 * Updates the downsampled streams of this dataset.
+	 * This method must be called AFTER the samples have been populated, but BEFORE the sample count has been incremented.
+	 * 
+	 * @param sampleCount    Number of samples that have been populated.
+	 */
+	void updateDownsampledStreams(int sampleCount) {
+		
+		floats.updateLevels(sampleCount);
+		
+	}
+	
+	/**
+	 * Gets the downsampled buckets that are entirely within a sequence of samples.
+	 * 
+	 * @param bucketSize           One of the StorageFloats.BUCKET_SIZES.
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive.
+	 * @return                     The buckets.
+	 */
+	public StorageFloats.Buckets getBuckets(int bucketSize, int firstSampleNumber, int lastSampleNumber) {
+		
+		return floats.getBuckets(bucketSize, firstSampleNumber, lastSampleNumber);
+		
+	}
+	
+	/**
+	 * Calculates samples of this derived dataset from the samples of its inputs.
+	 * This method must be called AFTER the inputs have been populated, but BEFORE the sample count has been incremented.
+	 * 
+	 * @param firstSampleNumber    First new sample number.
+	 * @param sampleCount          Number of new samples.
+	 */
+	void computeDerivedSamples(int firstSampleNumber, int sampleCount) {
+		
+		if(firstSampleNumber == 0)
+			compiledExpression.reset(); // the samples were removed, so start the filters over
+		
+		List<Field> inputs = compiledExpression.getInputs();
+		float[][] inputSlots = new float[inputs.size()][];
+		int endSampleNumber = firstSampleNumber + sampleCount;
+		for(int sampleNumber = firstSampleNumber; sampleNumber < endSampleNumber; ) {
+			// one block at a time, which is also within one slot
+			int length = Integer.min(StorageFloats.BLOCK_SIZE - (sampleNumber % StorageFloats.BLOCK_SIZE), endSampleNumber - sampleNumber);
+			for(int i = 0; i < inputSlots.length; i++)
+				inputSlots[i] = inputs.get(i).getSlot(sampleNumber);
+			compiledExpression.evaluate(inputSlots, sampleNumber % StorageFloats.SLOT_SIZE, length, derivedValues, 0);
+			for(int i = 0; i < length; i++)
+				floats.setValue(sampleNumber + i, derivedValues[i]);
+			sampleNumber += length;
+		}
+		
+	}
+	
+	/**
+	 * @return    True if this is a derived dataset that contains a filter (or uses a derived dataset that does), so its samples must be calculated in order.
+	 */
+	boolean isStateful() {
+		
+		return compiledExpression != null && (compiledExpression.isStateful() || compiledExpression.getInputs().stream().anyMatch(Field::isStateful));
+		
+	}
+	
+	/**
+	 * @param field    Another Field.
+	 * @return         True if this is a derived dataset that uses the other Field in its expression.
+	 */
+	boolean dependsOn(Field field) {
+		
+		return compiledExpression != null && compiledExpression.getInputs().contains(field);
+		
+	}
+	
+	/**
+	 * Empties the transition index of each Bitfield in this Field. This should be called when the samples are removed.
+	 */
+	void clearBitfieldIndexes() {
+		
+		bitfields.forEach(bitfield -> bitfield.clearIndex());
+		
+	}
+	
 	/**
 	 * Specifies the minimum and maximum values found in a block.
 	 * This method must be called AFTER any Parser threads have populated a block, but BEFORE the sample count has been incremented.
@@ -540,6 +726,14 @@ public class Field implements Comparable<Field> {
 		final State[] states;
 		final Field dataset;
 		
+		// transition index: the sample numbers where this bitfield changed state, and the new states, in ascending order
+		// the first entry is always sample 0, so the state at any sample number can be found with a binary search
+		// the index is appended to by the thread that receives samples, and transitionCount is written last so other threads only see complete entries
+		private int[] transitionSampleNumbers = new int[1024];
+		private int[] transitionStates        = new int[1024];
+		private volatile int transitionCount = 0;
+		private int indexedSampleCount = 0;
+		
 		public Bitfield(int MSBit, int LSBit) {
 			
 			this.MSBit = MSBit;
@@ -567,86 +761,96 @@ public class Field implements Comparable<Field> {
 			return state;
 		}
 		
-		public record LevelRange(int startingSampleNumber, long startingTimestamp, int endingSampleNumber, long endingTimestamp) {}
-
 		/**
-		 * Checks the Bitfields in this Field to see which edges and levels were active.
-		 * It is assumed the Maps may contain cached data. In that case, it is assumed the States have not changed. Regenerate the Maps if the enabled States have changed!
+		 * Appends any transitions in a sequence of samples to the index.
 		 * 
-		 * @param minSampleNumber    First sample number to check, inclusive.
-		 * @param maxSampleNumber    Last sample number to check, inclusive.
-		 * @param sampleCountMode    If true, the Tooltips will show their sample number. If false, the Tooltips will show their sample number and time.
-		 * @param edgeTooltips       A Map where the keys are sample numbers, and the values are the corresponding Tooltips to draw on screen.
-		 * @param levels             A Map where the keys are Bitfield States, and the values are the corresponding details for any level events to draw on screen.
-		 * @param di                 Interface to obtain the samples from.
+		 * @param buffer               The samples, from the current position to the limit.
+		 * @param firstSampleNumber    Sample number of the first sample in the buffer. This MUST be the next sample number that has not been indexed.
 		 */
-		void getEdgesAndLevelsBetween(int minSampleNumber, int maxSampleNumber, boolean sampleCountMode, Map<Integer, Chart.Tooltip> edgeTooltips, Map<State, List<LevelRange>> levels, DatasetsInterface di) {
+		private void indexSamples(FloatBuffer buffer, int firstSampleNumber) {
 			
-			// sanity checks
-			if(minSampleNumber < 0)
-				return;
-			if(minSampleNumber >= maxSampleNumber)
-				return;
-			
-			// get the samples
-			FloatBuffer buffer = di.getSamplesBuffer(dataset, minSampleNumber, maxSampleNumber);
-			LongBuffer tbuffer = di.getTimestampsBuffer(minSampleNumber, maxSampleNumber);
-			int stateN = ((int) buffer.get() >> LSBit) & bitmask;
-			int startingSampleNumber = minSampleNumber;
-			long startingTimestamp = tbuffer.get();
-			
-			// if the levels Map contains the starting state and it ended at minSampleNumber, we should update that level
-			boolean updateExistingLevel = levels.containsKey(states[stateN]) &&
-			                              !levels.get(states[stateN]).isEmpty() &&
-			                              levels.get(states[stateN]).getLast().endingSampleNumber == minSampleNumber;
-			
-			// test the samples and update the Maps
-			int sampleNumber = 0;
-			long timestamp = 0;
-			for(sampleNumber = minSampleNumber + 1; sampleNumber <= maxSampleNumber; sampleNumber++) {
+			int count = transitionCount;
+			int previousState = (count == 0) ? -1 : transitionStates[count - 1];
+			int sampleCount = buffer.remaining();
+			for(int i = 0; i < sampleCount; i++) {
 				int state = ((int) buffer.get() >> LSBit) & bitmask;
-				timestamp = tbuffer.get();
-				if(state != stateN) {
-					if(levels.containsKey(states[stateN]))
-						if(updateExistingLevel) {
-							int i = levels.get(states[stateN]).size() - 1;
-							LevelRange oldLevel = levels.get(states[stateN]).get(i);
-							LevelRange updatedLevel = new LevelRange(oldLevel.startingSampleNumber, oldLevel.startingTimestamp, sampleNumber, timestamp);
-							levels.get(states[stateN]).set(i, updatedLevel);
-							updateExistingLevel = false;
-						} else {
-							levels.get(states[stateN]).add(new LevelRange(startingSampleNumber, startingTimestamp, sampleNumber, timestamp));
-						}
-					
-					stateN = state;
-					startingSampleNumber = sampleNumber;
-					startingTimestamp = timestamp;
-					if(di.edgeStates.contains(states[stateN])) {
-						if(edgeTooltips.containsKey(sampleNumber)) {
-							edgeTooltips.get(sampleNumber).addRow(states[stateN].glColor, states[stateN].name);
-						} else {
-							edgeTooltips.put(sampleNumber, new Chart.Tooltip(sampleNumber, timestamp, -1, -1)
-							                                        .addRow(states[stateN].glColor, states[stateN].name));
-						}
+				if(state != previousState) {
+					if(count == transitionSampleNumbers.length) {
+						transitionSampleNumbers = Arrays.copyOf(transitionSampleNumbers, 2 * count);
+						transitionStates        = Arrays.copyOf(transitionStates,        2 * count);
 					}
+					transitionSampleNumbers[count] = firstSampleNumber + i;
+					transitionStates[count] = state;
+					count++;
+					previousState = state;
 				}
 			}
 			
-			if(levels.containsKey(states[stateN])) {
-				sampleNumber--; // undo the last sampleNumber++ in the above for() loop
-				if(updateExistingLevel) {
-					int i = levels.get(states[stateN]).size() - 1;
-					LevelRange oldLevel = levels.get(states[stateN]).get(i);
-					LevelRange updatedLevel = new LevelRange(oldLevel.startingSampleNumber, oldLevel.startingTimestamp, sampleNumber, timestamp);
-					levels.get(states[stateN]).set(i, updatedLevel);
-					updateExistingLevel = false;
-				} else {
-					levels.get(states[stateN]).add(new LevelRange(startingSampleNumber, startingTimestamp, sampleNumber, timestamp));
-				}
+			indexedSampleCount = firstSampleNumber + sampleCount;
+			transitionCount = count;
+			
+		}
+		
+		/**
+		 * Indexes samples that were acquired before this Bitfield was defined, or before the index was cleared.
+		 * 
+		 * @param sampleCount    Number of samples that should be in the index. These samples MUST be included in the connection's sample count.
+		 */
+		private void indexExistingSamples(int sampleCount) {
+			
+			if(indexedSampleCount >= sampleCount)
+				return;
+			
+			StorageFloats.Cache cache = dataset.createCache();
+			while(indexedSampleCount < sampleCount) {
+				int lastSampleNumber = Integer.min(indexedSampleCount + 65535, sampleCount - 1);
+				FloatBuffer buffer = dataset.getSamplesBuffer(indexedSampleCount, lastSampleNumber, cache);
+				indexSamples(buffer.slice(buffer.position(), lastSampleNumber - indexedSampleCount + 1), indexedSampleCount);
 			}
 			
 		}
-
+		
+		/**
+		 * Empties the index.
+		 */
+		private void clearIndex() {
+			
+			transitionCount = 0;
+			indexedSampleCount = 0;
+			
+		}
+		
+		/**
+		 * A snapshot of the transition index. Entries after the count may be overwritten while the snapshot is being used, so they must be ignored.
+		 * 
+		 * @param sampleNumbers    Sample numbers where the state changed, in ascending order.
+		 * @param states           The new state at each of those sample numbers.
+		 * @param count            Number of valid entries.
+		 */
+		public record Transitions(int[] sampleNumbers, int[] states, int count) {
+			
+			/**
+			 * @param sampleNumber    Sample number, which MUST have been indexed.
+			 * @return                Index of the transition in effect at that sample number.
+			 */
+			public int indexAt(int sampleNumber) {
+				int i = Arrays.binarySearch(sampleNumbers, 0, count, sampleNumber);
+				return (i >= 0) ? i : -i - 2; // the transition before the insertion point
+			}
+			
+		}
+		
+		/**
+		 * @return    A snapshot of the transition index, containing every transition that has been indexed so far.
+		 */
+		public Transitions getTransitions() {
+			
+			// read the count first, since it is written last
+			int count = transitionCount;
+			return new Transitions(transitionSampleNumbers, transitionStates, count);
+			
+		}
+		
 		/**
 		 * For sorting a Collection of Bitfields so the fields occupying less-significant bits come first.
 		 */
@@ -671,9 +875,6 @@ public class Field implements Comparable<Field> {
 			Field dataset;                  // owner of this State
 			Bitfield bitfield;              // owner of this State
 			
-			List<Integer> edgesCache = new ArrayList<Integer>(); // cache of the sample numbers for each transition to this state
-			int lastSampleNumberInCache = -1;
-			
 			public State(int value, String label) {
 				this.label = label;
 				this.value = value;
@@ -821,6 +1022,29 @@ public class Field implements Comparable<Field> {
 		                         return (float) (0xFF & buffer[offset]);
 		                     }},
 		
+		UINT32_LE_TIMESTAMP { @Override public String toString()  { return "uint32 Timestamp LSB First"; }
+		                      @Override public int getByteCount() { return 4;                            }
+		                      @Override public long getTicksWraparound() { return 1L << 32; }
+		                      @Override public long parseTicks(byte[] buffer, int offset) {
+		                          return ((long)(0xFF & buffer[0+offset]) << 0)  |
+		                                 ((long)(0xFF & buffer[1+offset]) << 8)  |
+		                                 ((long)(0xFF & buffer[2+offset]) << 16) |
+		                                 ((long)(0xFF & buffer[3+offset]) << 24);
+		                      }},
+		
+		UINT64_LE_TIMESTAMP { @Override public String toString()  { return "uint64 Timestamp LSB First"; }
+		                      @Override public int getByteCount() { return 8;                            }
+		                      @Override public long parseTicks(byte[] buffer, int offset) {
+		                          return ((long)(0xFF & buffer[0+offset]) << 0)  |
+		                                 ((long)(0xFF & buffer[1+offset]) << 8)  |
+		                                 ((long)(0xFF & buffer[2+offset]) << 16) |
+		                                 ((long)(0xFF & buffer[3+offset]) << 24) |
+		                                 ((long)(0xFF & buffer[4+offset]) << 32) |
+		                                 ((long)(0xFF & buffer[5+offset]) << 40) |
+		                                 ((long)(0xFF & buffer[6+offset]) << 48) |
+		                                 ((long)(0xFF & buffer[7+offset]) << 56);
+		                      }},
+		
 		UINT8_CHECKSUM     { @Override public String toString()  { return "uint8 Checksum";    }
 		                     @Override public int getByteCount() { return 1;                   }
 		                     @Override public boolean testChecksum(byte[] bytes, int offset, int packetLength, int syncWordByteCount) {
@@ -875,11 +1099,14 @@ public class Field implements Comparable<Field> {
 		
 		abstract int getByteCount();
 		final boolean isSyncWord() { return toString().toLowerCase().contains("sync"); }
-		final boolean isDataset()  { return !toString().toLowerCase().contains("sync") && !toString().toLowerCase().contains("checksum"); }
+		final boolean isDataset()  { return !toString().toLowerCase().contains("sync") && !toString().toLowerCase().contains("checksum") && !toString().toLowerCase().contains("timestamp"); }
 		final boolean isChecksum() { return toString().toLowerCase().contains("checksum"); }
+		final boolean isTimestamp() { return toString().toLowerCase().contains("timestamp"); }
 		boolean testSyncWord(byte[] buffer, int offset, byte syncWord) { return false; }                          /* sync words should @Override this and test if the sync word exists! */
 		float parse(byte[] buffer, int offset) { return 0; }                                                      /* datasets should @Override this and return a number! */
 		boolean testChecksum(byte[] bytes, int offset, int packetLength, int syncWordByteCount) { return false; } /* checksums should @Override this and test if the checksum is valid! */
+		long parseTicks(byte[] buffer, int offset) { return 0; }                                                  /* timestamps should @Override this and return the number of ticks! */
+		long getTicksWraparound() { return 0; }                                                                   /* timestamps that wrap around should @Override this and return the number of ticks per wraparound */
 		
 		public static Type fromString(String text) {
 			return Stream.of(values()).filter(value -> value.toString().equals(text)).findFirst().orElse(null);
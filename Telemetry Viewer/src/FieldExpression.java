@@ -0,0 +1,674 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+import java.util.function.IntSupplier;
+
+/**
+ * An expression that calculates a derived dataset from other datasets, such as "sqrt(x^2 + y^2 + z^2)" or "(temperature - 32) / 1.8".
+ * 
+ * Variables are the other datasets of the connection, named the same way as in the example code (lowercase, with spaces replaced by underscores,)
+ * or by their exact name in square brackets: "[Temperature Sensor] * 2".
+ * Supported operators: + - * / % ^ and parentheses.
+ * Supported functions: abs, sqrt, cbrt, exp, log, log10, sin, cos, tan, asin, acos, atan, atan2, floor, ceil, round, min, max, pow, hypot.
+ * Supported constants: pi, e.
+ * Supported filters, which remember previous samples:
+ *     lowpass(x, hz) or lowpass(x, hz, order)      Butterworth low-pass filter, order 1-8 (default 2)
+ *     highpass(x, hz) or highpass(x, hz, order)    Butterworth high-pass filter, order 1-8 (default 2)
+ *     bandpass(x, hz, q)                           Band-pass filter, 0dB at the center frequency
+ *     notch(x, hz, q)                              Notch filter
+ *     fir(x, tap0, tap1, ...)                      FIR filter, tap0 is multiplied by the newest sample
+ *     decimate(x, n)                               Average of each group of n samples, held until the next group is complete
+ * 
+ * The text is parsed once into a tree of nodes, then evaluated a block of samples at a time,
+ * so walking the tree costs the same for a block as it would for one sample, and each node is a simple loop over an array.
+ * Each node owns an array for its results, so an object must not be used by more than one thread. Compile it again for each thread.
+ * An expression with a filter must be evaluated for every sample, in order, because the filter's state carries over from one block to the next.
+ */
+public class FieldExpression {
+	
+	private final String text;
+	private final List<Field> inputs = new ArrayList<Field>();
+	private final IntSupplier sampleRate;
+	private final Node root;
+	private int position = 0; // only used while parsing
+	
+	/**
+	 * Parses an expression.
+	 * 
+	 * @param text                         The expression.
+	 * @param datasets                     Datasets that the expression may use.
+	 * @param sampleRate                   Provides the sample rate (in Hz) for filters. It may change, and filters will be redesigned if it does.
+	 * @throws IllegalArgumentException    If the expression is invalid. The message describes the problem, and is suitable for showing to the user.
+	 */
+	public FieldExpression(String text, List<Field> datasets, IntSupplier sampleRate) throws IllegalArgumentException {
+		
+		this.text = text;
+		this.sampleRate = sampleRate;
+		if(text.isBlank())
+			throw new IllegalArgumentException("An expression is required.");
+		
+		Node node = parseSum(datasets);
+		skipSpaces();
+		if(position < text.length())
+			throw new IllegalArgumentException("Unexpected \"" + text.charAt(position) + "\" at position " + (position + 1) + " of the expression.");
+		if(inputs.isEmpty())
+			throw new IllegalArgumentException("The expression must use at least one dataset.");
+		root = node;
+		
+	}
+	
+	/**
+	 * @return    Datasets used by the expression, in the order that evaluate() expects their samples.
+	 */
+	public List<Field> getInputs() {
+		
+		return inputs;
+		
+	}
+	
+	/**
+	 * Calculates a sequence of samples.
+	 * 
+	 * @param inputSlots      Samples of each input dataset, in the order of getInputs().
+	 * @param inputOffset     Index of the first sample in each of the inputSlots.
+	 * @param count           Number of samples to calculate. This must not exceed StorageFloats.BLOCK_SIZE.
+	 * @param output          Where to write the results.
+	 * @param outputOffset    Index where the first result should be written.
+	 */
+	public void evaluate(float[][] inputSlots, int inputOffset, int count, float[] output, int outputOffset) {
+		
+		root.evaluate(inputSlots, inputOffset, count);
+		System.arraycopy(root.values, 0, output, outputOffset, count);
+		
+	}
+	
+	/**
+	 * @return    True if the expression contains a filter, so every sample must be evaluated in order.
+	 */
+	public boolean isStateful() {
+		
+		return root.isStateful();
+		
+	}
+	
+	/**
+	 * Empties the state of any filters. This must be called before evaluating the first sample again (after the samples have been removed.)
+	 */
+	public void reset() {
+		
+		root.reset();
+		
+	}
+	
+	@Override public String toString() {
+		
+		return text;
+		
+	}
+	
+	/**
+	 * One operation in the tree. Evaluating a node fills its values[] with the results for a block of samples.
+	 */
+	private static abstract class Node {
+		
+		final float[] values = new float[StorageFloats.BLOCK_SIZE];
+		
+		abstract void evaluate(float[][] inputSlots, int offset, int count);
+		
+		boolean isConstant() { return false; }
+		boolean isStateful() { return false; }
+		void reset()         { }
+		
+	}
+	
+	private static class Constant extends Node {
+		
+		Constant(double value) {
+			Arrays.fill(values, (float) value);
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) { }
+		
+		@Override boolean isConstant() { return true; }
+		
+	}
+	
+	private static class Variable extends Node {
+		
+		final int inputN;
+		
+		Variable(int inputN) {
+			this.inputN = inputN;
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) {
+			System.arraycopy(inputSlots[inputN], offset, values, 0, count);
+		}
+		
+	}
+	
+	private static class Unary extends Node {
+		
+		final Node a;
+		final DoubleUnaryOperator function;
+		
+		Unary(Node a, DoubleUnaryOperator function) {
+			this.a = a;
+			this.function = function;
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) {
+			a.evaluate(inputSlots, offset, count);
+			for(int i = 0; i < count; i++)
+				values[i] = (float) function.applyAsDouble(a.values[i]);
+		}
+		
+		@Override boolean isStateful() { return a.isStateful(); }
+		@Override void reset()         { a.reset(); }
+		
+	}
+	
+	private static class Binary extends Node {
+		
+		final Node a;
+		final Node b;
+		final char operator; // + - * / % or 'f' to call the function
+		final DoubleBinaryOperator function;
+		
+		Binary(Node a, Node b, char operator, DoubleBinaryOperator function) {
+			this.a = a;
+			this.b = b;
+			this.operator = operator;
+			this.function = function;
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) {
+			a.evaluate(inputSlots, offset, count);
+			b.evaluate(inputSlots, offset, count);
+			float[] x = a.values;
+			float[] y = b.values;
+			// the switch is outside of the loops, so the common operators are simple loops that can be vectorized
+			switch(operator) {
+				case '+' -> { for(int i = 0; i < count; i++) values[i] = x[i] + y[i]; }
+				case '-' -> { for(int i = 0; i < count; i++) values[i] = x[i] - y[i]; }
+				case '*' -> { for(int i = 0; i < count; i++) values[i] = x[i] * y[i]; }
+				case '/' -> { for(int i = 0; i < count; i++) values[i] = x[i] / y[i]; }
+				case '%' -> { for(int i = 0; i < count; i++) values[i] = x[i] % y[i]; }
+				default  -> { for(int i = 0; i < count; i++) values[i] = (float) function.applyAsDouble(x[i], y[i]); }
+			}
+		}
+		
+		@Override boolean isStateful() { return a.isStateful() || b.isStateful(); }
+		@Override void reset()         { a.reset(); b.reset(); }
+		
+	}
+	
+	/**
+	 * A cascade of second-order IIR sections, in Direct Form II Transposed.
+	 * The coefficients are designed for the current sample rate, and redesigned if the sample rate changes.
+	 * The state is primed with the first sample, so the output starts at its steady state instead of ringing up from zero.
+	 */
+	private static class Biquads extends Node {
+		
+		interface Design {
+			double[][] getSections(double sampleRate); // [sectionN] = {b0, b1, b2, a1, a2} normalized so a0 = 1
+		}
+		
+		final Node a;
+		final Design design;
+		final IntSupplier sampleRate;
+		int designedSampleRate = 0;
+		double[][] sections;
+		double[] s1; // state of each section
+		double[] s2;
+		boolean primed = false;
+		
+		Biquads(Node a, Design design, IntSupplier sampleRate) {
+			this.a = a;
+			this.design = design;
+			this.sampleRate = sampleRate;
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) {
+			a.evaluate(inputSlots, offset, count);
+			int rate = sampleRate.getAsInt();
+			if(rate != designedSampleRate) {
+				sections = design.getSections(rate);
+				designedSampleRate = rate;
+				if(s1 == null || s1.length != sections.length) {
+					s1 = new double[sections.length];
+					s2 = new double[sections.length];
+					primed = false;
+				}
+			}
+			if(!primed && count > 0) {
+				// steady state for a constant input: y = gain * x
+				double x = a.values[0];
+				for(int sectionN = 0; sectionN < sections.length; sectionN++) {
+					double[] c = sections[sectionN];
+					double y = x * (c[0] + c[1] + c[2]) / (1 + c[3] + c[4]);
+					s1[sectionN] = y - c[0] * x;
+					s2[sectionN] = c[2] * x - c[4] * y;
+					x = y;
+				}
+				primed = true;
+			}
+			float[] input = a.values;
+			for(int sectionN = 0; sectionN < sections.length; sectionN++) {
+				double[] c = sections[sectionN];
+				double b0 = c[0], b1 = c[1], b2 = c[2], a1 = c[3], a2 = c[4];
+				double z1 = s1[sectionN];
+				double z2 = s2[sectionN];
+				for(int i = 0; i < count; i++) {
+					double x = input[i];
+					double y = b0 * x + z1;
+					z1 = b1 * x - a1 * y + z2;
+					z2 = b2 * x - a2 * y;
+					values[i] = (float) y;
+				}
+				s1[sectionN] = z1;
+				s2[sectionN] = z2;
+				input = values; // later sections filter the output of the previous section
+			}
+		}
+		
+		@Override boolean isStateful() { return true; }
+		@Override void reset()         { a.reset(); primed = false; }
+		
+		/**
+		 * @param hz          Cutoff frequency.
+		 * @param order       Filter order, 1-8.
+		 * @param highpass    True for a high-pass filter, false for a low-pass filter.
+		 * @return            A Butterworth filter: a first-order section if the order is odd, then a second-order section for each pair of poles.
+		 */
+		static Design butterworth(double hz, int order, boolean highpass) {
+			return sampleRate -> {
+				List<double[]> sections = new ArrayList<double[]>();
+				double frequency = Math.min(hz, 0.49 * sampleRate); // must be below the Nyquist frequency
+				if(order % 2 == 1) {
+					double k = Math.tan(Math.PI * frequency / sampleRate);
+					double a1 = (k - 1) / (k + 1);
+					sections.add(highpass ? new double[] {1 / (1 + k), -1 / (1 + k), 0, a1, 0} :
+					                        new double[] {k / (1 + k),  k / (1 + k), 0, a1, 0});
+				}
+				for(int k = 1; k <= order / 2; k++) {
+					double q = -1 / (2 * Math.cos(Math.PI * (2 * k + order - 1) / (2 * order)));
+					sections.add(rbj(highpass ? 'h' : 'l', frequency, q, sampleRate));
+				}
+				return sections.toArray(new double[0][]);
+			};
+		}
+		
+		/**
+		 * @param type          'l' for low-pass, 'h' for high-pass, 'b' for band-pass or 'n' for notch.
+		 * @param hz            Cutoff or center frequency.
+		 * @param q             Quality factor.
+		 * @param sampleRate    Sample rate.
+		 * @return              One second-order section, from the "Audio EQ Cookbook" by Robert Bristow-Johnson.
+		 */
+		static double[] rbj(char type, double hz, double q, double sampleRate) {
+			double w0 = 2 * Math.PI * Math.min(hz, 0.49 * sampleRate) / sampleRate;
+			double cos = Math.cos(w0);
+			double alpha = Math.sin(w0) / (2 * q);
+			double a0 = 1 + alpha;
+			double[] b = switch(type) {
+				case 'l' -> new double[] {(1 - cos) / 2,  1 - cos,    (1 - cos) / 2};
+				case 'h' -> new double[] {(1 + cos) / 2,  -(1 + cos), (1 + cos) / 2};
+				case 'b' -> new double[] {alpha,          0,          -alpha};
+				default  -> new double[] {1,              -2 * cos,   1};
+			};
+			return new double[] {b[0] / a0, b[1] / a0, b[2] / a0, -2 * cos / a0, (1 - alpha) / a0};
+		}
+		
+	}
+	
+	/**
+	 * A FIR filter. The previous samples are kept in front of each block, so every output is a simple dot product.
+	 */
+	private static class Fir extends Node {
+		
+		final Node a;
+		final float[] taps;
+		final float[] history; // [0, taps.length - 1) = the previous samples, then the current block
+		boolean primed = false;
+		
+		Fir(Node a, float[] taps) {
+			this.a = a;
+			this.taps = taps;
+			history = new float[taps.length - 1 + StorageFloats.BLOCK_SIZE];
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) {
+			a.evaluate(inputSlots, offset, count);
+			int previousCount = taps.length - 1;
+			if(!primed && count > 0) {
+				Arrays.fill(history, 0, previousCount, a.values[0]);
+				primed = true;
+			}
+			System.arraycopy(a.values, 0, history, previousCount, count);
+			for(int i = 0; i < count; i++) {
+				float sum = 0;
+				for(int tapN = 0; tapN < taps.length; tapN++)
+					sum += taps[tapN] * history[i + previousCount - tapN];
+				values[i] = sum;
+			}
+			System.arraycopy(history, count, history, 0, previousCount);
+		}
+		
+		@Override boolean isStateful() { return true; }
+		@Override void reset()         { a.reset(); primed = false; }
+		
+	}
+	
+	/**
+	 * A first-order CIC decimator: the average of each group of samples, held until the next group is complete.
+	 * Every dataset must have a value for every sample number, so the output is held instead of being removed.
+	 */
+	private static class Decimate extends Node {
+		
+		final Node a;
+		final int factor;
+		double sum = 0;
+		int sumCount = 0;
+		float held;
+		boolean primed = false;
+		
+		Decimate(Node a, int factor) {
+			this.a = a;
+			this.factor = factor;
+		}
+		
+		@Override void evaluate(float[][] inputSlots, int offset, int count) {
+			a.evaluate(inputSlots, offset, count);
+			if(!primed && count > 0) {
+				held = a.values[0];
+				primed = true;
+			}
+			for(int i = 0; i < count; i++) {
+				sum += a.values[i];
+				if(++sumCount == factor) {
+					held = (float) (sum / factor);
+					sum = 0;
+					sumCount = 0;
+				}
+				values[i] = held;
+			}
+		}
+		
+		@Override boolean isStateful() { return true; }
+		@Override void reset()         { a.reset(); sum = 0; sumCount = 0; primed = false; }
+		
+	}
+	
+	/**
+	 * Replaces a node with a constant if it only depends on constants.
+	 */
+	private static Node fold(Node node, Node... children) {
+		
+		if(Arrays.stream(children).allMatch(Node::isConstant)) {
+			node.evaluate(null, 0, 1);
+			return new Constant(node.values[0]);
+		}
+		return node;
+		
+	}
+	
+	private void skipSpaces() {
+		
+		while(position < text.length() && Character.isWhitespace(text.charAt(position)))
+			position++;
+		
+	}
+	
+	private boolean accept(char c) {
+		
+		skipSpaces();
+		if(position < text.length() && text.charAt(position) == c) {
+			position++;
+			return true;
+		}
+		return false;
+		
+	}
+	
+	private void expect(char c) {
+		
+		if(!accept(c))
+			throw new IllegalArgumentException((position < text.length() ? "Unexpected \"" + text.charAt(position) + "\"" : "Unexpected end of the expression") + ", expected \"" + c + "\".");
+		
+	}
+	
+	// sum = product (("+" | "-") product)*
+	private Node parseSum(List<Field> datasets) {
+		
+		Node node = parseProduct(datasets);
+		while(true) {
+			char operator = accept('+') ? '+' :
+			                accept('-') ? '-' :
+			                              0;
+			if(operator == 0)
+				return node;
+			Node b = parseProduct(datasets);
+			node = fold(new Binary(node, b, operator, null), node, b);
+		}
+		
+	}
+	
+	// product = unary (("*" | "/" | "%") unary)*
+	private Node parseProduct(List<Field> datasets) {
+		
+		Node node = parseUnary(datasets);
+		while(true) {
+			char operator = accept('*') ? '*' :
+			                accept('/') ? '/' :
+			                accept('%') ? '%' :
+			                              0;
+			if(operator == 0)
+				return node;
+			Node b = parseUnary(datasets);
+			node = fold(new Binary(node, b, operator, null), node, b);
+		}
+		
+	}
+	
+	// unary = ("-" | "+") unary | power
+	private Node parseUnary(List<Field> datasets) {
+		
+		if(accept('-')) {
+			Node a = parseUnary(datasets);
+			return fold(new Unary(a, x -> -x), a);
+		}
+		if(accept('+'))
+			return parseUnary(datasets);
+		return parsePower(datasets);
+		
+	}
+	
+	// power = primary ("^" unary)?    so 2^3^2 = 2^(3^2) and 2^-1 = 0.5
+	private Node parsePower(List<Field> datasets) {
+		
+		Node node = parsePrimary(datasets);
+		if(accept('^')) {
+			Node b = parseUnary(datasets);
+			node = fold(new Binary(node, b, 'f', Math::pow), node, b);
+		}
+		return node;
+		
+	}
+	
+	// primary = number | "(" sum ")" | "[" dataset name "]" | name | function "(" sum ("," sum)? ")" | filter
+	private Node parsePrimary(List<Field> datasets) {
+		
+		skipSpaces();
+		if(position >= text.length())
+			throw new IllegalArgumentException("Unexpected end of the expression.");
+		
+		char c = text.charAt(position);
+		int start = position;
+		
+		if(accept('(')) {
+			Node node = parseSum(datasets);
+			expect(')');
+			return node;
+		}
+		
+		if(accept('[')) {
+			int end = text.indexOf(']', position);
+			if(end < 0)
+				throw new IllegalArgumentException("Missing \"]\" after \"" + text.substring(start) + "\".");
+			String name = text.substring(position, end);
+			position = end + 1;
+			Field dataset = datasets.stream().filter(d -> d.name.get().equals(name)).findFirst().orElse(null);
+			if(dataset == null)
+				throw new IllegalArgumentException("There is no dataset named \"" + name + "\".");
+			return variable(dataset);
+		}
+		
+		if(Character.isDigit(c) || c == '.') {
+			while(position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.'))
+				position++;
+			if(position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')) {
+				int exponent = position + 1;
+				if(exponent < text.length() && (text.charAt(exponent) == '+' || text.charAt(exponent) == '-'))
+					exponent++;
+				if(exponent < text.length() && Character.isDigit(text.charAt(exponent))) {
+					position = exponent;
+					while(position < text.length() && Character.isDigit(text.charAt(position)))
+						position++;
+				}
+			}
+			try {
+				return new Constant(Double.parseDouble(text.substring(start, position)));
+			} catch(NumberFormatException e) {
+				throw new IllegalArgumentException("Invalid number \"" + text.substring(start, position) + "\".");
+			}
+		}
+		
+		if(Character.isLetter(c) || c == '_') {
+			while(position < text.length() && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_'))
+				position++;
+			String name = text.substring(start, position);
+			
+			// datasets take priority over functions and constants, so a dataset named "e" can still be used
+			Field dataset = datasets.stream().filter(d -> d.getExampleVariableName().equals(name)).findFirst().orElse(null);
+			if(dataset != null)
+				return variable(dataset);
+			
+			if(name.equals("pi"))
+				return new Constant(Math.PI);
+			if(name.equals("e"))
+				return new Constant(Math.E);
+			
+			DoubleUnaryOperator unary = switch(name) {
+				case "abs"   -> Math::abs;
+				case "sqrt"  -> Math::sqrt;
+				case "cbrt"  -> Math::cbrt;
+				case "exp"   -> Math::exp;
+				case "log"   -> Math::log;
+				case "log10" -> Math::log10;
+				case "sin"   -> Math::sin;
+				case "cos"   -> Math::cos;
+				case "tan"   -> Math::tan;
+				case "asin"  -> Math::asin;
+				case "acos"  -> Math::acos;
+				case "atan"  -> Math::atan;
+				case "floor" -> Math::floor;
+				case "ceil"  -> Math::ceil;
+				case "round" -> x -> Math.round(x);
+				default      -> null;
+			};
+			DoubleBinaryOperator binary = switch(name) {
+				case "atan2" -> Math::atan2;
+				case "min"   -> Math::min;
+				case "max"   -> Math::max;
+				case "pow"   -> Math::pow;
+				case "hypot" -> Math::hypot;
+				default      -> null;
+			};
+			if(List.of("lowpass", "highpass", "bandpass", "notch", "fir", "decimate").contains(name))
+				return parseFilter(name, datasets);
+			if(unary == null && binary == null)
+				throw new IllegalArgumentException("There is no dataset or function named \"" + name + "\".");
+			
+			expect('(');
+			Node a = parseSum(datasets);
+			if(unary != null) {
+				expect(')');
+				return fold(new Unary(a, unary), a);
+			}
+			expect(',');
+			Node b = parseSum(datasets);
+			expect(')');
+			return fold(new Binary(a, b, 'f', binary), a, b);
+		}
+		
+		throw new IllegalArgumentException("Unexpected \"" + c + "\" at position " + (position + 1) + " of the expression.");
+		
+	}
+	
+	// filter = name "(" sum ("," number)* ")"    the settings may be constant expressions like "1/3"
+	private Node parseFilter(String name, List<Field> datasets) {
+		
+		expect('(');
+		Node input = parseSum(datasets);
+		List<Double> settings = new ArrayList<Double>();
+		while(accept(',')) {
+			Node setting = parseSum(datasets);
+			if(!setting.isConstant())
+				throw new IllegalArgumentException("The settings of " + name + "() must be numbers.");
+			settings.add((double) setting.values[0]);
+		}
+		expect(')');
+		
+		int count = settings.size();
+		switch(name) {
+			case "lowpass", "highpass" -> {
+				if(count < 1 || count > 2)
+					throw new IllegalArgumentException(name + "() requires a frequency and an optional order, such as " + name + "(x, 10) or " + name + "(x, 10, 4).");
+				double hz = settings.get(0);
+				double order = (count == 2) ? settings.get(1) : 2;
+				if(!(hz > 0))
+					throw new IllegalArgumentException("The frequency of " + name + "() must be greater than 0.");
+				if(order != Math.rint(order) || order < 1 || order > 8)
+					throw new IllegalArgumentException("The order of " + name + "() must be an integer between 1 and 8.");
+				return new Biquads(input, Biquads.butterworth(hz, (int) order, name.equals("highpass")), sampleRate);
+			}
+			case "bandpass", "notch" -> {
+				if(count != 2)
+					throw new IllegalArgumentException(name + "() requires a frequency and a Q factor, such as " + name + "(x, 60, 10).");
+				double hz = settings.get(0);
+				double q = settings.get(1);
+				if(!(hz > 0) || !(q > 0))
+					throw new IllegalArgumentException("The frequency and Q factor of " + name + "() must be greater than 0.");
+				char type = name.equals("bandpass") ? 'b' : 'n';
+				return new Biquads(input, rate -> new double[][] {Biquads.rbj(type, hz, q, rate)}, sampleRate);
+			}
+			case "fir" -> {
+				if(count < 1)
+					throw new IllegalArgumentException("fir() requires at least one tap, such as fir(x, 0.25, 0.5, 0.25).");
+				float[] taps = new float[count];
+				for(int i = 0; i < count; i++)
+					taps[i] = settings.get(i).floatValue();
+				return new Fir(input, taps);
+			}
+			default -> {
+				double factor = (count == 1) ? settings.get(0) : 0;
+				if(count != 1 || factor != Math.rint(factor) || factor < 1)
+					throw new IllegalArgumentException("decimate() requires a positive integer factor, such as decimate(x, 10).");
+				return new Decimate(input, (int) factor);
+			}
+		}
+		
+	}
+	
+	private Node variable(Field dataset) {
+		
+		if(!inputs.contains(dataset))
+			inputs.add(dataset);
+		return new Variable(inputs.indexOf(dataset));
+		
+	}
+	
+}
@@ -101,9 +101,10 @@ public class Main {
 				}
 			});
 			
-			// automatically import settings/CSV/MKV files if their names start with "default" and are located in the current working directory
+			// automatically import settings/CSV/TVB/MKV files if their names start with "default" and are located in the current working directory
 			List<String> files = Stream.of(new File(".").list()).filter(file -> file.equals("default.txt") || 
 			                                                                   (file.startsWith("default - connection ") && file.endsWith(".csv")) ||
+			                                                                   (file.startsWith("default - connection ") && file.endsWith(".tvb")) ||
 			                                                                   (file.startsWith("default - connection ") && file.endsWith(".mkv"))).toList();
 			if(!files.contains("default.txt"))
 				Notifications.showHintUntil("Start by connecting to a device or opening a file by using the buttons below.", () -> false, true);
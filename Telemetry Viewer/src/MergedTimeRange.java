@@ -0,0 +1,102 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracks the overall time range of all connections.
+ * This does not merge the timestamps themselves, only the first and last timestamps of each connection.
+ * 
+ * The first and last timestamps of every connection are merged as samples and images arrive, so the charts and timeline can get the overall time range without visiting every connection.
+ * Any removal of data (clearing a connection, or removing a connection) rebuilds the merged range from the remaining connections.
+ * Each connection's timestamps are already sorted, so the sample numbers of every connection at a specific time are found with one binary search per connection,
+ * and each connection's TimeIndex memoizes those searches for the rest of the frame.
+ */
+public class MergedTimeRange {
+	
+	private static volatile long firstTimestamp = Long.MAX_VALUE;
+	private static volatile long lastTimestamp  = Long.MIN_VALUE;
+	
+	/**
+	 * Merges the time range of a connection into the overall time range. Call this after a connection acquires new samples or images.
+	 * 
+	 * @param connectionFirstTimestamp    Timestamp of the connection's first sample or image.
+	 * @param connectionLastTimestamp     Timestamp of the connection's most recent sample or image.
+	 */
+	public static synchronized void extend(long connectionFirstTimestamp, long connectionLastTimestamp) {
+		
+		if(connectionFirstTimestamp < firstTimestamp)
+			firstTimestamp = connectionFirstTimestamp;
+		if(connectionLastTimestamp > lastTimestamp)
+			lastTimestamp = connectionLastTimestamp;
+		
+	}
+	
+	/**
+	 * Recalculates the overall time range from the connections. Call this after data has been removed, or a connection has been added or removed.
+	 */
+	public static synchronized void rebuild() {
+		
+		long first = Long.MAX_VALUE;
+		long last  = Long.MIN_VALUE;
+		for(Connection connection : Connections.allConnections.toArray(Connection[]::new)) {
+			if(connection.getSampleCount() > 0) {
+				first = Long.min(first, connection.getFirstTimestamp());
+				last  = Long.max(last,  connection.getLastTimestamp());
+			}
+		}
+		firstTimestamp = first;
+		lastTimestamp  = last;
+		
+	}
+	
+	/**
+	 * @return    Timestamp of the first sample or camera image, or Long.MAX_VALUE if no telemetry has been acquired.
+	 */
+	public static long getFirstTimestamp() {
+		
+		return firstTimestamp;
+		
+	}
+	
+	/**
+	 * @return    Timestamp of the last sample or camera image, or Long.MIN_VALUE if no telemetry has been acquired.
+	 */
+	public static long getLastTimestamp() {
+		
+		return lastTimestamp;
+		
+	}
+	
+	/**
+	 * Determines the sample number of every telemetry connection at a specific time.
+	 * If a connection does not have a sample at exactly that time, its sample rate is used to extrapolate from the closest sample at or before that time.
+	 * 
+	 * @param timestamp            The timestamp, in milliseconds.
+	 * @param knownConnection      A connection whose sample number is already known, or null if none.
+	 * @param knownSampleNumber    Sample number to use for knownConnection.
+	 * @return                     Map of each telemetry connection to its sample number.
+	 */
+	public static Map<ConnectionTelemetry, Integer> getSampleNumbersAt(long timestamp, ConnectionTelemetry knownConnection, int knownSampleNumber) {
+		
+		Map<ConnectionTelemetry, Integer> sampleNumbers = new HashMap<ConnectionTelemetry, Integer>();
+		
+		for(ConnectionTelemetry connection : Connections.telemetryConnections) {
+			if(connection == knownConnection) {
+				sampleNumbers.put(connection, knownSampleNumber);
+				continue;
+			}
+			int sampleNumber = connection.getClosestSampleNumberAtOrBefore(timestamp, connection.getSampleCount() - 1);
+			long sampleTimestamp = connection.getTimestamp(sampleNumber);
+			if(sampleTimestamp != timestamp) {
+				long errorMilliseconds = timestamp - sampleTimestamp;
+				double samplesPerMillisecond = (double) connection.getSampleRate() / 1000.0;
+				int errorSampleCount = (int) Math.round(samplesPerMillisecond * errorMilliseconds);
+				sampleNumber += errorSampleCount;
+			}
+			sampleNumbers.put(connection, sampleNumber);
+		}
+		
+		return sampleNumbers;
+		
+	}
+	
+}
@@ -415,8 +415,9 @@ public class OpenGL {
 	 *                      If false, the anchor is the bottom-left corner of this box.
 	 * @param title         Text to show, centered, at the top of the box. Can be null.
 	 * @param lineHalves    Pieces of text that will alternately be drawn left-aligned then right-aligned, with two pieces making up each line.
+	 * @return              Height of the box, in pixels.
 	 */
-	public static void drawTextBox(GL2ES3 gl, float x, float y, boolean centered, String title, List<String> lineHalves) {
+	public static float drawTextBox(GL2ES3 gl, float x, float y, boolean centered, String title, List<String> lineHalves) {
 		
 		int lineCount = (title == null ? 0 : 1) + (lineHalves.size() / 2);
 		int lineHeight = (int) (Theme.tickTextPadding + OpenGL.smallTextHeight);
@@ -450,6 +451,8 @@ public class OpenGL {
 			yTextBaseline -= lineHeight;
 		}
 		
+		return boxHeight;
+		
 	}
 	
 	/**
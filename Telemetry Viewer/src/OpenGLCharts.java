@@ -469,6 +469,9 @@ public class OpenGLCharts extends JPanel {
 					               (Math.abs(endX - startX) + 1) * tileWidth,
 					               (Math.abs(endY - startY) + 1) * tileHeight);
 					
+					// the charts, triggers and timeline often need the same timestamp-to-sample-number conversions, so only do each of them once per frame
+					Connections.telemetryConnections.forEach(connection -> connection.startFrame());
+					
 					// determine the timestamp and sample numbers corresponding to the right-edge of a time domain plot
 					long now = System.currentTimeMillis();
 					long endTimestamp = switch(state) {
@@ -495,23 +498,7 @@ public class OpenGLCharts extends JPanel {
 					case PLAYING_LIVE               -> Connections.telemetryConnections.stream()
 					                                              .collect(Collectors.toMap(connection -> connection,
 					                                                                        connection -> connection.getSampleCount() - 1));
-					case PAUSED, REWINDING, PLAYING -> Connections.telemetryConnections.stream()
-					                                              .collect(Collectors.toMap(connection -> connection,
-					                                                                        connection -> {
-					                                                                            if(connection == nonLivePrimaryConnection) {
-					                                                                                return nonLivePrimaryConnectionSampleNumber;
-					                                                                            } else {
-					                                                                                int sampleNumber = connection.getClosestSampleNumberAtOrBefore(nonLiveTimestamp, connection.getSampleCount() - 1);
-					                                                                                long timestamp = connection.getTimestamp(sampleNumber);
-					                                                                                if(timestamp != nonLiveTimestamp) {
-					                                                                                    long errorMilliseconds = nonLiveTimestamp - timestamp;
-					                                                                                    double samplesPerMillisecond = (double) connection.getSampleRate() / 1000.0;
-					                                                                                    int errorSampleCount = (int) Math.round(samplesPerMillisecond * errorMilliseconds);
-					                                                                                    sampleNumber += errorSampleCount;
-					                                                                                }
-					                                                                                return sampleNumber;
-					                                                                            }
-					                                                                        }));
+					case PAUSED, REWINDING, PLAYING -> MergedTimeRange.getSampleNumbersAt(nonLiveTimestamp, nonLivePrimaryConnection, nonLivePrimaryConnectionSampleNumber);
 					};
 					
 					// process the global trigger if enabled
@@ -525,23 +512,7 @@ public class OpenGLCharts extends JPanel {
 						triggerDetails = globalTrigger.checkForTrigger(endSampleNumber, endTimestamp, zoomLevel);
 						
 						endTimestamp = triggerDetails.chartEndTimestamp();
-						endSampleNumbers = Connections.telemetryConnections.stream()
-						                              .collect(Collectors.toMap(connection -> connection,
-						                                                        connection -> {
-						                                                            if(connection == triggerDetails.connection()) {
-						                                                                return triggerDetails.chartEndSampleNumber();
-						                                                            } else {
-						                                                                int sampleNumber = connection.getClosestSampleNumberAtOrBefore(triggerDetails.chartEndTimestamp(), connection.getSampleCount() - 1);
-						                                                                long timestamp = connection.getTimestamp(sampleNumber);
-						                                                                if(timestamp != triggerDetails.chartEndTimestamp()) {
-						                                                                    long errorMilliseconds = triggerDetails.chartEndTimestamp() - timestamp;
-						                                                                    double samplesPerMillisecond = (double) connection.getSampleRate() / 1000.0;
-						                                                                    int errorSampleCount = (int) Math.round(samplesPerMillisecond * errorMilliseconds);
-						                                                                    sampleNumber += errorSampleCount;
-						                                                                }
-						                                                                return sampleNumber;
-						                                                            }
-						                                                        }));
+						endSampleNumbers = MergedTimeRange.getSampleNumbersAt(triggerDetails.chartEndTimestamp(), triggerDetails.connection(), triggerDetails.chartEndSampleNumber());
 					}
 					
 					// draw the charts
@@ -678,13 +649,53 @@ public class OpenGLCharts extends JPanel {
 					// show times of *previous frame*
 					float xBoxCenter = (canvasWidth / 2f);
 					float yBoxTop = top.get();
-					OpenGL.drawTextBox(gl, xBoxCenter, yBoxTop, true, "Entire Frame:", List.of(
+					float boxHeight = OpenGL.drawTextBox(gl, xBoxCenter, yBoxTop, true, "Entire Frame:", List.of(
 					                                    String.format("CPU = %.3fms ", previousCpuMilliseconds),
 					                                    String.format("(%.3fms)",      averageCpuMilliseconds ),
 					                        !openGLES ? String.format("GPU = %.3fms ", previousGpuMilliseconds) : "GPU = unknown",
 					                        !openGLES ? String.format("(%.3fms)",      averageGpuMilliseconds ) : "",
 					                                    String.format("FPS = %.2f ",   previousFps),
 					                                    String.format("(%.2f)",        averageFps)));
+					
+					// show how each binary connection is distributing work to its parser threads, and if any connection could not keep up
+					for(ConnectionTelemetry connection : Connections.telemetryConnections) {
+						ConnectionTelemetry.ParserStatistics parsers = connection.getParserStatistics();
+						long droppedByteCount = connection.getDroppedByteCount();
+						long spilledByteCount = connection.getSpilledByteCount();
+						List<String> lines = new ArrayList<String>();
+						if(parsers != null) {
+							lines.add("Received = ");
+							lines.add(String.format("%.3fMB/s", parsers.bytesPerSecond() / 1000000.0));
+							lines.add("Parse Cost = ");
+							lines.add(parsers.nanosecondsPerPacket() == 0 ? "unknown" : String.format("%.1fns/packet", parsers.nanosecondsPerPacket()));
+							lines.add("Threads = ");
+							lines.add(parsers.threadCount() == 1 ? "1 (processing thread)" : String.format("%d (%d blocks each)", parsers.threadCount(), parsers.blockCountPerTask()));
+							double[] utilization = parsers.utilization();
+							for(int i = 0; i < utilization.length; i++) {
+								if(i >= parsers.threadCount() && utilization[i] == 0)
+									continue;
+								lines.add("Thread " + (i + 1) + " = ");
+								lines.add(String.format("%.1f%%", utilization[i] * 100.0));
+							}
+						}
+						if(droppedByteCount > 0) {
+							lines.add("Dropped = ");
+							lines.add(String.format("%,d bytes", droppedByteCount));
+						}
+						if(spilledByteCount > 0) {
+							lines.add("Spilled = ");
+							lines.add(String.format("%,d bytes", spilledByteCount));
+						}
+						TimeIndex.Statistics timeIndex = connection.getTimeIndexStatistics();
+						if(timeIndex.requestCount() > 0) {
+							lines.add("Time Lookups = ");
+							lines.add(String.format("%d (%d avoided)", timeIndex.lookupCount(), timeIndex.requestCount() - timeIndex.lookupCount()));
+						}
+						if(lines.isEmpty())
+							continue;
+						yBoxTop -= boxHeight + Theme.tickTextPadding;
+						boxHeight = OpenGL.drawTextBox(gl, xBoxCenter, yBoxTop, true, connection.getName() + ":", lines);
+					}
 				}
 				
 			}
@@ -326,6 +326,7 @@ public class OpenGLHistogramChart extends Chart {
 		int[][] bins = new int[datasetsCount][binsCount]; // [datasetN][binN]
 		int maxBinSize = 0;
 		if(sampleCount > 0) {
+			datasets.prefetch(firstSampleNumber, lastSampleNumber, false);
 			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
 				FloatBuffer samples = datasets.getSamplesBuffer(datasets.getNormal(datasetN), firstSampleNumber, lastSampleNumber);
 				for(int sampleN = 0; sampleN < sampleCount; sampleN++) {
@@ -141,6 +141,7 @@ public class OpenGLStatisticsChart extends Chart {
 		if(percentileVisibility.get())        text[0][line++] = "90th Pctl";
 		
 		// subsequent columns of text are the dataset names and numeric values
+		datasets.prefetch(firstSampleNumber, lastSampleNumber, false);
 		if(sampleCount > 0)
 			for(int datasetN = 0; datasetN < datasetsCount; datasetN++) {
 				Field dataset = datasets.getNormal(datasetN);
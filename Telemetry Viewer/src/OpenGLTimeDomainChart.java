@@ -207,9 +207,27 @@ public class OpenGLTimeDomainChart extends Chart {
 		                if(plotSampleCount < 2)
 		                    return null;
 		                
-		                if(!cacheEnabled.get()) {
+		                int bucketSize = datasets.getBucketSize((int) minSampleNumber, (int) maxSampleNumber, plot.width());
+		                
+		                if(!cacheEnabled.get() && bucketSize > 1) {
+		                    
+		                    // cache disabled, and there are many samples per pixel, so draw the downsampled streams instead of every sample
+		                    float[] plotMatrix2 = Arrays.copyOf(plot.matrix(), 16);
+		                    OpenGL.scaleMatrix    (plotMatrix2, (float) plot.width()/plotDomain, (float) plot.height()/plotRange, 1);
+		                    OpenGL.translateMatrix(plotMatrix2,                               0,                       -plotMinY, 0);
+		                    OpenGL.useMatrix(gl, plotMatrix2);
+		                    
+		                    for(int i = 0; i < datasetsCount; i++) {
+		                        FloatBuffer buffer = datasets.getDownsampledBuffer(datasets.getNormal(i), bucketSize, (int) minSampleNumber, (int) maxSampleNumber, sampleCountMode, plotMinX);
+		                        OpenGL.drawLinesXy(gl, GL3.GL_LINE_STRIP, datasets.getNormal(i).color.getGl(), buffer, buffer.remaining() / 2);
+		                    }
+		                    
+		                    OpenGL.useMatrix(gl, plot.matrix());
+		                    
+		                } else if(!cacheEnabled.get()) {
 		                    
 		                    // cache disabled, so acquire all samples
+		                    datasets.prefetch((int) minSampleNumber, (int) maxSampleNumber, !sampleCountMode);
 		                    FloatBuffer   bufferX = sampleCountMode ? null : datasets.getTimestampsBuffer((int) minSampleNumber, (int) maxSampleNumber, plotMinX);
 		                    FloatBuffer[] bufferY = new FloatBuffer[datasetsCount];
 		                    for(int i = 0; i < datasetsCount; i++)
@@ -339,6 +357,7 @@ public class OpenGLTimeDomainChart extends Chart {
 			                        // acquire the samples
 			                        int firstSampleNumber = sampleCountMode ? (int) firstX : datasets.getClosestSampleNumberAtOrBefore(firstX, (int) lastValidX);
 			                        int  lastSampleNumber = sampleCountMode ? (int)  lastX : datasets.getClosestSampleNumberAfter(lastX);
+			                        datasets.prefetch(firstSampleNumber, lastSampleNumber, !sampleCountMode);
 			                        FloatBuffer bufferX   = sampleCountMode ?         null : datasets.getTimestampsBuffer(firstSampleNumber, lastSampleNumber, xOffset);
 			                        FloatBuffer[] buffersY = new FloatBuffer[datasets.normalsCount()];
 			                        for(int i = 0; i < datasets.normalsCount(); i++)
@@ -599,8 +618,8 @@ public class OpenGLTimeDomainChart extends Chart {
 		                } else {
 		                    long closestSampleNumberBefore = datasets.getClosestSampleNumberAtOrBefore(mousePlotX, (int) maxSampleNumber - 1);
 		                    long closestSampleNumberAfter = Math.min(maxSampleNumber, closestSampleNumberBefore + 1);
-		                    double beforeError = (double) (((float) plot.mouseX() / plot.width()) * plotDomain) - (double) (datasets.getTimestamp((int) closestSampleNumberBefore) - plotMinX);
-		                    double afterError = (double) (datasets.getTimestamp((int) closestSampleNumberAfter) - plotMinX) - (double) (((float) plot.mouseX() / plot.width()) * plotDomain);
+		                    double beforeError = (double) (((float) plot.mouseX() / plot.width()) * plotDomain) - (double) datasets.getTimestampRelativeTo((int) closestSampleNumberBefore, plotMinX);
+		                    double afterError = (double) datasets.getTimestampRelativeTo((int) closestSampleNumberAfter, plotMinX) - (double) (((float) plot.mouseX() / plot.width()) * plotDomain);
 		                    sampleNumber = (beforeError < afterError) ? (int) closestSampleNumberBefore : (int) closestSampleNumberAfter;
 		                }
 		                
@@ -677,8 +696,8 @@ public class OpenGLTimeDomainChart extends Chart {
 	 */
 	private float getPixelXforSampleNumber(long sampleNumber, float plotWidth, long plotMinX, long plotDomain) {
 		
-		return sampleCountMode ? (float) (sampleNumber - plotMinX)                              / (float) plotDomain * plotWidth :
-		                         (float) (datasets.getTimestamp((int) sampleNumber) - plotMinX) / (float) plotDomain * plotWidth;
+		return sampleCountMode ? (float) (sampleNumber - plotMinX)                                 / (float) plotDomain * plotWidth :
+		                         datasets.getTimestampRelativeTo((int) sampleNumber, plotMinX)     / (float) plotDomain * plotWidth;
 		
 	}
 	
@@ -0,0 +1,337 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A raw capture is a file containing the bytes received by a connection, exactly as they arrived, along with when they arrived.
+ * It can be replayed by a "Replay" connection, so the same bytes can be parsed again (possibly with a corrected data structure, or as a parser benchmark.)
+ * 
+ * The file starts with an 8 byte magic number ("TVRAW001") and the time the capture started (8 bytes, milliseconds since 1970-01-01.)
+ * Then each received chunk of bytes is stored as a record:
+ *     8 bytes: nanoseconds since the capture started
+ *     4 bytes: byte count
+ *     N bytes: the received bytes
+ * All numbers are little-endian.
+ */
+public class RawCapture {
+	
+	private static final byte[] MAGIC = "TVRAW001".getBytes(StandardCharsets.US_ASCII);
+	private static final int HEADER_BYTE_COUNT = 16;
+	private static final int RECORD_HEADER_BYTE_COUNT = 12;
+	private static final int BUFFER_BYTE_COUNT = 4194304; // 4MB, also the maximum record size
+	
+	/**
+	 * Writes a raw capture file. Received bytes are copied into a large buffer, and full buffers are written to disk by a separate thread,
+	 * so the receiving thread never waits for the disk unless the disk is slower than the connection.
+	 */
+	public static class Recorder {
+		
+		private final String path;
+		private final FileChannel file;
+		private final long startNanoseconds = System.nanoTime();
+		private final BlockingQueue<ByteBuffer> emptyBuffers = new ArrayBlockingQueue<ByteBuffer>(3);
+		private final BlockingQueue<ByteBuffer> fullBuffers  = new ArrayBlockingQueue<ByteBuffer>(4); // 3 buffers + the end-of-capture marker
+		private final ByteBuffer endOfCapture = ByteBuffer.allocate(0);
+		private final Thread writerThread;
+		private ByteBuffer buffer;
+		private long bufferStartNanoseconds; // when the first record was put into the current buffer
+		private boolean closed = false;
+		private volatile boolean failed = false;
+		private volatile long recordedByteCount = 0;
+		
+		/**
+		 * Creates a raw capture file (replacing it if it exists) and starts the thread that writes to it.
+		 * 
+		 * @param path            Path to the file.
+		 * @throws IOException    If the file can not be created.
+		 */
+		public Recorder(String path) throws IOException {
+			
+			this.path = path;
+			file = FileChannel.open(Paths.get(path), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+			
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTE_COUNT).order(ByteOrder.LITTLE_ENDIAN);
+			header.put(MAGIC);
+			header.putLong(System.currentTimeMillis());
+			header.flip();
+			while(header.hasRemaining())
+				file.write(header);
+			
+			for(int i = 0; i < 2; i++)
+				emptyBuffers.add(ByteBuffer.allocate(BUFFER_BYTE_COUNT).order(ByteOrder.LITTLE_ENDIAN));
+			buffer = ByteBuffer.allocate(BUFFER_BYTE_COUNT).order(ByteOrder.LITTLE_ENDIAN);
+			
+			writerThread = new Thread(() -> {
+				while(true) {
+					ByteBuffer fullBuffer;
+					try { fullBuffer = fullBuffers.poll(100, TimeUnit.MILLISECONDS); } catch(InterruptedException e) { continue; }
+					if(fullBuffer == null) {
+						// don't let a slow connection keep bytes in memory for too long
+						flushOldBytes();
+						continue;
+					}
+					if(fullBuffer == endOfCapture)
+						return;
+					fullBuffer.flip();
+					try {
+						while(fullBuffer.hasRemaining() && !failed)
+							file.write(fullBuffer);
+					} catch(IOException e) {
+						// keep emptying the queue so the receiving thread does not block, but discard everything
+						failed = true;
+						Notifications.showFailureForMilliseconds("Unable to write to \"" + path + "\". The raw capture has been stopped.", 5000, true);
+					}
+					fullBuffer.clear();
+					emptyBuffers.add(fullBuffer);
+				}
+			});
+			writerThread.setName("Raw Capture Writer Thread for " + path);
+			writerThread.setDaemon(true);
+			writerThread.start();
+			
+		}
+		
+		/**
+		 * Appends received bytes to the capture. This does not change the position of the ByteBuffer.
+		 * Bytes are written to disk once a 4MB buffer fills up, or after about 1 second, whichever happens first.
+		 * 
+		 * This may wait for the disk to catch up, so it should not be called while holding a lock that other threads need.
+		 * 
+		 * @param bytes                    The received bytes.
+		 * @throws InterruptedException    If interrupted while waiting for the disk to catch up.
+		 */
+		public synchronized void record(ByteBuffer bytes) throws InterruptedException {
+			
+			if(closed || failed || !bytes.hasRemaining())
+				return;
+			
+			long timestamp = System.nanoTime() - startNanoseconds;
+			if(buffer.position() == 0)
+				bufferStartNanoseconds = timestamp;
+			
+			// large chunks are split into several records, all with the same timestamp
+			ByteBuffer remainingBytes = bytes.duplicate();
+			while(remainingBytes.hasRemaining()) {
+				int byteCount = Integer.min(remainingBytes.remaining(), buffer.remaining() - RECORD_HEADER_BYTE_COUNT);
+				if(byteCount <= 0) {
+					if(!swapBuffers())
+						return;
+					bufferStartNanoseconds = timestamp;
+					continue;
+				}
+				buffer.putLong(timestamp);
+				buffer.putInt(byteCount);
+				buffer.put(buffer.position(), remainingBytes, remainingBytes.position(), byteCount);
+				buffer.position(buffer.position() + byteCount);
+				remainingBytes.position(remainingBytes.position() + byteCount);
+				recordedByteCount += byteCount;
+			}
+			
+		}
+		
+		/**
+		 * Gives the current buffer to the writer thread, and gets an empty buffer.
+		 * The lock is released while waiting, so the writer thread can still call flushOldBytes(), and close() can still be called.
+		 * 
+		 * @return                         True if successful, or false if the capture was closed while waiting (close() has already queued the current buffer.)
+		 * @throws InterruptedException    If interrupted while waiting for an empty buffer.
+		 */
+		private boolean swapBuffers() throws InterruptedException {
+			
+			ByteBuffer emptyBuffer;
+			while((emptyBuffer = emptyBuffers.poll()) == null) {
+				wait(1);
+				if(closed)
+					return false;
+			}
+			fullBuffers.add(buffer);
+			buffer = emptyBuffer;
+			return true;
+			
+		}
+		
+		/**
+		 * Called by the writer thread when it is idle. Gives the current buffer to the writer thread if its oldest bytes were received more than 1 second ago.
+		 */
+		private synchronized void flushOldBytes() {
+			
+			if(closed || buffer.position() == 0 || System.nanoTime() - startNanoseconds - bufferStartNanoseconds <= 1_000_000_000L)
+				return;
+			
+			ByteBuffer emptyBuffer = emptyBuffers.poll();
+			if(emptyBuffer == null)
+				return;
+			fullBuffers.add(buffer);
+			buffer = emptyBuffer;
+			
+		}
+		
+		/**
+		 * Writes any remaining bytes to disk, then closes the file. Any later calls to record() will be ignored.
+		 */
+		public void close() {
+			
+			synchronized(this) {
+				if(closed)
+					return;
+				closed = true;
+				if(buffer.position() > 0)
+					fullBuffers.add(buffer);
+				fullBuffers.add(endOfCapture);
+			}
+			
+			try { writerThread.join(); } catch(InterruptedException e) {}
+			try { file.close(); } catch(IOException e) {}
+			if(!failed)
+				Notifications.printInfo(String.format("Saved a raw capture of %,d bytes to \"%s\".", recordedByteCount, path));
+			
+		}
+		
+		/**
+		 * @return    Number of received bytes that have been recorded so far.
+		 */
+		public long getRecordedByteCount() {
+			
+			return recordedByteCount;
+			
+		}
+		
+	}
+	
+	/**
+	 * Reads the records of a raw capture file, in order.
+	 */
+	public static class Reader implements AutoCloseable {
+		
+		private final FileChannel file;
+		private final ByteBuffer window = ByteBuffer.allocate(BUFFER_BYTE_COUNT).order(ByteOrder.LITTLE_ENDIAN).flip(); // unread part of the file
+		private final long fileByteCount;
+		private final long startTimestamp;
+		private long timestamp;
+		private ByteBuffer bytes = ByteBuffer.allocate(0);
+		
+		/**
+		 * Opens a raw capture file and reads its header.
+		 * 
+		 * @param path            Path to the file.
+		 * @throws IOException    If the file can not be opened, or is not a raw capture.
+		 */
+		public Reader(String path) throws IOException {
+			
+			file = FileChannel.open(Paths.get(path), StandardOpenOption.READ);
+			fileByteCount = file.size();
+			
+			if(!fill(HEADER_BYTE_COUNT)) {
+				file.close();
+				throw new IOException("The file is not a raw capture.");
+			}
+			byte[] magic = new byte[MAGIC.length];
+			window.get(magic);
+			if(!Arrays.equals(magic, MAGIC)) {
+				file.close();
+				throw new IOException("The file is not a raw capture.");
+			}
+			startTimestamp = window.getLong();
+			
+		}
+		
+		/**
+		 * Ensures the window contains at least some number of unread bytes.
+		 * 
+		 * @param byteCount       Required number of bytes.
+		 * @return                True if successful, or false if the end of the file was reached.
+		 * @throws IOException    If the file can not be read.
+		 */
+		private boolean fill(int byteCount) throws IOException {
+			
+			if(window.remaining() >= byteCount)
+				return true;
+			
+			window.compact();
+			while(window.position() < byteCount)
+				if(file.read(window) < 0)
+					break;
+			window.flip();
+			return window.remaining() >= byteCount;
+			
+		}
+		
+		/**
+		 * Advances to the next record. The previous record's bytes are no longer valid after calling this method.
+		 * 
+		 * @return                True if a record was read, or false if the end of the file was reached. An incomplete record at the end of the file is ignored.
+		 * @throws IOException    If the file can not be read, or is corrupt.
+		 */
+		public boolean next() throws IOException {
+			
+			if(!fill(RECORD_HEADER_BYTE_COUNT))
+				return false;
+			
+			long recordTimestamp = window.getLong(window.position());
+			int byteCount = window.getInt(window.position() + 8);
+			if(byteCount < 0 || byteCount > BUFFER_BYTE_COUNT - RECORD_HEADER_BYTE_COUNT)
+				throw new IOException("The raw capture is corrupt.");
+			if(!fill(RECORD_HEADER_BYTE_COUNT + byteCount))
+				return false;
+			
+			window.position(window.position() + RECORD_HEADER_BYTE_COUNT);
+			bytes = window.slice(window.position(), byteCount);
+			window.position(window.position() + byteCount);
+			timestamp = recordTimestamp;
+			return true;
+			
+		}
+		
+		/**
+		 * @return    When the current record's bytes were received, in nanoseconds since the capture started.
+		 */
+		public long getTimestamp() {
+			
+			return timestamp;
+			
+		}
+		
+		/**
+		 * @return    The current record's bytes. This ByteBuffer is only valid until next() is called.
+		 */
+		public ByteBuffer getBytes() {
+			
+			return bytes;
+			
+		}
+		
+		/**
+		 * @return    When the capture started, in milliseconds since 1970-01-01.
+		 */
+		public long getStartTimestamp() {
+			
+			return startTimestamp;
+			
+		}
+		
+		/**
+		 * @return    Size of the file, in bytes.
+		 */
+		public long getFileByteCount() {
+			
+			return fileByteCount;
+			
+		}
+		
+		@Override public void close() {
+			
+			try { file.close(); } catch(IOException e) {}
+			
+		}
+		
+	}
+	
+}
@@ -0,0 +1,223 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Counts lost, out-of-order and duplicate packets from a sequence number that increments by 1 for each packet.
+ * 
+ * The sequence number is read from the raw bytes of each received datagram, before any conversion factors are applied,
+ * so the count is exact even for sequence numbers that could not be represented by a float sample.
+ * In binary mode the sequence number wraps around at the bit width of its dataset, so a uint16 counter going from 65535 to 0 is not a loss.
+ * The sequence numbers received recently are remembered, so a packet that arrives late can be told apart from a duplicate packet.
+ * 
+ * Only the receiver thread should call count(), but the counts can be read from any thread.
+ */
+public class SequenceCounter {
+	
+	private static final int MAX_WINDOW_SIZE = 4096; // how far behind the newest sequence number late and duplicate packets can be told apart
+	
+	private final int location;        // CSV column number, or binary packet byte offset
+	private final Field.Type type;     // binary processor, or null for CSV mode
+	private final int packetByteCount; // binary mode only
+	private final long modulus;        // sequence numbers wrap around at this value, or 0 if they do not wrap (CSV mode)
+	private final int windowSize;
+	
+	private boolean started = false;
+	private long newestSequenceNumber = 0;
+	private final long[] received = new long[MAX_WINDOW_SIZE / 64]; // bit set of the recently received sequence numbers, indexed by sequence number % MAX_WINDOW_SIZE
+	
+	private volatile long lostPacketCount = 0;
+	private volatile long outOfOrderPacketCount = 0;
+	private volatile long duplicatePacketCount = 0;
+	
+	/**
+	 * @param type    A binary processor.
+	 * @return        True if the processor is an integer dataset that can be used as a sequence number.
+	 */
+	public static boolean isInteger(Field.Type type) {
+		
+		return type.isDataset() && type != Field.Type.UINT8_BITFIELD && !type.toString().startsWith("float");
+		
+	}
+	
+	/**
+	 * @param location           CSV column number, or binary packet byte offset, of the sequence number.
+	 * @param type               Binary processor of the sequence number (see isInteger()), or null for CSV mode.
+	 * @param packetByteCount    Binary mode: number of bytes in each packet. CSV mode: ignored.
+	 */
+	public SequenceCounter(int location, Field.Type type, int packetByteCount) {
+		
+		this.location = location;
+		this.type = type;
+		this.packetByteCount = packetByteCount;
+		modulus = (type == null) ? 0 : 1L << (8 * type.getByteCount());
+		windowSize = (type == null) ? MAX_WINDOW_SIZE : (int) Long.min(MAX_WINDOW_SIZE, modulus / 2);
+		
+	}
+	
+	/**
+	 * Counts the sequence numbers of every packet in a datagram.
+	 * 
+	 * @param datagram    Buffer containing the datagram.
+	 * @param start       Offset of the first byte of the datagram.
+	 * @param end         Offset after the last byte of the datagram.
+	 */
+	public void count(ByteBuffer datagram, int start, int end) {
+		
+		if(type == null) {
+			
+			// CSV mode: one packet per line
+			int offset = start;
+			while(offset < end) {
+				
+				// skip to the column
+				for(int column = 0; column < location && offset < end && datagram.get(offset) != '\n'; offset++)
+					if(datagram.get(offset) == ',')
+						column++;
+				
+				// parse the integer, ignoring any fractional part, and ignoring lines without a number
+				boolean negative = offset < end && datagram.get(offset) == '-';
+				if(negative)
+					offset++;
+				long number = 0;
+				int digitCount = 0;
+				for(; offset < end && datagram.get(offset) >= '0' && datagram.get(offset) <= '9'; offset++, digitCount++)
+					number = (number * 10) + (datagram.get(offset) - '0');
+				if(digitCount > 0)
+					count(negative ? -number : number);
+				
+				// skip to the next line
+				while(offset < end && datagram.get(offset++) != '\n');
+				
+			}
+			
+		} else {
+			
+			// binary mode: one or more packets, each with the sequence number at the same offset
+			boolean msbFirst = type.toString().endsWith("MSB First");
+			int byteCount = type.getByteCount();
+			for(int packetStart = start; packetStart + packetByteCount <= end; packetStart += packetByteCount) {
+				long number = 0;
+				for(int i = 0; i < byteCount; i++)
+					number |= (long) (0xFF & datagram.get(packetStart + location + (msbFirst ? byteCount - 1 - i : i))) << (8 * i);
+				count(number);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Updates the counts with the sequence number of one packet.
+	 * 
+	 * @param sequenceNumber    The raw sequence number. For binary mode this must be an unsigned value less than 2^(bit width).
+	 */
+	void count(long sequenceNumber) {
+		
+		if(!started) {
+			started = true;
+			newestSequenceNumber = sequenceNumber;
+			setReceived(sequenceNumber);
+			return;
+		}
+		
+		// how far ahead of the newest sequence number this packet is, negative if behind
+		// when wrapping around, anything more than half way around is considered to be behind
+		long distance = sequenceNumber - newestSequenceNumber;
+		if(modulus != 0) {
+			distance = Math.floorMod(distance, modulus);
+			if(distance >= modulus / 2)
+				distance -= modulus;
+		}
+		
+		if(distance > 0) {
+			// a newer packet, so any skipped packets are lost unless they arrive later
+			for(long i = 1; i <= Long.min(distance, MAX_WINDOW_SIZE); i++)
+				clearReceived(newestSequenceNumber + i);
+			lostPacketCount += distance - 1;
+			newestSequenceNumber = sequenceNumber;
+			setReceived(sequenceNumber);
+		} else if(distance > -windowSize) {
+			// a recent packet, which is either a duplicate, or a late packet that was counted as lost
+			if(isReceived(sequenceNumber)) {
+				duplicatePacketCount++;
+			} else {
+				setReceived(sequenceNumber);
+				outOfOrderPacketCount++;
+				if(lostPacketCount > 0)
+					lostPacketCount--;
+			}
+		} else if(sequenceNumber == 0) {
+			// the sender has restarted
+			Arrays.fill(received, 0);
+			newestSequenceNumber = 0;
+			setReceived(0);
+		} else {
+			// too old to tell if it is a duplicate, so assume it is late
+			outOfOrderPacketCount++;
+			if(lostPacketCount > 0)
+				lostPacketCount--;
+		}
+		
+	}
+	
+	/**
+	 * @param sequenceNumber    A sequence number, which may be beyond the modulus.
+	 * @return                  Index of the bit in the received bit set.
+	 */
+	private int getBitIndex(long sequenceNumber) {
+		
+		if(modulus != 0)
+			sequenceNumber = Math.floorMod(sequenceNumber, modulus);
+		return Math.floorMod(sequenceNumber, MAX_WINDOW_SIZE);
+		
+	}
+	
+	private void setReceived(long sequenceNumber) {
+		
+		int bit = getBitIndex(sequenceNumber);
+		received[bit / 64] |= 1L << (bit % 64);
+		
+	}
+	
+	private void clearReceived(long sequenceNumber) {
+		
+		int bit = getBitIndex(sequenceNumber);
+		received[bit / 64] &= ~(1L << (bit % 64));
+		
+	}
+	
+	private boolean isReceived(long sequenceNumber) {
+		
+		int bit = getBitIndex(sequenceNumber);
+		return (received[bit / 64] & (1L << (bit % 64))) != 0;
+		
+	}
+	
+	/**
+	 * @return    Number of packets that have not been received.
+	 */
+	public long getLostPacketCount() {
+		
+		return lostPacketCount;
+		
+	}
+	
+	/**
+	 * @return    Number of packets that were received after a newer packet.
+	 */
+	public long getOutOfOrderPacketCount() {
+		
+		return outOfOrderPacketCount;
+		
+	}
+	
+	/**
+	 * @return    Number of packets that were received more than once.
+	 */
+	public long getDuplicatePacketCount() {
+		
+		return duplicatePacketCount;
+		
+	}
+	
+}
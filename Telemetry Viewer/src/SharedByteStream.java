@@ -1,28 +1,92 @@
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
 /**
  * Inspired by PipedOutputStream/PipedInputStream, but optimized for my use cases.
  * This is a thread-safe way to share a buffer of telemetry packets between two threads (one reader and one writer.)
  * 
- * This class supports two different packet modes: CSV (text) and binary packets.
- * In CSV mode, a single ring buffer is used. The reader receives a COPY of each line of text. This isn't very efficient, but I don't expect people to use CSV mode for massive data streams.
- * In binary mode, two ping-pong buffers are used. The reader receives the ORIGINAL buffer, along with a corresponding offset and byte count. This is much more efficient.
+ * This class supports three different packet modes: CSV (text), binary packets, and framed binary packets.
+ * In CSV mode, a single ring buffer is used. The reader receives batches of already-parsed numbers, which are parsed directly from the ring buffer.
+ * In binary mode, three rotating buffers are used. The reader receives the ORIGINAL buffer, along with a corresponding offset and byte count. This is much more efficient.
+ * While the writer fills one buffer, the reader hands packets from the next buffer to Parsers, and the Parsers may still be parsing packets from the previous buffer.
+ * In framed mode (COBS, SLIP or length-prefixed), a single ring buffer is used. Frames are found with bulk byte searches, then decoded into fixed-size packets.
+ * The reader receives the decoded packets in the same way as binary mode, so they can be parsed by the same code.
+ * 
+ * If data arrives faster than it can be processed, the buffer fills up and the connection's OverflowPolicy decides what happens to new data.
  */
 public class SharedByteStream {
 	
+	/**
+	 * What to do when the buffer is full.
+	 */
+	public enum OverflowPolicy {
+		BLOCK         { @Override public String toString() { return "Block When Full";         } },
+		DROP_OLDEST   { @Override public String toString() { return "Drop Oldest When Full";   } },
+		DROP_NEWEST   { @Override public String toString() { return "Drop Newest When Full";   } },
+		SPILL_TO_DISK { @Override public String toString() { return "Spill to Disk When Full"; } };
+	};
+	
 	private boolean ready;
 	private int packetByteCount;
 	private int syncWordByteCount;
 	private byte syncWord;
 	
-	private byte[][] buffer;    // [0 or 1][byteN]
+	private byte[][] buffer;      // [bufferN][byteN]
 	private int   bufferSize;
-	private int[] writeIndex;   // [0 or 1]
-	private int[] readIndex;    // [0 or 1]
-	private int[] occupiedSize; // [0 or 1]
-	private boolean writeIntoA;
+	private int[] writeIndex;     // [bufferN]
+	private int[] readIndex;      // [bufferN]
+	private int[] occupiedSize;   // [bufferN]
+	private int[] heldByteCount;  // [bufferN] binary and framed modes: bytes given to Parsers that have not been committed yet
+	private int writingBuffer;    // the buffer being written, always 0 in CSV and framed modes
+	private int readingBuffer;    // binary mode: the buffer being read
+	private int otherBuffer;      // binary mode: the buffer that was read before the reading buffer, or (if otherIsQueued) the buffer to read after it
+	private boolean otherIsQueued;
+	private int reservedByteCount;     // binary mode: bytes at the start of each buffer, for prepending the unread bytes of the previous buffer
+	private int rewindBuffer = -1;     // binary mode: if a Parser found a problem, the buffer containing the first packet that was not committed
+	private int rewindOffset;          // binary mode: offset of that packet
+	
+	private byte[] wrappedLine = new byte[0]; // CSV and framed modes: a copy of the current line or frame if it wraps around the end of the ring buffer
+	private boolean discardingLine;           // CSV mode: true while discarding the rest of a line that was too long for the buffer
+	private boolean bufferFull;               // true while the newest bytes do not fit in the buffer
+	
+	private ConnectionTelemetry.Protocol framing; // framed modes: COBS, SLIP or LENGTH_PREFIXED, or null if not using a framed mode
+	private byte[] frames = new byte[0];          // framed modes: decoded packets, each occupying packetByteCount bytes
+	private int framesStart;                      // framed modes: index of the first decoded packet that has not been processed
+	private int framesEnd;                        // framed modes: index after the last decoded packet
+	private int scannedByteCount;                 // framed modes: number of bytes already searched for the end of the current frame
+	private boolean inSync;                       // framed modes: false until the start of a frame has been found (because we may have connected in the middle of a frame)
+	private int maxFrameLength;                   // length-prefixed mode: largest byte count accepted, so a corrupt byte count is unlikely to swallow the following frames
+	
+	private static final byte SLIP_END     = (byte) 0xC0;
+	private static final byte SLIP_ESC     = (byte) 0xDB;
+	private static final byte SLIP_ESC_END = (byte) 0xDC;
+	private static final byte SLIP_ESC_ESC = (byte) 0xDD;
+	
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
 	
 	private final ConnectionTelemetry connection;
 	private final Field.Type checksumProcessor;
 	
+	private final OverflowPolicy overflowPolicy;
+	private volatile long droppedByteCount = 0;  // total number of received bytes that were discarded because the buffer was full
+	private volatile long spilledByteCount = 0;  // total number of received bytes that were written to the spill file
+	private volatile long lastDropTimestamp = System.nanoTime() - 2_000_000_000L; // System.nanoTime() when bytes were last dropped
+	private volatile boolean spilling = false;   // true while the spill file contains data
+	private final Path spillFilePath = Paths.get("cache/" + this.toString() + ".spill");
+	private FileChannel spillFile;               // spill-to-disk mode: bytes that did not fit in the buffer, or null if none
+	private long spillReadPosition;              // spill-to-disk mode: file offset of the next byte to move back into the buffer
+	private long spillWritePosition;             // spill-to-disk mode: file offset after the last spilled byte
+	private ByteBuffer spillTransfer;            // spill-to-disk mode: 1MB for moving spilled bytes back into the buffer, allocated when first needed
+	private volatile RawCapture.Recorder recorder = null; // optional, every write is also saved to a raw capture file
+	
 	/**
 	 * Creates a placeholder for sharing data between one reading thread and one writing thread.
 	 * Before data can be written or read, the setPacketSize() method must be called.
@@ -32,6 +96,7 @@ public class SharedByteStream {
 		ready = false;
 		this.connection = connection;
 		this.checksumProcessor = connection.fields.values().stream().filter(Field::isChecksum).map(field -> field.type.get()).findFirst().orElse(null);
+		this.overflowPolicy = connection.overflowPolicy.get();
 		
 	}
 	
@@ -51,29 +116,77 @@ public class SharedByteStream {
 			readIndex    = new int[] {0, 0};
 			occupiedSize = new int[] {0, 0};
 			
-			writeIntoA = true;
+			writingBuffer = 0;
 			packetByteCount = 0;
 			
 		} else {
 			
 			// binary mode
-			bufferSize   = 8388608 + byteCount - 1; // 8MB each + enough room to prepend an incomplete packet
-			buffer       = new byte[2][bufferSize];
-			writeIndex   = new int[] {byteCount - 1, byteCount - 1};
-			readIndex    = new int[] {byteCount - 1, byteCount - 1};
-			occupiedSize = new int[] {0, 0};
+			reservedByteCount = StorageFloats.BLOCK_SIZE * byteCount - 1; // enough room to prepend an incomplete block of packets
+			bufferSize    = 8388608 + reservedByteCount; // 8MB each
+			buffer        = new byte[3][bufferSize];
+			writeIndex    = new int[] {reservedByteCount, reservedByteCount, reservedByteCount};
+			readIndex     = new int[] {reservedByteCount, reservedByteCount, reservedByteCount};
+			occupiedSize  = new int[] {0, 0, 0};
+			heldByteCount = new int[] {0, 0, 0};
 			
-			writeIntoA = true;
+			writingBuffer = 0;
+			readingBuffer = 1;
+			otherBuffer = 2;
+			otherIsQueued = false;
+			rewindBuffer = -1;
 			packetByteCount = byteCount;
 			this.syncWordByteCount = syncWordByteCount;
 			this.syncWord = syncWord;
 			
 		}
 		
+		framing = null;
+		ready = true;
+		
+	}
+	
+	/**
+	 * Prepares the buffers to receive variable-length frames, which will be decoded into fixed-size packets.
+	 * 
+	 * @param byteCount    Number of bytes per decoded packet. Frames that decode into more bytes are accepted and the extra bytes are ignored.
+	 *                     Length-prefixed frames may be up to twice this size (but at least 256 bytes), so a corrupt byte count is usually noticed.
+	 * @param framing      Protocol.COBS, Protocol.SLIP or Protocol.LENGTH_PREFIXED.
+	 */
+	public synchronized void setFraming(int byteCount, ConnectionTelemetry.Protocol framing) {
+		
+		bufferSize   = 8388608; // 8MB
+		buffer       = new byte[2][bufferSize];
+		writeIndex   = new int[] {0, 0};
+		readIndex    = new int[] {0, 0};
+		occupiedSize = new int[] {0, 0};
+		heldByteCount = new int[] {0, 0};
+		
+		writingBuffer = 0;
+		packetByteCount = byteCount;
+		syncWordByteCount = 0;
+		this.framing = framing;
+		
+		frames = new byte[Integer.max(1, 8388608 / byteCount) * byteCount]; // up to 8MB of decoded packets
+		framesStart = 0;
+		framesEnd = 0;
+		scannedByteCount = 0;
+		inSync = false;
+		maxFrameLength = Integer.min(65535, Integer.max(256, 2 * byteCount));
+		
 		ready = true;
 		
 	}
 	
+	/**
+	 * @param recorder    If not null, every write will also be saved to this raw capture.
+	 */
+	public void setRecorder(RawCapture.Recorder recorder) {
+		
+		this.recorder = recorder;
+		
+	}
+	
 	/**
 	 * Appends bytes to the buffer.
 	 * 
@@ -81,90 +194,388 @@ public class SharedByteStream {
 	 * @param byteCount                Amount of data.
 	 * @throws InterruptedException    If the thread is interrupted while waiting for free space in the buffer.
 	 */
-	public synchronized void write(byte[] bytes, int byteCount) throws InterruptedException {
+	public void write(byte[] bytes, int byteCount) throws InterruptedException {
+		
+		write(ByteBuffer.wrap(bytes, 0, byteCount));
+		
+	}
+	
+	/**
+	 * Appends the remaining bytes of a ByteBuffer (which may be a direct buffer) to the buffer.
+	 * 
+	 * @param bytes                    Data to write. Its position will be advanced to its limit.
+	 * @throws InterruptedException    If the thread is interrupted while waiting for free space in the buffer.
+	 */
+	public void write(ByteBuffer bytes) throws InterruptedException {
+		
+		// record exactly what was received, even if it is later dropped or can not be parsed
+		// this is done without holding the lock, so if the disk is slow the reading thread is not blocked too
+		RawCapture.Recorder recorder = this.recorder;
+		if(recorder != null)
+			recorder.record(bytes);
+		
+		append(bytes);
+		
+	}
+	
+	/**
+	 * Appends the remaining bytes of a ByteBuffer to the buffer, making room or spilling to disk if necessary.
+	 * 
+	 * @param bytes                    Data to write. Its position will be advanced to its limit.
+	 * @throws InterruptedException    If the thread is interrupted while waiting for free space in the buffer.
+	 */
+	private synchronized void append(ByteBuffer bytes) throws InterruptedException {
 		
-		// ignore if the buffers are not ready
-		if(!ready)
+		// ignore if the buffers are not ready, or if there is nothing to write
+		int byteCount = bytes.remaining();
+		if(!ready || byteCount == 0)
 			return;
 		
-		int writeBuffer = writeIntoA ? 0 : 1;
+		// spill-to-disk mode: if any bytes are already on disk, new bytes must also go to disk so everything stays in order
+		if(overflowPolicy == OverflowPolicy.SPILL_TO_DISK) {
+			replaySpilledBytes();
+			if(spillFile != null || getFreeSpace() < byteCount) {
+				spill(bytes);
+				notifyAll();
+				return;
+			}
+		}
 		
-		// wait for free space if necessary
-		int availableBufferSpace = bufferSize;
-		if(packetByteCount != 0)
-			availableBufferSpace -= packetByteCount - 1;
-		while(occupiedSize[writeBuffer] + byteCount > availableBufferSpace) {
+		// make room if necessary
+		while(getFreeSpace() < byteCount) {
+			bufferFull = true;
+			if(overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+				bytes.position(bytes.limit());
+				droppedBytes(byteCount, "new telemetry is being discarded.");
+				return;
+			} else if(overflowPolicy == OverflowPolicy.DROP_OLDEST) {
+				dropOldestBytes(byteCount - getFreeSpace());
+				if(getFreeSpace() < byteCount)
+					dropOldestNewBytes(bytes);
+				break;
+			}
 			// throw an exception if the processorThread called disconnect()
 			if(!connection.isConnected())
 				throw new InterruptedException();
 			notifyAll();
 			wait(1);
-			writeBuffer = writeIntoA ? 0 : 1;
 		}
+		copyIntoBuffer(bytes);
+		bufferFull = false;
 		
-		// write into the buffer
+		// inform reading thread that new data is available
+		notifyAll();
+		
+	}
+	
+	/**
+	 * @return    Number of bytes that can currently be written into the buffer.
+	 */
+	private int getFreeSpace() {
+		
+		int availableBufferSpace = bufferSize;
+		if(packetByteCount != 0 && framing == null)
+			availableBufferSpace -= reservedByteCount;
+		return availableBufferSpace - occupiedSize[writingBuffer];
+		
+	}
+	
+	/**
+	 * Copies the remaining bytes of a ByteBuffer into the buffer. The caller must ensure enough free space exists.
+	 * 
+	 * @param bytes    Data to write. Its position will be advanced to its limit.
+	 */
+	private void copyIntoBuffer(ByteBuffer bytes) {
+		
+		int byteCount = bytes.remaining();
+		int writeBuffer = writingBuffer;
 		int startIndex = writeIndex[writeBuffer];
 		int endIndex = (writeIndex[writeBuffer] + byteCount - 1) % bufferSize;
 		if(endIndex >= startIndex) {
 			// no need to wrap around the ring buffer
-			System.arraycopy(bytes, 0, buffer[writeBuffer], startIndex, byteCount);
+			bytes.get(buffer[writeBuffer], startIndex, byteCount);
 			writeIndex[writeBuffer] += byteCount;
 			occupiedSize[writeBuffer] += byteCount;
 		} else {
 			// must wrap around the ring buffer
 			int firstByteCount = bufferSize - writeIndex[writeBuffer];
 			int secondByteCount = byteCount - firstByteCount;
-			System.arraycopy(bytes,              0, buffer[writeBuffer], startIndex, firstByteCount);
-			System.arraycopy(bytes, firstByteCount, buffer[writeBuffer],          0, secondByteCount);
+			bytes.get(buffer[writeBuffer], startIndex, firstByteCount);
+			bytes.get(buffer[writeBuffer],          0, secondByteCount);
 			writeIndex[writeBuffer] = (endIndex + 1) % bufferSize;
 			occupiedSize[writeBuffer] += byteCount;
 		}
 		
-		// inform reading thread that new data is available
-		notifyAll();
+	}
+	
+	/**
+	 * Drop-oldest mode: discards the oldest bytes that the reader has not started to read.
+	 * In binary mode the bytes are discarded from the buffer currently being written (the reader is using the other buffer), in whole packets so the packets stay aligned.
+	 * In CSV and framed modes the bytes are discarded from the start of the ring buffer, so the first line or frame after them will be incomplete.
+	 * 
+	 * @param byteCount    Minimum number of bytes to discard.
+	 */
+	private void dropOldestBytes(int byteCount) {
+		
+		int writeBuffer = writingBuffer;
+		if(packetByteCount != 0 && framing == null) {
+			byteCount = Integer.min(occupiedSize[writeBuffer] / packetByteCount * packetByteCount, (byteCount + packetByteCount - 1) / packetByteCount * packetByteCount);
+			int keptByteCount = occupiedSize[writeBuffer] - byteCount;
+			System.arraycopy(buffer[writeBuffer], readIndex[writeBuffer] + byteCount, buffer[writeBuffer], readIndex[writeBuffer], keptByteCount);
+			writeIndex[writeBuffer] -= byteCount;
+			occupiedSize[writeBuffer] -= byteCount;
+		} else {
+			byteCount = Integer.min(occupiedSize[0], byteCount);
+			discard(byteCount);
+			scannedByteCount = 0;
+			inSync = false;
+		}
+		droppedBytes(byteCount, "the oldest unprocessed telemetry is being discarded.");
+		
+	}
+	
+	/**
+	 * Drop-oldest mode: discards the oldest of the new bytes, when there are more new bytes than the entire buffer can hold, so only the newest bytes can be kept.
+	 * This must be called after dropOldestBytes() has emptied the buffer as much as possible.
+	 * In binary mode the incomplete packet (if any) at the end of the buffer is also discarded, and whole packets are kept so the packets stay aligned.
+	 * 
+	 * @param bytes    Data to write. Its position will be advanced past the bytes that do not fit in the buffer.
+	 */
+	private void dropOldestNewBytes(ByteBuffer bytes) {
+		
+		int writeBuffer = writingBuffer;
+		int incompleteByteCount = 0;
+		if(packetByteCount != 0 && framing == null) {
+			incompleteByteCount = occupiedSize[writeBuffer];
+			writeIndex[writeBuffer] -= incompleteByteCount;
+			occupiedSize[writeBuffer] = 0;
+		}
+		
+		int byteCount = bytes.remaining() - getFreeSpace();
+		if(packetByteCount != 0 && framing == null)
+			byteCount = (incompleteByteCount + byteCount + packetByteCount - 1) / packetByteCount * packetByteCount - incompleteByteCount;
+		bytes.position(bytes.position() + byteCount);
+		droppedBytes(incompleteByteCount + byteCount, "the oldest unprocessed telemetry is being discarded.");
+		
+	}
+	
+	/**
+	 * Updates the dropped bytes counter, and notifies the user if this is the start of an overflow.
+	 * 
+	 * @param byteCount    Number of bytes that were dropped.
+	 * @param reason       End of the notification message.
+	 */
+	private void droppedBytes(int byteCount, String reason) {
+		
+		if(byteCount == 0)
+			return;
+		
+		// keep one notification on screen until nothing has been dropped for 1 second
+		droppedByteCount += byteCount;
+		boolean notified = System.nanoTime() - lastDropTimestamp < 1_000_000_000L;
+		lastDropTimestamp = System.nanoTime();
+		if(!notified)
+			Notifications.showFailureUntil("Telemetry is arriving faster than it can be processed, so " + reason, () -> System.nanoTime() - lastDropTimestamp > 1_000_000_000L, true);
+		
+	}
+	
+	/**
+	 * Spill-to-disk mode: appends bytes to the spill file, creating it if necessary.
+	 * If the spill file can not be written, the bytes are dropped instead.
+	 * 
+	 * @param bytes    Data to write. Its position will be advanced to its limit.
+	 */
+	private void spill(ByteBuffer bytes) {
+		
+		int byteCount = bytes.remaining();
+		try {
+			if(spillFile == null) {
+				spillFile = FileChannel.open(spillFilePath, StandardOpenOption.CREATE,
+				                                            StandardOpenOption.TRUNCATE_EXISTING,
+				                                            StandardOpenOption.READ,
+				                                            StandardOpenOption.WRITE,
+				                                            StandardOpenOption.DELETE_ON_CLOSE);
+				spillReadPosition = 0;
+				spillWritePosition = 0;
+				spilling = true;
+				Notifications.showFailureUntil("Telemetry is arriving faster than it can be processed, so it is being temporarily saved to disk.", () -> !spilling, true);
+			}
+			while(bytes.hasRemaining())
+				spillWritePosition += spillFile.write(bytes, spillWritePosition);
+			spilledByteCount += byteCount;
+		} catch(IOException e) {
+			Notifications.showFailureForMilliseconds("Unable to write to \"" + spillFilePath.toString() + "\"", 5000, true);
+			e.printStackTrace();
+			droppedByteCount += bytes.remaining();
+			bytes.position(bytes.limit());
+		}
+		
+	}
+	
+	/**
+	 * Spill-to-disk mode: moves as many spilled bytes as possible back into the buffer. The spill file is deleted after it has been emptied.
+	 * This is called by the writer before writing, and by the reader while it is waiting for data, so spilled bytes are replayed even if no new data arrives.
+	 */
+	private void replaySpilledBytes() {
+		
+		if(spillFile == null)
+			return;
+		
+		if(spillTransfer == null)
+			spillTransfer = ByteBuffer.allocate(1048576);
+		
+		try {
+			while(spillReadPosition < spillWritePosition && getFreeSpace() > 0) {
+				spillTransfer.clear();
+				spillTransfer.limit((int) Long.min(Integer.min(spillTransfer.capacity(), getFreeSpace()), spillWritePosition - spillReadPosition));
+				while(spillTransfer.hasRemaining())
+					spillReadPosition += spillFile.read(spillTransfer, spillReadPosition);
+				spillTransfer.flip();
+				copyIntoBuffer(spillTransfer);
+			}
+			if(spillReadPosition == spillWritePosition) {
+				spillFile.close();
+				spillFile = null;
+				spilling = false;
+			}
+		} catch(IOException e) {
+			Notifications.showFailureForMilliseconds("Unable to read from \"" + spillFilePath.toString() + "\"", 5000, true);
+			e.printStackTrace();
+			droppedByteCount += spillWritePosition - spillReadPosition;
+			try { spillFile.close(); } catch(IOException e2) {}
+			spillFile = null;
+			spilling = false;
+		}
+		
+	}
+	
+	/**
+	 * Deletes the spill file (if any.) Any bytes still in the spill file are counted as dropped.
+	 */
+	public synchronized void dispose() {
+		
+		if(spillFile == null)
+			return;
+		
+		droppedByteCount += spillWritePosition - spillReadPosition;
+		try { spillFile.close(); } catch(IOException e) {}
+		spillFile = null;
+		spilling = false;
+		
+	}
+	
+	/**
+	 * @return    Total number of received bytes that were discarded because the buffer was full.
+	 */
+	public long getDroppedByteCount() {
+		
+		return droppedByteCount;
+		
+	}
+	
+	/**
+	 * @return    Total number of received bytes that were temporarily saved to disk because the buffer was full.
+	 */
+	public long getSpilledByteCount() {
+		
+		return spilledByteCount;
 		
 	}
 	
 	/**
 	 * Blocks until at least one packet is available.
+	 * While Parsers are still parsing packets from the reading buffer, this waits for enough bytes to make a full block of packets,
+	 * or for the Parsers to commit, so the unaligned packets at the end of a burst are combined with the next burst instead of making the reader wait for the Parsers.
 	 * 
 	 * @return    The buffer to read from.
 	 */
 	private synchronized int awaitPacket() throws InterruptedException {
 		
-		int readBuffer  = writeIntoA ? 1 : 0;
-		int writeBuffer = writeIntoA ? 0 : 1;
-		
-		// if this buffer contains <1 complete packet,
-		// prepend the remaining bytes to the other buffer,
-		// then wait for the other buffer to contain >=1 packet
-		// then swap buffers
-		int remainingByteCount = occupiedSize[readBuffer];
-		if(remainingByteCount < packetByteCount) {
-			if(remainingByteCount > 0) {
-				for(int i = 0; i < remainingByteCount; i++) {
-					int writeBufferIndex = packetByteCount - 1 - remainingByteCount + i;
-					buffer[writeBuffer][writeBufferIndex] = buffer[readBuffer][readIndex[readBuffer]];
-					readIndex[readBuffer]++;
-				}
-				readIndex[writeBuffer] = packetByteCount - 1 - remainingByteCount;
-				occupiedSize[writeBuffer] += remainingByteCount;
+		int blockByteCount = StorageFloats.BLOCK_SIZE * packetByteCount;
+		
+		while(true) {
+			
+			replaySpilledBytes();
+			
+			// if a Parser found a problem, wait for every Parser to commit, then go back to the first packet that was not committed
+			if(rewindBuffer >= 0) {
+				while(hasHeldBytes())
+					wait();
+				rewind();
 			}
 			
-			while(occupiedSize[writeBuffer] < packetByteCount) {
-				notifyAll();
-				wait(1);
+			// use the current buffer if it contains at least one complete packet, or at least one block while Parsers are still using it
+			boolean parsersActive = heldByteCount[readingBuffer] > 0;
+			int remainingByteCount = occupiedSize[readingBuffer];
+			if(remainingByteCount >= (parsersActive ? blockByteCount : packetByteCount))
+				return readingBuffer;
+			
+			// otherwise move the remaining bytes to the next buffer, once it contains enough bytes and the writer has a free buffer
+			int nextBuffer = otherIsQueued ? otherBuffer : writingBuffer;
+			boolean writerCanMove = otherIsQueued || heldByteCount[otherBuffer] == 0;
+			if(writerCanMove && remainingByteCount + occupiedSize[nextBuffer] >= (parsersActive ? blockByteCount : packetByteCount)) {
+				swapBuffers();
+				continue;
 			}
 			
-			writeIndex[readBuffer] = packetByteCount - 1;
-			readIndex[readBuffer] = packetByteCount - 1;
-			occupiedSize[readBuffer] = 0;
+			// otherwise use the remaining packets if the Parsers have finished
+			if(!parsersActive && remainingByteCount >= packetByteCount)
+				return readingBuffer;
+			
+			notifyAll();
+			wait(1);
 			
-			writeIntoA = !writeIntoA;
-			readBuffer = writeIntoA ? 1 : 0;
 		}
 		
-		return readBuffer;
+	}
+	
+	/**
+	 * Binary mode: prepends the unread bytes of the reading buffer to the next buffer, then reads from the next buffer.
+	 * If the next buffer was being written, the writer moves to the buffer that was read before the reading buffer.
+	 * The reading buffer is kept until the writer needs it, because Parsers may still be reading it, and a problem may require it to be read again.
+	 */
+	private void swapBuffers() {
+		
+		int nextBuffer = otherIsQueued ? otherBuffer : writingBuffer;
+		int remainingByteCount = occupiedSize[readingBuffer];
+		readIndex[nextBuffer] -= remainingByteCount;
+		occupiedSize[nextBuffer] += remainingByteCount;
+		System.arraycopy(buffer[readingBuffer], readIndex[readingBuffer], buffer[nextBuffer], readIndex[nextBuffer], remainingByteCount);
+		readIndex[readingBuffer] += remainingByteCount;
+		occupiedSize[readingBuffer] = 0;
+		
+		if(!otherIsQueued) {
+			writingBuffer = otherBuffer;
+			writeIndex[writingBuffer] = reservedByteCount;
+			readIndex[writingBuffer] = reservedByteCount;
+			occupiedSize[writingBuffer] = 0;
+		}
+		otherBuffer = readingBuffer;
+		otherIsQueued = false;
+		readingBuffer = nextBuffer;
+		replaySpilledBytes(); // into the new writing buffer
+		
+	}
+	
+	/**
+	 * Binary mode: after a Parser found a problem, and every Parser has committed, makes the first packet that was not committed the next packet to read.
+	 * Any packets after it, including packets in the following buffer, will be read again.
+	 */
+	private void rewind() {
+		
+		if(rewindBuffer != readingBuffer) {
+			// the problem is in the previous buffer, so read it again before the current buffer
+			otherBuffer = readingBuffer;
+			otherIsQueued = true;
+			readingBuffer = rewindBuffer;
+		}
+		if(otherIsQueued) {
+			readIndex[otherBuffer] = reservedByteCount;
+			occupiedSize[otherBuffer] = writeIndex[otherBuffer] - reservedByteCount;
+		}
+		readIndex[readingBuffer] = rewindOffset;
+		occupiedSize[readingBuffer] = writeIndex[readingBuffer] - rewindOffset;
+		rewindBuffer = -1;
 		
 	}
 	
@@ -177,8 +588,18 @@ public class SharedByteStream {
 		public DataBuffer(int readBuffer, byte[] buffer, int offset, int end) { this.readBuffer = readBuffer; this.buffer = buffer; this.offset = offset; this.end = end; this.originalOffset = offset; }
 	}
 	
+	/**
+	 * Blocks until at least one packet is available, then provides every available packet.
+	 * The packets start after the bytes that were released, or given to Parsers, by the previous call.
+	 * 
+	 * @return                         A DataBuffer containing the packets.
+	 * @throws InterruptedException    If the thread is interrupted while waiting for packets to arrive.
+	 */
 	public DataBuffer getBytes() throws InterruptedException {
 		
+		if(framing != null)
+			return getFrames();
+		
 		int readBuffer = awaitPacket();
 		
 		// ensure the buffer starts with at least one valid packet (in sync if using a sync word, and valid checksum if using a checksum)
@@ -218,10 +639,396 @@ public class SharedByteStream {
 		
 	}
 	
+	/**
+	 * Releases the bytes before data.offset. Bytes given to Parsers with holdBytes() remain in the buffer until releaseHeldBytes() is called for them.
+	 * 
+	 * @param data    The DataBuffer provided by getBytes().
+	 */
 	public void releaseBytes(DataBuffer data) {
 		
+		if(framing != null) {
+			framesStart = data.offset;
+			return;
+		}
+		
 		readIndex[data.readBuffer] = (data.offset) % bufferSize;
 		occupiedSize[data.readBuffer] -= (data.offset - data.originalOffset);
+		data.originalOffset = data.offset;
+		
+	}
+	
+	/**
+	 * Binary and framed modes: keeps bytes in the buffer while a Parser is parsing them. They will not be provided by getBytes() again unless a problem is found.
+	 * 
+	 * @param data         The DataBuffer provided by getBytes().
+	 * @param byteCount    Number of bytes given to the Parser.
+	 */
+	public synchronized void holdBytes(DataBuffer data, int byteCount) {
+		
+		heldByteCount[data.readBuffer] += byteCount;
+		
+	}
+	
+	/**
+	 * Binary and framed modes: releases bytes that were held for a Parser. This is called as each Parser commits, in the order the bytes were received.
+	 * 
+	 * @param data            The DataBuffer that contained the bytes.
+	 * @param byteCount       Number of bytes that were held for the Parser.
+	 * @param resumeOffset    If the Parser found a problem, offset of the first packet that was not committed. That packet (and everything after it) will be read again.
+	 *                        -1 if every packet was committed, or if the packets were skipped because an earlier Parser found a problem.
+	 */
+	public synchronized void releaseHeldBytes(DataBuffer data, int byteCount, int resumeOffset) {
+		
+		heldByteCount[data.readBuffer] -= byteCount;
+		if(resumeOffset >= 0 && rewindBuffer < 0) {
+			rewindBuffer = data.readBuffer;
+			rewindOffset = resumeOffset;
+		}
+		notifyAll();
+		
+	}
+	
+	/**
+	 * @return    True if any bytes are being held for Parsers.
+	 */
+	public synchronized boolean hasHeldBytes() {
+		
+		for(int byteCount : heldByteCount)
+			if(byteCount > 0)
+				return true;
+		return false;
+		
+	}
+	
+	/**
+	 * @return    True if a Parser found a problem, so the next call to getBytes() will provide the first packet that was not committed.
+	 */
+	public synchronized boolean isRewinding() {
+		
+		return rewindBuffer >= 0;
+		
+	}
+	
+	/**
+	 * Framed modes: blocks until at least one packet has been decoded, then provides all of the decoded packets that have not been released or given to Parsers.
+	 * Corrupt frames are reported and dropped while decoding, so every provided packet is complete and has a valid checksum (if using a checksum.)
+	 * 
+	 * @return                         A DataBuffer containing the decoded packets.
+	 * @throws InterruptedException    If the thread is interrupted while waiting for a frame to arrive.
+	 */
+	private DataBuffer getFrames() throws InterruptedException {
+		
+		awaitFrames();
+		
+		return new DataBuffer(0, frames, framesStart, framesEnd - 1);
+		
+	}
+	
+	/**
+	 * Framed modes: decodes as many frames as will fit into the array of decoded packets, blocking until at least one packet is available.
+	 * While Parsers are still parsing earlier packets, this blocks until a full block of packets is available or the Parsers have committed.
+	 * Decoding stops early if a corrupt frame is found after some good frames, so the good packets can be processed before the problem is reported.
+	 * 
+	 * @throws InterruptedException    If the thread is interrupted while waiting for a frame to arrive.
+	 */
+	private synchronized void awaitFrames() throws InterruptedException {
+		
+		int maxFrameByteCount = Integer.max(65536, 2 * packetByteCount + 2); // SLIP may double the size of a packet
+		
+		while(true) {
+			
+			// move any unprocessed packets to the start of the array, but not while Parsers are reading the packets before them
+			if(framesStart > 0 && heldByteCount[0] == 0) {
+				System.arraycopy(frames, framesStart, frames, 0, framesEnd - framesStart);
+				framesEnd -= framesStart;
+				framesStart = 0;
+			}
+			
+			// if the array is full, provide the packets, or wait for the Parsers so the array can be compacted
+			if(framesEnd + packetByteCount > frames.length) {
+				if(framesEnd > framesStart)
+					break;
+				wait(1);
+				continue;
+			}
+			
+			// find the next frame
+			int frameStart;   // offset of the encoded frame, relative to the read index
+			int frameLength;  // byte count of the encoded frame, not including the delimiter or length prefix
+			int frameEnd;     // offset after the delimiter or last byte of the frame, relative to the read index
+			if(framing == ConnectionTelemetry.Protocol.LENGTH_PREFIXED) {
+				
+				// a frame is a uint16 little-endian byte count, followed by that many bytes
+				// each frame may have a different byte count, from the packet size up to maxFrameLength
+				frameLength = (occupiedSize[0] < 2) ? -1 : uint16At(0);
+				if(frameLength >= 0 && (frameLength < packetByteCount || frameLength > maxFrameLength)) {
+					// not a valid byte count, so skip one byte and try again
+					if(inSync && framesEnd > framesStart)
+						break; // the loss of sync will be reported by the next call
+					skipOneByte();
+					continue;
+				}
+				// while out of sync, the frame must be followed by another valid byte count, so random bytes are not mistaken for a frame
+				int requiredByteCount = inSync ? 2 + frameLength : 2 + frameLength + 2;
+				if(frameLength < 0 || occupiedSize[0] < requiredByteCount) {
+					if(haveEnoughFrames())
+						break;
+					replaySpilledBytes();
+					notifyAll();
+					wait(1);
+					continue;
+				}
+				if(!inSync && (uint16At(2 + frameLength) < packetByteCount || uint16At(2 + frameLength) > maxFrameLength)) {
+					skipOneByte();
+					continue;
+				}
+				frameStart = 2;
+				frameEnd = 2 + frameLength;
+				
+			} else {
+				
+				// a frame ends with a delimiter, which never occurs inside of a frame
+				byte delimiter = (framing == ConnectionTelemetry.Protocol.COBS) ? 0 : SLIP_END;
+				int delimiterOffset = indexOfInRing(delimiter, scannedByteCount);
+				if(delimiterOffset < 0) {
+					scannedByteCount = occupiedSize[0];
+					if(scannedByteCount > maxFrameByteCount) {
+						// too long to be a frame, so the delimiter must have been corrupted
+						if(inSync && connection.getSampleCount() > 0)
+							Notifications.showFailureForMilliseconds("Lost sync with the telemetry packet stream.", 5000, true);
+						inSync = false;
+						discard(scannedByteCount);
+						scannedByteCount = 0;
+					}
+					if(haveEnoughFrames())
+						break;
+					replaySpilledBytes();
+					notifyAll();
+					wait(1);
+					continue;
+				}
+				scannedByteCount = 0;
+				
+				// ignore empty frames, and ignore the partial frame before the first delimiter
+				if(delimiterOffset == 0 || !inSync) {
+					inSync = true;
+					discard(delimiterOffset + 1);
+					continue;
+				}
+				frameStart = 0;
+				frameLength = delimiterOffset;
+				frameEnd = delimiterOffset + 1;
+				
+			}
+			
+			// decode the frame, copying it first if it wraps around the end of the ring buffer
+			byte[] frame = buffer[0];
+			int start = (readIndex[0] + frameStart) % bufferSize;
+			if(start + frameLength > bufferSize) {
+				if(wrappedLine.length < frameLength)
+					wrappedLine = new byte[frameLength];
+				int firstByteCount = bufferSize - start;
+				System.arraycopy(buffer[0], start, wrappedLine, 0, firstByteCount);
+				System.arraycopy(buffer[0], 0, wrappedLine, firstByteCount, frameLength - firstByteCount);
+				frame = wrappedLine;
+				start = 0;
+			}
+			int decodedByteCount = switch(framing) {
+				case COBS -> decodeCobs(frame, start, start + frameLength, frames, framesEnd, packetByteCount);
+				case SLIP -> decodeSlip(frame, start, start + frameLength, frames, framesEnd, packetByteCount);
+				default   -> { System.arraycopy(frame, start, frames, framesEnd, packetByteCount); yield frameLength; }
+			};
+			boolean valid = decodedByteCount >= packetByteCount &&
+			                (checksumProcessor == null || checksumProcessor.testChecksum(frames, framesEnd, packetByteCount, 0));
+			
+			if(valid) {
+				inSync = true;
+				framesEnd += packetByteCount;
+				discard(frameEnd);
+			} else if(framesEnd > framesStart) {
+				break; // the corrupt frame will be reported by the next call
+			} else if(framing == ConnectionTelemetry.Protocol.LENGTH_PREFIXED) {
+				// the byte count may have been corrupted, so skip one byte and try again
+				skipOneByte();
+			} else {
+				StringBuilder message = new StringBuilder(1024);
+				message.append("A corrupt telemetry packet was received:\n");
+				for(int i = 0; i < Integer.min(frameLength, 256); i++)
+					message.append(String.format("%02X ", frame[start + i]));
+				if(frameLength > 256)
+					message.append("...");
+				Notifications.showFailureForMilliseconds(message.toString(), 5000, false);
+				discard(frameEnd);
+			}
+			
+		}
+		
+	}
+	
+	/**
+	 * Framed modes: decoding can stop when at least one packet is available, or at least one block of packets while Parsers are still parsing earlier packets.
+	 * This way the unaligned packets at the end of a burst are combined with the next burst instead of making the reader wait for the Parsers.
+	 * 
+	 * @return    True if enough packets have been decoded.
+	 */
+	private boolean haveEnoughFrames() {
+		
+		int availableByteCount = framesEnd - framesStart;
+		return heldByteCount[0] > 0 ? availableByteCount >= StorageFloats.BLOCK_SIZE * packetByteCount :
+		                              availableByteCount >= packetByteCount;
+		
+	}
+	
+	/**
+	 * Length-prefixed mode: reports a loss of sync (if not already out of sync), then skips one byte so the next byte can be tested as the start of a frame.
+	 */
+	private void skipOneByte() {
+		
+		if(inSync && connection.getSampleCount() > 0)
+			Notifications.showFailureForMilliseconds("Lost sync with the telemetry packet stream.", 5000, true);
+		inSync = false;
+		discard(1);
+		
+	}
+	
+	/**
+	 * Removes bytes from the start of the ring buffer (CSV or framed modes.)
+	 * 
+	 * @param byteCount    Number of bytes to remove.
+	 */
+	private void discard(int byteCount) {
+		
+		readIndex[0] = (readIndex[0] + byteCount) % bufferSize;
+		occupiedSize[0] -= byteCount;
+		
+	}
+	
+	/**
+	 * Searches the ring buffer (CSV or framed modes) for a byte.
+	 * 
+	 * @param value     Byte to find.
+	 * @param offset    Where to start searching, relative to the current read index.
+	 * @return          Offset of the first occurrence relative to the current read index, or -1 if not found.
+	 */
+	private int indexOfInRing(byte value, int offset) {
+		
+		int start = readIndex[0];
+		int end = start + occupiedSize[0]; // may extend past the end of the ring buffer
+		int from = start + offset;
+		
+		if(from < bufferSize) {
+			int index = indexOf(buffer[0], from, Integer.min(end, bufferSize), value);
+			if(index >= 0)
+				return index - start;
+		}
+		if(end > bufferSize) {
+			int index = indexOf(buffer[0], Integer.max(from - bufferSize, 0), end - bufferSize, value);
+			if(index >= 0)
+				return index + bufferSize - start;
+		}
+		
+		return -1;
+		
+	}
+	
+	/**
+	 * Finds the first occurrence of a byte, testing 8 bytes at a time.
+	 * Each long is XORed with the byte repeated 8 times, so matching bytes become zero, then the standard "has a zero byte" bit trick finds the first zero byte.
+	 * 
+	 * @param array    Buffer to search.
+	 * @param start    Index of the first byte to test.
+	 * @param end      Index after the last byte to test.
+	 * @param value    Byte to find.
+	 * @return         Index of the first occurrence, or -1 if not found.
+	 */
+	static int indexOf(byte[] array, int start, int end, byte value) {
+		
+		long pattern = (value & 0xFFL) * 0x0101010101010101L;
+		int i = start;
+		for(; i <= end - 8; i += 8) {
+			long bytes = (long) LONGS.get(array, i) ^ pattern;
+			long zeros = (bytes - 0x0101010101010101L) & ~bytes & 0x8080808080808080L;
+			if(zeros != 0)
+				return i + (Long.numberOfTrailingZeros(zeros) >>> 3);
+		}
+		for(; i < end; i++)
+			if(array[i] == value)
+				return i;
+		
+		return -1;
+		
+	}
+	
+	/**
+	 * Decodes a COBS (Consistent Overhead Byte Stuffing) frame.
+	 * Each block starts with a code byte: the block contains (code - 1) data bytes, followed by a 0x00 byte unless the code is 0xFF or this is the last block.
+	 * 
+	 * @param frame              Buffer containing the frame.
+	 * @param start              Index of the first byte of the frame.
+	 * @param end                Index after the last byte of the frame, not including the delimiter.
+	 * @param packet             Where the decoded bytes will be written.
+	 * @param packetOffset       Index in the packet array for the first decoded byte.
+	 * @param packetByteCount    Maximum number of decoded bytes to write.
+	 * @return                   Number of decoded bytes (which may be more than packetByteCount), or -1 if the frame is not valid.
+	 */
+	static int decodeCobs(byte[] frame, int start, int end, byte[] packet, int packetOffset, int packetByteCount) {
+		
+		int byteCount = 0;
+		int i = start;
+		while(i < end) {
+			int code = frame[i++] & 0xFF;
+			if(code == 0 || i + code - 1 > end)
+				return -1;
+			int copyCount = Integer.min(code - 1, packetByteCount - byteCount);
+			if(copyCount > 0)
+				System.arraycopy(frame, i, packet, packetOffset + byteCount, copyCount);
+			byteCount += code - 1;
+			i += code - 1;
+			if(code != 0xFF && i < end) {
+				if(byteCount < packetByteCount)
+					packet[packetOffset + byteCount] = 0;
+				byteCount++;
+			}
+		}
+		
+		return byteCount;
+		
+	}
+	
+	/**
+	 * Decodes a SLIP (Serial Line Internet Protocol) frame.
+	 * 0xDB 0xDC represents a 0xC0 byte, and 0xDB 0xDD represents a 0xDB byte. The bytes between escape sequences are copied in bulk.
+	 * 
+	 * @param frame              Buffer containing the frame.
+	 * @param start              Index of the first byte of the frame.
+	 * @param end                Index after the last byte of the frame, not including the delimiter.
+	 * @param packet             Where the decoded bytes will be written.
+	 * @param packetOffset       Index in the packet array for the first decoded byte.
+	 * @param packetByteCount    Maximum number of decoded bytes to write.
+	 * @return                   Number of decoded bytes (which may be more than packetByteCount), or -1 if the frame is not valid.
+	 */
+	static int decodeSlip(byte[] frame, int start, int end, byte[] packet, int packetOffset, int packetByteCount) {
+		
+		int byteCount = 0;
+		int i = start;
+		while(i < end) {
+			int escape = indexOf(frame, i, end, SLIP_ESC);
+			int runEnd = (escape < 0) ? end : escape;
+			int copyCount = Integer.min(runEnd - i, packetByteCount - byteCount);
+			if(copyCount > 0)
+				System.arraycopy(frame, i, packet, packetOffset + byteCount, copyCount);
+			byteCount += runEnd - i;
+			if(escape < 0)
+				break;
+			if(escape + 1 == end || (frame[escape + 1] != SLIP_ESC_END && frame[escape + 1] != SLIP_ESC_ESC))
+				return -1;
+			if(byteCount < packetByteCount)
+				packet[packetOffset + byteCount] = (frame[escape + 1] == SLIP_ESC_END) ? SLIP_END : SLIP_ESC;
+			byteCount++;
+			i = escape + 2;
+		}
+		
+		return byteCount;
 		
 	}
 	
@@ -289,57 +1096,222 @@ public class SharedByteStream {
 	}
 	
 	/**
-	 * Reads one line of text from the buffer.
+	 * Reads and parses one or more lines of CSV text from the buffer.
+	 * The numbers are parsed directly from the ring buffer, without creating a String for each line.
+	 * This method blocks until at least one complete line is available, then parses every complete line that fits in the provided array.
+	 * Parsing stops early if a corrupt line is found, so the good lines before it can be processed first.
+	 * A line that fills the entire buffer is discarded (along with the rest of it, when it arrives) and reported as corrupt.
 	 * 
-	 * @return    The text, without a CR/LF.
-	 * @throws InterruptedException
+	 * @param rows                      Where the numbers will be written: [rowN][columnN]
+	 * @param columnCount               Number of columns to parse from each line. Any additional columns are ignored.
+	 * @return                          Number of rows that were populated.
+	 * @throws InterruptedException     If the thread is interrupted while waiting for a line to arrive.
+	 * @throws NumberFormatException    If the first line is corrupt. That line is consumed, and the exception message contains its text (or the start of it, if it was too long.)
 	 */
-	public synchronized String readLine() throws InterruptedException {
+	public synchronized int readCsvRows(float[][] rows, int columnCount) throws InterruptedException {
 		
-		StringBuilder text = new StringBuilder(16 * connection.getDatasetCount());
+		int rowCount = 0;
+		int scannedByteCount = 0;
 		
-		// skip past any line terminators
-		while(true) {
+		while(rowCount < rows.length) {
+			
+			// skip past any line terminators
+			while(occupiedSize[0] > 0 && isLineTerminator(buffer[0][readIndex[0]])) {
+				readIndex[0] = (readIndex[0] + 1) % bufferSize;
+				occupiedSize[0]--;
+				scannedByteCount = 0;
+			}
+			
+			// discard the rest of a line that was too long, up to the next line terminator
+			if(discardingLine) {
+				int byteCount = 0;
+				while(byteCount < occupiedSize[0] && !isLineTerminator(byteAt(byteCount)))
+					byteCount++;
+				discardingLine = (byteCount == occupiedSize[0]);
+				discard(byteCount);
+				if(!discardingLine)
+					continue;
+			}
 			
-			// wait for data if necessary
-			while(occupiedSize[0] < 1) {
+			// find the end of the line, or wait for more data if the line is incomplete
+			int lineLength = -1;
+			for(int i = scannedByteCount; i < occupiedSize[0]; i++) {
+				if(isLineTerminator(byteAt(i))) {
+					lineLength = i;
+					break;
+				}
+			}
+			if(lineLength < 0) {
+				if(rowCount > 0)
+					break;
+				if(occupiedSize[0] > 0 && (occupiedSize[0] == bufferSize || bufferFull)) {
+					// the line fills the buffer and can never be completed, so discard it and resync at the next line terminator
+					StringBuilder start = new StringBuilder();
+					for(int i = 0; i < Integer.min(occupiedSize[0], 20); i++)
+						start.append((char) (byteAt(i) & 0xFF));
+					int byteCount = occupiedSize[0];
+					discard(byteCount);
+					scannedByteCount = 0;
+					discardingLine = true;
+					notifyAll();
+					throw new NumberFormatException(start + "... (line is longer than " + byteCount + " bytes)");
+				}
+				scannedByteCount = occupiedSize[0];
+				replaySpilledBytes();
+				long previousDroppedByteCount = droppedByteCount;
 				notifyAll();
 				wait(1);
+				if(droppedByteCount != previousDroppedByteCount)
+					scannedByteCount = 0; // the writer discarded the oldest bytes
+				continue;
 			}
+			scannedByteCount = 0;
 			
-			// read from buffer
-			byte b = buffer[0][readIndex[0]];
-			if(b == '\r' || b == '\n') {
-				readIndex[0] = (readIndex[0] + 1) % bufferSize;
-				occupiedSize[0]--;
-			} else {
-				break;
+			// parse the line, copying it first if it wraps around the end of the ring buffer
+			byte[] line = buffer[0];
+			int lineStart = readIndex[0];
+			if(lineStart + lineLength > bufferSize) {
+				if(wrappedLine.length < lineLength)
+					wrappedLine = new byte[lineLength];
+				int firstByteCount = bufferSize - lineStart;
+				System.arraycopy(buffer[0], lineStart, wrappedLine, 0, firstByteCount);
+				System.arraycopy(buffer[0], 0, wrappedLine, firstByteCount, lineLength - firstByteCount);
+				line = wrappedLine;
+				lineStart = 0;
 			}
+			boolean valid = parseCsvLine(line, lineStart, lineStart + lineLength, rows[rowCount], columnCount);
+			if(!valid && rowCount > 0)
+				break; // the corrupt line will be reported by the next call
+			
+			readIndex[0] = (readIndex[0] + lineLength) % bufferSize;
+			occupiedSize[0] -= lineLength;
+			if(!valid)
+				throw new NumberFormatException(new String(line, lineStart, lineLength, StandardCharsets.ISO_8859_1));
+			rowCount++;
 			
 		}
 		
-		// build up the line of text
-		while(true) {
+		return rowCount;
+		
+	}
+	
+	private static boolean isLineTerminator(byte b) {
+		
+		return b == '\r' || b == '\n';
+		
+	}
+	
+	/**
+	 * @param offset    Offset relative to the current read index of the CSV or framed mode ring buffer.
+	 * @return          The byte at that location.
+	 */
+	private byte byteAt(int offset) {
+		
+		int index = readIndex[0] + offset;
+		return buffer[0][index < bufferSize ? index : index - bufferSize];
+		
+	}
+	
+	/**
+	 * @param offset    Offset relative to the current read index of the framed mode ring buffer.
+	 * @return          The uint16 little-endian number at that location.
+	 */
+	private int uint16At(int offset) {
+		
+		return (byteAt(offset) & 0xFF) | ((byteAt(offset + 1) & 0xFF) << 8);
+		
+	}
+	
+	/**
+	 * Parses comma-separated numbers from a line of text.
+	 * 
+	 * @param line           Buffer containing the line of text.
+	 * @param start          Index of the first byte.
+	 * @param end            Index after the last byte, not including the line terminator.
+	 * @param row            Where the numbers will be written.
+	 * @param columnCount    Number of numbers to parse.
+	 * @return               True if successful, or false if the line is corrupt or has too few columns.
+	 */
+	private static boolean parseCsvLine(byte[] line, int start, int end, float[] row, int columnCount) {
+		
+		int tokenStart = start;
+		for(int columnN = 0; columnN < columnCount; columnN++) {
 			
-			// wait for data if necessary
-			while(occupiedSize[0] < 1) {
-				notifyAll();
-				wait(1);
+			if(tokenStart > end)
+				return false;
+			
+			int tokenEnd = tokenStart;
+			while(tokenEnd < end && line[tokenEnd] != ',')
+				tokenEnd++;
+			
+			try {
+				row[columnN] = parseFloat(line, tokenStart, tokenEnd);
+			} catch(NumberFormatException e) {
+				return false;
 			}
 			
-			// read from buffer
-			byte b = buffer[0][readIndex[0]];
-			readIndex[0] = (readIndex[0] + 1) % bufferSize;
-			occupiedSize[0]--;
-			if(b != '\r' && b != '\n') {
-				text.append((char) b);
+			tokenStart = tokenEnd + 1;
+			
+		}
+		
+		return true;
+		
+	}
+	
+	private static final float[] POWERS_OF_TEN = {1e0f, 1e1f, 1e2f, 1e3f, 1e4f, 1e5f, 1e6f, 1e7f, 1e8f, 1e9f, 1e10f};
+	
+	/**
+	 * Parses a number from text.
+	 * 
+	 * Plain decimal numbers with up to ~7 significant digits are parsed directly: the digits are accumulated into an integer that a float can represent exactly,
+	 * then divided by a power of ten that a float can also represent exactly, so the result is correctly rounded and identical to Float.parseFloat().
+	 * Anything else (exponents, long numbers, "NaN", "Infinity", etc.) falls back to Float.parseFloat().
+	 * 
+	 * @param text                     Buffer containing the text.
+	 * @param start                    Index of the first byte.
+	 * @param end                      Index after the last byte.
+	 * @return                         The number.
+	 * @throws NumberFormatException   If the text is not a number.
+	 */
+	static float parseFloat(byte[] text, int start, int end) {
+		
+		// ignore surrounding whitespace, like Float.parseFloat() does
+		while(start < end && text[start] <= ' ')
+			start++;
+		while(end > start && text[end - 1] <= ' ')
+			end--;
+		
+		int i = start;
+		boolean negative = false;
+		if(i < end && (text[i] == '-' || text[i] == '+')) {
+			negative = text[i] == '-';
+			i++;
+		}
+		
+		int mantissa = 0;
+		int digitCount = 0;
+		int fractionDigitCount = 0;
+		boolean isFraction = false;
+		for(; i < end; i++) {
+			byte b = text[i];
+			if(b >= '0' && b <= '9') {
+				mantissa = mantissa * 10 + (b - '0');
+				digitCount++;
+				if(isFraction)
+					fractionDigitCount++;
+				if(mantissa > (1 << 24) || fractionDigitCount >= POWERS_OF_TEN.length)
+					return Float.parseFloat(new String(text, start, end - start, StandardCharsets.ISO_8859_1));
+			} else if(b == '.' && !isFraction) {
+				isFraction = true;
 			} else {
-				break;
+				return Float.parseFloat(new String(text, start, end - start, StandardCharsets.ISO_8859_1));
 			}
-			
 		}
+		if(digitCount == 0)
+			return Float.parseFloat(new String(text, start, end - start, StandardCharsets.ISO_8859_1));
 		
-		return text.toString();
+		float number = (float) mantissa / POWERS_OF_TEN[fractionDigitCount];
+		return negative ? -number : number;
 		
 	}
 	
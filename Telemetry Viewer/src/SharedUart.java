@@ -0,0 +1,216 @@
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import com.fazecast.jSerialComm.SerialPort;
+
+/**
+ * Allows several connections to receive telemetry from one UART, with each connection receiving a different "packet type."
+ * This is useful when a device interleaves different binary packets on one link (for example: fast IMU packets and slow housekeeping packets.)
+ * 
+ * Every packet must start with its sync word (if used) followed by a one byte packet type.
+ * Each connection defines the data structure for one packet type, so each packet type has its own datasets, sample count and timestamps.
+ * One thread reads from the UART, splits the received bytes into runs of packets, and writes each run to the SharedByteStream of the corresponding connection.
+ * Each connection then parses its packets with its own processing thread and Parser threads.
+ */
+public class SharedUart {
+	
+	private static final Map<String, SharedUart> openUarts = new HashMap<String, SharedUart>();
+	
+	private record Subscriber(ConnectionTelemetry connection, SharedByteStream stream) {}
+	
+	final SerialPort port;
+	private final String name;
+	private final int baudRate;
+	private volatile Subscriber[] subscribers = new Subscriber[256]; // indexed by packet type, replaced (not modified) when a connection subscribes or unsubscribes
+	private Thread receiverThread;
+	
+	private SharedUart(String name, int baudRate) {
+		
+		this.name = name;
+		this.baudRate = baudRate;
+		port = SerialPort.getCommPort(name);
+		port.setBaudRate(baudRate);
+		port.setComPortTimeouts(SerialPort.TIMEOUT_READ_SEMI_BLOCKING, 100, 0);
+		
+	}
+	
+	/**
+	 * Starts receiving one packet type from a UART, opening the UART if no other connection is using it.
+	 * 
+	 * @param name            Name of the UART.
+	 * @param baudRate        Baud rate. If the UART is already open, this must match the existing baud rate.
+	 * @param packetType      The packet type (0-255) to receive.
+	 * @param connection      The connection that will receive the packets.
+	 * @param stream          Packets of this type will be written into this stream.
+	 * @return                The shared UART, which can be used for transmitting data.
+	 * @throws Exception      If the UART could not be opened, or is already open with a different baud rate, or the packet type is already in use. The message is suitable for showing to the user.
+	 */
+	static synchronized SharedUart subscribe(String name, int baudRate, int packetType, ConnectionTelemetry connection, SharedByteStream stream) throws Exception {
+		
+		SharedUart uart = openUarts.get(name);
+		boolean isNew = (uart == null);
+		
+		if(isNew) {
+			uart = new SharedUart(name, baudRate);
+			if(!uart.port.openPort() && !uart.port.openPort() && !uart.port.openPort()) // some Bluetooth UARTs have trouble connecting, so try 3 times
+				throw new Exception("Unable to connect to " + name + ".");
+			openUarts.put(name, uart);
+		} else if(uart.baudRate != baudRate) {
+			throw new Exception(name + " is already being used by another connection at " + uart.baudRate + " baud.");
+		} else if(uart.subscribers[packetType] != null) {
+			throw new Exception("Packet type " + packetType + " on " + name + " is already being used by another connection.");
+		}
+		
+		Subscriber[] newSubscribers = Arrays.copyOf(uart.subscribers, 256);
+		newSubscribers[packetType] = new Subscriber(connection, stream);
+		uart.subscribers = newSubscribers;
+		
+		// the receiver thread runs until every packet type has been unsubscribed, so only start it after subscribing
+		if(isNew) {
+			SharedUart newUart = uart;
+			uart.receiverThread = new Thread(() -> newUart.receive());
+			uart.receiverThread.setPriority(Thread.MAX_PRIORITY);
+			uart.receiverThread.setName("Shared UART Receiver Thread for " + name);
+			uart.receiverThread.start();
+		}
+		
+		return uart;
+		
+	}
+	
+	/**
+	 * Stops receiving one packet type. The UART is closed after the last packet type is unsubscribed.
+	 * 
+	 * @param packetType    The packet type (0-255) to stop receiving.
+	 */
+	void unsubscribe(int packetType) {
+		
+		boolean wasLastSubscriber;
+		synchronized(SharedUart.class) {
+			Subscriber[] newSubscribers = Arrays.copyOf(subscribers, 256);
+			newSubscribers[packetType] = null;
+			subscribers = newSubscribers;
+			wasLastSubscriber = Arrays.stream(newSubscribers).allMatch(Objects::isNull);
+			if(wasLastSubscriber && openUarts.get(name) == this)
+				openUarts.remove(name); // the receiver thread will close the UART
+		}
+		
+		// wait for the UART to close, so it can be immediately reopened
+		if(wasLastSubscriber)
+			try { receiverThread.join(); } catch(InterruptedException e) {}
+		
+	}
+	
+	/**
+	 * Receives data from the UART and splits it into runs of packets, until every packet type has been unsubscribed or an error occurs.
+	 */
+	private void receive() {
+		
+		byte[] buffer = new byte[2097152]; // 2MB
+		int length = 0;
+		ConnectionTelemetry.PacketLayout[] layouts = new ConnectionTelemetry.PacketLayout[256];
+		int[] readyTypes = new int[256];
+		
+		try {
+			
+			while(true) {
+				
+				// stop if every connection has unsubscribed
+				Subscriber[] subscribers = this.subscribers;
+				if(Arrays.stream(subscribers).allMatch(Objects::isNull))
+					break;
+				
+				// block until at least one byte arrives (then read everything that's available) or the timeout expires
+				int byteCount = port.readBytes(buffer, buffer.length - length, length);
+				if(byteCount < 0)
+					throw new Exception();
+				length += byteCount;
+				
+				// packets can only be recognized after their connection's data structure has been defined
+				// (each connection rebuilds its packet layout when its data structure changes, so this does not re-scan the fields)
+				int readyTypesCount = 0;
+				for(int type = 0; type < 256; type++) {
+					layouts[type] = (subscribers[type] != null && subscribers[type].connection().isFieldsDefined()) ? subscribers[type].connection().getPacketLayout() : null;
+					if(layouts[type] != null)
+						readyTypes[readyTypesCount++] = type;
+				}
+				
+				// a packet starts with an optional 1 byte sync word, followed by the 1 byte packet type
+				int offset = 0;
+				while(length - offset >= 2) {
+					
+					// find the packet type at this offset
+					int type = -1;
+					for(int i = 0; i < readyTypesCount; i++) {
+						ConnectionTelemetry.PacketLayout layout = layouts[readyTypes[i]];
+						if(isPacketStart(buffer, offset, layout, readyTypes[i])) {
+							type = readyTypes[i];
+							break;
+						}
+					}
+					
+					// skip this byte if it's not the start of a recognized packet
+					if(type == -1) {
+						offset++;
+						continue;
+					}
+					
+					// stop if the packet is incomplete
+					ConnectionTelemetry.PacketLayout layout = layouts[type];
+					if(length - offset < layout.byteCount())
+						break;
+					
+					// write this packet and any consecutive packets of the same type
+					int runStart = offset;
+					offset += layout.byteCount();
+					while(length - offset >= layout.byteCount() && isPacketStart(buffer, offset, layout, type))
+						offset += layout.byteCount();
+					try {
+						subscribers[type].stream().write(ByteBuffer.wrap(buffer, runStart, offset - runStart));
+					} catch(InterruptedException e) {
+						// that connection is disconnecting
+					}
+					
+				}
+				
+				// keep any incomplete packet for the next read
+				System.arraycopy(buffer, offset, buffer, 0, length - offset);
+				length -= offset;
+				
+			}
+			
+		} catch(Exception e) {
+			
+			synchronized(SharedUart.class) {
+				if(openUarts.get(name) == this)
+					openUarts.remove(name);
+			}
+			for(Subscriber subscriber : subscribers)
+				if(subscriber != null && subscriber.connection().isConnected())
+					subscriber.connection().disconnect("Error while reading from " + name + ".", false);
+			
+		}
+		
+		port.closePort();
+		
+	}
+	
+	/**
+	 * @param buffer        Received bytes.
+	 * @param offset        Location to check.
+	 * @param layout        Packet layout for a packet type.
+	 * @param packetType    The packet type.
+	 * @return              True if a packet of this type starts at the offset. The caller must ensure at least 2 bytes are available.
+	 */
+	private static boolean isPacketStart(byte[] buffer, int offset, ConnectionTelemetry.PacketLayout layout, int packetType) {
+		
+		if(layout.syncWordByteCount() > 0 && buffer[offset] != layout.syncWord())
+			return false;
+		return (buffer[offset + layout.syncWordByteCount()] & 0xFF) == packetType;
+		
+	}
+	
+}
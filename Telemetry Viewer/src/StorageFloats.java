@@ -6,6 +6,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
 import com.jogamp.common.nio.Buffers;
 
 public class StorageFloats {
@@ -20,6 +21,12 @@ public class StorageFloats {
 	private volatile Slot[] slot                 = new Slot [MAX_SAMPLE_NUMBER / SLOT_SIZE  + 1]; // +1 to round up
 	private volatile float[] minimumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
 	private volatile float[] maximumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
+	private final AtomicInteger flushedSlotCount = new AtomicInteger(0); // slots before this one have been moved to disk
+	
+	// downsampled "companion streams" track the min, max and mean of "buckets" of 16, 256 and 4096 values.
+	// they stay in memory, so charts can draw long durations without reading every value.
+	public static final int[] BUCKET_SIZES = {16, 256, 4096};
+	private volatile Level[] levels = createLevels();
 	
 	// older slots can be swapped to disk when memory runs low.
 	private final Path filePath;
@@ -66,8 +73,7 @@ public class StorageFloats {
 		
 		if(valueN == 0) {
 			slot[slotN] = new Slot();
-			if(slotN > 1)
-				slot[slotN - 2].flushToDisk(slotN - 2);
+			flushOldSlots(slotN);
 		}
 		slot[slotN].value[valueN] = value;
 		
@@ -95,14 +101,116 @@ public class StorageFloats {
 
 		if(slot[slotN] == null) {
 			slot[slotN] = new Slot();
-			if(slotN > 1)
-				slot[slotN - 2].flushToDisk(slotN - 2);
+			flushOldSlots(slotN);
 		}
 		
 		return slot[slotN].value;
 		
 	}
 	
+	/**
+	 * Moves old slots to disk, keeping the two newest slots in memory.
+	 * A slot is only moved after all of its samples have been committed, because Parsers may run more than a slot ahead of the sample count,
+	 * and uncommitted samples may still be written (after a lost sync word) or read (by derived datasets with filters.)
+	 * Several Parser threads may call this at the same time, so each slot is claimed with a compare-and-set before it is moved.
+	 * 
+	 * @param newestSlotN    The slot that was just created.
+	 */
+	private void flushOldSlots(int newestSlotN) {
+		
+		int committedSlotCount = connection.getSampleCount() / SLOT_SIZE;
+		while(true) {
+			int slotN = flushedSlotCount.get();
+			if(slotN >= newestSlotN - 1 || slotN >= committedSlotCount)
+				break;
+			if(flushedSlotCount.compareAndSet(slotN, slotN + 1) && slot[slotN] != null)
+				slot[slotN].flushToDisk(slotN);
+		}
+		
+	}
+	
+	/**
+	 * Updates the downsampled streams with any buckets that have been completed.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param sampleCount    Number of values that have been written. This must be called BEFORE the connection's sample count includes them, so the slots are still in memory.
+	 */
+	public void updateLevels(int sampleCount) {
+		
+		// the finest level is calculated from the values
+		Level finest = levels[0];
+		while((finest.bucketCount + 1) * finest.bucketSize <= sampleCount) {
+			int firstSampleNumber = finest.bucketCount * finest.bucketSize;
+			if(slot[firstSampleNumber / SLOT_SIZE] == null)
+				break; // no values have been written for these samples
+			float[] array = slot[firstSampleNumber / SLOT_SIZE].value;
+			int start = firstSampleNumber % SLOT_SIZE;
+			float min = array[start];
+			float max = array[start];
+			float sum = array[start];
+			for(int i = start + 1; i < start + finest.bucketSize; i++) {
+				float value = array[i];
+				if(value < min) min = value;
+				if(value > max) max = value;
+				sum += value;
+			}
+			finest.append(min, max, sum / finest.bucketSize);
+		}
+		
+		// coarser levels are calculated from the next finer level
+		for(int levelN = 1; levelN < levels.length; levelN++) {
+			Level level = levels[levelN];
+			Level finer = levels[levelN - 1];
+			int ratio = level.bucketSize / finer.bucketSize;
+			while((level.bucketCount + 1) * ratio <= finer.bucketCount) {
+				int firstBucketN = level.bucketCount * ratio;
+				float min = finer.getMinimum(firstBucketN);
+				float max = finer.getMaximum(firstBucketN);
+				float sum = finer.getMean(firstBucketN);
+				for(int bucketN = firstBucketN + 1; bucketN < firstBucketN + ratio; bucketN++) {
+					min = Math.min(min, finer.getMinimum(bucketN));
+					max = Math.max(max, finer.getMaximum(bucketN));
+					sum += finer.getMean(bucketN);
+				}
+				level.append(min, max, sum / ratio);
+			}
+		}
+		
+	}
+	
+	/**
+	 * Gets the downsampled buckets that are entirely within a sequence of samples.
+	 * 
+	 * @param bucketSize           One of the BUCKET_SIZES.
+	 * @param firstSampleNumber    First sample number to consider, inclusive.
+	 * @param lastSampleNumber     Last sample number to consider, inclusive. This MUST be a valid sample number.
+	 * @return                     The buckets. If no bucket is entirely within the range, the Buckets will be empty.
+	 */
+	public Buckets getBuckets(int bucketSize, int firstSampleNumber, int lastSampleNumber) {
+		
+		Level level = null;
+		for(Level l : levels)
+			if(l.bucketSize == bucketSize)
+				level = l;
+		
+		// long math so sample numbers near Integer.MAX_VALUE can't overflow
+		long firstBucketN = ((long) firstSampleNumber + bucketSize - 1) / bucketSize;
+		long endBucketN = ((long) lastSampleNumber + 1) / bucketSize; // exclusive
+		int count = (int) Long.max(0, endBucketN - firstBucketN);
+		if(count == 0)
+			return new Buckets(bucketSize, firstSampleNumber, new float[0], new float[0], new float[0]);
+		
+		int firstBucket = (int) firstBucketN;
+		Buckets buckets = new Buckets(bucketSize, firstBucket * bucketSize, new float[count], new float[count], new float[count]);
+		for(int i = 0; i < count; i++) {
+			buckets.min[i]  = level.getMinimum(firstBucket + i);
+			buckets.max[i]  = level.getMaximum(firstBucket + i);
+			buckets.mean[i] = level.getMean(firstBucket + i);
+		}
+		return buckets;
+		
+	}
+	
 	/**
 	 * Specifies the minimum and maximum values found in a block.
 	 * This method is NOT reentrant! Only one thread may call this at a time.
@@ -240,6 +348,8 @@ public class StorageFloats {
 		slot                = new Slot [MAX_SAMPLE_NUMBER / SLOT_SIZE  + 1]; // +1 to round up
 		minimumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
 		maximumValueInBlock = new float[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
+		flushedSlotCount.set(0);
+		levels = createLevels();
 		
 	}
 	
@@ -445,6 +555,65 @@ public class StorageFloats {
 		
 	}
 	
+	private static Level[] createLevels() {
+		
+		Level[] levels = new Level[BUCKET_SIZES.length];
+		for(int i = 0; i < levels.length; i++)
+			levels[i] = new Level(BUCKET_SIZES[i]);
+		return levels;
+		
+	}
+	
+	/**
+	 * One downsampled stream. Buckets are stored in chunks, with one chunk for each slot, so memory is only allocated as values arrive.
+	 */
+	private static class Level {
+		
+		final int bucketSize;
+		final int bucketsPerChunk;
+		final float[][] minimum = new float[Integer.MAX_VALUE / SLOT_SIZE + 1][]; // +1 to round up
+		final float[][] maximum = new float[Integer.MAX_VALUE / SLOT_SIZE + 1][]; // +1 to round up
+		final float[][] mean    = new float[Integer.MAX_VALUE / SLOT_SIZE + 1][]; // +1 to round up
+		int bucketCount = 0; // buckets that have been completed, only used by the thread that calls updateLevels()
+		
+		Level(int bucketSize) {
+			this.bucketSize = bucketSize;
+			bucketsPerChunk = SLOT_SIZE / bucketSize;
+		}
+		
+		void append(float min, float max, float average) {
+			int chunkN  = bucketCount / bucketsPerChunk;
+			int bucketN = bucketCount % bucketsPerChunk;
+			if(bucketN == 0) {
+				minimum[chunkN] = new float[bucketsPerChunk];
+				maximum[chunkN] = new float[bucketsPerChunk];
+				mean[chunkN]    = new float[bucketsPerChunk];
+			}
+			minimum[chunkN][bucketN] = min;
+			maximum[chunkN][bucketN] = max;
+			mean[chunkN][bucketN]    = average;
+			bucketCount++;
+		}
+		
+		float getMinimum(int bucketN) { return minimum[bucketN / bucketsPerChunk][bucketN % bucketsPerChunk]; }
+		float getMaximum(int bucketN) { return maximum[bucketN / bucketsPerChunk][bucketN % bucketsPerChunk]; }
+		float getMean(int bucketN)    { return mean   [bucketN / bucketsPerChunk][bucketN % bucketsPerChunk]; }
+		
+	}
+	
+	/**
+	 * A sequence of downsampled buckets.
+	 * 
+	 * @param bucketSize           Number of samples in each bucket.
+	 * @param firstSampleNumber    First sample number of the first bucket.
+	 * @param min                  Minimum value in each bucket.
+	 * @param max                  Maximum value in each bucket.
+	 * @param mean                 Mean value of each bucket.
+	 */
+	public record Buckets(int bucketSize, int firstSampleNumber, float[] min, float[] max, float[] mean) {
+		public int count() { return min.length; }
+	}
+	
 	public class Values {
 		
 		public FloatBuffer buffer;
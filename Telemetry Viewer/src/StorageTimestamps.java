@@ -11,11 +11,33 @@ import com.jogamp.common.nio.Buffers;
 
 public class StorageTimestamps {
 	
+	/**
+	 * Timestamps are stored as the number of "units" since 1970-01-01, where a unit is a millisecond, microsecond or nanosecond.
+	 * Higher resolutions give closely spaced samples distinct timestamps, but samples that arrive in bursts will need more records.
+	 * The rest of the program works with milliseconds, so the public methods accept and return milliseconds unless noted otherwise.
+	 */
+	public enum Resolution {
+		MILLISECONDS { @Override public String toString() { return "Millisecond Timestamps"; } },
+		MICROSECONDS { @Override public String toString() { return "Microsecond Timestamps"; } },
+		NANOSECONDS  { @Override public String toString() { return "Nanosecond Timestamps";  } };
+		
+		/**
+		 * @return    Number of units per millisecond.
+		 */
+		public long getUnitsPerMillisecond() {
+			return switch(this) { case MILLISECONDS -> 1;
+			                      case MICROSECONDS -> 1000;
+			                      case NANOSECONDS  -> 1000000; };
+		}
+	};
+	
 	// timestamps are buffered into "slots" which each hold 1M "records"
 	// Each record is 3 longs which specify:
 	// [i]   The first sample number in a series.
-	// [i+1] The sample count of that series.
-	// [i+2] The timestamp for that entire series.
+	// [i+1] The sample count of that series (lower 32 bits) and the timestamp delta between samples in that series (upper 32 bits.)
+	// [i+2] The timestamp of the first sample in that series, in units of the current resolution.
+	// Live connections give every sample in a series the same timestamp (delta = 0.)
+	// Device timestamps usually increase by a constant amount, so each "delta run" of evenly spaced timestamps is also stored as one record.
 	
 	// to speed up queries, the min/max timestamps and sample numbers are tracked for smaller "blocks" of 1K records.
 	private final int BLOCK_SIZE = StorageFloats.BLOCK_SIZE;
@@ -32,6 +54,11 @@ public class StorageTimestamps {
 	private volatile int[]  minimumSampleNumberInBlock = new  int[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
 	private volatile int[]  maximumSampleNumberInBlock = new  int[MAX_SAMPLE_NUMBER / BLOCK_SIZE + 1]; // +1 to round up
 	
+	private volatile Resolution resolution = Resolution.MILLISECONDS;
+	private volatile long unitsPerMillisecond = 1;
+	private long clockAnchorNanoseconds;     // UNIX time
+	private long clockAnchorNanoTime;        // System.nanoTime() at that time
+	
 	// older slots are swapped to disk
 	private final Path filePath;
 	private final FileChannel file;
@@ -63,6 +90,74 @@ public class StorageTimestamps {
 		
 	}
 	
+	/**
+	 * Changes the resolution of the timestamps. This MUST only be called when empty.
+	 * 
+	 * @param newResolution    The new resolution.
+	 */
+	public void setResolution(Resolution newResolution) {
+		
+		resolution = newResolution;
+		unitsPerMillisecond = newResolution.getUnitsPerMillisecond();
+		
+		// System.nanoTime() is monotonic and precise, but not related to the UNIX time, so anchor it to the UNIX time now
+		clockAnchorNanoTime = System.nanoTime();
+		clockAnchorNanoseconds = System.currentTimeMillis() * 1000000;
+		
+	}
+	
+	/**
+	 * @return    The current resolution.
+	 */
+	public Resolution getResolution() {
+		
+		return resolution;
+		
+	}
+	
+	/**
+	 * @return    Number of units per millisecond for the current resolution.
+	 */
+	public long getUnitsPerMillisecond() {
+		
+		return unitsPerMillisecond;
+		
+	}
+	
+	/**
+	 * @return    The current time, in units of the current resolution.
+	 *            Microsecond and nanosecond timestamps are based on System.nanoTime(), so they are also suitable for measuring short intervals.
+	 */
+	public long getCurrentTimestamp() {
+		
+		return (resolution == Resolution.MILLISECONDS) ? System.currentTimeMillis() :
+		                                                 (clockAnchorNanoseconds + (System.nanoTime() - clockAnchorNanoTime)) / (1000000 / unitsPerMillisecond);
+		
+	}
+	
+	/**
+	 * @param milliseconds    A UNIX timestamp in milliseconds.
+	 * @return                The last timestamp (in units of the current resolution) that is still within that millisecond. Saturates instead of overflowing.
+	 */
+	private long toLastUnitOfMillisecond(long milliseconds) {
+		
+		if(milliseconds >= Long.MAX_VALUE / unitsPerMillisecond)
+			return Long.MAX_VALUE;
+		if(milliseconds <= Long.MIN_VALUE / unitsPerMillisecond)
+			return Long.MIN_VALUE;
+		return milliseconds * unitsPerMillisecond + unitsPerMillisecond - 1;
+		
+	}
+	
+	/**
+	 * @return    Number of samples that have timestamps.
+	 */
+	public int getSampleCount() {
+		
+		return sampleCount;
+		
+	}
+	
 	/**
 	 * @return    A place to cache timestamps.
 	 */
@@ -76,20 +171,37 @@ public class StorageTimestamps {
 	 * Sets the timestamp for one or more new samples.
 	 * This method is NOT reentrant! Only one thread may call this at a time.
 	 * 
-	 * @param timestamp    The new timestamp. This MUST be >= the timestamp of the previous sample.
+	 * @param timestamp    The new timestamp, in units of the current resolution. This MUST be >= the timestamp of the previous sample.
 	 * @param count        How many new samples use this timestamp.
 	 */
 	public void appendTimestamps(long timestamp, int count) {
 		
-		// if the current record has the same timestamp, just increment its sampleCount and maximumSampleNumberInBlock
 		int slotN   = (recordCount - 1) / SLOT_SIZE;
 		int recordN = (recordCount - 1) % SLOT_SIZE;
 		int blockN  = (recordCount - 1) / BLOCK_SIZE;
-		if(recordCount > 0 && slot[slotN].record[recordN*3 + 2] == timestamp) {
-			slot[slotN].record[recordN*3 + 1] += count;
-			maximumSampleNumberInBlock[blockN] += count;
-			sampleCount += count;
-			return;
+		if(recordCount > 0) {
+			long[] record = slot[slotN].record;
+			int recordSampleCount = (int) record[recordN*3 + 1];
+			long recordDelta = record[recordN*3 + 1] >>> 32;
+			long recordTimestamp = record[recordN*3 + 2];
+			
+			// if the current record has the same timestamp, just increment its sampleCount and maximumSampleNumberInBlock
+			if(recordDelta == 0 && recordTimestamp == timestamp) {
+				record[recordN*3 + 1] += count;
+				maximumSampleNumberInBlock[blockN] += count;
+				sampleCount += count;
+				return;
+			}
+			
+			// if one new sample continues the current delta run (or starts a delta run after a one-sample record), extend that record
+			long delta = timestamp - (recordTimestamp + recordDelta * (recordSampleCount - 1));
+			if(count == 1 && delta > 0 && delta <= Integer.MAX_VALUE && (delta == recordDelta || recordSampleCount == 1)) {
+				record[recordN*3 + 1] = (delta << 32) | (recordSampleCount + 1);
+				maximumTimestampInBlock[blockN] = timestamp;
+				maximumSampleNumberInBlock[blockN]++;
+				sampleCount++;
+				return;
+			}
 		}
 		
 		// the current record has an older timestamp, so fill in a new record (creating a new slot if necessary) and update the min/max's
@@ -121,83 +233,151 @@ public class StorageTimestamps {
 		
 	}
 	
+	/**
+	 * Sets the timestamps for a batch of new samples that were received at the same time.
+	 * The samples are evenly spaced so the batch ends at the specified timestamp, but no sample will be before the earliest allowed timestamp.
+	 * This method is NOT reentrant! Only one thread may call this at a time.
+	 * 
+	 * @param timestamp    Timestamp of the last new sample, in units of the current resolution. This MUST be >= earliest.
+	 * @param earliest     Earliest allowed timestamp, in units of the current resolution. This MUST be >= the timestamp of the previous sample.
+	 * @param spacing      Units between consecutive samples, or 0 to give every new sample the same timestamp.
+	 * @param count        How many new samples to add.
+	 * @return             Timestamp of the first new sample.
+	 */
+	public long appendSpreadTimestamps(long timestamp, long earliest, long spacing, int count) {
+		
+		if(spacing == 0 || count <= 1) {
+			appendTimestamps(timestamp, count);
+			return timestamp;
+		}
+		
+		for(int i = 0; i < count; i++)
+			appendTimestamps(Long.max(timestamp - (count - 1 - i) * spacing, earliest), 1);
+		return Long.max(timestamp - (count - 1) * spacing, earliest);
+		
+	}
+	
+	/**
+	 * Finds the last sample at or before a timestamp. Blocks and records are in timestamp order, so both are found with a binary search.
+	 * 
+	 * @param timestamp          The timestamp, in milliseconds.
+	 * @param maxSampleNumber    Sample number to return if every sample is at or before the timestamp.
+	 * @return                   The closest sample number at or before the timestamp, or -1 if every sample is after the timestamp.
+	 */
 	public int getClosestSampleNumberAtOrBefore(long timestamp, int maxSampleNumber) {
 		
 		if(sampleCount == 0)
 			return -1;
 		
-		int lastBlock = (recordCount - 1) / BLOCK_SIZE;
+		// all samples within the requested millisecond are "at" that millisecond
+		timestamp = toLastUnitOfMillisecond(timestamp);
+		
+		int records = recordCount;
+		int lastBlock = (records - 1) / BLOCK_SIZE;
 		
 		// check if all timestamps are younger
 		if(maximumTimestampInBlock[lastBlock] < timestamp)
 			return maxSampleNumber;
 		
-		// find the closest block
-		int block = -1;
-		for(int blockN = lastBlock; blockN >= 0; blockN--)
-			if(minimumTimestampInBlock[blockN] <= timestamp) {
-				block = blockN;
-				break;
-			}
+		// find the last block that starts at or before the timestamp
+		int low = 0;
+		int high = lastBlock + 1; // exclusive
+		while(low < high) {
+			int blockN = (low + high) >>> 1;
+			if(minimumTimestampInBlock[blockN] <= timestamp)
+				low = blockN + 1;
+			else
+				high = blockN;
+		}
+		int block = low - 1;
 		
 		// all samples are older (none "at or before")
 		if(block == -1)
 			return -1;
 		
-		// get records for that block and find the closest sample
+		// get records for that block and find the last record that starts at or before the timestamp
 		LongBuffer buffer = getRecordsFromBlock(block);
 		int offset = buffer.position();
-		for(int i = BLOCK_SIZE - 1; i >= 0; i--) {
-			long recordFirstSampleNumber = buffer.get(offset + i*3 + 0);
-			long recordSampleCount = buffer.get(offset + i*3 + 1);
-			if(recordSampleCount == 0) // this record not yet used
-				continue;
-			long recordTimestamp = buffer.get(offset + i*3 + 2);
-			if(recordTimestamp <= timestamp)
-				return (int) (recordFirstSampleNumber + recordSampleCount - 1);
+		low = 0;
+		high = Integer.min(BLOCK_SIZE, records - block * BLOCK_SIZE);
+		while(low < high) {
+			int i = (low + high) >>> 1;
+			if(buffer.get(offset + i*3 + 2) <= timestamp)
+				low = i + 1;
+			else
+				high = i;
 		}
-		
-		// should never get here
-		return -1;
+		int i = low - 1;
+		long recordFirstSampleNumber = buffer.get(offset + i*3 + 0);
+		long recordSampleCount = (int) buffer.get(offset + i*3 + 1);
+		long recordDelta = buffer.get(offset + i*3 + 1) >>> 32;
+		long recordTimestamp = buffer.get(offset + i*3 + 2);
+		return (int) (recordFirstSampleNumber + (recordDelta == 0 ? recordSampleCount - 1 : Long.min(recordSampleCount - 1, (timestamp - recordTimestamp) / recordDelta)));
 		
 	}
 	
+	/**
+	 * Finds the first sample after a timestamp. Blocks and records are in timestamp order, so both are found with a binary search.
+	 * 
+	 * @param timestamp    The timestamp, in milliseconds.
+	 * @return             The closest sample number after the timestamp, or the last sample number if every sample is at or before the timestamp.
+	 */
 	public int getClosestSampleNumberAfter(long timestamp) {
 		
 		if(sampleCount == 0)
 			return -1;
 		
 		int maxSampleNumber = sampleCount - 1;
-		int lastBlock = (recordCount - 1) / BLOCK_SIZE;
+		int records = recordCount;
+		int lastBlock = (records - 1) / BLOCK_SIZE;
+		
+		// all samples within the requested millisecond are "at" (not "after") that millisecond
+		timestamp = toLastUnitOfMillisecond(timestamp);
 		
 		// check if all timestamps are older
 		if(minimumTimestampInBlock[0] > timestamp)
 			return 0;
 		
-		// find the closest block
-		int block = -1;
-		for(int blockN = 0; blockN <= lastBlock; blockN++)
-			if(maximumTimestampInBlock[blockN] > timestamp) {
-				block = blockN;
-				break;
-			}
+		// find the first block that ends after the timestamp
+		int low = 0;
+		int high = lastBlock + 1; // exclusive
+		while(low < high) {
+			int blockN = (low + high) >>> 1;
+			if(maximumTimestampInBlock[blockN] > timestamp)
+				high = blockN;
+			else
+				low = blockN + 1;
+		}
+		int block = low;
 		
 		// all timestamps are younger or equal (none "after")
-		if(block == -1)
+		if(block > lastBlock)
 			return maxSampleNumber;
 		
-		// get records for that block and find the closest sample
+		// get records for that block and find the first record that ends after the timestamp
 		LongBuffer buffer = getRecordsFromBlock(block);
-		for(int i = 0; i < BLOCK_SIZE; i++) {
-			long recordFirstSampleNumber = buffer.get();
-			/* long recordSampleCount = */ buffer.get();
-			long recordTimestamp = buffer.get();
-			if(recordTimestamp > timestamp)
-				return (int) recordFirstSampleNumber;
+		int offset = buffer.position();
+		low = 0;
+		high = Integer.min(BLOCK_SIZE, records - block * BLOCK_SIZE);
+		int recordsInBlock = high;
+		while(low < high) {
+			int i = (low + high) >>> 1;
+			long recordCountAndDelta = buffer.get(offset + i*3 + 1);
+			long recordLastTimestamp = buffer.get(offset + i*3 + 2) + (recordCountAndDelta >>> 32) * ((int) recordCountAndDelta - 1);
+			if(recordLastTimestamp > timestamp)
+				high = i;
+			else
+				low = i + 1;
 		}
+		if(low == recordsInBlock) // should never get here
+			return maxSampleNumber;
 		
-		// should never get here
-		return maxSampleNumber;
+		long recordFirstSampleNumber = buffer.get(offset + low*3 + 0);
+		long recordDelta = buffer.get(offset + low*3 + 1) >>> 32;
+		long recordTimestamp = buffer.get(offset + low*3 + 2);
+		if(recordTimestamp > timestamp)
+			return (int) recordFirstSampleNumber;
+		return (int) (recordFirstSampleNumber + (timestamp - recordTimestamp) / recordDelta + 1);
 		
 	}
 	
@@ -239,31 +419,68 @@ public class StorageTimestamps {
 	 * Reads the timestamp for a certain sample number.
 	 * 
 	 * @param sampleNumber    Which sample number to read. This MUST be a valid sample number.
-	 * @return                The corresponding timestamp.
+	 * @return                The corresponding timestamp, in milliseconds (rounded down.)
 	 */
 	public long getTimestamp(int sampleNumber) {
 		
-		// determine the corresponding block
-		int block = 0;
-		for(int blockN = 0; blockN <= (recordCount - 1) / BLOCK_SIZE; blockN++) {
-			if(maximumSampleNumberInBlock[blockN] >= sampleNumber) {
-				block = blockN;
-				break;
-			}
+		return Math.floorDiv(getTimestampUnits(sampleNumber), unitsPerMillisecond);
+		
+	}
+	
+	/**
+	 * Reads the timestamp for a certain sample number, relative to some other timestamp.
+	 * 
+	 * @param sampleNumber    Which sample number to read. This MUST be a valid sample number.
+	 * @param plotMinX        Timestamp (in milliseconds) to subtract.
+	 * @return                Milliseconds from plotMinX to the sample, including any fraction of a millisecond.
+	 */
+	public float getTimestampRelativeTo(int sampleNumber, long plotMinX) {
+		
+		return (float) ((double) (getTimestampUnits(sampleNumber) - plotMinX * unitsPerMillisecond) / unitsPerMillisecond);
+		
+	}
+	
+	/**
+	 * Reads the timestamp for a certain sample number.
+	 * 
+	 * @param sampleNumber    Which sample number to read. This MUST be a valid sample number.
+	 * @return                The corresponding timestamp, in units of the current resolution.
+	 */
+	long getTimestampUnits(int sampleNumber) {
+		
+		// binary search for the first block that ends at or after the sample number
+		int records = recordCount;
+		int low = 0;
+		int high = (records - 1) / BLOCK_SIZE; // the last block, which is used if the sample number is invalid
+		while(low < high) {
+			int blockN = (low + high) >>> 1;
+			if(maximumSampleNumberInBlock[blockN] >= sampleNumber)
+				high = blockN;
+			else
+				low = blockN + 1;
 		}
-
-		// iterate through the records to find the corresponding timestamp
-		LongBuffer records = getRecordsFromBlock(block);
-		for(int recordN = 0; recordN < BLOCK_SIZE; recordN++) {
-			int firstSampleNumberOfRecord =                             (int) records.get();
-			int lastSampleNumberOfRecord  = firstSampleNumberOfRecord + (int) records.get() - 1;
-			long timestampOfRecord        =                                   records.get();
-			if(sampleNumber >= firstSampleNumberOfRecord && sampleNumber <= lastSampleNumberOfRecord)
-				return timestampOfRecord;
+		int block = low;
+		
+		// binary search for the last record that starts at or before the sample number
+		LongBuffer buffer = getRecordsFromBlock(block);
+		int offset = buffer.position();
+		low = 0;
+		high = Integer.min(BLOCK_SIZE, records - block * BLOCK_SIZE);
+		while(low < high) {
+			int i = (low + high) >>> 1;
+			if(buffer.get(offset + i*3 + 0) <= sampleNumber)
+				low = i + 1;
+			else
+				high = i;
 		}
+		if(low == 0) // should never get here
+			return 0;
 		
-		// should never get here
-		return 0;
+		int i = low - 1;
+		long firstSampleNumberOfRecord = buffer.get(offset + i*3 + 0);
+		long countAndDeltaOfRecord     = buffer.get(offset + i*3 + 1);
+		long timestampOfRecord         = buffer.get(offset + i*3 + 2);
+		return timestampOfRecord + (sampleNumber - firstSampleNumberOfRecord) * (countAndDeltaOfRecord >>> 32);
 		
 	}
 	
@@ -272,8 +489,9 @@ public class StorageTimestamps {
 	 * 
 	 * @param firstSampleNumber    The first sample number, inclusive. This MUST be a valid sample number.
 	 * @param lastSampleNumber     The last sample number, inclusive. This MUST be a valid sample number.
-	 * @param plotMinX             Timestamp at the left edge of the plot.
+	 * @param plotMinX             Timestamp (in milliseconds) at the left edge of the plot.
 	 * @param cache                Place to cache timestamps.
+	 * @return                     Milliseconds from plotMinX to each sample, including any fraction of a millisecond.
 	 */
 	public FloatBuffer getTampstamps(int firstSampleNumber, int lastSampleNumber, long plotMinX, Cache cache) {
 		
@@ -281,8 +499,16 @@ public class StorageTimestamps {
 		cache.cacheLongs.position(firstSampleNumber - cache.startOfCache);
 		
 		FloatBuffer buffer = Buffers.newDirectFloatBuffer(lastSampleNumber - firstSampleNumber + 1);
-		for(int i = firstSampleNumber; i <= lastSampleNumber; i++)
-			buffer.put(cache.cacheLongs.get() - plotMinX);
+		if(unitsPerMillisecond == 1) {
+			for(int i = firstSampleNumber; i <= lastSampleNumber; i++)
+				buffer.put(cache.cacheLongs.get() - plotMinX);
+		} else {
+			// subtract before dividing, so the fraction of a millisecond survives the conversion to float32
+			long plotMinUnits = plotMinX * unitsPerMillisecond;
+			double millisecondsPerUnit = 1.0 / unitsPerMillisecond;
+			for(int i = firstSampleNumber; i <= lastSampleNumber; i++)
+				buffer.put((float) ((cache.cacheLongs.get() - plotMinUnits) * millisecondsPerUnit));
+		}
 		
 		return buffer.rewind();
 		
@@ -294,12 +520,19 @@ public class StorageTimestamps {
 	 * @param firstSampleNumber    The first sample number, inclusive. This MUST be a valid sample number.
 	 * @param lastSampleNumber     The last sample number, inclusive. This MUST be a valid sample number.
 	 * @param cache                Place to cache timestamps.
+	 * @return                     The timestamps, in milliseconds (rounded down.)
 	 */
 	public LongBuffer getTampstamps(int firstSampleNumber, int lastSampleNumber, Cache cache) {
 		
 		cache.update(firstSampleNumber, lastSampleNumber);
 		cache.cacheLongs.position(firstSampleNumber - cache.startOfCache);
-		return cache.cacheLongs.slice(); // must slice, to prevent the position() from changing if getTimestamp() or getTimestampsBuffer() is called again before "using" this buffer
+		if(unitsPerMillisecond == 1)
+			return cache.cacheLongs.slice(); // must slice, to prevent the position() from changing if getTimestamp() or getTimestampsBuffer() is called again before "using" this buffer
+		
+		LongBuffer buffer = LongBuffer.allocate(lastSampleNumber - firstSampleNumber + 1);
+		for(int i = firstSampleNumber; i <= lastSampleNumber; i++)
+			buffer.put(Math.floorDiv(cache.cacheLongs.get(), unitsPerMillisecond));
+		return buffer.rewind();
 		
 	}
 	
@@ -457,9 +690,10 @@ public class StorageTimestamps {
 						for(int recordN = firstRecord; recordN < SLOT_SIZE; recordN++) {
 							int firstSampleNumberOfRecord =                             (int) record[recordN*3 + 0];
 							int lastSampleNumberOfRecord  = firstSampleNumberOfRecord + (int) record[recordN*3 + 1] - 1;
+							long deltaOfRecord            =                                   record[recordN*3 + 1] >>> 32;
 							long timestampOfRecord        =                                   record[recordN*3 + 2];
 							while(start >= firstSampleNumberOfRecord && start <= lastSampleNumberOfRecord) {
-								cacheLongs.put(timestampOfRecord);
+								cacheLongs.put(timestampOfRecord + (start - firstSampleNumberOfRecord) * deltaOfRecord);
 								start++;
 								if(start > end) {
 									recordN = SLOT_SIZE;
@@ -486,9 +720,10 @@ public class StorageTimestamps {
 						for(int recordN = firstRecord; recordN < SLOT_SIZE; recordN++) {
 							int firstSampleNumberOfRecord =                             (int) buffer.getLong(8 * (recordN*3 + 0));
 							int lastSampleNumberOfRecord  = firstSampleNumberOfRecord + (int) buffer.getLong(8 * (recordN*3 + 1)) - 1;
+							long deltaOfRecord            =                                   buffer.getLong(8 * (recordN*3 + 1)) >>> 32;
 							long timestampOfRecord        =                                   buffer.getLong(8 * (recordN*3 + 2));
 							while(start >= firstSampleNumberOfRecord && start <= lastSampleNumberOfRecord) {
-								cacheLongs.put(timestampOfRecord);
+								cacheLongs.put(timestampOfRecord + (start - firstSampleNumberOfRecord) * deltaOfRecord);
 								start++;
 								if(start > end) {
 									recordN = SLOT_SIZE;
@@ -542,9 +777,10 @@ public class StorageTimestamps {
 						for(int recordN = firstRecord; recordN < SLOT_SIZE; recordN++) {
 							int firstSampleNumberOfRecord =                             (int) record[recordN*3 + 0];
 							int lastSampleNumberOfRecord  = firstSampleNumberOfRecord + (int) record[recordN*3 + 1] - 1;
+							long deltaOfRecord            =                                   record[recordN*3 + 1] >>> 32;
 							long timestampOfRecord        =                                   record[recordN*3 + 2];
 							while(start >= firstSampleNumberOfRecord && start <= lastSampleNumberOfRecord) {
-								cacheLongs.put(timestampOfRecord);
+								cacheLongs.put(timestampOfRecord + (start - firstSampleNumberOfRecord) * deltaOfRecord);
 								start++;
 								if(start > end) {
 									recordN = SLOT_SIZE;
@@ -571,9 +807,10 @@ public class StorageTimestamps {
 						for(int recordN = firstRecord; recordN < SLOT_SIZE; recordN++) {
 							int firstSampleNumberOfRecord =                             (int) buffer.getLong(8 * (recordN*3 + 0));
 							int lastSampleNumberOfRecord  = firstSampleNumberOfRecord + (int) buffer.getLong(8 * (recordN*3 + 1)) - 1;
+							long deltaOfRecord            =                                   buffer.getLong(8 * (recordN*3 + 1)) >>> 32;
 							long timestampOfRecord        =                                   buffer.getLong(8 * (recordN*3 + 2));
 							while(start >= firstSampleNumberOfRecord && start <= lastSampleNumberOfRecord) {
-								cacheLongs.put(timestampOfRecord);
+								cacheLongs.put(timestampOfRecord + (start - firstSampleNumberOfRecord) * deltaOfRecord);
 								start++;
 								if(start > end) {
 									recordN = SLOT_SIZE;
@@ -599,16 +836,16 @@ public class StorageTimestamps {
 	/**
 	 * Each Slot stores 1M timestamp "records." Each record is 3 longs which specify:
 	 * 1. The first sample number in a series.
-	 * 2. The sample count of that series.
-	 * 3. The timestamp for that entire series.
+	 * 2. The sample count of that series (lower 32 bits) and the timestamp delta between samples (upper 32 bits.)
+	 * 3. The timestamp of the first sample in that series.
 	 * 
-	 * The records are stored in a strictly increasing order (there will not be two records for the same timestamp.)
+	 * The records are stored in increasing order (each record starts at or after the last timestamp of the previous record.)
 	 */
 	private class Slot {
 		
 		private volatile boolean inRam = true;
 		private volatile boolean flushing = false;
-		private volatile long[] record = new long[3*SLOT_SIZE]; // [i] = firstSampleNumber, [i+1] = sampleCount, [i+2] = timestamp, ...
+		private volatile long[] record = new long[3*SLOT_SIZE]; // [i] = firstSampleNumber, [i+1] = sampleCount | (delta << 32), [i+2] = timestamp, ...
 		
 		public void flushToDisk(int slotN) {
 			
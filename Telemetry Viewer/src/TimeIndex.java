@@ -0,0 +1,109 @@
+/**
+ * Converts timestamps to sample numbers for one connection, and remembers the conversions for the rest of the frame.
+ * 
+ * Every chart, the triggers, and the timeline usually ask for the same few conversions each frame (such as the sample number at the right edge of the charts.)
+ * OpenGLCharts.display() starts a new frame before drawing, then each conversion is done with a binary search the first time it is requested,
+ * and later requests during that frame reuse the result.
+ * Only the thread that started the frame uses the memo, so exports running on other threads always get fresh conversions.
+ */
+public class TimeIndex {
+	
+	private static final int MAX_MEMO_COUNT = 64;
+	
+	public record Statistics(int requestCount, int lookupCount) {}
+	
+	private final StorageTimestamps timestamps;
+	
+	// memoized conversions for the current frame
+	private volatile Thread frameThread = null; // volatile because other threads (such as exports) read it to decide if they can use the memo
+	private final boolean[] memoAfter           = new boolean[MAX_MEMO_COUNT]; // true for getClosestSampleNumberAfter(), false for getClosestSampleNumberAtOrBefore()
+	private final long[]    memoTimestamp       = new long[MAX_MEMO_COUNT];
+	private final int[]     memoMaxSampleNumber = new int[MAX_MEMO_COUNT];
+	private final int[]     memoSampleNumber    = new int[MAX_MEMO_COUNT];
+	private int memoCount = 0;
+	
+	// how many conversions were requested, and how many actually needed a lookup
+	private int requestCount = 0;
+	private int lookupCount = 0;
+	private volatile Statistics previousFrame = new Statistics(0, 0);
+	
+	/**
+	 * @param timestamps    Timestamps of the connection.
+	 */
+	public TimeIndex(StorageTimestamps timestamps) {
+		
+		this.timestamps = timestamps;
+		
+	}
+	
+	/**
+	 * Forgets the conversions of the previous frame. Conversions requested by the calling thread will be memoized until the next call to this method.
+	 */
+	public void startFrame() {
+		
+		previousFrame = new Statistics(requestCount, lookupCount);
+		frameThread = Thread.currentThread();
+		memoCount = 0;
+		requestCount = 0;
+		lookupCount = 0;
+		
+	}
+	
+	/**
+	 * @return    Number of conversions requested during the previous frame, and how many of them needed a lookup.
+	 */
+	public Statistics getStatistics() {
+		
+		return previousFrame;
+		
+	}
+	
+	/**
+	 * @param timestamp          The timestamp, in milliseconds.
+	 * @param maxSampleNumber    Sample number to return if every sample is at or before the timestamp.
+	 * @return                   The closest sample number at or before the timestamp, or -1 if every sample is after the timestamp.
+	 */
+	public int getClosestSampleNumberAtOrBefore(long timestamp, int maxSampleNumber) {
+		
+		return convert(false, timestamp, maxSampleNumber);
+		
+	}
+	
+	/**
+	 * @param timestamp    The timestamp, in milliseconds.
+	 * @return             The closest sample number after the timestamp, or the last sample number if every sample is at or before the timestamp.
+	 */
+	public int getClosestSampleNumberAfter(long timestamp) {
+		
+		return convert(true, timestamp, -1);
+		
+	}
+	
+	private int convert(boolean after, long timestamp, int maxSampleNumber) {
+		
+		if(Thread.currentThread() != frameThread)
+			return after ? timestamps.getClosestSampleNumberAfter(timestamp) :
+			               timestamps.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
+		
+		requestCount++;
+		
+		// reuse a conversion from earlier in this frame, unless the samples were removed since then
+		for(int i = 0; i < memoCount; i++)
+			if(memoAfter[i] == after && memoTimestamp[i] == timestamp && memoMaxSampleNumber[i] == maxSampleNumber && memoSampleNumber[i] < timestamps.getSampleCount())
+				return memoSampleNumber[i];
+		
+		lookupCount++;
+		int sampleNumber = after ? timestamps.getClosestSampleNumberAfter(timestamp) :
+		                           timestamps.getClosestSampleNumberAtOrBefore(timestamp, maxSampleNumber);
+		if(memoCount < MAX_MEMO_COUNT) {
+			memoAfter[memoCount] = after;
+			memoTimestamp[memoCount] = timestamp;
+			memoMaxSampleNumber[memoCount] = maxSampleNumber;
+			memoSampleNumber[memoCount] = sampleNumber;
+			memoCount++;
+		}
+		return sampleNumber;
+		
+	}
+	
+}
@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ColumnQueryTest {
+	
+	static final int SAMPLE_COUNT = 1000;
+	static final long FIRST_TIMESTAMP = 10_000;
+	
+	ConnectionTelemetry connection;
+	List<Field> datasets;
+	
+	/**
+	 * Adds SAMPLE_COUNT samples, one per millisecond, where each sample's value is its sample number.
+	 */
+	@BeforeEach
+	void prepare() {
+		
+		connection = new ConnectionTelemetry("Demo Mode");
+		datasets = connection.getPacketDatasetsList();
+		for(int sampleN = 0; sampleN < SAMPLE_COUNT; sampleN++) {
+			for(Field dataset : datasets)
+				dataset.setSample(sampleN, sampleN);
+			connection.incrementSampleCountWithTimestamp(1, FIRST_TIMESTAMP + sampleN);
+		}
+		
+	}
+	
+	@AfterEach
+	void cleanup() {
+		
+		connection.dispose();
+		
+	}
+	
+	static void assertEmpty(StorageFloats.Buckets[] buckets) {
+		
+		for(StorageFloats.Buckets b : buckets) {
+			assertEquals(0, b.min().length);
+			assertEquals(0, b.max().length);
+			assertEquals(0, b.mean().length);
+		}
+		
+	}
+	
+	@Test
+	@DisplayName("Buckets Within The Samples")
+	void testBucketsWithin() {
+		
+		StorageFloats.Buckets[] buckets = connection.query(datasets).getBucketsBetween(16, FIRST_TIMESTAMP, FIRST_TIMESTAMP + SAMPLE_COUNT - 1);
+		assertEquals(datasets.size(), buckets.length);
+		for(StorageFloats.Buckets b : buckets) {
+			assertEquals(0, b.firstSampleNumber());
+			assertEquals(SAMPLE_COUNT / 16, b.mean().length);
+			assertEquals(0,    b.min()[0]);
+			assertEquals(15,   b.max()[0]);
+			assertEquals(7.5f, b.mean()[0], 1e-5);
+		}
+		
+	}
+	
+	@Test
+	@DisplayName("Buckets After The Last Sample")
+	void testBucketsAfter() {
+		
+		ColumnQuery query = connection.query(datasets);
+		assertEmpty(query.getBucketsBetween(16, FIRST_TIMESTAMP + SAMPLE_COUNT, FIRST_TIMESTAMP + 2 * SAMPLE_COUNT));
+		assertEmpty(query.getBucketsBetween(16, Long.MAX_VALUE - 1, Long.MAX_VALUE));
+		assertEmpty(query.getBuckets(16, Integer.MAX_VALUE, Integer.MAX_VALUE));
+		
+	}
+	
+	@Test
+	@DisplayName("Buckets Before The First Sample")
+	void testBucketsBefore() {
+		
+		ColumnQuery query = connection.query(datasets);
+		assertEmpty(query.getBucketsBetween(16, 0, FIRST_TIMESTAMP - 1));
+		assertEmpty(query.getBucketsBetween(16, Long.MIN_VALUE, Long.MIN_VALUE + 1));
+		assertEmpty(query.getBuckets(16, Integer.MIN_VALUE, -1));
+		
+	}
+	
+	@Test
+	@DisplayName("Buckets Near Integer.MAX_VALUE")
+	void testBucketsNearMaxValue() {
+		
+		StorageFloats.Buckets buckets = datasets.getFirst().getBuckets(16, Integer.MAX_VALUE - 1, SAMPLE_COUNT - 1);
+		assertEquals(0, buckets.mean().length);
+		
+	}
+	
+}
@@ -0,0 +1,104 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ConnectionSettingsTest {
+	
+	@BeforeEach
+	void prepare() {
+		
+		try { Files.createDirectory(Paths.get("cache")); } catch(FileAlreadyExistsException e) {} catch(Exception e) { e.printStackTrace(); }
+		
+	}
+	
+	/**
+	 * @param type    Connection type, as written on the "type = " line.
+	 * @return        The lines of a connection, in the format of a "Telemetry Viewer v0.8 Settings" file from before the newer connection settings existed.
+	 *                The "type = " line is not included because Connections.importSettingsFile() consumes it before calling importFrom().
+	 */
+	static List<String> baselineLines(String type) {
+		
+		List<String> lines = new ArrayList<String>();
+		if(type.startsWith("UART")) {
+			lines.add("speed = 9600 Baud");
+		} else {
+			lines.add("server port = 8080");
+		}
+		lines.add("protocol = CSV Mode");
+		lines.add("sample rate hz = 1000");
+		if(type.equals("UDP")) {
+			lines.add("transmit address = ");
+			lines.add("transmit port = 8080");
+		}
+		lines.add("transmit data type = Text");
+		lines.add("transmit data = ");
+		lines.add("transmit appends cr = false");
+		lines.add("transmit appends lf = false");
+		lines.add("transmit repeatedly = false");
+		lines.add("transmit repitition interval milliseconds = 1000");
+		lines.add("transmit saved packet count = 0");
+		lines.add("field count = 1");
+		lines.add("");
+		lines.add("\tdataset location = 0");
+		lines.add("\tbinary processor = uint8");
+		lines.add("\tname = x");
+		lines.add("\tcolor = 0xFF0000");
+		lines.add("\tunit = V");
+		lines.add("\tconversion factor a = 1.0");
+		lines.add("\tconversion factor b = 1.0");
+		lines.add("");
+		return lines;
+		
+	}
+	
+	/**
+	 * @param connection    The connection to export.
+	 * @return              The exported settings, without the "type = " line.
+	 */
+	static List<String> export(ConnectionTelemetry connection) {
+		
+		StringWriter text = new StringWriter();
+		PrintWriter writer = new PrintWriter(text);
+		connection.exportTo(writer);
+		writer.flush();
+		List<String> lines = new ArrayList<String>(text.toString().lines().toList());
+		lines.remove(0);
+		return lines;
+		
+	}
+	
+	@ParameterizedTest
+	@ValueSource(strings = {"TCP", "UDP", "UART: ttyS0"})
+	@DisplayName("Import Settings From Before The Newer Connection Settings")
+	void testBaselineImport(String type) {
+		
+		ConnectionTelemetry connection = new ConnectionTelemetry(type);
+		Connections.QueueOfLines lines = new Connections.QueueOfLines(baselineLines(type));
+		connection.importFrom(lines);
+		assertTrue(lines.stream().allMatch(String::isEmpty), "Every setting should be consumed.");
+		
+		assertEquals(1000, connection.getSampleRate());
+		assertEquals(1, connection.getDatasetsList().size());
+		assertEquals("x", connection.getDatasetsList().get(0).name.get());
+		
+		// exporting then importing again should reproduce the same settings, now including the newer settings
+		List<String> exported = export(connection);
+		assertTrue(exported.stream().anyMatch(line -> line.trim().equals("timestamp resolution = Millisecond Timestamps")));
+		ConnectionTelemetry reimported = new ConnectionTelemetry(type);
+		reimported.importFrom(new Connections.QueueOfLines(exported));
+		assertEquals(exported, export(reimported));
+		
+	}
+	
+}
@@ -0,0 +1,65 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class DeviceClockTest {
+	
+	static final long NOW = 1_700_000_000_000L; // milliseconds
+	
+	@ParameterizedTest(name = "{0} ticks per second, {1} units per millisecond")
+	@CsvSource({"1000,    1",
+	            "1000000, 1000",
+	            "1000000, 1000000"})
+	@DisplayName("32-bit Counter Wraps Around")
+	void testWraparound(double ticksPerSecond, long unitsPerMillisecond) {
+		
+		ConnectionTelemetry.DeviceClock clock = new ConnectionTelemetry.DeviceClock(Field.Type.UINT32_LE_TIMESTAMP, ticksPerSecond, unitsPerMillisecond);
+		long unitsPerTick = Math.round(1000.0 * unitsPerMillisecond / ticksPerSecond);
+		long now = NOW * unitsPerMillisecond;
+		
+		// the counter passes 0xFFFFFFFF, and the timestamps keep advancing by one tick
+		long firstTicks = 0xFFFFFFFFL - 9;
+		for(int i = 0; i < 20; i++) {
+			long ticks = (firstTicks + i) % (1L << 32);
+			assertEquals(now + i * unitsPerTick, clock.getTimestamp(ticks, now + i * unitsPerTick), "ticks = " + ticks);
+		}
+		
+	}
+	
+	@Test
+	@DisplayName("Counter Jumps Backwards")
+	void testBackwardsJump() {
+		
+		// a 64-bit millisecond counter, so a backwards jump can't be a wraparound
+		ConnectionTelemetry.DeviceClock clock = new ConnectionTelemetry.DeviceClock(Field.Type.UINT64_LE_TIMESTAMP, 1000, 1);
+		for(int i = 0; i < 100; i++)
+			assertEquals(NOW + i, clock.getTimestamp(100_000 + i, NOW + i));
+		
+		// a small jump backwards is within the allowed drift, so the timestamps stay where they were instead of moving backwards
+		assertEquals(NOW + 99, clock.getTimestamp(100_000 + 50, NOW + 100));
+		assertEquals(NOW + 99, clock.getTimestamp(100_000 + 51, NOW + 101));
+		
+		// the device was reset, so its clock is re-aligned to this computer's clock
+		assertEquals(NOW + 200, clock.getTimestamp(0, NOW + 200));
+		assertEquals(NOW + 201, clock.getTimestamp(1, NOW + 201));
+		assertEquals(NOW + 210, clock.getTimestamp(10, NOW + 210));
+		
+	}
+	
+	@Test
+	@DisplayName("32-bit Counter Jumps Backwards")
+	void testBackwardsJumpWithWraparound() {
+		
+		// a backwards jump looks like a wraparound, which moves the timestamps 49 days ahead, so the clock is re-aligned
+		ConnectionTelemetry.DeviceClock clock = new ConnectionTelemetry.DeviceClock(Field.Type.UINT32_LE_TIMESTAMP, 1000, 1);
+		for(int i = 0; i < 100; i++)
+			assertEquals(NOW + i, clock.getTimestamp(5000 + i, NOW + i));
+		assertEquals(NOW + 100, clock.getTimestamp(20, NOW + 100));
+		assertEquals(NOW + 101, clock.getTimestamp(21, NOW + 101));
+		
+	}
+	
+}
@@ -0,0 +1,126 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class FieldExpressionTest {
+	
+	ConnectionTelemetry connection;
+	List<Field> datasets; // "low_quality_noise", "noisey_sine_wave_100-500hz", ...
+	
+	@BeforeEach
+	void prepare() {
+		
+		connection = new ConnectionTelemetry("Demo Mode");
+		datasets = connection.getDatasetsList();
+		
+	}
+	
+	/**
+	 * Evaluates an expression with one input, a block at a time.
+	 */
+	static float[] evaluate(FieldExpression expression, float[] input, int blockSize) {
+		
+		float[] output = new float[input.length];
+		for(int i = 0; i < input.length; i += blockSize) {
+			int count = Integer.min(blockSize, input.length - i);
+			expression.evaluate(new float[][] {input}, i, count, output, i);
+		}
+		return output;
+		
+	}
+	
+	@DisplayName(value = "Arithmetic")
+	@ParameterizedTest(name = "{0} = {1}")
+	@CsvSource(delimiter = ';', value = {"low_quality_noise + 1 * 2; 5", "(low_quality_noise + 1) * 2; 8", "-2^2 * low_quality_noise / 3; -4", "2^3^2 * low_quality_noise; 1536", "[Low Quality Noise] % 2; 1",
+	                                    "max(low_quality_noise, 10) / 4; 2.5", "sqrt(low_quality_noise^2 + 4^2); 5", "round(low_quality_noise * pi); 9", "1e1 - low_quality_noise; 7"})
+	void arithmetic(String text, float expected) {
+		
+		FieldExpression expression = new FieldExpression(text, datasets, () -> 1000);
+		assertEquals(List.of(datasets.get(0)), expression.getInputs());
+		assertFalse(expression.isStateful());
+		assertEquals(expected, evaluate(expression, new float[] {3}, 1)[0], 1e-5);
+		
+	}
+	
+	@DisplayName(value = "Invalid Expressions")
+	@ParameterizedTest(name = "\"{0}\"")
+	@ValueSource(strings = {"", "2 + 3", "low_quality_noise +", "(low_quality_noise", "[Missing]", "nothing * 2", "sqrt(low_quality_noise, 2)",
+	                        "lowpass(low_quality_noise)", "lowpass(low_quality_noise, 10, 9)", "lowpass(low_quality_noise, low_quality_noise)", "notch(low_quality_noise, 60)", "decimate(low_quality_noise, 0)"})
+	void invalid(String text) {
+		
+		IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> new FieldExpression(text, datasets, () -> 1000));
+		assertFalse(e.getMessage().isEmpty());
+		
+	}
+	
+	@Test
+	@DisplayName(value = "Filter Frequency Response")
+	void frequencyResponse() {
+		
+		record Case(String text, double hz, double minimumGain, double maximumGain) {}
+		List<Case> cases = List.of(new Case("lowpass(low_quality_noise, 50, 4)",  10,  0.99,  1.01),
+		                           new Case("lowpass(low_quality_noise, 50, 4)",  50,  0.69,  0.72),
+		                           new Case("lowpass(low_quality_noise, 50, 4)",  200, 0,     0.005),
+		                           new Case("highpass(low_quality_noise, 5, 3)",  1,   0,     0.01),
+		                           new Case("highpass(low_quality_noise, 5, 3)",  50,  0.98,  1.01),
+		                           new Case("notch(low_quality_noise, 60, 10)",   60,  0,     0.01),
+		                           new Case("notch(low_quality_noise, 60, 10)",   10,  0.99,  1.01),
+		                           new Case("bandpass(low_quality_noise, 100, 2)", 100, 0.94,  1.01),
+		                           new Case("bandpass(low_quality_noise, 100, 2)", 10,  0,     0.06));
+		
+		for(Case c : cases) {
+			float[] sine = new float[20000];
+			for(int i = 0; i < sine.length; i++)
+				sine[i] = (float) Math.sin(2 * Math.PI * c.hz * i / 1000);
+			float[] output = evaluate(new FieldExpression(c.text, datasets, () -> 1000), sine, StorageFloats.BLOCK_SIZE);
+			double amplitude = 0;
+			for(int i = sine.length / 2; i < sine.length; i++) // skip the transient
+				amplitude = Math.max(amplitude, Math.abs(output[i]));
+			assertTrue(amplitude >= c.minimumGain && amplitude <= c.maximumGain, c.text + " at " + c.hz + " Hz has a gain of " + amplitude);
+		}
+		
+	}
+	
+	@DisplayName(value = "Filter State Carries Over Between Blocks")
+	@ParameterizedTest(name = "{0}")
+	@ValueSource(strings = {"lowpass(low_quality_noise, 20, 3)", "notch(low_quality_noise, 60, 5) * 2", "fir(low_quality_noise, 0.1, 0.2, 0.4, 0.2, 0.1)", "decimate(low_quality_noise, 7)"})
+	void blockSizes(String text) {
+		
+		float[] input = new float[10000];
+		for(int i = 0; i < input.length; i++)
+			input[i] = (float) Math.sin(i * 0.01) + ((i * 7919) % 13) / 13f;
+		
+		FieldExpression expression = new FieldExpression(text, datasets, () -> 1000);
+		assertTrue(expression.isStateful());
+		float[] expected = evaluate(expression, input, StorageFloats.BLOCK_SIZE);
+		for(int blockSize : new int[] {1, 3, 1000}) {
+			expression.reset();
+			assertArrayEquals(expected, evaluate(expression, input, blockSize));
+		}
+		
+		// a constant input produces a constant output, without ringing from the initial state
+		float[] constant = new float[5000];
+		Arrays.fill(constant, 4);
+		expression.reset();
+		for(float f : evaluate(expression, constant, StorageFloats.BLOCK_SIZE))
+			assertEquals(text.startsWith("notch") ? 8 : 4, f, 1e-4);
+		
+	}
+	
+	@AfterEach
+	void dispose() {
+		
+		connection.dispose();
+		
+	}
+	
+}
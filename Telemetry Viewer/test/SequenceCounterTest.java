@@ -0,0 +1,98 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+class SequenceCounterTest {
+	
+	/**
+	 * @param counter            The counter to test.
+	 * @param lost               Expected number of lost packets.
+	 * @param outOfOrder         Expected number of out-of-order packets.
+	 * @param duplicate          Expected number of duplicate packets.
+	 */
+	static void assertCounts(SequenceCounter counter, long lost, long outOfOrder, long duplicate) {
+		
+		assertEquals(lost,       counter.getLostPacketCount(),       "lost");
+		assertEquals(outOfOrder, counter.getOutOfOrderPacketCount(), "out of order");
+		assertEquals(duplicate,  counter.getDuplicatePacketCount(),  "duplicate");
+		
+	}
+	
+	@ParameterizedTest
+	@CsvSource({"uint8,             250",
+	            "uint16 LSB First,  65530",
+	            "int16 MSB First,   65530",
+	            "uint32 LSB First,  4294967290"})
+	@DisplayName("Wraparound At The Bit Width")
+	void testWraparound(String typeName, long first) {
+		
+		Field.Type type = Field.Type.fromString(typeName);
+		long modulus = 1L << (8 * type.getByteCount());
+		SequenceCounter counter = new SequenceCounter(0, type, type.getByteCount());
+		for(long n = first; n < first + 20; n++)
+			counter.count(n % modulus);
+		assertCounts(counter, 0, 0, 0);
+		
+		// after wrapping around: skip 2 packets, receive one of them late, then receive two packets again
+		counter.count((first + 22) % modulus);
+		assertCounts(counter, 2, 0, 0);
+		counter.count((first + 21) % modulus);
+		assertCounts(counter, 1, 1, 0);
+		counter.count((first + 21) % modulus);
+		counter.count((first + 22) % modulus);
+		assertCounts(counter, 1, 1, 2);
+		
+	}
+	
+	@Test
+	@DisplayName("Sequence Numbers Beyond 2^24")
+	void testLargeSequenceNumbers() {
+		
+		// a float can not represent these, so consecutive values would appear to be duplicates or gaps
+		SequenceCounter counter = new SequenceCounter(0, Field.Type.UINT32_BE, 4);
+		ByteBuffer datagram = ByteBuffer.allocate(4 * 1000);
+		for(int i = 0; i < 1000; i++)
+			datagram.putInt((1 << 24) + i);
+		counter.count(datagram, 0, datagram.position());
+		assertCounts(counter, 0, 0, 0);
+		
+	}
+	
+	@Test
+	@DisplayName("Several Packets Per Datagram")
+	void testDatagrams() {
+		
+		// binary packets: sync word, then a uint16 sequence number
+		SequenceCounter binary = new SequenceCounter(1, Field.Type.UINT16_LE, 3);
+		ByteBuffer datagram = ByteBuffer.wrap(new byte[] {(byte) 0xAA, 7, 0,  (byte) 0xAA, 8, 0,  (byte) 0xAA, 10, 0,  (byte) 0xAA, 8, 0});
+		binary.count(datagram, 0, datagram.capacity());
+		assertCounts(binary, 1, 0, 1);
+		
+		// CSV lines with the sequence number in the second column, and a line without a number
+		SequenceCounter csv = new SequenceCounter(1, null, 0);
+		datagram = ByteBuffer.wrap("1.5,99\r\n2.5,100\r\nerror\n3.5,103.0\n4.5,101\n".getBytes(StandardCharsets.US_ASCII));
+		csv.count(datagram, 0, datagram.capacity());
+		assertCounts(csv, 1, 1, 0);
+		
+	}
+	
+	@Test
+	@DisplayName("Sender Restarts")
+	void testRestart() {
+		
+		SequenceCounter counter = new SequenceCounter(0, null, 0);
+		for(int n = 0; n < 100000; n++)
+			counter.count(n);
+		for(int n = 0; n < 100; n++)
+			counter.count(n);
+		assertCounts(counter, 0, 0, 0);
+		
+	}
+	
+}
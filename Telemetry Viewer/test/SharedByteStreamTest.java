@@ -0,0 +1,292 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class SharedByteStreamTest {
+	
+	ConnectionTelemetry connection;
+	SharedByteStream stream;
+	
+	@BeforeEach
+	void prepare() {
+		
+		connection = new ConnectionTelemetry("Demo Mode");
+		stream = new SharedByteStream(connection);
+		stream.setPacketSize(0, 0, (byte) 0);
+		
+	}
+	
+	void write(String text) throws InterruptedException {
+		
+		byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+		stream.write(bytes, bytes.length);
+		
+	}
+	
+	@DisplayName(value = "CSV Numbers Match Float.parseFloat()")
+	@ParameterizedTest(name = "Parsing \"{0}\"")
+	@ValueSource(strings = {"0", "-0", "1", "-1", "+2.5", "0.1", "3.14159", "16777216", "16777217", "0.0000000001", "123456789.123", "1e3", "-2.5E-7", " 42 ", "NaN", "Infinity", "1.", ".5"})
+	void parseNumbers(String number) throws InterruptedException {
+		
+		write(number + "\n");
+		float[][] rows = new float[1][1];
+		assertEquals(1, stream.readCsvRows(rows, 1));
+		assertEquals(Float.parseFloat(number), rows[0][0]);
+		
+	}
+	
+	@Test
+	@DisplayName(value = "CSV Batches and Corrupt Lines")
+	void parseBatches() throws InterruptedException {
+		
+		write("1,2,3\r\n4,5,6,7\n8,x,9\n10,11\n12,13,14\n");
+		float[][] rows = new float[8][3];
+		
+		// the good lines before a corrupt line are returned first
+		assertEquals(2, stream.readCsvRows(rows, 3));
+		assertArrayEquals(new float[] {1, 2, 3}, rows[0]);
+		assertArrayEquals(new float[] {4, 5, 6}, rows[1]);
+		
+		// then each corrupt line is reported
+		NumberFormatException e = assertThrows(NumberFormatException.class, () -> stream.readCsvRows(rows, 3));
+		assertEquals("8,x,9", e.getMessage());
+		e = assertThrows(NumberFormatException.class, () -> stream.readCsvRows(rows, 3));
+		assertEquals("10,11", e.getMessage());
+		
+		// an incomplete line is not returned until it is terminated
+		write("15,16,");
+		assertEquals(1, stream.readCsvRows(rows, 3));
+		assertArrayEquals(new float[] {12, 13, 14}, rows[0]);
+		write("17\n");
+		assertEquals(1, stream.readCsvRows(rows, 3));
+		assertArrayEquals(new float[] {15, 16, 17}, rows[0]);
+		
+	}
+	
+	@Test
+	@DisplayName(value = "CSV Line Longer Than The Buffer")
+	void parseOversizedLine() throws InterruptedException {
+		
+		connection.overflowPolicy.set(SharedByteStream.OverflowPolicy.SPILL_TO_DISK);
+		stream = new SharedByteStream(connection);
+		stream.setPacketSize(0, 0, (byte) 0);
+		
+		// write a 9MB line, without a line terminator until the end, followed by a normal line
+		write("1,2,3\n");
+		byte[] chunk = new byte[1048576];
+		Arrays.fill(chunk, (byte) '7');
+		for(int i = 0; i < 9; i++)
+			stream.write(chunk, chunk.length);
+		write("\n4,5,6\n");
+		
+		// the line before it is returned, then the long line is reported, then parsing resumes at the next line
+		float[][] rows = new float[8][3];
+		assertEquals(1, stream.readCsvRows(rows, 3));
+		assertArrayEquals(new float[] {1, 2, 3}, rows[0]);
+		NumberFormatException e = assertThrows(NumberFormatException.class, () -> stream.readCsvRows(rows, 3));
+		assertTrue(e.getMessage().startsWith("77777777777777777777..."), e.getMessage());
+		assertEquals(1, stream.readCsvRows(rows, 3));
+		assertArrayEquals(new float[] {4, 5, 6}, rows[0]);
+		stream.dispose();
+		
+	}
+	
+	@Test
+	@DisplayName(value = "Bulk Byte Search")
+	void searchBytes() {
+		
+		Random random = new Random(0);
+		byte[] bytes = new byte[100];
+		for(int trial = 0; trial < 10000; trial++) {
+			random.nextBytes(bytes);
+			int start = random.nextInt(bytes.length);
+			int end = start + random.nextInt(bytes.length - start + 1);
+			byte value = (byte) random.nextInt(4); // small values, so some searches succeed
+			int expected = -1;
+			for(int i = start; i < end && expected == -1; i++)
+				if(bytes[i] == value)
+					expected = i;
+			assertEquals(expected, SharedByteStream.indexOf(bytes, start, end, value));
+		}
+		
+	}
+	
+	@DisplayName(value = "Framed Packets")
+	@ParameterizedTest(name = "{0}")
+	@EnumSource(value = ConnectionTelemetry.Protocol.class, names = {"COBS", "SLIP", "LENGTH_PREFIXED"})
+	void decodeFrames(ConnectionTelemetry.Protocol framing) throws InterruptedException {
+		
+		stream.setFraming(4, framing);
+		byte[][] packets = {{1, 2, 3, 4}, {0, 0, 0, 0}, {(byte) 0xC0, (byte) 0xDB, (byte) 0xDC, (byte) 0xDD}, {5, 6, 7, 8, 9}, {0, 1, 0, 2, 0, 3}};
+		
+		// COBS and SLIP: a partial frame before the first delimiter is ignored
+		// all modes: frames may be longer than a packet
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		if(framing != ConnectionTelemetry.Protocol.LENGTH_PREFIXED)
+			bytes.writeBytes(new byte[] {9, 9, (framing == ConnectionTelemetry.Protocol.COBS) ? 0 : (byte) 0xC0});
+		for(byte[] packet : packets)
+			bytes.writeBytes(encode(packet, framing));
+		stream.write(bytes.toByteArray(), bytes.size());
+		
+		SharedByteStream.DataBuffer data = stream.getBytes();
+		assertEquals(4 * packets.length - 1, data.end - data.offset);
+		for(int packetN = 0; packetN < packets.length; packetN++)
+			for(int i = 0; i < 4; i++)
+				assertEquals(packets[packetN][i], data.buffer[data.offset + 4 * packetN + i]);
+		
+	}
+	
+	@Test
+	@DisplayName(value = "Length-Prefixed Frames Of Mixed Lengths")
+	void decodeMixedLengthFrames() throws InterruptedException {
+		
+		// frames may be 4 to 256 bytes long for a 4-byte packet
+		stream.setFraming(4, ConnectionTelemetry.Protocol.LENGTH_PREFIXED);
+		
+		// each packet starts with its packet number, and a frame that is too long is written in the middle
+		Random random = new Random(0);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		int packetCount = 1000;
+		for(int packetN = 0; packetN < packetCount; packetN++) {
+			byte[] frame = new byte[4 + random.nextInt(253)];
+			random.nextBytes(frame);
+			ByteBuffer.wrap(frame).putInt(packetN);
+			bytes.writeBytes(encode(frame, ConnectionTelemetry.Protocol.LENGTH_PREFIXED));
+			if(packetN == packetCount / 2)
+				bytes.writeBytes(encode(new byte[257], ConnectionTelemetry.Protocol.LENGTH_PREFIXED));
+		}
+		stream.write(bytes.toByteArray(), bytes.size());
+		
+		// every packet should be received in order, and the frame that is too long should be dropped
+		int packetN = 0;
+		while(packetN < packetCount) {
+			SharedByteStream.DataBuffer data = stream.getBytes();
+			for(; data.offset < data.end; data.offset += 4)
+				assertEquals(packetN++, ByteBuffer.wrap(data.buffer, data.offset, 4).getInt());
+			stream.releaseBytes(data);
+		}
+		
+	}
+	
+	static byte[] encode(byte[] packet, ConnectionTelemetry.Protocol framing) {
+		
+		ByteArrayOutputStream frame = new ByteArrayOutputStream();
+		switch(framing) {
+			case COBS -> {
+				// no packet in this test has 254 consecutive non-zero bytes, so each block ends with a 0x00 byte or the end of the packet
+				int blockStart = 0;
+				for(int i = 0; i <= packet.length; i++) {
+					if(i == packet.length || packet[i] == 0) {
+						frame.write(i - blockStart + 1);
+						frame.write(packet, blockStart, i - blockStart);
+						blockStart = i + 1;
+					}
+				}
+				frame.write(0);
+			}
+			case SLIP -> {
+				for(byte b : packet) {
+					if(b == (byte) 0xC0)      { frame.write(0xDB); frame.write(0xDC); }
+					else if(b == (byte) 0xDB) { frame.write(0xDB); frame.write(0xDD); }
+					else                      { frame.write(b); }
+				}
+				frame.write(0xC0);
+			}
+			default -> {
+				frame.write(packet.length);
+				frame.write(packet.length >> 8);
+				frame.writeBytes(packet);
+			}
+		}
+		return frame.toByteArray();
+		
+	}
+	
+	@DisplayName(value = "Overflow Policies")
+	@ParameterizedTest(name = "{0}")
+	@EnumSource(value = SharedByteStream.OverflowPolicy.class, names = {"DROP_OLDEST", "DROP_NEWEST", "SPILL_TO_DISK"})
+	void overflow(SharedByteStream.OverflowPolicy policy) throws InterruptedException {
+		
+		connection.overflowPolicy.set(policy);
+		stream = new SharedByteStream(connection);
+		stream.setPacketSize(0, 0, (byte) 0);
+		
+		// write 16MB of 8-byte lines without reading any of them, so the 8MB buffer overflows
+		int lineCount = 2 * 1048576;
+		int linesPerWrite = 8192;
+		for(int firstLine = 0; firstLine < lineCount; firstLine += linesPerWrite) {
+			StringBuilder text = new StringBuilder(8 * linesPerWrite);
+			for(int line = firstLine; line < firstLine + linesPerWrite; line++)
+				text.append(String.format("%07d\n", line));
+			write(text.toString());
+		}
+		
+		// spilling keeps every line, dropping keeps the 1M oldest or newest lines
+		int expectedFirstLine = (policy == SharedByteStream.OverflowPolicy.DROP_OLDEST) ? lineCount / 2 : 0;
+		int expectedLineCount = (policy == SharedByteStream.OverflowPolicy.SPILL_TO_DISK) ? lineCount : lineCount / 2;
+		assertEquals(lineCount * 8L - expectedLineCount * 8L, stream.getDroppedByteCount());
+		assertEquals(policy == SharedByteStream.OverflowPolicy.SPILL_TO_DISK, stream.getSpilledByteCount() > 0);
+		
+		float[][] rows = new float[linesPerWrite][1];
+		for(int line = 0; line < expectedLineCount; ) {
+			int rowCount = stream.readCsvRows(rows, 1);
+			for(int rowN = 0; rowN < rowCount; rowN++)
+				assertEquals(expectedFirstLine + line + rowN, rows[rowN][0]);
+			line += rowCount;
+		}
+		stream.dispose();
+		
+	}
+	
+	@Test
+	@DisplayName(value = "Drop Oldest Keeps Whole Binary Packets")
+	void dropOldestPackets() throws InterruptedException {
+		
+		connection.overflowPolicy.set(SharedByteStream.OverflowPolicy.DROP_OLDEST);
+		stream = new SharedByteStream(connection);
+		int packetByteCount = 7; // does not divide evenly into the 8MB buffer
+		stream.setPacketSize(packetByteCount, 0, (byte) 0);
+		
+		// each packet starts with its packet number, and the second write starts in the middle of a packet and is larger than the entire buffer
+		int packetCount = 1200000;
+		ByteBuffer packets = ByteBuffer.allocate(packetCount * packetByteCount).order(ByteOrder.LITTLE_ENDIAN);
+		for(int packetN = 0; packetN < packetCount; packetN++)
+			packets.putInt(packetN * packetByteCount, packetN);
+		int firstWriteByteCount = 10 * packetByteCount + 3;
+		stream.write(packets.array(), firstWriteByteCount);
+		stream.write(ByteBuffer.wrap(packets.array(), firstWriteByteCount, packets.capacity() - firstWriteByteCount));
+		
+		// the 8MB buffer should be filled with the newest whole packets
+		int expectedPacketCount = 8388608 / packetByteCount;
+		assertEquals((long) (packetCount - expectedPacketCount) * packetByteCount, stream.getDroppedByteCount());
+		int packetN = packetCount - expectedPacketCount;
+		while(packetN < packetCount) {
+			SharedByteStream.DataBuffer data = stream.getBytes();
+			for(; data.offset + packetByteCount - 1 <= data.end; data.offset += packetByteCount)
+				assertEquals(packetN++, ByteBuffer.wrap(data.buffer, data.offset, 4).order(ByteOrder.LITTLE_ENDIAN).getInt());
+			stream.releaseBytes(data);
+		}
+		
+	}
+	
+	@AfterEach
+	void dispose() {
+		
+		connection.dispose();
+		
+	}
+	
+}
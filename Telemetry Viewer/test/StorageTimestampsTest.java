@@ -15,6 +15,7 @@ import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.junit.jupiter.params.provider.MethodSource;
 
 class StorageTimestampsTest {
@@ -148,6 +149,89 @@ class StorageTimestampsTest {
 		
 	}
 	
+	@DisplayName(value = "Delta Runs")
+	@ParameterizedTest(name = "{0} timestamps with irregular spacing")
+	@MethodSource("riskySampleCounts")
+	void deltaRuns(int sampleCount) {
+		
+		// populate with runs of evenly spaced timestamps, where the spacing (0-3) changes every 100 samples
+		long[] expected = new long[sampleCount];
+		long timestamp = 0;
+		for(int i = 0; i < sampleCount; i++) {
+			timestamp += (i / 100) % 4;
+			expected[i] = timestamp;
+			connection.incrementSampleCountWithTimestamp(1, timestamp);
+		}
+		
+		// verify the timestamps, and the closest sample for each timestamp
+		for(int i = 0; i < sampleCount; i += Math.max(1, sampleCount / 10000)) {
+			assertEquals(expected[i], datasetsInterface.getTimestamp(i));
+			int sampleNumber = datasetsInterface.getClosestSampleNumberAtOrBefore(expected[i], sampleCount - 1);
+			assertEquals(expected[i], datasetsInterface.getTimestamp(sampleNumber));
+			assertTrue(sampleNumber == sampleCount - 1 || expected[sampleNumber + 1] > expected[i], "Got a sample that is not at the threshold.");
+		}
+		
+	}
+	
+	@DisplayName(value = "Sub-Millisecond Delta Runs")
+	@ParameterizedTest(name = "{0}")
+	@EnumSource(value = StorageTimestamps.Resolution.class, names = {"MICROSECONDS", "NANOSECONDS"})
+	void subMillisecondDeltaRuns(StorageTimestamps.Resolution resolution) {
+		
+		StorageTimestamps timestamps = new StorageTimestamps(connection);
+		timestamps.setResolution(resolution);
+		long unitsPerMillisecond = resolution.getUnitsPerMillisecond();
+		
+		// runs of 1 unit, 333 units, 2e9 units (which needs all 32 bits of a run's delta), then a 3e9 unit gap (which is too large for a run), then 1 unit again
+		long[] deltas = {0, 1, 1, 1, 333, 333, 333, 2_000_000_000L, 2_000_000_000L, 2_000_000_000L, 3_000_000_000L, 1, 1, 1};
+		long[] expected = new long[deltas.length];
+		long timestamp = 1_700_000_000_000L * unitsPerMillisecond;
+		for(int i = 0; i < deltas.length; i++) {
+			timestamp += deltas[i];
+			expected[i] = timestamp;
+			timestamps.appendTimestamps(timestamp, 1);
+		}
+		
+		// every timestamp should round trip exactly, and the millisecond timestamps should be rounded down
+		assertEquals(deltas.length, timestamps.getSampleCount());
+		for(int i = 0; i < deltas.length; i++) {
+			assertEquals(expected[i], timestamps.getTimestampUnits(i), "sample " + i);
+			assertEquals(Math.floorDiv(expected[i], unitsPerMillisecond), timestamps.getTimestamp(i), "sample " + i);
+		}
+		timestamps.dispose();
+		
+	}
+	
+	@DisplayName(value = "Spreading A Batch")
+	@ParameterizedTest(name = "{0}")
+	@EnumSource(value = StorageTimestamps.Resolution.class, names = {"MICROSECONDS", "NANOSECONDS"})
+	void spreadBatch(StorageTimestamps.Resolution resolution) {
+		
+		StorageTimestamps timestamps = new StorageTimestamps(connection);
+		timestamps.setResolution(resolution);
+		long spacing = resolution.getUnitsPerMillisecond(); // 1000 samples per second
+		long start = 1_700_000_000_000L * spacing;
+		
+		// the first batch is not spread out
+		assertEquals(start, timestamps.appendSpreadTimestamps(start, start, spacing, 3));
+		
+		// a batch that arrives long after the previous batch is spread out to end at the current time
+		long end = start + 100 * spacing;
+		assertEquals(end - 4 * spacing, timestamps.appendSpreadTimestamps(end, start, spacing, 5));
+		
+		// a batch that arrives soon after the previous batch is spread out, but not before the previous batch
+		assertEquals(end, timestamps.appendSpreadTimestamps(end + 2 * spacing, end, spacing, 5));
+		
+		long[] expected = {start, start, start,
+		                   end - 4 * spacing, end - 3 * spacing, end - 2 * spacing, end - spacing, end,
+		                   end, end, end, end + spacing, end + 2 * spacing};
+		assertEquals(expected.length, timestamps.getSampleCount());
+		for(int i = 0; i < expected.length; i++)
+			assertEquals(expected[i], timestamps.getTimestampUnits(i), "sample " + i);
+		timestamps.dispose();
+		
+	}
+	
 	@AfterEach
 	void deleteCacheFiles() {
 		
@@ -0,0 +1,141 @@
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class TcpServerTest {
+	
+	static final int SAMPLE_COUNT = 1000;
+	static final long TIMEOUT_MILLISECONDS = 5000;
+	
+	ConnectionTelemetry server;
+	int port;
+	
+	/**
+	 * Starts a TCP server on an unused port, in CSV mode with one field.
+	 */
+	@BeforeEach
+	void prepare() throws Exception {
+		
+		try { Files.createDirectory(Paths.get("cache")); } catch(FileAlreadyExistsException e) {}
+		
+		try(ServerSocket socket = new ServerSocket(0)) {
+			port = socket.getLocalPort();
+		}
+		
+		List<String> lines = ConnectionSettingsTest.baselineLines("TCP");
+		lines.set(0, "server port = " + port);
+		server = new ConnectionTelemetry("TCP");
+		server.importFrom(new Connections.QueueOfLines(lines));
+		Connections.addConnection(server);
+		server.connect(false);
+		waitFor(() -> server.isConnected(), "The TCP server should start.");
+		
+	}
+	
+	@AfterEach
+	void cleanup() {
+		
+		server.disconnect(null, true);
+		for(ConnectionTelemetry connection : List.copyOf(Connections.telemetryConnections))
+			if(connection == server || connection.getName().startsWith(server.getName() + " Client"))
+				Connections.removeConnection(connection);
+		
+	}
+	
+	static void waitFor(BooleanSupplier condition, String message) throws InterruptedException {
+		
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLISECONDS;
+		while(!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, message);
+			Thread.sleep(10);
+		}
+		
+	}
+	
+	/**
+	 * Sends CSV rows for samples firstValue to firstValue + count - 1.
+	 */
+	static void send(SocketChannel client, int firstValue, int count) throws Exception {
+		
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < count; i++)
+			text.append(firstValue + i).append('\n');
+		ByteBuffer bytes = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.US_ASCII));
+		while(bytes.hasRemaining())
+			client.write(bytes);
+		
+	}
+	
+	static void assertSamples(ConnectionTelemetry connection, int firstValue) {
+		
+		Field dataset = connection.getDatasetsList().get(0);
+		StorageFloats.Cache cache = dataset.createCache();
+		for(int sampleN = 0; sampleN < SAMPLE_COUNT; sampleN++)
+			assertEquals(firstValue + sampleN, dataset.getSample(sampleN, cache), "Sample " + sampleN + " of " + connection.getName());
+		
+	}
+	
+	@Test
+	@DisplayName("Two Simultaneous Clients")
+	void testTwoClients() throws Exception {
+		
+		try(SocketChannel first = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+			
+			// the first client provides the server's own telemetry
+			send(first, 0, SAMPLE_COUNT / 2);
+			waitFor(() -> server.getSampleCount() > 0, "The first client should be accepted.");
+			
+			try(SocketChannel second = SocketChannel.open(new InetSocketAddress("localhost", port))) {
+				
+				// the second client gets its own connection, while the first client is still connected
+				waitFor(() -> getClientConnection() != null, "The second client should get its own connection.");
+				ConnectionTelemetry client = getClientConnection();
+				assertTrue(client.isConnected());
+				assertEquals(server.getName() + " Client 2", client.getName());
+				
+				for(int i = 0; i < SAMPLE_COUNT; i += 100) {
+					send(second, 10000 + i, 100);
+					if(i >= SAMPLE_COUNT / 2)
+						send(first, i, 100);
+				}
+				
+				waitFor(() -> server.getSampleCount() == SAMPLE_COUNT && client.getSampleCount() == SAMPLE_COUNT, "Both clients should provide every sample.");
+				assertSamples(server, 0);
+				assertSamples(client, 10000);
+				
+			}
+			
+			// when the second client closes, its connection is disconnected but the server keeps its first client
+			waitFor(() -> getClientConnection().isDisconnected(), "The second client's connection should disconnect.");
+			assertTrue(server.isConnected());
+			
+		}
+		
+	}
+	
+	/**
+	 * @return    The connection for the server's second client, or null if it does not exist yet.
+	 */
+	ConnectionTelemetry getClientConnection() {
+		
+		return List.copyOf(Connections.telemetryConnections).stream()
+		                                                    .filter(connection -> connection.getName().equals(server.getName() + " Client 2"))
+		                                                    .findFirst().orElse(null);
+		
+	}
+	
+}